@@ -0,0 +1,33 @@
+#include <stdio.h>
+#include <stdlib.h>
+
+// Run time library for the end-to-end benchmarks: this uses the
+// allocator from lib/alloc.c, and reports the number of calls to the
+// allocator slow path, and the total number of bytes allocated, on
+// stderr at exit.  (Most allocations are handled inline by the code
+// that milc generates, so they cannot be counted individually.)
+
+#define allocSlow baseAllocSlow
+#include "../../lib/alloc.c"
+#undef allocSlow
+
+static void reportAllocs(void) {
+  fprintf(stderr, "slowAllocs: " WORD " bytes: " WORD "\n", allocSlowCalls(), allocBytes());
+}
+
+void* allocSlow(word size) {
+  if (allocSlowCalls() == 0) {
+    atexit(reportAllocs);
+  }
+  return baseAllocSlow(size);
+}
+
+/* Provide an implementation for the printWord primitive.  */
+void printWord(word x) {
+  printf(WORD "\n", x);
+}
+
+/* Provide an implementation for the printString primitive.  */
+void printString(char* s) {
+  puts(s);
+}
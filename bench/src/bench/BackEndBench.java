@@ -0,0 +1,76 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import mil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the back ends: generating LLVM code from a fully compiled MIL program and writing
+ * it out as text, and generating bytecode for a program.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BackEndBench {
+
+  @Param({"ex.lc", "fib.lc", "funlib.lc", "program.lc"})
+  public String program;
+
+  private MILProgram llvmReady;
+
+  private MILProgram bytecodeReady;
+
+  private llvm.Program llvmProg;
+
+  private PrintWriter out;
+
+  @Setup(Level.Trial)
+  public void setup() throws Failure {
+    Handler handler = new SimpleHandler();
+    String main = Pipeline.setup(program);
+    llvmReady = Pipeline.compile(handler, program, main, Pipeline.LLVM_PASSES);
+    llvmProg = llvmReady.toLLVM();
+    bytecodeReady = Pipeline.compile(handler, program, main, Pipeline.EXEC_PASSES);
+    out = Pipeline.nullWriter();
+  }
+
+  @Benchmark
+  public llvm.Program toLLVM() throws Failure {
+    return llvmReady.toLLVM();
+  }
+
+  @Benchmark
+  public void dumpLLVM() {
+    llvmProg.dump(out);
+    out.flush();
+  }
+
+  @Benchmark
+  public Machine generateBytecode() {
+    return bytecodeReady.generateMachineBuilder(new SimpleHandler()).getMachine();
+  }
+}
@@ -0,0 +1,380 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An end-to-end benchmark for the code that is generated by milc. Each of the programs in
+ * bench/e2e is compiled to LLVM using several different milc configurations, and then compiled
+ * and linked with clang at each of the requested optimization levels. The resulting executables
+ * are run several times, and we report the best running time, the total size of heap allocations
+ * and the number of calls to the allocator slow path (as counted by bench/e2e/runtime.c), the
+ * number of lines of LLVM code, and the size of the object code for each combination. The output
+ * of every executable is compared with the output from the first configuration of the same program
+ * so that miscompilations are detected.
+ *
+ * <p>A milc configuration is written as a string of passes, optionally followed by a list of
+ * optimization options, each preceded by a slash. For example, "csosrsos/unroll" is equivalent
+ * to the milc options "-pcsosrsos -Ounroll".
+ */
+public class EndToEnd {
+
+  /** Folder that holds the benchmark programs and run time library. */
+  private static final String SOURCES = "bench" + File.separator + "e2e";
+
+  /** Folder that is used to hold all generated files. */
+  private static final String OUTPUT = "tmp" + File.separator + "e2e";
+
+  private String[] configs = new String[] {"csrs", "csosrsos", "csosrsos/unroll"};
+
+  private String[] levels = new String[] {"-O0", "-O2"};
+
+  private String clang = "clang";
+
+  private int reps = 3;
+
+  private int wordSize = 64;
+
+  private String csvFile = null;
+
+  public static void main(String[] args) {
+    try {
+      System.exit(new EndToEnd().run(args) ? 0 : 1);
+    } catch (Failure f) {
+      new SimpleHandler().report(f);
+      System.exit(-1);
+    }
+  }
+
+  public static void usage() {
+    System.err.println("usage: EndToEnd [options] [program ...]");
+    System.err.println("options: --configs=c1,c2,...  milc configurations, each written as");
+    System.err.println("                              passes/opt/... (default: csrs,csosrsos,");
+    System.err.println("                              csosrsos/unroll)");
+    System.err.println("         --levels=l1,l2,...   clang options (default: -O0,-O2)");
+    System.err.println("         --clang=path         clang command (default: clang)");
+    System.err.println("         --reps=r             runs of each executable (default: 3)");
+    System.err.println("         --32 / --64          word size (default: 64)");
+    System.err.println("         --csv=file           also write results to a CSV file");
+  }
+
+  /** Holds the measurements for a single build of a single program. */
+  private static class Result {
+
+    String program;
+
+    String config;
+
+    String level;
+
+    double millis;
+
+    long slowAllocs;
+
+    long allocBytes;
+
+    int llvmLines;
+
+    long objectBytes;
+
+    String status;
+  }
+
+  /** Run the benchmarks, returning true if all programs were built and produced the same output. */
+  public boolean run(String[] args) throws Failure {
+    ArrayList<String> programs = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      try {
+        if (arg.startsWith("--configs=")) {
+          configs = arg.substring(10).split(",");
+        } else if (arg.startsWith("--levels=")) {
+          levels = arg.substring(9).split(",");
+        } else if (arg.startsWith("--clang=")) {
+          clang = arg.substring(8);
+        } else if (arg.startsWith("--reps=")) {
+          reps = Integer.parseInt(arg.substring(7));
+        } else if (arg.equals("--32")) {
+          wordSize = 32;
+        } else if (arg.equals("--64")) {
+          wordSize = 64;
+        } else if (arg.startsWith("--csv=")) {
+          csvFile = arg.substring(6);
+        } else if (arg.startsWith("-")) {
+          usage();
+          return false;
+        } else {
+          programs.add(arg);
+        }
+      } catch (NumberFormatException e) {
+        throw new Failure("Invalid value in option " + arg);
+      }
+    }
+    if (reps < 1) {
+      throw new Failure("At least one repetition is required");
+    }
+    if (programs.isEmpty()) {
+      String[] names = new File(SOURCES).list();
+      if (names == null) {
+        throw new Failure("Cannot find benchmark programs in " + SOURCES);
+      }
+      Arrays.sort(names);
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].endsWith(".lc") || names[i].endsWith(".llc")) {
+          programs.add(names[i]);
+        }
+      }
+    }
+    new File(OUTPUT).mkdirs();
+
+    ArrayList<Result> results = new ArrayList<Result>();
+    boolean ok = true;
+    for (String program : programs) {
+      String expected = null;
+      for (int c = 0; c < configs.length; c++) {
+        for (int l = 0; l < levels.length; l++) {
+          Result r = new Result();
+          r.program = program;
+          r.config = configs[c];
+          r.level = levels[l];
+          String output = measure(r, c, l);
+          if (output == null) {
+            ok = false;
+          } else if (expected == null) {
+            expected = output;
+          } else if (!output.equals(expected)) {
+            r.status = "output differs";
+            ok = false;
+          }
+          results.add(r);
+          System.err.println(program + " " + r.config + " " + r.level + ": " + r.status);
+        }
+      }
+    }
+
+    PrintWriter out = new PrintWriter(System.out);
+    report(out, results);
+    out.flush();
+    if (csvFile != null) {
+      try {
+        PrintWriter csv = new PrintWriter(new FileWriter(csvFile));
+        csv(csv, results);
+        csv.close();
+      } catch (IOException e) {
+        throw new Failure("Unable to write \"" + csvFile + "\": " + e.getMessage());
+      }
+    }
+    return ok;
+  }
+
+  /**
+   * Build and run a single program with the given milc configuration and clang optimization
+   * level, recording measurements in the given result. Returns the output of the program, or null
+   * if it could not be built or run.
+   */
+  private String measure(Result r, int c, int l) throws Failure {
+    String base = r.program.substring(0, r.program.lastIndexOf('.'));
+    String stem = OUTPUT + File.separator + base + "-c" + c;
+    String ll = stem + ".ll";
+    String obj = stem + "-l" + l + ".o";
+    String exe = stem + "-l" + l + ".exe";
+    String log = stem + "-l" + l + ".log";
+    new File(log).delete();
+
+    if (l == 0) { // Only run milc once for each configuration
+      ArrayList<String> cmd = new ArrayList<String>();
+      cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+      cmd.add("-cp");
+      cmd.add(System.getProperty("java.class.path"));
+      cmd.add("driver.Main");
+      cmd.add("-ilib" + File.pathSeparator + SOURCES);
+      cmd.add("--standalone");
+      cmd.add("--" + wordSize);
+      String[] parts = r.config.split("/");
+      cmd.add("-p" + parts[0]);
+      for (int i = 1; i < parts.length; i++) {
+        cmd.add("-O" + parts[i]);
+      }
+      cmd.add(SOURCES + File.separator + r.program);
+      cmd.add("-l" + ll);
+      if (exec(cmd, log, null) != 0) {
+        r.status = "milc failed (see " + log + ")";
+        return null;
+      }
+    }
+    if (!new File(ll).exists()) {
+      r.status = "no LLVM code";
+      return null;
+    }
+    r.llvmLines = lines(ll);
+
+    String level = r.level;
+    if (exec(Arrays.asList(clang, level, "-c", "-o", obj, ll), log, null) != 0) {
+      r.status = "clang failed (see " + log + ")";
+      return null;
+    }
+    r.objectBytes = new File(obj).length();
+    String runtime = SOURCES + File.separator + "runtime.c";
+    String word = "-DWORD" + wordSize;
+    if (exec(Arrays.asList(clang, level, word, "-o", exe, obj, runtime), log, null) != 0) {
+      r.status = "link failed (see " + log + ")";
+      return null;
+    }
+
+    String output = null;
+    String errors = stem + "-l" + l + ".err";
+    r.millis = Double.MAX_VALUE;
+    for (int i = 0; i < reps; i++) {
+      String stdout = stem + "-l" + l + ".out";
+      long start = System.nanoTime();
+      exec(Arrays.asList(new File(exe).getAbsolutePath()), errors, stdout);
+      r.millis = Math.min(r.millis, (System.nanoTime() - start) / 1e6);
+      output = read(stdout);
+    }
+    parseAllocs(r, read(errors));
+    r.status = "ok";
+    return output;
+  }
+
+  /**
+   * Run a command, sending its standard error stream to the named file, and its standard output
+   * to a second file (or to the same file, if outfile is null). Returns the exit code of the
+   * command. The exit code of benchmark executables is not meaningful because the main function
+   * that is generated by milc does not return a value.
+   */
+  private static int exec(java.util.List<String> cmd, String errfile, String outfile)
+      throws Failure {
+    ProcessBuilder pb = new ProcessBuilder(cmd);
+    File err = new File(errfile);
+    if (outfile == null) {
+      pb.redirectErrorStream(true);
+      pb.redirectOutput(ProcessBuilder.Redirect.appendTo(err));
+    } else {
+      pb.redirectError(err);
+      pb.redirectOutput(new File(outfile));
+    }
+    try {
+      return pb.start().waitFor();
+    } catch (IOException e) {
+      throw new Failure("Unable to run \"" + cmd.get(0) + "\": " + e.getMessage());
+    } catch (InterruptedException e) {
+      throw new Failure("Interrupted while running \"" + cmd.get(0) + "\"");
+    }
+  }
+
+  private static String read(String filename) throws Failure {
+    try {
+      return new String(Files.readAllBytes(new File(filename).toPath()), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new Failure("Unable to read \"" + filename + "\": " + e.getMessage());
+    }
+  }
+
+  private static int lines(String filename) throws Failure {
+    String text = read(filename);
+    int n = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Extract the number of calls to the allocator slow path and the total number of bytes allocated
+   * from the line that is written by the benchmark run time library.
+   */
+  private static void parseAllocs(Result r, String errors) {
+    String[] words = errors.trim().split("\\s+");
+    for (int i = 0; i + 3 < words.length; i++) {
+      if (words[i].equals("slowAllocs:") && words[i + 2].equals("bytes:")) {
+        try {
+          r.slowAllocs = Long.parseLong(words[i + 1]);
+          r.allocBytes = Long.parseLong(words[i + 3]);
+        } catch (NumberFormatException e) {
+          /* leave counts at zero */
+        }
+      }
+    }
+  }
+
+  private static void report(PrintWriter out, ArrayList<Result> results) {
+    out.println(
+        String.format(
+            "%-12s %-20s %-5s %10s %12s %14s %8s %10s  %s",
+            "program",
+            "config",
+            "level",
+            "time(ms)",
+            "slow allocs",
+            "alloc bytes",
+            "ll lines",
+            "obj bytes",
+            "status"));
+    for (Result r : results) {
+      out.println(
+          String.format(
+              "%-12s %-20s %-5s %10.2f %12d %14d %8d %10d  %s",
+              r.program,
+              r.config,
+              r.level,
+              r.status.equals("ok") ? r.millis : 0.0,
+              r.slowAllocs,
+              r.allocBytes,
+              r.llvmLines,
+              r.objectBytes,
+              r.status));
+    }
+  }
+
+  private static void csv(PrintWriter out, ArrayList<Result> results) {
+    out.println("program,config,level,millis,slowAllocs,allocBytes,llvmLines,objectBytes,status");
+    for (Result r : results) {
+      out.println(
+          r.program
+              + ","
+              + r.config
+              + ","
+              + r.level
+              + ","
+              + (r.status.equals("ok") ? r.millis : 0.0)
+              + ","
+              + r.slowAllocs
+              + ","
+              + r.allocBytes
+              + ","
+              + r.llvmLines
+              + ","
+              + r.objectBytes
+              + ",\""
+              + r.status
+              + "\"");
+    }
+  }
+}
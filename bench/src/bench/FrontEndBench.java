@@ -0,0 +1,68 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.util.concurrent.TimeUnit;
+import mil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the front end: loading and compiling LC source files (including all of the LC and
+ * MIL files that they require) to MIL, and type checking the resulting program.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrontEndBench {
+
+  @Param({"ex.lc", "fib.lc", "funlib.lc", "program.lc"})
+  public String program;
+
+  private String main;
+
+  private MILProgram loaded;
+
+  @Setup(Level.Trial)
+  public void setup() throws Failure {
+    main = Pipeline.setup(program);
+  }
+
+  @Setup(Level.Invocation)
+  public void load() throws Failure {
+    loaded = Pipeline.load(new SimpleHandler(), program, main);
+  }
+
+  @Benchmark
+  public MILProgram loadProgram() throws Failure {
+    return Pipeline.load(new SimpleHandler(), program, main);
+  }
+
+  @Benchmark
+  public MILProgram typeChecking() throws Failure {
+    Handler handler = new SimpleHandler();
+    loaded.typeChecking(handler);
+    handler.abortOnFailures();
+    return loaded;
+  }
+}
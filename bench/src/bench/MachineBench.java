@@ -0,0 +1,70 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import mil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for executing the demo programs in the bytecode machine, using either the interpreter
+ * or the JIT. The program is compiled once for each trial, and the benchmark measures a complete
+ * execution, including the initialization of stacks and memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MachineBench {
+
+  @Param({"fib.lc", "program.lc"})
+  public String program;
+
+  @Param({"false", "true"})
+  public boolean jit;
+
+  private Machine machine;
+
+  private PrintWriter out;
+
+  @Setup(Level.Trial)
+  public void setup() throws Failure {
+    Handler handler = new SimpleHandler();
+    String main = Pipeline.setup(program);
+    MILProgram mil = Pipeline.compile(handler, program, main, Pipeline.EXEC_PASSES);
+    machine = mil.generateMachineBuilder(handler).getMachine();
+    handler.abortOnFailures();
+    out = Pipeline.nullWriter();
+  }
+
+  @Benchmark
+  public int exec() throws Failure {
+    if (jit) {
+      machine.jitExec(out, 0);
+    } else {
+      machine.exec(out, 0);
+    }
+    return machine.getInstrCount();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.util.concurrent.TimeUnit;
+import mil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the main MIL passes. Each benchmark measures a single pass, applied to a freshly
+ * compiled program that has been taken through the passes that would normally precede it in the
+ * default milc pipeline for LLVM code generation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PassesBench {
+
+  @Param({"ex.lc", "fib.lc", "funlib.lc", "program.lc"})
+  public String program;
+
+  private String main;
+
+  private MILProgram beforeOptimize;
+
+  private MILProgram beforeSpecialize;
+
+  private MILProgram beforeRepTransform;
+
+  @Setup(Level.Trial)
+  public void setup() throws Failure {
+    main = Pipeline.setup(program);
+  }
+
+  @Setup(Level.Invocation)
+  public void compile() throws Failure {
+    Handler handler = new SimpleHandler();
+    beforeOptimize = Pipeline.compile(handler, program, main, "cs");
+    beforeSpecialize = Pipeline.compile(handler, program, main, "c");
+    beforeRepTransform = Pipeline.compile(handler, program, main, "csos");
+  }
+
+  @Benchmark
+  public MILProgram optimize() {
+    beforeOptimize.optimize();
+    return beforeOptimize;
+  }
+
+  @Benchmark
+  public MILSpec specialize() throws Failure {
+    Handler handler = new SimpleHandler();
+    MILSpec spec = beforeSpecialize.specialize(handler);
+    handler.abortOnFailures();
+    return spec;
+  }
+
+  @Benchmark
+  public RepTypeSet repTransform() throws Failure {
+    Handler handler = new SimpleHandler();
+    RepTypeSet rep = beforeRepTransform.repTransform(handler);
+    handler.abortOnFailures();
+    return rep;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import lc.*;
+import mil.*;
+
+/**
+ * Provides the steps of the mil-tools pipeline for use in benchmarks. The sequence of passes that
+ * is applied to a program follows the same rules as the driver, so that each benchmark measures
+ * one stage of the same work that milc performs. All file names are interpreted relative to the
+ * directory in which the benchmarks are run, which should be the top-level mil-tools directory.
+ */
+public class Pipeline {
+
+  /** The search path that is used to find source files. */
+  public static final String[] SEARCH_PATH = new String[] {"lib", "demo"};
+
+  /** Passes that are applied by default when generating LLVM code. */
+  public static final String LLVM_PASSES = "csosrsos";
+
+  /** Passes that are applied by default before executing bytecode. */
+  public static final String EXEC_PASSES = "cosboro";
+
+  /** A writer that discards all output, used to measure output generation without file I/O. */
+  public static PrintWriter nullWriter() {
+    return new PrintWriter(Writer.nullWriter());
+  }
+
+  /**
+   * Set the word size and name of the main function, which are global settings in mil-tools, for
+   * the given source file. Files that define a main function are compiled as standalone programs,
+   * and all other files are compiled as libraries.
+   */
+  public static String setup(String name) throws Failure {
+    if (Word.size() == 0) {
+      Word.setSize(64);
+    }
+    String main = "";
+    LCLoader loader = new LCLoader();
+    loader.setSearchPath(SEARCH_PATH);
+    String filename = loader.findFile(new SimpleHandler(), name);
+    try {
+      BufferedReader reader = new BufferedReader(new FileReader(filename));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith("main ") || line.startsWith("export main")) {
+            main = "main";
+            break;
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new Failure("Cannot read benchmark input \"" + filename + "\"");
+    }
+    llvm.FuncDefn.mainFunctionName = main;
+    return main;
+  }
+
+  /** Load the named source file and its dependencies, returning the resulting MIL program. */
+  public static MILProgram load(Handler handler, String name, String main) throws Failure {
+    LCLoader loader = new LCLoader();
+    loader.setSearchPath(SEARCH_PATH);
+    if (!loader.loadMIL(name)) {
+      loader.require(name);
+    }
+    MILProgram mil = loader.load(handler, main);
+    handler.abortOnFailures();
+    return mil;
+  }
+
+  /**
+   * Load the named source file and apply the type checker and the given string of passes, using
+   * the same pass letters as the milc -p option.
+   */
+  public static MILProgram compile(Handler handler, String name, String main, String passes)
+      throws Failure {
+    MILProgram mil = load(handler, name, main);
+    mil.typeChecking(handler);
+    return passes(handler, mil, passes);
+  }
+
+  /** Apply a sequence of passes to a program, type checking after each one. */
+  public static MILProgram passes(Handler handler, MILProgram mil, String passes)
+      throws Failure {
+    for (int i = 0; i < passes.length(); i++) {
+      mil = pass(handler, mil, passes.charAt(i));
+      mil.typeChecking(handler);
+      handler.abortOnFailures();
+    }
+    return mil;
+  }
+
+  /** Apply a single pass to a program, returning the resulting program. */
+  public static MILProgram pass(Handler handler, MILProgram mil, char pass) throws Failure {
+    switch (pass) {
+      case 'c':
+        mil.cfunRewrite();
+        return mil;
+
+      case 'o':
+        mil.optimize();
+        return mil;
+
+      case 's':
+        MILSpec spec = mil.specialize(handler);
+        handler.abortOnFailures();
+        spec.releaseSpecializations();
+        return spec.getProg();
+
+      case 'b':
+        mil.bitdataRewrite();
+        GenImp.setBitdataRepresentations();
+        return mil;
+
+      case 'r':
+        mil.repTransform(handler);
+        handler.abortOnFailures();
+        mil.mergeRewrite();
+        mil.shake();
+        return mil;
+
+      default:
+        throw new Failure("Unrecognized pass option \"" + pass + "\"");
+    }
+  }
+}
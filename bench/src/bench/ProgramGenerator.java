@@ -0,0 +1,238 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Generates synthetic LC and MIL programs whose size is controlled by a single parameter, n. Each
+ * shape of program stresses a different aspect of the compiler, and is intended to expose passes
+ * whose running time grows faster than the size of their input:
+ *
+ * <ul>
+ *   <li>chain: n top-level functions, each calling the previous one (deep call chains and many
+ *       top-level definitions);
+ *   <li>wide: a datatype with n constructors and a function with an n-way case expression;
+ *   <li>poly: n datatypes, each used to instantiate the same polymorphic functions (many
+ *       specializations);
+ *   <li>straight: a single function with n local definitions (long straight-line blocks);
+ *   <li>bitdata: a bitdata type with n constructors and an n-way case expression;
+ *   <li>milchain: n MIL blocks, each jumping to the previous one;
+ *   <li>milstraight: a single MIL closure with a body of n primitive calls.
+ * </ul>
+ */
+public class ProgramGenerator {
+
+  /** The names of all of the shapes that are supported by this generator. */
+  public static final String[] SHAPES =
+      new String[] {"chain", "wide", "poly", "straight", "bitdata", "milchain", "milstraight"};
+
+  /** Return the file name suffix for programs of the given shape. */
+  public static String suffix(String shape) {
+    return shape.startsWith("mil") ? ".mil" : ".lc";
+  }
+
+  /** Write a program of the given shape and size to the specified file. */
+  public static void write(String shape, int n, String filename) throws IOException {
+    PrintWriter out = new PrintWriter(new FileWriter(filename));
+    try {
+      generate(shape, n, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Generate a program of the given shape and size on the specified PrintWriter. */
+  public static void generate(String shape, int n, PrintWriter out) {
+    if (n < 1) {
+      throw new IllegalArgumentException("Program size must be at least 1");
+    }
+    if (shape.equals("chain")) {
+      chain(n, out);
+    } else if (shape.equals("wide")) {
+      wide(n, out);
+    } else if (shape.equals("poly")) {
+      poly(n, out);
+    } else if (shape.equals("straight")) {
+      straight(n, out);
+    } else if (shape.equals("bitdata")) {
+      bitdata(n, out);
+    } else if (shape.equals("milchain")) {
+      milchain(n, out);
+    } else if (shape.equals("milstraight")) {
+      milstraight(n, out);
+    } else {
+      throw new IllegalArgumentException("Unknown program shape \"" + shape + "\"");
+    }
+  }
+
+  private static void header(String shape, int n, PrintWriter out) {
+    out.println("-- Synthetic " + shape + " program with n = " + n);
+    out.println("require \"core.llc\"");
+    out.println();
+  }
+
+  private static void chain(int n, PrintWriter out) {
+    header("chain", n, out);
+    out.println("f0 :: Word -> Word");
+    out.println("f0 x = x + 1");
+    for (int i = 1; i < n; i++) {
+      out.println();
+      out.println("f" + i + " :: Word -> Word");
+      out.println(
+          "f" + i + " x = f" + (i - 1) + " (if x == " + i + " then x * 3 else x + " + i + ")");
+    }
+    out.println();
+    out.println("entrypoint f" + (n - 1));
+  }
+
+  private static void wide(int n, PrintWriter out) {
+    header("wide", n, out);
+    out.print("data Wide = C0 Word");
+    for (int i = 1; i < n; i++) {
+      out.print(" | C" + i + " Word");
+    }
+    out.println();
+    out.println();
+    out.println("entrypoint mk :: Word -> Wide");
+    out.println("mk w = C" + (n - 1) + " w");
+    out.println();
+    out.println("entrypoint wide :: Wide -> Word");
+    out.println("wide t = case t of");
+    for (int i = 0; i < n; i++) {
+      out.println("           C" + i + " x -> x * " + (i + 1) + " + " + i);
+    }
+  }
+
+  private static void poly(int n, PrintWriter out) {
+    header("poly", n, out);
+    out.println("data Box a = Box a");
+    out.println();
+    out.println("unbox :: Box a -> a");
+    out.println("unbox b = case b of Box v -> v");
+    out.println();
+    out.println("twice :: (a -> a) -> a -> a");
+    out.println("twice f x = f (f x)");
+    for (int i = 0; i < n; i++) {
+      out.println();
+      out.println("data T" + i + " = T" + i + " Word");
+      out.println("g" + i + " :: Word -> Word");
+      out.println(
+          "g"
+              + i
+              + " w = case twice (\\b -> Box (unbox b)) (Box (T"
+              + i
+              + " w)) of Box t -> case t of T"
+              + i
+              + " v -> "
+              + (i == 0 ? "v" : "g" + (i - 1) + " (v + " + i + ")"));
+    }
+    out.println();
+    out.println("entrypoint g" + (n - 1));
+  }
+
+  private static void straight(int n, PrintWriter out) {
+    header("straight", n, out);
+    out.println("entrypoint straight :: Word -> Word");
+    out.println("straight x0 =");
+    for (int i = 1; i <= n; i++) {
+      String prev = "x" + (i - 1);
+      String half = "x" + ((i - 1) / 2);
+      String rhs;
+      switch (i % 3) {
+        case 0:
+          rhs = prev + " * 3 + " + half;
+          break;
+        case 1:
+          rhs = prev + " + " + i;
+          break;
+        default:
+          rhs = "xor " + prev + " " + half;
+          break;
+      }
+      out.println("  let x" + i + " = " + rhs + " in");
+    }
+    out.println("  x" + n);
+  }
+
+  private static void bitdata(int n, PrintWriter out) {
+    header("bitdata", n, out);
+    int width = 1;
+    while ((1 << width) < n) {
+      width++;
+    }
+    out.print("bitdata Tagged =");
+    for (int i = 0; i < n; i++) {
+      StringBuilder tag = new StringBuilder("B");
+      for (int b = width - 1; b >= 0; b--) {
+        tag.append((i >> b) & 1);
+      }
+      out.println((i == 0 ? "" : "  |") + " K" + i + " [ " + tag + " | x :: Bit 8 ]");
+    }
+    out.println();
+    out.println("entrypoint mk :: Word -> Tagged");
+    out.println("mk w = K" + (n - 1) + " [ x = wordToByte w ]");
+    out.println();
+    out.println("entrypoint sel :: Tagged -> Word");
+    out.println("sel t = case t of");
+    for (int i = 0; i < n; i++) {
+      out.println("          K" + i + " r -> bitsToWord r.x + " + i);
+    }
+  }
+
+  private static void milchain(int n, PrintWriter out) {
+    out.println("-- Synthetic milchain program with n = " + n);
+    out.println("require \"basic.mil\"");
+    out.println();
+    out.println("b0[x] = return x");
+    for (int i = 1; i < n; i++) {
+      String op = (i % 2 == 0) ? "mul" : "add";
+      out.println("b" + i + "[x] = y <- " + op + "((x, " + i + ")); b" + (i - 1) + "[y]");
+    }
+    out.println();
+    out.println("entrypoint f");
+    out.println("f :: Word -> Word");
+    out.println("f <- {x} b" + (n - 1) + "[x]");
+  }
+
+  private static void milstraight(int n, PrintWriter out) {
+    out.println("-- Synthetic milstraight program with n = " + n);
+    out.println("require \"basic.mil\"");
+    out.println();
+    out.println("entrypoint f");
+    out.println("f :: Word -> Word");
+    out.println("f <- {t0}");
+    for (int i = 1; i <= n; i++) {
+      String op = (i % 3 == 0) ? "mul" : (i % 3 == 1) ? "add" : "xor";
+      out.println("  t" + i + " <- " + op + "((t" + (i - 1) + ", t" + ((i - 1) / 2) + "))");
+    }
+    out.println("  return t" + n);
+  }
+
+  /** Write a single program to a file: ProgramGenerator shape n filename. */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println("usage: ProgramGenerator shape n filename");
+      System.exit(-1);
+    }
+    write(args[0], Integer.parseInt(args[1]), args[2]);
+  }
+}
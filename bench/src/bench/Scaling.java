@@ -0,0 +1,360 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package bench;
+
+import compiler.*;
+import core.*;
+import java.io.File;
+import java.io.IOException;
+import mil.*;
+
+/**
+ * A scaling test for the compiler. Synthetic programs of each shape supported by ProgramGenerator
+ * are compiled at a sequence of increasing sizes, and the time taken by each stage of the pipeline
+ * is recorded. For each stage, we fit a curve of the form t = c * n^k to the measurements (using a
+ * least squares fit on a log-log scale) and report a failure if the exponent k exceeds the
+ * allowed limit.
+ *
+ * <p>Several stages currently grow roughly quadratically at the default sizes: optimize on every
+ * shape (with exponents between about 1.5 and 2.1), typeCheck and repTransform on wide,
+ * cfunRewrite, load and toLLVM on bitdata, and toLLVM on chain and wide. The default limit of 2.5
+ * therefore accepts the tree as it stands, while still reporting any stage that becomes cubic (or
+ * worse); use --max-exponent=1.5 to list the stages that are worse than n log n.
+ *
+ * <p>Each compilation runs in a thread with a large stack because some passes (Bind.flow, for
+ * example) recurse once for each definition in a block. A compilation that still overflows the
+ * stack, or fails in some other way, is reported as a failure of the stage that was running, and
+ * the remaining shapes are still tested.
+ */
+public class Scaling {
+
+  /** Names for each of the stages that are timed. */
+  private static final String[] STAGES =
+      new String[] {
+        "load", "typeCheck", "cfunRewrite", "optimize", "specialize", "repTransform", "toLLVM"
+      };
+
+  private static final int LOAD = 0;
+
+  private static final int CHECK = 1;
+
+  private static final int LLVM = 6;
+
+  /** Return the index of the stage for a given pass letter. */
+  private static int stageFor(char pass) {
+    switch (pass) {
+      case 'c':
+        return 2;
+      case 'o':
+        return 3;
+      case 's':
+        return 4;
+      case 'r':
+        return 5;
+      default:
+        return -1;
+    }
+  }
+
+  /** Size (in bytes) of the JVM stack for the thread that runs each compilation. */
+  private static final long STACK_SIZE = 1L << 30;
+
+  /** Sizes of the programs that are generated for each shape. */
+  private int[] sizes = new int[] {100, 200, 400, 800};
+
+  /** The largest growth exponent that is accepted for any stage. */
+  private double maxExponent = 2.5;
+
+  /** The number of times that each program is compiled; the fastest time is reported. */
+  private int reps = 3;
+
+  /**
+   * Stages that take less than this many milliseconds at the largest size are reported, but not
+   * checked, because their timings are dominated by noise.
+   */
+  private double minMillis = 20.0;
+
+  /** Folder in which generated programs are written. */
+  private File dir;
+
+  public static void main(String[] args) {
+    try {
+      System.exit(new Scaling().run(args) ? 0 : 1);
+    } catch (Failure f) {
+      new SimpleHandler().report(f);
+      System.exit(-1);
+    }
+  }
+
+  public static void usage() {
+    System.err.println("usage: Scaling [options] [shape ...]");
+    System.err.println("options: --sizes=n1,n2,...  program sizes (default: 100,200,400,800)");
+    System.err.println("         --max-exponent=k   maximum growth exponent (default: 2.5)");
+    System.err.println("         --reps=r           compilations per measurement (default: 3)");
+    System.err.print("shapes:");
+    for (int i = 0; i < ProgramGenerator.SHAPES.length; i++) {
+      System.err.print(" " + ProgramGenerator.SHAPES[i]);
+    }
+    System.err.println();
+  }
+
+  /** Run the scaling tests, returning true if all stages for all shapes are within the limit. */
+  public boolean run(String[] args) throws Failure {
+    String[] shapes = ProgramGenerator.SHAPES;
+    int numShapes = 0;
+    String[] selected = new String[args.length];
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      try {
+        if (arg.startsWith("--sizes=")) {
+          String[] parts = arg.substring(8).split(",");
+          sizes = new int[parts.length];
+          for (int j = 0; j < parts.length; j++) {
+            sizes[j] = Integer.parseInt(parts[j]);
+          }
+        } else if (arg.startsWith("--max-exponent=")) {
+          maxExponent = Double.parseDouble(arg.substring(15));
+        } else if (arg.startsWith("--reps=")) {
+          reps = Integer.parseInt(arg.substring(7));
+        } else if (arg.startsWith("-")) {
+          usage();
+          return false;
+        } else {
+          selected[numShapes++] = arg;
+        }
+      } catch (NumberFormatException e) {
+        throw new Failure("Invalid value in option " + arg);
+      }
+    }
+    if (numShapes > 0) {
+      shapes = new String[numShapes];
+      for (int i = 0; i < numShapes; i++) {
+        shapes[i] = selected[i];
+      }
+    }
+    if (sizes.length < 2 || reps < 1) {
+      throw new Failure("At least two sizes and one repetition are required");
+    }
+
+    try {
+      dir = File.createTempFile("scaling", "");
+      dir.delete();
+      dir.mkdir();
+      dir.deleteOnExit();
+    } catch (IOException e) {
+      throw new Failure("Unable to create folder for generated programs: " + e.getMessage());
+    }
+
+    Word.setSize(64);
+    boolean ok = true;
+    for (int i = 0; i < shapes.length; i++) {
+      ok &= scale(shapes[i]);
+    }
+    System.out.println(ok ? "All stages within limits" : "Some stages exceeded the growth limit");
+    return ok;
+  }
+
+  /** Run the scaling test for a single shape, returning true if all stages are within limits. */
+  private boolean scale(String shape) throws Failure {
+    System.out.println("Shape " + shape + ":");
+    double[][] times = new double[sizes.length][];
+    int measured = 0; // Number of sizes for which we have times
+    int failedStage = (-1); // Index of the stage that failed, if any
+    String failure = null; // Description of the failure, if any
+    int n = sizes[0]; // Size of the program that is being compiled
+
+    try {
+      compile(shape, n); // Warm up the JVM before taking measurements
+      n = sizes[sizes.length - 1];
+      compile(shape, n);
+      for (; measured < sizes.length; measured++) {
+        n = sizes[measured];
+        times[measured] = compile(shape, n);
+        for (int r = 1; r < reps; r++) {
+          double[] t = compile(shape, n);
+          for (int s = 0; s < STAGES.length; s++) {
+            times[measured][s] = Math.min(times[measured][s], t[s]);
+          }
+        }
+      }
+    } catch (CompileFailure e) {
+      failedStage = e.stage;
+      failure = e.getMessage() + " at n=" + n;
+    }
+
+    StringBuilder buf = new StringBuilder(pad("  stage", 16));
+    for (int i = 0; i < measured; i++) {
+      buf.append(pad("n=" + sizes[i], 11));
+    }
+    buf.append(" exponent");
+    System.out.println(buf);
+
+    boolean ok = failure == null;
+    for (int s = 0; s < STAGES.length; s++) {
+      buf = new StringBuilder(pad("  " + STAGES[s], 16));
+      double[] xs = new double[measured];
+      double[] ys = new double[measured];
+      for (int i = 0; i < measured; i++) {
+        buf.append(pad(String.format("%.2fms", times[i][s]), 11));
+        xs[i] = Math.log(sizes[i]);
+        ys[i] = Math.log(Math.max(times[i][s], 1e-3));
+      }
+      if (s == failedStage) {
+        buf.append(" FAILED: " + failure);
+      } else if (measured < 2) {
+        buf.append(" (not measured)");
+      } else {
+        double k = slope(xs, ys);
+        buf.append(String.format(" %5.2f", k));
+        if (times[measured - 1][s] < minMillis) {
+          buf.append(" (not checked)");
+        } else if (k > maxExponent) {
+          buf.append(" FAILED: growth exceeds n^" + maxExponent);
+          ok = false;
+        }
+      }
+      System.out.println(buf);
+    }
+    System.out.println();
+    return ok;
+  }
+
+  /** Describes a compilation that failed part way through a particular stage. */
+  private static class CompileFailure extends Exception {
+
+    /** Index of the stage that failed. */
+    int stage;
+
+    /** Default constructor. */
+    CompileFailure(int stage, String msg) {
+      super(msg);
+      this.stage = stage;
+    }
+  }
+
+  /** Index of the stage that is currently running in compileStages. */
+  private int stage;
+
+  /**
+   * Generate and compile a single program, returning the time in milliseconds spent in each stage.
+   * The compilation runs in a separate thread with a large stack. A CompileFailure is thrown if the
+   * compilation fails for any reason, including a StackOverflowError.
+   */
+  private double[] compile(final String shape, final int n) throws Failure, CompileFailure {
+    final double[][] result = new double[1][];
+    final Throwable[] error = new Throwable[1];
+    stage = LOAD;
+    Thread t =
+        new Thread(
+            null,
+            new Runnable() {
+              public void run() {
+                try {
+                  result[0] = compileStages(shape, n);
+                } catch (Throwable e) {
+                  error[0] = e;
+                }
+              }
+            },
+            "scaling",
+            STACK_SIZE);
+    t.start();
+    try {
+      t.join();
+    } catch (InterruptedException e) {
+      throw new Failure("Scaling test interrupted");
+    }
+    if (error[0] instanceof StackOverflowError) {
+      throw new CompileFailure(stage, "stack overflow");
+    } else if (error[0] instanceof Failure) {
+      throw new CompileFailure(stage, ((Failure) error[0]).getText());
+    } else if (error[0] != null) {
+      throw new CompileFailure(stage, error[0].toString());
+    }
+    return result[0];
+  }
+
+  /**
+   * Generate and compile a single program, returning the time in milliseconds spent in each stage.
+   * The program is taken through the default passes for LLVM code generation.
+   */
+  private double[] compileStages(String shape, int n) throws Failure {
+    String filename = new File(dir, shape + n + ProgramGenerator.suffix(shape)).getPath();
+    try {
+      ProgramGenerator.write(shape, n, filename);
+    } catch (IOException e) {
+      throw new Failure("Unable to write generated program: " + e.getMessage());
+    }
+    new File(filename).deleteOnExit();
+    String main = Pipeline.setup(filename);
+    double[] times = new double[STAGES.length];
+    Handler handler = new SimpleHandler();
+    obdd.OBDD.clearCache(); // Release OBDDs from earlier compilations
+    System.gc();
+
+    stage = LOAD;
+    long start = System.nanoTime();
+    MILProgram mil = Pipeline.load(handler, filename, main);
+    times[LOAD] += millisSince(start);
+    for (int i = -1; i < Pipeline.LLVM_PASSES.length(); i++) {
+      if (i >= 0) {
+        char pass = Pipeline.LLVM_PASSES.charAt(i);
+        stage = stageFor(pass);
+        start = System.nanoTime();
+        mil = Pipeline.pass(handler, mil, pass);
+        times[stageFor(pass)] += millisSince(start);
+      }
+      stage = CHECK;
+      start = System.nanoTime();
+      mil.typeChecking(handler);
+      handler.abortOnFailures();
+      times[CHECK] += millisSince(start);
+    }
+    stage = LLVM;
+    start = System.nanoTime();
+    mil.toLLVM();
+    times[LLVM] += millisSince(start);
+    return times;
+  }
+
+  private static double millisSince(long start) {
+    return (System.nanoTime() - start) / 1e6;
+  }
+
+  /** Return the slope of the least squares line through the given points. */
+  private static double slope(double[] xs, double[] ys) {
+    int n = xs.length;
+    double sx = 0, sy = 0, sxx = 0, sxy = 0;
+    for (int i = 0; i < n; i++) {
+      sx += xs[i];
+      sy += ys[i];
+      sxx += xs[i] * xs[i];
+      sxy += xs[i] * ys[i];
+    }
+    return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+  }
+
+  private static String pad(String s, int width) {
+    StringBuilder buf = new StringBuilder(s);
+    while (buf.length() < width) {
+      buf.insert(0, ' ');
+    }
+    return buf.toString();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the MIL lexer, including the JavaSource class that provides its input. The text
+ * of each file is read in advance so that file I/O is not included in the measurement. (This class
+ * is placed in the mil package because MILLexer is not public.)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MILLexerBench {
+
+  @Param({"lib/core.mil", "lib/basic.mil"})
+  public String file;
+
+  private String text;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int lex() {
+    Handler handler = new SimpleHandler();
+    Source source = new JavaSource(handler, file, new StringReader(text));
+    if (file.endsWith(".lmil")) {
+      source = new LiterateSource(handler, true, source);
+    }
+    MILLexer lexer = new MILLexer(handler, true, source);
+    int count = 0;
+    while (lexer.nextToken() != MILTokens.ENDINPUT) {
+      count++;
+    }
+    lexer.close();
+    return count;
+  }
+}
@@ -1,6 +1,6 @@
 #include <stdio.h>
 #include <stdlib.h>
-  
+
 #ifdef WORD32
 typedef int  word;
 #define WORD "%d"
@@ -12,7 +12,67 @@ typedef long word;
 #define WORD "%ld"
 #endif
 
+// Objects are allocated from a nursery: a large chunk of memory that is
+// obtained from malloc and then divided into objects by advancing
+// allocPtr.  Code generated by milc performs this step inline, and only
+// calls allocSlow when there are fewer than size bytes between allocPtr
+// and allocLimit.  Every request is for a multiple of GRAIN bytes, the
+// larger of the word size and the alignment of a pointer, so that every
+// field of every object is suitably aligned, even when words are smaller
+// than pointers (for example, with -DWORD32 on a 64 bit platform).
+// Chunks are obtained with calloc and memory is never reused, so every
+// object starts out zeroed, as it did when each object was obtained by a
+// separate call to calloc.
+
+#define CHUNK_BYTES (4 * 1024 * 1024)
+#define GRAIN       (sizeof(word) > _Alignof(void*) ? sizeof(word) : _Alignof(void*))
+
+char* allocPtr   = 0;         // Next free byte in the current chunk
+char* allocLimit = 0;         // First byte past the end of the current chunk
+
+static char* chunkStart = 0;  // Start of the current chunk
+static word  usedBytes  = 0;  // Bytes allocated outside the current chunk
+static word  slowCalls  = 0;  // Number of calls to allocSlow
+
+static void* allocChunk(word size) {
+  void* p = calloc(size, 1);
+  if (p == 0) {
+    fprintf(stderr, "out of memory: unable to allocate " WORD " bytes\n", size);
+    exit(1);
+  }
+  return p;
+}
+
+void* allocSlow(word size) {
+  slowCalls++;
+  if (size > CHUNK_BYTES / 8) {   // Large objects get a chunk of their own
+    usedBytes += size;
+    return allocChunk(size);
+  }
+  usedBytes += allocPtr - chunkStart;
+  chunkStart = allocChunk(CHUNK_BYTES);
+  allocPtr   = chunkStart + size;
+  allocLimit = chunkStart + CHUNK_BYTES;
+  return chunkStart;
+}
+
+// Allocate an object from C code, using the same nursery as generated code.
 void* alloc(word size) {
-//printf("Allocating object of size " WORD "\n", size);
-  return calloc(size, sizeof(word));
+  size = (size + GRAIN - 1) & ~(word)(GRAIN - 1);
+  if (allocLimit - allocPtr < size) {
+    return allocSlow(size);
+  }
+  void* p  = allocPtr;
+  allocPtr += size;
+  return p;
+}
+
+// Return the total number of bytes that have been allocated.
+word allocBytes() {
+  return usedBytes + (allocPtr - chunkStart);
+}
+
+// Return the number of calls to allocSlow.
+word allocSlowCalls() {
+  return slowCalls;
 }
@@ -0,0 +1,415 @@
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#ifdef WORD32
+typedef int  word;
+#define WORD "%d"
+#else
+#ifndef WORD64
+#error "Please specify either -DWORD32 or -DWORD64 as a command line option"
+#endif
+typedef long word;
+#define WORD "%ld"
+#endif
+
+// A precise, non-moving garbage collector for programs that are
+// compiled by milc with the --llvm-gc option.  This provides the same
+// allocPtr, allocLimit, and allocSlow interface as lib/alloc.c, so
+// the fast path for allocation is still performed inline by the
+// generated code, but memory is reclaimed and reused once it is no
+// longer reachable from the roots of the program.
+//
+// Heap layout: memory is divided into grains of GRAIN bytes, the
+// larger of the word size and the alignment of a pointer, and every
+// object occupies a whole number of grains (this is the same rule
+// that milc uses, so that fields are always suitably aligned, even
+// when words are smaller than pointers).  Every object is preceded by
+// a header, which occupies one grain.  Headers are pointer sized
+// (uintptr_t), whatever the word size, because generated code stores
+// them as pointers.  For objects that are allocated by generated
+// code, the header points to
+// a descriptor (one for each constructor and closure layout) that
+// gives the size of the object and the offsets of its pointer fields.
+// Headers with the least significant bit set are used for objects
+// that are allocated from C, and for the filler objects that are
+// used to mark free space; these headers hold the total size of the
+// object in bytes (including the header), shifted left by one bit,
+// and the collector assumes that these objects do not contain any
+// pointers.  As a result, the objects in each chunk of the heap can
+// be visited in order by stepping from one header to the next.
+//
+// Roots: the generated code saves every pointer that it holds in a
+// stack slot that is registered with LLVM's shadow-stack strategy, so
+// the roots for each active function can be found by following the
+// llvm_gc_root_chain.  Pointers in global variables are listed in the
+// gcGlobalRoots table, which is generated by milc.  Pointers to static
+// objects (which are not in the heap) are ignored.
+//
+// Collection: objects are marked using an explicit stack and a mark
+// bitmap for each chunk, and then each chunk is swept to find runs of
+// unmarked objects.  Each run is turned into a filler object and, if
+// it is large enough, added to the list of holes that allocSlow uses
+// to refill the allocation buffer.  Objects are never moved, so the
+// generated code can keep pointers in registers across calls that
+// might trigger a collection.  Objects of LARGE_BYTES or more get a
+// chunk of their own, which is freed as soon as the object is found
+// to be unreachable.  A collection is started when
+// the number of bytes handed out since the previous collection
+// exceeds the number of bytes that were live after it (or a minimum
+// heap size), so the heap stays within about twice the live data.
+
+#define CHUNK_BYTES (4 * 1024 * 1024)
+#define GRAIN       (sizeof(word) > _Alignof(void*) ? sizeof(word) : _Alignof(void*))
+#define LARGE_BYTES (CHUNK_BYTES / 8)  // Objects at least this big get their own chunk
+#define MIN_HOLE    (32 * sizeof(word)) // Smaller holes are not reused until merged
+#define MIN_HEAP    (4 * CHUNK_BYTES)   // Minimum number of bytes between collections
+
+_Static_assert(sizeof(uintptr_t) <= GRAIN, "a header must fit in a single grain");
+
+// Descriptors, as generated by milc: the size of an object in bytes
+// (not including the header or rounding), the number of pointer
+// fields, and the offset of each pointer field from the start of
+// the object.
+typedef struct {
+  word size;
+  word nptrs;
+  word offsets[];
+} Descriptor;
+
+// The stack frame layout that is used by LLVM's shadow-stack strategy:
+struct FrameMap {
+  int         numRoots;       // Number of roots in this frame
+  int         numMeta;        // Number of metadata entries (unused here)
+  const void* meta[];
+};
+
+struct StackEntry {
+  struct StackEntry*     next;  // Frame of the caller
+  const struct FrameMap* map;   // Describes the roots in this frame
+  void*                  roots[];
+};
+
+struct StackEntry* llvm_gc_root_chain = 0;
+
+extern void** gcGlobalRoots[];   // Addresses of global roots, generated by milc
+extern const word gcNumGlobalRoots;
+
+char* allocPtr   = 0;         // Next free byte in the current allocation buffer
+char* allocLimit = 0;         // First byte past the end of the current buffer
+
+static char* bufStart = 0;    // Start of the current allocation buffer
+
+typedef struct {
+  char*          start;       // First byte in this chunk
+  char*          end;         // First byte past the end of this chunk
+  unsigned char* marks;       // Mark bitmap, one bit for each grain
+  int            large;       // Set if this chunk holds a single large object
+} Chunk;
+
+static Chunk* chunks    = 0;  // The chunks in the heap, sorted by address
+static int    numChunks = 0;
+static int    maxChunks = 0;
+
+typedef struct {
+  char* start;
+  char* end;
+} Hole;
+
+static Hole* holes    = 0;    // Free space that can be used to refill the buffer
+static int   numHoles = 0;
+static int   maxHoles = 0;
+static int   nextHole = 0;    // Index of the next hole to use
+
+static word  heapBytes   = 0; // Total size of all chunks
+static word  liveBytes   = 0; // Bytes in use after the most recent collection
+static word  sinceGC     = 0; // Bytes handed out since the most recent collection
+static word  usedBytes   = 0; // Bytes allocated outside the current buffer
+static word  slowCalls   = 0; // Number of calls to allocSlow
+static word  collections = 0; // Number of collections
+
+static void* checked(void* p, word size) {
+  if (p == 0) {
+    fprintf(stderr, "out of memory: unable to allocate " WORD " bytes\n", size);
+    exit(1);
+  }
+  return p;
+}
+
+// Return the total size, in bytes, of the object with the given header.
+static word objectBytes(char* hdr) {
+  uintptr_t h = *(uintptr_t*)hdr;
+  if (h & 1) {
+    return h >> 1;
+  }
+  word size = ((Descriptor*)h)->size;
+  return GRAIN + ((size + GRAIN - 1) & ~(word)(GRAIN - 1));
+}
+
+// Turn the memory between start and end into a filler object.
+static void fill(char* start, char* end) {
+  if (start < end) {
+    *(uintptr_t*)start = ((uintptr_t)(end - start) << 1) | 1;
+  }
+}
+
+// Add a new chunk of the given size to the heap.
+static Chunk* newChunk(word size, int large) {
+  if (numChunks == maxChunks) {
+    maxChunks = (maxChunks == 0) ? 16 : 2 * maxChunks;
+    chunks    = checked(realloc(chunks, maxChunks * sizeof(Chunk)), maxChunks * sizeof(Chunk));
+  }
+  char* start = checked(malloc(size), size);
+  word  words = size / GRAIN;
+  int   i     = numChunks++;
+  while (i > 0 && chunks[i - 1].start > start) {
+    chunks[i] = chunks[i - 1];
+    i--;
+  }
+  chunks[i].start = start;
+  chunks[i].end   = start + size;
+  chunks[i].marks = checked(calloc((words + 7) / 8, 1), (words + 7) / 8);
+  chunks[i].large = large;
+  heapBytes += size;
+  return chunks + i;
+}
+
+// Find the chunk that contains the object at p, or return 0 if p
+// does not point to an object in the heap.
+static Chunk* findChunk(char* p) {
+  int lo = 0, hi = numChunks - 1;
+  while (lo <= hi) {
+    int mid = (lo + hi) / 2;
+    if (p < chunks[mid].start + GRAIN) {
+      hi = mid - 1;
+    } else if (p >= chunks[mid].end) {
+      lo = mid + 1;
+    } else {
+      return chunks + mid;
+    }
+  }
+  return 0;
+}
+
+// The mark stack, which holds objects that have been marked but not scanned:
+static char** markStack = 0;
+static word   markSize  = 0;
+static word   markMax   = 0;
+
+// Mark the object that p points to, if it is in the heap and has not
+// already been marked.  Odd values are immediate constructors that are
+// produced by milc --llvm-tagged, and do not point to objects.
+static void mark(char* p) {
+  if ((uintptr_t)p & 1) {
+    return;
+  }
+  Chunk* c = findChunk(p);
+  if (c != 0) {
+    word i = (p - GRAIN - c->start) / GRAIN;
+    if ((c->marks[i / 8] & (1 << (i % 8))) == 0) {
+      c->marks[i / 8] |= 1 << (i % 8);
+      if (markSize == markMax) {
+        markMax   = (markMax == 0) ? 1024 : 2 * markMax;
+        markStack = checked(realloc(markStack, markMax * sizeof(char*)), markMax * sizeof(char*));
+      }
+      markStack[markSize++] = p;
+    }
+  }
+}
+
+// Mark every object that is reachable from the roots.
+static void markAll(void) {
+  for (word i = 0; i < gcNumGlobalRoots; i++) {
+    mark(*(char**)gcGlobalRoots[i]);
+  }
+  for (struct StackEntry* e = llvm_gc_root_chain; e != 0; e = e->next) {
+    for (int i = 0; i < e->map->numRoots; i++) {
+      mark((char*)e->roots[i]);
+    }
+  }
+  while (markSize > 0) {
+    char* p = markStack[--markSize];
+    uintptr_t h = *(uintptr_t*)(p - GRAIN);
+    if ((h & 1) == 0) {
+      Descriptor* d = (Descriptor*)h;
+      for (word i = 0; i < d->nptrs; i++) {
+        mark(*(char**)(p + d->offsets[i]));
+      }
+    }
+  }
+}
+
+static void addHole(char* start, char* end) {
+  if (numHoles == maxHoles) {
+    maxHoles = (maxHoles == 0) ? 256 : 2 * maxHoles;
+    holes    = checked(realloc(holes, maxHoles * sizeof(Hole)), maxHoles * sizeof(Hole));
+  }
+  holes[numHoles].start = start;
+  holes[numHoles].end   = end;
+  numHoles++;
+}
+
+// Sweep every chunk, freeing large objects that are not marked,
+// turning runs of unmarked objects into filler objects, and
+// rebuilding the list of holes.  Clears all of the marks.
+static void sweepAll(void) {
+  numHoles  = 0;
+  nextHole  = 0;
+  liveBytes = 0;
+  int j     = 0;
+  for (int k = 0; k < numChunks; k++) {
+    Chunk* c     = chunks + k;
+    word   words = (c->end - c->start) / GRAIN;
+    if (c->large) {
+      if ((c->marks[0] & 1) == 0) {
+        heapBytes -= c->end - c->start;
+        free(c->start);
+        free(c->marks);
+        continue;
+      }
+      liveBytes += c->end - c->start;
+    } else {
+      char* run = 0;                        // Start of the current run of unmarked objects
+      for (char* p = c->start; p < c->end; p += objectBytes(p)) {
+        word i = (p - c->start) / GRAIN;
+        if (c->marks[i / 8] & (1 << (i % 8))) {
+          if (run != 0) {
+            fill(run, p);
+            if (p - run >= MIN_HOLE) {
+              addHole(run, p);
+            }
+            run = 0;
+          }
+          liveBytes += objectBytes(p);
+        } else if (run == 0) {
+          run = p;
+        }
+      }
+      if (run != 0) {
+        fill(run, c->end);
+        if (c->end - run >= MIN_HOLE) {
+          addHole(run, c->end);
+        }
+      }
+    }
+    memset(c->marks, 0, (words + 7) / 8);
+    chunks[j++] = *c;
+  }
+  numChunks = j;
+}
+
+// Stop using the current allocation buffer, turning any space that
+// remains into a filler object.
+static void retire(void) {
+  usedBytes += allocPtr - bufStart;
+  fill(allocPtr, allocLimit);
+  allocPtr = allocLimit = bufStart = 0;
+}
+
+// Perform a garbage collection.  The current allocation buffer is
+// retired first so that every chunk can be swept.
+static void collect(void) {
+  retire();
+  markAll();
+  sweepAll();
+  sinceGC = 0;
+  collections++;
+}
+
+// Refill the allocation buffer with at least size bytes, using the
+// next hole that is big enough, or a new chunk if there is no such
+// hole, and return the start of the buffer.
+static char* refill(word size) {
+  while (nextHole < numHoles) {
+    Hole* h = holes + nextHole++;
+    if (h->end - h->start >= size) {
+      bufStart   = h->start;
+      allocLimit = h->end;
+      sinceGC   += h->end - h->start;
+      return bufStart;
+    }
+  }
+  Chunk* c   = newChunk(CHUNK_BYTES, 0);
+  bufStart   = c->start;
+  allocLimit = c->end;
+  sinceGC   += CHUNK_BYTES;
+  return bufStart;
+}
+
+// Allocate an object of the given size (a multiple of GRAIN, including
+// the header), collecting garbage first if mayCollect is
+// set and enough memory has been handed out since the last collection.
+static void* allocate(word size, int mayCollect) {
+  slowCalls++;
+  retire();
+  word limit = (liveBytes > MIN_HEAP) ? liveBytes : MIN_HEAP;
+  if (mayCollect && sinceGC >= limit) {
+    collect();
+  }
+  if (size >= LARGE_BYTES) {
+    Chunk* c = newChunk(size, 1);
+    usedBytes += size;
+    sinceGC   += size;
+    return c->start;
+  }
+  char* p  = refill(size);
+  allocPtr = p + size;
+  return p;
+}
+
+// Called by generated code when there are fewer than size bytes in
+// the allocation buffer.  All of the pointers that the program is
+// using are saved in roots at this point, so it is safe to collect.
+void* allocSlow(word size) {
+  return allocate(size, 1);
+}
+
+// Allocate a zeroed object from C code.  The result points just after a
+// header that marks the object as containing no pointers.  We do not
+// know where pointers are held in C code, so no collection is started.
+void* alloc(word size) {
+  size = GRAIN + ((size + GRAIN - 1) & ~(word)(GRAIN - 1));
+  char* p;
+  if (allocLimit - allocPtr < size) {
+    p = allocate(size, 0);
+  } else {
+    p = allocPtr;
+    allocPtr += size;
+  }
+  *(uintptr_t*)p = ((uintptr_t)size << 1) | 1;
+  memset(p + GRAIN, 0, size - GRAIN);
+  return p + GRAIN;
+}
+
+// Force a garbage collection.  This must only be called when all of
+// the live pointers are held in roots (for example, from a primitive
+// that is called by generated code).
+void gcCollect(void) {
+  collect();
+}
+
+// Return the total number of bytes that have been allocated.
+word allocBytes() {
+  return usedBytes + (allocPtr - bufStart);
+}
+
+// Return the number of calls to allocSlow.
+word allocSlowCalls() {
+  return slowCalls;
+}
+
+// Return the number of garbage collections.
+word gcCollections() {
+  return collections;
+}
+
+// Return the number of bytes that were in use after the most recent collection.
+word gcLiveBytes() {
+  return liveBytes;
+}
+
+// Return the total size of the heap.
+word gcHeapBytes() {
+  return heapBytes;
+}
@@ -0,0 +1,3 @@
+@echo off
+java -cp mil-tools.jar driver.Run %*
+exit /b %ERRORLEVEL%
@@ -18,37 +18,83 @@
 */
 package compiler;
 
-/** A Source that caches the text of all lines that it reads. */
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A Source that caches the text of all lines that it reads. If the name of the file from which the
+ * source was read is known, then the cached text is replaced by an index of line offsets when the
+ * source is closed, and individual lines are reread from the file on demand, passing them through
+ * the same processing as the original source (such as the removal of literate program tags). This
+ * allows the text of each line to be reported in diagnostics produced by later phases of the
+ * compiler without keeping the full text of every input file in memory.
+ */
 public class CacheSource extends Source {
 
   /** The original source for this Source object. */
   private Source source;
 
+  /** The name of the file for the original source, or null if the source cannot be reread. */
+  private String filename;
+
   /** A cache of the lines held in this source. */
   private String[] cache;
 
+  /**
+   * Records the offset of each line in the file for this source, or null if offsets are not being
+   * tracked.
+   */
+  private int[] offsets;
+
   /** Records the number of lines in the cache. */
   private int used;
 
   int addToCache(String val) {
     if (cache == null) {
       cache = new String[10];
+      offsets = (filename == null) ? null : new int[10];
     } else if (used >= cache.length) {
       String[] newarray = new String[2 * cache.length];
       for (int i = 0; i < cache.length; i++) {
         newarray[i] = cache[i];
       }
       cache = newarray;
+      if (offsets != null) {
+        int[] newoffsets = new int[2 * offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+          newoffsets[i] = offsets[i];
+        }
+        offsets = newoffsets;
+      }
     }
     cache[used] = val;
+    if (offsets != null) {
+      int offset = source.getLineOffset();
+      if (offset < 0) { // Stop tracking offsets if the underlying source does not provide them
+        offsets = null;
+      } else {
+        offsets[used] = offset;
+      }
+    }
     return used++;
   }
 
   /** Construct a new caching source. */
   public CacheSource(Handler handler, Source source) {
+    this(handler, source, null);
+  }
+
+  /**
+   * Construct a new caching source for a source that was read from the named file. Lines will be
+   * reread from the file, as needed, after the source has been closed.
+   */
+  public CacheSource(Handler handler, Source source, String filename) {
     super(handler);
     this.source = source;
+    this.filename = filename;
     this.cache = null;
+    this.offsets = null;
     this.used = 0;
   }
 
@@ -76,12 +122,56 @@ public class CacheSource extends Source {
    * yet, then a null is returned.
    */
   public String getLine(int lineNo) {
-    return (cache == null || lineNo <= 0 || lineNo > used) ? null : cache[lineNo - 1];
+    if (lineNo <= 0 || lineNo > used) {
+      return null;
+    } else if (cache != null) {
+      return cache[lineNo - 1];
+    } else if (offsets != null) {
+      return reread(offsets[lineNo - 1]);
+    }
+    return null;
+  }
+
+  /**
+   * Read the line that begins at the given offset in the file for this source, returning null if
+   * the file can no longer be read.
+   */
+  private String reread(int offset) {
+    Reader reader = null;
+    try {
+      reader = new FileReader(filename);
+      if (reader.skip(offset) == offset) {
+        String line = new JavaSource(null, filename, reader).readLine();
+        return (line == null) ? null : source.processLine(line);
+      }
+    } catch (IOException e) {
+      // Line text is only used to improve diagnostics, so we can ignore errors here
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          /* ignore */
+        }
+      }
+    }
+    return null;
   }
 
-  /** Close the input stream and any associated resources. */
+  /**
+   * Close the input stream and any associated resources. The cache of line text is discarded at
+   * this point, but the index of line offsets, if any, is retained so that lines can be reread on
+   * demand.
+   */
   public void close() {
     source.close();
     this.cache = null;
+    if (offsets != null && offsets.length > used) { // Trim the index to the number of lines used
+      int[] newoffsets = new int[used];
+      for (int i = 0; i < used; i++) {
+        newoffsets[i] = offsets[i];
+      }
+      offsets = newoffsets;
+    }
   }
 }
@@ -61,7 +61,14 @@ public class JavaSource extends Source {
 
   private int lineNumber = 0;
 
+  /** Records the offset of c0 within the input stream (initially -2 to allow for lookahead). */
+  private int offset = -2;
+
+  /** Records the offset of the first character of the most recently read line. */
+  private int lineOffset = -1;
+
   private void skip() throws IOException {
+    offset++;
     c0 = c1;
     if (c0 != (-1)) {
       c1 = input.read();
@@ -101,6 +108,7 @@ public class JavaSource extends Source {
         // close();
         return null; // of a line?
       }
+      lineOffset = offset;
 
       while (c0 != (-1) && c0 != '\n' && c0 != '\r') {
         if (c0 == '\\') {
@@ -157,6 +165,11 @@ public class JavaSource extends Source {
     return lineNumber;
   }
 
+  /** Return the offset of the most recently read line in the input stream. */
+  public int getLineOffset() {
+    return lineOffset;
+  }
+
   /**
    * Close the input stream and any associated resources. The default for this method is to do
    * nothing.
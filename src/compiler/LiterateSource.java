@@ -89,7 +89,7 @@ public class LiterateSource extends Source {
       }
       last = CODE;
       lines++;
-      return " " + line.substring(1);
+      return processLine(line);
     } else {
       for (int i = line.length(); 0 < i--; ) {
         if (!Character.isWhitespace(line.charAt(i))) {
@@ -120,6 +120,20 @@ public class LiterateSource extends Source {
     return source.getLineNo();
   }
 
+  /** Return the offset of the most recently read line in the underlying input stream. */
+  public int getLineOffset() {
+    return source.getLineOffset();
+  }
+
+  /**
+   * Return the text that this source produces for a line with the given text in the underlying
+   * input stream: the tag at the start of a code line is replaced by a space, and any other line is
+   * treated as a blank line.
+   */
+  public String processLine(String line) {
+    return (line.length() > 0 && line.charAt(0) == tag) ? " " + line.substring(1) : "";
+  }
+
   /** Return the text of a specific line, given its line number. */
   public String getLine(int lineNo) {
     return source.getLine(lineNo);
@@ -42,6 +42,26 @@ public abstract class Source extends Phase {
    */
   public abstract int getLineNo();
 
+  /**
+   * Return the offset, measured in characters from the start of the underlying input stream, at
+   * which the most recently read line begins. A value of -1 is returned for sources that do not
+   * track this information (which is the default behavior specified below). Offsets can be used to
+   * build a compact index from which the text of individual lines can be recovered on demand,
+   * without holding the full text of the source in memory.
+   */
+  public int getLineOffset() {
+    return -1;
+  }
+
+  /**
+   * Return the text that this source produces for a line with the given text in the underlying
+   * input stream. This is used to reconstruct the text of a line that is reread, using its offset,
+   * after the source has been closed. The default behavior is to return the line unchanged.
+   */
+  public String processLine(String line) {
+    return line;
+  }
+
   /**
    * Return the text of a specific line, if it is available. If the requested source line is not
    * available, then a null is returned. This mechanism is useful with sources that cache either the
@@ -19,7 +19,6 @@
 package core;
 
 import compiler.*;
-import java.math.BigInteger;
 import lc.TopBindings;
 import mil.*;
 
@@ -78,7 +77,7 @@ class BitdataConDefn extends Name {
     }
 
     // Calculate the tagbits for this constructor:
-    BigInteger tagbits = BigInteger.ZERO;
+    obdd.BitVector tagbits = obdd.BitVector.ZERO;
     for (int i = regexps.length; --i >= 0; ) {
       tagbits = regexps[i].calcTagbits(tagbits);
     }
@@ -141,12 +141,12 @@ public class BitdataDefn extends TyconDefn {
       // Test for junk:
       if (!pat.isAll()) {
         obdd.Pat junk = pat.not();
-        BigInteger n = junk.size();
+        obdd.BitVector n = junk.size();
         debug.Log.println(
             "Warning: bitdata type "
                 + bt
                 + " includes "
-                + ((n.compareTo(BigInteger.ONE) == 0) ? "a junk value" : (n + " junk values")));
+                + (n.equals(obdd.BitVector.ONE) ? "a junk value" : (n + " junk values")));
       }
 
       // Test for confusion and for the existence of mask-test predicates:
@@ -19,7 +19,6 @@
 package core;
 
 import compiler.*;
-import java.math.BigInteger;
 import lc.TopBindings;
 import mil.*;
 
@@ -88,7 +87,7 @@ class BitdataFieldsExp extends BitdataRegionExp {
    * for the latter. Assumes that the offsets for each tagbits region have already been calculated
    * as the result of a previous calcPat call.
    */
-  BigInteger calcTagbits(BigInteger tagbits) {
+  obdd.BitVector calcTagbits(obdd.BitVector tagbits) {
     return tagbits;
   }
 
@@ -19,7 +19,6 @@
 package core;
 
 import compiler.*;
-import java.math.BigInteger;
 import lc.TopBindings;
 import mil.*;
 
@@ -59,7 +58,7 @@ abstract class BitdataRegionExp {
    * for the latter. Assumes that the offsets for each tagbits region have already been calculated
    * as the result of a previous calcPat call.
    */
-  abstract BigInteger calcTagbits(BigInteger tagbits);
+  abstract obdd.BitVector calcTagbits(obdd.BitVector tagbits);
 
   /** Count the number of fields within this bitdata or structure region. */
   abstract int numFields();
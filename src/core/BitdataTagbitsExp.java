@@ -30,11 +30,15 @@ class BitdataTagbitsExp extends BitdataRegionExp {
 
   private int width;
 
+  /** The value of nat as a bit vector. */
+  private obdd.BitVector bits;
+
   /** Default constructor. */
   BitdataTagbitsExp(Position pos, BigInteger nat, int width) {
     this.pos = pos;
     this.nat = nat;
     this.width = width;
+    this.bits = obdd.BitVector.valueOf(nat);
   }
 
   /**
@@ -72,7 +76,7 @@ class BitdataTagbitsExp extends BitdataRegionExp {
       throw new LiteralOutOfRangeFailure(pos, nat, type);
     }
     offset = pat.getWidth();
-    return obdd.Pat.intmod(width, nat, offset).and(pat);
+    return obdd.Pat.intmod(width, bits, offset).and(pat);
   }
 
   /**
@@ -80,8 +84,8 @@ class BitdataTagbitsExp extends BitdataRegionExp {
    * for the latter. Assumes that the offsets for each tagbits region have already been calculated
    * as the result of a previous calcPat call.
    */
-  BigInteger calcTagbits(BigInteger tagbits) {
-    return tagbits.or(nat.shiftLeft(offset));
+  obdd.BitVector calcTagbits(obdd.BitVector tagbits) {
+    return tagbits.or(bits.shiftLeft(offset));
   }
 
   /** Count the number of fields within this bitdata or structure region. */
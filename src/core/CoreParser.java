@@ -125,7 +125,7 @@ public class CoreParser extends Phase implements CoreTokens {
     switch (lexer.getToken()) {
       case BITLIT:
         {
-          Atom a = new Bits(lexer.getNat(), lexer.getNumBits());
+          Atom a = new Bits(obdd.BitVector.valueOf(lexer.getNat()), lexer.getNumBits());
           lexer.nextToken(/* BITLIT */ );
           return a;
         }
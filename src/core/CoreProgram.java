@@ -152,6 +152,15 @@ public class CoreProgram {
     return milenv.findTop(id);
   }
 
+  /**
+   * Discard the abstract syntax for the core definitions in this program. This is used once the
+   * program has been compiled so that its front end data structures can be garbage collected.
+   */
+  public void release() {
+    coreDefns = coreDefnsLast = null;
+    fixups = null;
+  }
+
   public TopBindings coreBindings() {
     TopBindings tbs = null;
     for (CoreDefns ds = coreDefns; ds != null; ds = ds.next) {
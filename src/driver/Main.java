@@ -20,6 +20,9 @@ package driver;
 
 import compiler.*;
 import java.io.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import lc.*;
 import mil.*;
 
@@ -48,7 +51,7 @@ class Main {
     System.err.println(
         "                        r = representation transformation (requires earlier s)");
     System.err.println(
-        "         -Oname         enable optimization, name in {unroll,wordspec,...}");
+        "         -Oname         enable optimization, name in {unroll,wordspec,nopeephole,...}");
     System.err.println("         -m[filename]   mil code");
     System.err.println("         -t[filename]   type definitions");
     System.err.println("         -z[filename]   tikz type diagrams");
@@ -63,17 +66,44 @@ class Main {
     System.err.println("         -G[filename]   CFGs GraphViz output (requires s)");
     System.err.println("         -b[filename]   bytecode text");
     System.err.println("         -x[filename]   execute bytecode");
+    System.err.println(
+        "         --xprof[=F]    execute bytecode with profiling (folded stacks in F.folded)");
+    System.err.println("         --jit          execute bytecode by translation to JVM bytecode");
+    System.err.println("         --runs=N       execute bytecode N times, in separate contexts");
+    System.err.println("         --threads=T    use T threads for --runs (default: all cores)");
+    System.err.println("         --image=F      write bytecode image to F (run using milrun)");
     System.err.println("         --mil-main=N   Set name of main function in MIL input");
     System.err.println("         --llvm-main=N  Set name of main function in LLVM output");
+    System.err.println(
+        "         --llvm-threads=T use T threads for LLVM code generation (default: 1)");
+    System.err.println("         --llvm-gc      generate LLVM code for the collector in lib/gc.c");
+    System.err.println("         --llvm-heap    allocate every object on the heap in LLVM code");
+    System.err.println("         --llvm-tagged  represent nullary constructors by immediates");
     System.err.println("         --standalone   Equivalent to --mil-main=main --llvm-main=main");
     System.err.println("         --32 / --64    Set wordsize to 32 / 64 bits");
     System.err.println("         --target=T     Set LLVM target triple to T");
+    System.err.println("         --llvm-version=V generate LLVM code for version V (default: 15)");
     System.err.println("         --help         Display this message");
   }
 
   /** Flag to indicate if we should generate messages at each stage. */
   private boolean trace = false;
 
+  /** Flag to indicate that bytecode should be executed by translation to JVM bytecode. */
+  private boolean jit = false;
+
+  /** Number of times that the program should be executed by -x. */
+  private int runs = 1;
+
+  /** Number of threads that are used to execute the program when runs is greater than 1. */
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /** Number of threads that are used to generate LLVM code. */
+  private int llvmThreads = 1;
+
+  /** Name of the file for a binary bytecode image, or null if no image is required. */
+  private String imageOutput = null;
+
   private void message(String msg) {
     if (trace) {
       System.out.println(msg);
@@ -161,10 +191,15 @@ class Main {
 
   private FilenameOption cfgsGraphvizOutput = new FilenameOption("CFGs GraphViz output");
 
+  /** Holds the LLVM program (or just its interface) while LLVM outputs are produced. */
+  private llvm.Program llvmProg;
+
   private FilenameOption bytecodeOutput = new FilenameOption("bytecode output");
 
   private FilenameOption execOutput = new FilenameOption("execution output");
 
+  private FilenameOption profileOutput = new FilenameOption("execution profile");
+
   /** MIL main name option string. */
   private String milMain = "";
 
@@ -216,15 +251,51 @@ class Main {
     } else if (optMatches("--standalone", str)) {
       milMain = llvm.FuncDefn.mainFunctionName = "main";
       return;
+    } else if (optMatches("--llvm-gc", str)) {
+      MILProgram.gc = true;
+      return;
+    } else if (optMatches("--llvm-heap", str)) {
+      MILProgram.stackAlloc = false;
+      return;
+    } else if (optMatches("--llvm-tagged", str)) {
+      MILProgram.taggedPtrs = true;
+      return;
+    } else if ((special = nonemptyOptString("--runs=", str)) != null) {
+      runs = positiveOpt("--runs=", special);
+      return;
+    } else if ((special = nonemptyOptString("--threads=", str)) != null) {
+      threads = positiveOpt("--threads=", special);
+      return;
+    } else if ((special = nonemptyOptString("--llvm-threads=", str)) != null) {
+      llvmThreads = positiveOpt("--llvm-threads=", special);
+      return;
+    } else if ((special = nonemptyOptString("--image=", str)) != null) {
+      if (imageOutput != null) {
+        throw new Failure("Multiple settings for bytecode image");
+      }
+      imageOutput = special;
+      return;
     } else if ((special = nonemptyOptString("--target=", str)) != null) {
       llvm.Program.targetTriple = special;
       return;
+    } else if ((special = nonemptyOptString("--llvm-version=", str)) != null) {
+      llvm.Program.llvmVersion = positiveOpt("--llvm-version=", special);
+      return;
     } else if (optMatches("--32", str)) {
       Word.setSize(32);
       return;
     } else if (optMatches("--64", str)) {
       Word.setSize(64);
       return;
+    } else if ((special = nonemptyOptString("--xprof=", str)) != null) {
+      profileOutput.setName(special);
+      return;
+    } else if (optMatches("--xprof", str)) {
+      profileOutput.setName("");
+      return;
+    } else if (optMatches("--jit", str)) {
+      jit = true;
+      return;
     } else if (optMatches("--help", str) || optMatches("-help", str)) {
       usage();
       numActions++;
@@ -306,6 +377,8 @@ class Main {
       Block.unroll = true;
     } else if (str.equals("wordspec")) {
       MILProgram.wordspec = true;
+    } else if (str.equals("nopeephole")) {
+      Machine.peephole = false;
     } else {
       throw new Failure("Unrecognized optimization option \"" + str + "\"");
     }
@@ -332,6 +405,19 @@ class Main {
     return s;
   }
 
+  /** Return the positive integer value of an option, or throw an exception if it is invalid. */
+  private static int positiveOpt(String prefix, String s) throws Failure {
+    try {
+      int n = Integer.parseInt(s);
+      if (n > 0) {
+        return n;
+      }
+    } catch (NumberFormatException e) {
+      /* fall through to report error */
+    }
+    throw new Failure("Invalid value \"" + s + "\" for option " + prefix);
+  }
+
   private boolean optionsFromFile(Handler handler, String name, LCLoader loader, int nesting)
       throws Failure {
     message("Reading options from " + name + " ...");
@@ -366,13 +452,10 @@ class Main {
       }
 
       if (numSourceFiles > 0) {
-        message("Loading source files ..."); // Load and compile everything
-        MILProgram mil = loader.load(handler, milMain);
-
-        message("Running type checker ..."); // Sanity check/dependency analysis
-        mil.typeChecking(handler);
-
-        process(handler, mil);
+        // Pass the loaded program directly to process without holding a reference here so that
+        // earlier versions of the program can be garbage collected as later passes replace them.
+        process(handler, load(handler, loader));
+        obdd.OBDD.clearCache(); // Allow the OBDDs for this program to be garbage collected
       }
 
       generatorsOutput.run(
@@ -398,6 +481,20 @@ class Main {
     }
   }
 
+  /**
+   * Load and compile all of the requested source files to produce a single MIL program. The
+   * loader retains no references to the front end data structures for those files once this method
+   * returns.
+   */
+  private MILProgram load(Handler handler, LCLoader loader) throws Failure {
+    message("Loading source files ..."); // Load and compile everything
+    MILProgram mil = loader.load(handler, milMain);
+
+    message("Running type checker ..."); // Sanity check/dependency analysis
+    mil.typeChecking(handler);
+    return mil;
+  }
+
   private void process(Handler handler, MILProgram mil) throws Failure {
     MILSpec spec = null;
     RepTypeSet rep = null;
@@ -415,7 +512,7 @@ class Main {
       passes =
           (llvmOutput.isSet() || llvmInterfaceOutput.isSet() || cfgsGraphvizOutput.isSet())
               ? "csosrsos"
-              : execOutput.isSet()
+              : (execOutput.isSet() || profileOutput.isSet() || imageOutput != null)
                   ? "cosboro"
                   : repTypeSetOutput.isSet() ? "cosor" : specTypeSetOutput.isSet() ? "cos" : "co";
       message("Defaulting to passes \"" + passes + "\":");
@@ -441,6 +538,9 @@ class Main {
           spec = mil.specialize(handler);
           handler.abortOnFailures();
           mil = spec.getProg();
+          if (!specTypeSetOutput.isSet()) { // Allow the original program to be garbage collected
+            spec.releaseSpecializations();
+          }
           optimized = false;
           break;
 
@@ -581,13 +681,19 @@ class Main {
       } else if (rep == null) {
         throw new Failure("A representation pass is required for LLVM output");
       }
-      final llvm.Program llvmProg = mil.toLLVM();
+      // Write LLVM output as it is generated so that we never hold the full program in memory:
+      llvmProg = null;
       llvmOutput.run(
           new Action() {
             void run(PrintWriter out) throws Failure {
-              llvmProg.dump(out);
+              llvmProg = new llvm.Program(out, llvmInterfaceOutput.isSet());
+              mil.toLLVM(llvmProg, llvmThreads);
+              llvmProg.flush();
             }
           });
+      if (llvmProg == null) { // No LLVM output was written, so build the program in memory
+        llvmProg = mil.toLLVM();
+      }
       llvmInterfaceOutput.run(
           new Action() {
             void run(PrintWriter out) throws Failure {
@@ -602,7 +708,10 @@ class Main {
           });
     }
 
-    if (bytecodeOutput.isSet() || execOutput.isSet()) {
+    if (bytecodeOutput.isSet()
+        || execOutput.isSet()
+        || profileOutput.isSet()
+        || imageOutput != null) {
       final MachineBuilder builder = mil.generateMachineBuilder(handler);
       final Machine machine = builder.getMachine();
       handler.abortOnFailures();
@@ -616,20 +725,148 @@ class Main {
             }
           });
 
+      if (imageOutput != null) {
+        numActions++;
+        message("Writing bytecode image to \"" + imageOutput + "\" ...");
+        HashAddrMap addrMap = builder.makeAddrMap(handler);
+        handler.abortOnFailures();
+        new MachineImage(machine, addrMap).write(imageOutput);
+      }
+
       execOutput.run(
           new Action() {
             void run(PrintWriter out) {
+              if (runs > 1) {
+                execRuns(machine, out);
+                return;
+              }
+              if (jit) {
+                try {
+                  machine.jitExec(out, 0);
+                  return;
+                } catch (Failure f) {
+                  handler.report(
+                      new Warning("JIT translation failed, using interpreter: " + f.getText()));
+                }
+              }
               machine.exec(out, 0);
               out.println(machine.getInstrCount() + " instructions executed");
               out.println("Maximum call depth " + machine.getMaxCallDepth());
             }
           });
+
+      profileOutput.run(
+          new Action() {
+            void run(PrintWriter out) throws Failure {
+              HashAddrMap addrMap = builder.makeAddrMap(handler);
+              handler.abortOnFailures();
+              Profile profile = new Profile(machine, addrMap);
+              machine.setProfile(profile);
+              machine.exec(out, 0);
+              machine.setProfile(null);
+              out.println(machine.getInstrCount() + " instructions executed");
+              out.println("Maximum call depth " + machine.getMaxCallDepth());
+              out.println();
+              profile.report(out);
+              String filename = profileOutput.getFilename();
+              if (filename.equals("")) {
+                out.println();
+                out.println("Folded stacks:");
+                profile.folded(out);
+              } else {
+                filename += ".folded";
+                message("Writing folded stacks to \"" + filename + "\" ...");
+                try {
+                  PrintWriter fout = new PrintWriter(filename);
+                  profile.folded(fout);
+                  fout.close();
+                } catch (IOException e) {
+                  System.out.println(
+                      "Attempt to create folded stacks in \"" + filename + "\" failed");
+                }
+              }
+            }
+          });
     }
 
     handler.abortOnFailures(); // Just to be sure ...
     message("Success!");
   }
 
+  /**
+   * Execute the program in the given machine the number of times specified by runs, using a pool
+   * of threads with a separate execution context for each run. When the JIT is used, the threads
+   * in the pool can run generated code directly, so no further threads are started. The output from
+   * the first run is displayed, followed by a summary of all of the runs.
+   */
+  private void execRuns(Machine machine, PrintWriter out) {
+    final Machine[] contexts = new Machine[runs];
+    final StringWriter[] outputs = new StringWriter[runs];
+    for (int i = 0; i < runs; i++) {
+      contexts[i] = machine.newContext();
+      outputs[i] = new StringWriter();
+    }
+    final boolean[] aborted = new boolean[runs];
+    ExecutorService pool =
+        jit
+            ? Executors.newFixedThreadPool(threads, Machine.jitThreadFactory())
+            : Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      final int run = i;
+      pool.execute(
+          new Runnable() {
+            public void run() {
+              PrintWriter runOut = new PrintWriter(outputs[run]);
+              if (jit) {
+                try {
+                  aborted[run] = !contexts[run].jitExec(runOut, 0);
+                  runOut.flush();
+                  return;
+                } catch (Failure f) {
+                  runOut.println("JIT translation failed: " + f.getText());
+                }
+              }
+              contexts[run].exec(runOut, 0);
+              runOut.flush();
+            }
+          });
+    }
+    pool.shutdown();
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      out.println("Interrupted while waiting for runs to complete");
+      return;
+    }
+    long elapsed = System.nanoTime() - start;
+    long instrs = 0;
+    int differ = 0;
+    int failed = 0;
+    String first = outputs[0].toString();
+    for (int i = 0; i < runs; i++) {
+      instrs += contexts[i].getInstrCount();
+      if (!outputs[i].toString().equals(first)) {
+        differ++;
+      }
+      if (aborted[i]) {
+        failed++;
+      }
+    }
+    out.print(first);
+    if (!jit) {
+      out.println(instrs + " instructions executed in total");
+    }
+    out.println(
+        runs + " runs on " + threads + " threads in " + (elapsed / 1000000) + " milliseconds");
+    if (differ > 0) {
+      out.println(differ + " runs produced different output from the first run");
+    }
+    if (failed > 0) {
+      out.println(failed + " runs were aborted");
+    }
+  }
+
   /**
    * Encapsulates a filename option that can be set to a non-null value to request output either to
    * standard output (if the filename is empty) or else to a named file.
@@ -666,6 +903,11 @@ class Main {
       setName(str.substring(i + 1));
     }
 
+    /** Return the filename for this output option. */
+    public String getFilename() {
+      return filename;
+    }
+
     /**
      * Run the specified action for this option in an appropriate way, skipping if the filename has
      * not been set.
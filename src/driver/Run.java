@@ -0,0 +1,107 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package driver;
+
+import compiler.*;
+import java.io.*;
+import mil.*;
+
+/**
+ * A lightweight runner for bytecode images that have been written using the --image option of
+ * milc. Images are loaded directly, without any parsing, type checking, or optimization.
+ */
+public class Run {
+
+  public static void main(String[] args) {
+    new Run().run(args);
+  }
+
+  public static void usage() {
+    System.err.println("usage: milrun [options] image");
+    System.err.println("options: --jit          execute bytecode by translation to JVM bytecode");
+    System.err.println("         --prof         execute bytecode with profiling");
+    System.err.println("         -b             display bytecode text before execution");
+    System.err.println("         --help         Display this message");
+  }
+
+  private boolean jit = false;
+
+  private boolean prof = false;
+
+  private boolean dump = false;
+
+  public void run(String[] args) {
+    String filename = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--jit")) {
+        jit = true;
+      } else if (args[i].equals("--prof")) {
+        prof = true;
+      } else if (args[i].equals("-b")) {
+        dump = true;
+      } else if (args[i].startsWith("-") || filename != null) {
+        usage();
+        System.exit(-1);
+      } else {
+        filename = args[i];
+      }
+    }
+    if (filename == null) {
+      usage();
+      System.exit(-1);
+    }
+
+    MachineImage image = null;
+    try {
+      image = MachineImage.read(filename);
+    } catch (Failure f) {
+      System.err.println("ERROR: " + f.getText());
+      System.exit(-1);
+    }
+    Machine machine = image.getMachine();
+    PrintWriter out = new PrintWriter(System.out);
+    if (dump) {
+      machine.dump(out, image.getAddrMap());
+    }
+    if (prof) {
+      Profile profile = new Profile(machine, image.getAddrMap());
+      machine.setProfile(profile);
+      machine.exec(out, 0);
+      machine.setProfile(null);
+      out.println(machine.getInstrCount() + " instructions executed");
+      out.println("Maximum call depth " + machine.getMaxCallDepth());
+      out.println();
+      profile.report(out);
+    } else {
+      if (jit) {
+        try {
+          machine.jitExec(out, 0);
+          out.flush();
+          return;
+        } catch (Failure f) {
+          System.err.println("WARNING: JIT translation failed, using interpreter: " + f.getText());
+        }
+      }
+      machine.exec(out, 0);
+      out.println(machine.getInstrCount() + " instructions executed");
+      out.println("Maximum call depth " + machine.getMaxCallDepth());
+    }
+    out.flush();
+  }
+}
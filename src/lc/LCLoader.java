@@ -132,6 +132,7 @@ public class LCLoader extends core.Loader {
         milenv = ast.staticAnalysis(handler, milenv);
         ast.compile(handler, mil, milenv);
         handler.abortOnFailures();
+        ast.release(); // Abstract syntax is not needed beyond this point
       }
     }
     if (!mainName.equals("")) {
@@ -66,15 +66,17 @@ public class LCProgram extends CoreProgram {
   void syntaxAnalysis(Handler handler, LCLoader loader) throws Failure {
     debug.Log.println("Loading " + name + " ...");
     try {
-      Reader reader = new FileReader(loader.findFile(handler, name));
+      String filename = loader.findFile(handler, name);
+      Reader reader = new FileReader(filename);
       Source source = new JavaSource(handler, name, reader);
       if (name.endsWith(".llc")) {
         source = new LiterateSource(handler, true, source);
       }
-      source = new CacheSource(handler, source);
+      source = new CacheSource(handler, source, filename);
       LCLexer lexer = new LCLexer(handler, true, source);
       LCParser parser = new LCParser(handler, lexer, loader);
       parser.parse(this);
+      lexer.close(); // Source text is no longer needed once parsing is complete
     } catch (FileNotFoundException e) {
       throw new Failure("Cannot open input file \"" + name + "\"");
     }
@@ -292,6 +294,21 @@ public class LCProgram extends CoreProgram {
     }
   }
 
+  /**
+   * Discard the abstract syntax, bindings, and dependency information for this program once it has
+   * been compiled to MIL. The program object itself remains on the loader's list of loaded files so
+   * that later requirements for the same file are still recognized.
+   */
+  public void release() {
+    super.release();
+    topDefns = topDefnsLast = null;
+    defns = defnsLast = null;
+    coreBindings = null;
+    bindings = null;
+    sccs = null;
+    topBindings = null;
+  }
+
   /**
    * Override the method for finding an external implementation so that we can also search the top
    * level bindings in this program.
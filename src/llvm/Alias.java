@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM alias definition. */
 public class Alias extends Defn {
 
@@ -39,11 +37,12 @@ public class Alias extends Defn {
     this.val = val;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.println(
-        "@" + name + " = " + Mods.toString(mods) + "alias " + val.getType().ptsTo() + ", " + val);
-    out.println();
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    printAlias(buf);
+    buf.append(", ");
+    val.append(buf);
+    buf.append("\n\n");
   }
 
   /**
@@ -55,11 +54,21 @@ public class Alias extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    out.println("@" + name + " = " + Mods.toString(mods) + "alias " + val.getType().ptsTo());
-    out.println();
+  void printInterface(StringBuilder buf) {
+    printAlias(buf);
+    buf.append("\n\n");
+  }
+
+  /** Append the start of this alias definition, up to and including its type. */
+  private void printAlias(StringBuilder buf) {
+    buf.append('@');
+    buf.append(name);
+    buf.append(" = ");
+    Mods.append(buf, mods);
+    buf.append("alias ");
+    val.getType().ptsTo().append(buf);
   }
 }
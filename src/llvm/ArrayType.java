@@ -29,14 +29,36 @@ public class ArrayType extends Type {
   private Type elemType;
 
   /** Default constructor. */
-  public ArrayType(long size, Type elemType) {
+  private ArrayType(long size, Type elemType) {
     this.size = size;
     this.elemType = elemType;
   }
 
-  /** Append the name of this type to the specified buffer. */
-  public void append(StringBuilder buf) {
-    buf.append("[" + size + " x ");
+  /** Return the (interned) array type with the given size and element type. */
+  public static ArrayType get(long size, Type elemType) {
+    return (ArrayType) intern(new ArrayType(size, elemType));
+  }
+
+  /** Calculate a hash code for this type, based on its structure. */
+  int structureHash() {
+    return (3 * 31 + Long.hashCode(size)) * 31 + System.identityHashCode(elemType);
+  }
+
+  /** Test to determine whether this type has the same structure as the given type. */
+  boolean sameStructure(Type that) {
+    return that.sameArrayType(size, elemType);
+  }
+
+  /** Test to determine whether this is an array type with the given size and element type. */
+  boolean sameArrayType(long size, Type elemType) {
+    return this.size == size && this.elemType == elemType;
+  }
+
+  /** Append the text for this type to the specified buffer. */
+  void appendText(StringBuilder buf) {
+    buf.append('[');
+    buf.append(size);
+    buf.append(" x ");
     elemType.append(buf);
     buf.append("]");
   }
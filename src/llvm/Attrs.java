@@ -0,0 +1,119 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package llvm;
+
+/** Package functionality for dealing with function, parameter, and return value attributes. */
+public class Attrs {
+
+  public static final int NONE = 0;
+
+  /** The function does not unwind (i.e., it never throws an exception). */
+  public static final int NOUNWIND = 1;
+
+  /** The function never returns normally. */
+  public static final int NORETURN = 2;
+
+  /** The function always returns (or exhibits undefined behavior) once it has been called. */
+  public static final int WILLRETURN = 4;
+
+  /** The function does not read or write any memory that is visible to its caller. */
+  public static final int READNONE = 8;
+
+  /** The function may read, but does not write any memory that is visible to its caller. */
+  public static final int READONLY = 16;
+
+  /** The function returns a pointer to at least the number of bytes given by its first argument. */
+  public static final int ALLOCSIZE = 32;
+
+  /** The pointer value is never null. */
+  public static final int NONNULL = 64;
+
+  /**
+   * The pointer value does not alias any other pointer that is visible to the caller (used for the
+   * result of an allocation function).
+   */
+  public static final int NOALIAS = 128;
+
+  /** The pointer value refers to memory that holds at least one Word. */
+  public static final int DEREFERENCEABLE = 256;
+
+  /** The function should always be inlined at every call site. */
+  public static final int ALWAYSINLINE = 512;
+
+  /** The function is rarely called, so calls to it can be placed out of the main code path. */
+  public static final int COLD = 1024;
+
+  /**
+   * The function uses LLVM's shadow-stack garbage collection strategy to record the locations of
+   * its roots (see lib/gc.c).
+   */
+  public static final int SHADOW_STACK = 2048;
+
+  /**
+   * Append the text for the given function attributes (if any) to the specified buffer. This text
+   * follows the parameter list in a function definition or declaration, and begins with a space.
+   */
+  public static void appendFunc(StringBuilder buf, int attrs) {
+    if ((attrs & NOUNWIND) != 0) {
+      buf.append(" nounwind");
+    }
+    if ((attrs & NORETURN) != 0) {
+      buf.append(" noreturn");
+    }
+    if ((attrs & WILLRETURN) != 0) {
+      buf.append(" willreturn");
+    }
+    if ((attrs & READNONE) != 0) {
+      buf.append((Program.llvmVersion >= 16) ? " memory(none)" : " readnone");
+    }
+    if ((attrs & READONLY) != 0) {
+      buf.append((Program.llvmVersion >= 16) ? " memory(read)" : " readonly");
+    }
+    if ((attrs & ALLOCSIZE) != 0) {
+      buf.append(" allocsize(0)");
+    }
+    if ((attrs & ALWAYSINLINE) != 0) {
+      buf.append(" alwaysinline");
+    }
+    if ((attrs & COLD) != 0) {
+      buf.append(" cold");
+    }
+    if ((attrs & SHADOW_STACK) != 0) {
+      buf.append(" gc \"shadow-stack\"");
+    }
+  }
+
+  /**
+   * Append the text for the given parameter or return value attributes (if any) to the specified
+   * buffer, with a trailing space after each attribute.
+   */
+  public static void appendValue(StringBuilder buf, int attrs) {
+    if ((attrs & NOALIAS) != 0) {
+      buf.append("noalias ");
+    }
+    if ((attrs & NONNULL) != 0) {
+      buf.append("nonnull ");
+    }
+    if ((attrs & DEREFERENCEABLE) != 0) {
+      buf.append("dereferenceable(");
+      buf.append(Type.word() == Type.i64 ? 8 : 4);
+      buf.append(") ");
+    }
+  }
+}
@@ -48,7 +48,7 @@ public abstract class BinOp extends Rhs {
 
   /** Append a printable string for this instruction to the specified buffer. */
   public void append(StringBuilder buf) {
-    buf.append(binOpString());
+    appendOp(buf);
     buf.append(" ");
     ty.append(buf);
     buf.append(" ");
@@ -59,4 +59,9 @@ public abstract class BinOp extends Rhs {
 
   /** Return the LLVM opcode for this binary operation. */
   public abstract String binOpString();
+
+  /** Append the opcode for this binary operation to the specified buffer. */
+  void appendOp(StringBuilder buf) {
+    buf.append(binOpString());
+  }
 }
@@ -22,8 +22,8 @@ package llvm;
 /** Function calls. */
 public class Call extends Rhs {
 
-  /** Option settings. Current use limited to true ==> insert "tail" marker. */
-  private boolean options;
+  /** Modifiers for this call: tail call markers and calling convention (see Mods). */
+  private int mods;
 
   /** The type of value that will be returned. */
   private Type ty;
@@ -35,23 +35,20 @@ public class Call extends Rhs {
   private Value[] args;
 
   /** Default constructor. */
-  public Call(boolean options, Type ty, Value func, Value[] args) {
-    this.options = options;
+  public Call(int mods, Type ty, Value func, Value[] args) {
+    this.mods = mods;
     this.ty = ty;
     this.func = func;
     this.args = args;
   }
 
   public Call(Type ty, Value func, Value[] args) {
-    this(false, ty, func, args);
+    this(Mods.NONE, ty, func, args);
   }
 
   /** Append a printable string for this instruction to the specified buffer. */
   public void append(StringBuilder buf) {
-    if (options) {
-      buf.append("tail ");
-    }
-    buf.append("call ");
+    Mods.appendCall(buf, mods);
     ty.append(buf);
     buf.append(" ");
     func.appendName(buf);
@@ -18,13 +18,11 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Call a void function and then continue with the rest of the code in this block. */
 public class CallVoid extends Code {
 
-  /** Option settings. Current use limited to true ==> insert "tail" marker. */
-  private boolean options;
+  /** Modifiers for this call: tail call markers and calling convention (see Mods). */
+  private int mods;
 
   /** The function value to be called. */
   private Value func;
@@ -36,25 +34,29 @@ public class CallVoid extends Code {
   private Code next;
 
   /** Default constructor. */
-  public CallVoid(boolean options, Value func, Value[] args, Code next) {
-    this.options = options;
+  public CallVoid(int mods, Value func, Value[] args, Code next) {
+    this.mods = mods;
     this.func = func;
     this.args = args;
     this.next = next;
   }
 
   public CallVoid(Value func, Value[] args, Code next) {
-    this(false, func, args, next);
+    this(Mods.NONE, func, args, next);
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.print("  ");
-    if (options) {
-      out.print("tail ");
-    }
-    out.println("call void " + func.getName() + Value.toString(args));
-    next.print(out);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning the rest of the sequence.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  ");
+    Mods.appendCall(buf, mods);
+    buf.append("void ");
+    func.appendName(buf);
+    Value.append(buf, "(", args, ")");
+    buf.append('\n');
+    return next;
   }
 
   /**
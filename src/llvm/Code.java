@@ -18,13 +18,25 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents a sequence of code in an LLVM basic block. */
 public abstract class Code {
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public abstract void print(PrintWriter out);
+  /**
+   * Append the text for this code sequence to the specified buffer. Instructions are visited by a
+   * loop rather than by recursion, so long basic blocks do not require a deep stack.
+   */
+  public void print(StringBuilder buf) {
+    Code c = this;
+    while (c != null) {
+      c = c.printInstr(buf);
+    }
+  }
+
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning the rest of the sequence, or null if the first instruction is a terminator.
+   */
+  abstract Code printInstr(StringBuilder buf);
 
   /**
    * Reverse the elements of the first code sequence (viewed as a null-terminated linked list of
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Insert a comment ahead of a code sequence: intended for use in debugging. */
 public class CodeComment extends Code {
 
@@ -35,10 +33,13 @@ public class CodeComment extends Code {
     this.next = next;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    Program.printComment(out, "  ", comment);
-    next.print(out);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning the rest of the sequence.
+   */
+  Code printInstr(StringBuilder buf) {
+    Program.printComment(buf, "  ", comment);
+    return next;
   }
 
   /**
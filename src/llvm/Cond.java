@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * A conditional branch to one of two basic blocks, the choice being determined by a specified
  * value.
@@ -42,8 +40,18 @@ public class Cond extends Code {
     this.ifFalse = ifFalse;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  br i1 " + v.getName() + ", label %" + ifTrue + ", label %" + ifFalse);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning null because this is a terminator.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  br i1 ");
+    v.appendName(buf);
+    buf.append(", label %");
+    buf.append(ifTrue);
+    buf.append(", label %");
+    buf.append(ifFalse);
+    buf.append('\n');
+    return null;
   }
 }
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents a constant definition. */
 public class Constant extends Defn {
 
@@ -39,10 +37,63 @@ public class Constant extends Defn {
     this.val = val;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.println("@" + name + " = " + Mods.toString(mods) + "constant " + val);
-    out.println();
+  /**
+   * The prefix for the name of this constant, if the name will be chosen when the constant is added
+   * to a program, or null if the name was specified when the constant was constructed.
+   */
+  private String prefix = null;
+
+  /**
+   * Return a constant whose name, beginning with the given prefix, will be chosen when it is added
+   * to a program. This ensures that names are assigned in program order, even when the constant
+   * is constructed on one of several code generation threads. References to the constant can be
+   * obtained from ref() before the name has been chosen.
+   */
+  public static Constant fresh(int mods, String prefix, Value val) {
+    Constant c = new Constant(mods, null, val);
+    c.prefix = prefix;
+    return c;
+  }
+
+  /** Record that this definition is being added to the given program. */
+  void addedTo(Program prog) {
+    if (prefix != null && name == null) {
+      name = prog.freshName(prefix);
+    }
+  }
+
+  /** Return a reference to this constant, which will be a pointer to a value of its type. */
+  public Value ref() {
+    return new Ref(this);
+  }
+
+  /** Represents a reference to a constant, whose name may not have been chosen yet. */
+  private static class Ref extends Location {
+
+    private Constant c;
+
+    /** Default constructor. */
+    private Ref(Constant c) {
+      super(c.val.getType().ptr());
+      this.c = c;
+    }
+
+    /** Append the name for this value to the specified buffer. */
+    public void appendName(StringBuilder buf) {
+      buf.append('@');
+      buf.append(c.name);
+    }
+  }
+
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    buf.append('@');
+    buf.append(name);
+    buf.append(" = ");
+    Mods.append(buf, mods);
+    buf.append("constant ");
+    val.append(buf);
+    buf.append("\n\n");
   }
 
   /**
@@ -54,10 +105,10 @@ public class Constant extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
+  void printInterface(StringBuilder buf) {
     /* No output in this case. */
   }
 }
@@ -27,16 +27,37 @@ public class DefinedType extends Type {
   /** Default constructor. */
   public DefinedType(Type definition) {
     this.definition = definition;
+    name();
   }
 
   private static int count = 0;
 
-  private String name = "%dt" + count++;
+  private String name;
 
   public DefinedType() {
     this(null);
   }
 
+  /**
+   * Private constructor for types whose names will be assigned later by a call to name(). This
+   * allows types to be constructed on worker threads while still being numbered in the order that
+   * they would have been constructed by a sequential code generator.
+   */
+  private DefinedType(Type definition, String name) {
+    this.definition = definition;
+    this.name = name;
+  }
+
+  /** Construct a new DefinedType that will not be named until name() is called. */
+  public static DefinedType unnamed(Type definition) {
+    return new DefinedType(definition, null);
+  }
+
+  /** Assign the next available name to this type. */
+  public void name() {
+    name = "%dt" + count++;
+  }
+
   public void define(Type definition) {
     this.definition = definition;
   }
@@ -46,11 +67,19 @@ public class DefinedType extends Type {
     return definition;
   }
 
-  /** Get the name of this type as a String. */
+  /**
+   * Get the name of this type as a String. The name is not cached by Type.toString() because it is
+   * not assigned until name() is called for types that are constructed using unnamed().
+   */
   public String toString() {
     return name;
   }
 
+  /** Append the text for this type to the specified buffer. */
+  void appendText(StringBuilder buf) {
+    buf.append(name);
+  }
+
   /** Calculate a default value of this type, suitable for use as an initial value. */
   public Value defaultValue() {
     return definition().defaultValue();
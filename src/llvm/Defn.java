@@ -18,13 +18,11 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents a definition in an LLVM program. */
 public abstract class Defn {
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  abstract void print(PrintWriter out);
+  /** Append the full text for this definition to the specified buffer. */
+  abstract void print(StringBuilder buf);
 
   /**
    * Return a boolean to indicate whether there should be any output from this definition in an LLVM
@@ -33,8 +31,24 @@ public abstract class Defn {
   abstract boolean includeInInterface();
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  abstract void printInterface(PrintWriter out);
+  abstract void printInterface(StringBuilder buf);
+
+  /**
+   * Record that this definition is being added to the given program. The default does nothing,
+   * but metadata nodes use this to obtain their numbers in program order.
+   */
+  void addedTo(Program prog) {
+    /* nothing to do */
+  }
+
+  /**
+   * Return true if this definition belongs in the trailer that follows all of the other definitions
+   * in a program, as is the case for metadata nodes.
+   */
+  boolean isTrailer() {
+    return false;
+  }
 }
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM definition with a comment. */
 public class DefnComment extends Defn {
 
@@ -35,10 +33,15 @@ public class DefnComment extends Defn {
     this.defn = defn;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    Program.printComment(out, "", comment);
-    defn.print(out);
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    Program.printComment(buf, "", comment);
+    defn.print(buf);
+  }
+
+  /** Record that this definition is being added to the given program. */
+  void addedTo(Program prog) {
+    defn.addedTo(prog);
   }
 
   /**
@@ -50,10 +53,10 @@ public class DefnComment extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    print(out);
+  void printInterface(StringBuilder buf) {
+    print(buf);
   }
 }
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM function declaration (to allow the use of a function defined elsewhere). */
 public class FuncDecl extends Defn {
 
@@ -29,16 +27,28 @@ public class FuncDecl extends Defn {
   /** The types of the function. */
   private FunctionType ftype;
 
+  /** Function attributes (see Attrs). */
+  private int attrs;
+
+  /** Attributes for the return value. */
+  private int retAttrs;
+
   /** Default constructor. */
-  public FuncDecl(String name, FunctionType ftype) {
+  public FuncDecl(String name, FunctionType ftype, int attrs, int retAttrs) {
     this.name = name;
     this.ftype = ftype;
+    this.attrs = attrs;
+    this.retAttrs = retAttrs;
+  }
+
+  public FuncDecl(String name, FunctionType ftype) {
+    this(name, ftype, Attrs.NONE, Attrs.NONE);
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    ftype.printFunDecl(out, name);
-    out.println();
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    ftype.printFunDecl(buf, name, attrs, retAttrs);
+    buf.append('\n');
   }
 
   /**
@@ -50,10 +60,10 @@ public class FuncDecl extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    print(out);
+  void printInterface(StringBuilder buf) {
+    print(buf);
   }
 }
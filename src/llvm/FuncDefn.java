@@ -18,23 +18,30 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM function definition. */
 public class FuncDefn extends Defn {
 
   /** Modifiers. */
   private int mods;
 
+  /** Function attributes (see Attrs). */
+  private int attrs;
+
   /** The return type for the function. */
   private Type retType;
 
+  /** Attributes for the return value. */
+  private int retAttrs;
+
   /** The name of the function. */
   private String name;
 
   /** The formal parameters. */
   private Local[] formals;
 
+  /** Attributes for each of the formal parameters. */
+  private int[] formalAttrs;
+
   /** Labels for each of the basic blocks. */
   private String[] labels;
 
@@ -43,11 +50,22 @@ public class FuncDefn extends Defn {
 
   /** Default constructor. */
   public FuncDefn(
-      int mods, Type retType, String name, Local[] formals, String[] labels, Code[] bodies) {
+      int mods,
+      int attrs,
+      Type retType,
+      int retAttrs,
+      String name,
+      Local[] formals,
+      int[] formalAttrs,
+      String[] labels,
+      Code[] bodies) {
     this.mods = mods;
+    this.attrs = attrs;
     this.retType = retType;
+    this.retAttrs = retAttrs;
     this.name = name;
     this.formals = formals;
+    this.formalAttrs = formalAttrs;
     this.labels = labels;
     this.bodies = bodies;
   }
@@ -59,32 +77,45 @@ public class FuncDefn extends Defn {
    */
   public static String mainFunctionName = "";
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.print("define ");
-    out.print(Mods.toString(mods));
-    out.print(retType.toString());
-    out.print(" @" + name + "(");
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    printHeader(buf);
     for (int i = 0; i < formals.length; i++) {
       if (i > 0) {
-        out.print(", ");
+        buf.append(", ");
       }
-      out.print(formals[i].toString());
+      formals[i].getType().append(buf);
+      buf.append(' ');
+      Attrs.appendValue(buf, formalAttrs[i]);
+      formals[i].appendName(buf);
     }
-    out.print(") {");
+    buf.append(')');
+    Attrs.appendFunc(buf, attrs);
+    buf.append(" {");
 
     // Print code for each of the basic blocks:
     for (int i = 0; i < labels.length; i++) {
-      out.println();
+      buf.append('\n');
       if (i != 0) {
-        out.println(labels[i] + ":");
+        buf.append(labels[i]);
+        buf.append(":\n");
       }
-      bodies[i].print(out);
+      bodies[i].print(buf);
     }
 
     // Terminate the function definition:
-    out.println("}");
-    out.println();
+    buf.append("}\n\n");
+  }
+
+  /** Append the start of this function definition, up to the opening parenthesis. */
+  private void printHeader(StringBuilder buf) {
+    buf.append("define ");
+    Mods.append(buf, mods);
+    Attrs.appendValue(buf, retAttrs);
+    retType.append(buf);
+    buf.append(" @");
+    buf.append(name);
+    buf.append('(');
   }
 
   /**
@@ -96,21 +127,24 @@ public class FuncDefn extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    out.print("define ");
-    out.print(Mods.toString(mods));
-    out.print(retType.toString());
-    out.print(" @" + name + "(");
+  void printInterface(StringBuilder buf) {
+    printHeader(buf);
     for (int i = 0; i < formals.length; i++) {
       if (i > 0) {
-        out.print(", ");
+        buf.append(", ");
+      }
+      formals[i].getType().append(buf);
+      if (formalAttrs[i] != Attrs.NONE) {
+        buf.append(' ');
+        Attrs.appendValue(buf, formalAttrs[i]);
+        buf.setLength(buf.length() - 1); // remove trailing space
       }
-      out.print(formals[i].getType().toString());
     }
-    out.println(")");
-    out.println();
+    buf.append(')');
+    Attrs.appendFunc(buf, attrs);
+    buf.append("\n\n");
   }
 }
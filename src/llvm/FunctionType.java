@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents a function type. */
 public class FunctionType extends Type {
 
@@ -30,13 +28,33 @@ public class FunctionType extends Type {
   private Type[] argTypes;
 
   /** Default constructor. */
-  public FunctionType(Type retType, Type[] argTypes) {
+  private FunctionType(Type retType, Type[] argTypes) {
     this.retType = retType;
     this.argTypes = argTypes;
   }
 
-  /** Append the name of this type to the specified buffer. */
-  public void append(StringBuilder buf) {
+  /** Return the (interned) function type with the given result and argument types. */
+  public static FunctionType get(Type retType, Type[] argTypes) {
+    return (FunctionType) intern(new FunctionType(retType, argTypes));
+  }
+
+  /** Calculate a hash code for this type, based on its structure. */
+  int structureHash() {
+    return hash(2 * 31 + System.identityHashCode(retType), argTypes);
+  }
+
+  /** Test to determine whether this type has the same structure as the given type. */
+  boolean sameStructure(Type that) {
+    return that.sameFunctionType(retType, argTypes);
+  }
+
+  /** Test to determine whether this is a function type with the given result and arguments. */
+  boolean sameFunctionType(Type retType, Type[] argTypes) {
+    return this.retType == retType && sameTypes(this.argTypes, argTypes);
+  }
+
+  /** Append the text for this type to the specified buffer. */
+  void appendText(StringBuilder buf) {
     retType.append(buf);
     buf.append(" (");
     append(buf, argTypes);
@@ -49,16 +67,20 @@ public class FunctionType extends Type {
     return null;
   }
 
-  void printFunDecl(PrintWriter out, String name) {
-    out.print("declare ");
-    out.print(retType.toString());
-    out.print(" @" + name + "(");
-    for (int i = 0; i < argTypes.length; i++) {
-      if (i > 0) {
-        out.print(", ");
-      }
-      out.print(argTypes[i].toString());
-    }
-    out.println(")");
+  /**
+   * Append a declaration for a function with this type and the given name, function attributes,
+   * and return value attributes to the specified buffer.
+   */
+  void printFunDecl(StringBuilder buf, String name, int attrs, int retAttrs) {
+    buf.append("declare ");
+    Attrs.appendValue(buf, retAttrs);
+    retType.append(buf);
+    buf.append(" @");
+    buf.append(name);
+    buf.append('(');
+    append(buf, argTypes);
+    buf.append(')');
+    Attrs.appendFunc(buf, attrs);
+    buf.append('\n');
   }
 }
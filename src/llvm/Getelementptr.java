@@ -31,6 +31,9 @@ public class Getelementptr extends Expr {
   /** The index from the pointer. */
   private Value[] offsets;
 
+  /** Indicates whether the result is required to be in bounds of the object that ptr refers to. */
+  private boolean inbounds = true;
+
   /** Default constructor. */
   public Getelementptr(Type ty, Value ptr, Value[] offsets) {
     this.ty = ty;
@@ -50,6 +53,17 @@ public class Getelementptr extends Expr {
     this(ty, ptr, new Value[] {o1, o2, o3});
   }
 
+  /**
+   * Return a getelementptr expression that does not use the inbounds keyword, as required when the
+   * base is a null pointer and the result is only used to calculate the size of a type or the
+   * offset of a field.
+   */
+  public static Getelementptr offset(Type ty, Value ptr, Value[] offsets) {
+    Getelementptr gep = new Getelementptr(ty, ptr, offsets);
+    gep.inbounds = false;
+    return gep;
+  }
+
   /** Return the LLVM type of this value. */
   public Type getType() {
     return ty;
@@ -57,21 +71,25 @@ public class Getelementptr extends Expr {
 
   /** Append the name for this value to the specified buffer. */
   public void appendName(StringBuilder buf) {
-    buf.append("getelementptr inbounds (");
-    ty.append(buf);
-    buf.append(", ");
-    ptr.append(buf);
-    for (int i = 0; i < offsets.length; i++) {
-      buf.append(", ");
-      offsets[i].append(buf);
-    }
+    buf.append(inbounds ? "getelementptr inbounds (" : "getelementptr (");
+    appendOperands(buf);
     buf.append(")");
   }
 
   /** Generate a string for executing this expression as a right hand side. */
   void appendEval(StringBuilder buf) {
-    buf.append("getelementptr inbounds ");
-    ty.append(buf);
+    buf.append(inbounds ? "getelementptr inbounds " : "getelementptr ");
+    appendOperands(buf);
+  }
+
+  /**
+   * Append the operands of this getelementptr to the specified buffer. The first operand is the
+   * type that the base pointer points to (not the type of the result), which determines how the
+   * first index is scaled.
+   */
+  private void appendOperands(StringBuilder buf) {
+    Type pt = ptr.getType();
+    (pt.isPtr() ? pt : pt.definition()).ptsTo().append(buf);
     buf.append(", ");
     ptr.append(buf);
     for (int i = 0; i < offsets.length; i++) {
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * Represents an LLVM global variable declaration (to allow access to a variable defined elsewhere).
  */
@@ -37,10 +35,13 @@ public class GlobalVarDecl extends Defn {
     this.type = type;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.println("@" + name + " = external global " + type);
-    out.println();
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    buf.append('@');
+    buf.append(name);
+    buf.append(" = external global ");
+    type.append(buf);
+    buf.append("\n\n");
   }
 
   /**
@@ -52,10 +53,10 @@ public class GlobalVarDecl extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    print(out);
+  void printInterface(StringBuilder buf) {
+    print(buf);
   }
 }
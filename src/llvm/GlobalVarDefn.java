@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM global variable definition. */
 public class GlobalVarDefn extends Defn {
 
@@ -43,14 +41,15 @@ public class GlobalVarDefn extends Defn {
     this.alignment = alignment;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.print("@" + name + " = " + Mods.toString(mods) + "global " + initial);
-    if (alignment != 0) {
-      out.print(", align " + alignment);
-    }
-    out.println();
-    out.println();
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    buf.append('@');
+    buf.append(name);
+    buf.append(" = ");
+    Mods.append(buf, mods);
+    buf.append("global ");
+    initial.append(buf);
+    printAlignment(buf);
   }
 
   /**
@@ -62,15 +61,25 @@ public class GlobalVarDefn extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    out.print("@" + name + " = " + Mods.toString(mods) + "global " + initial.getType());
+  void printInterface(StringBuilder buf) {
+    buf.append('@');
+    buf.append(name);
+    buf.append(" = ");
+    Mods.append(buf, mods);
+    buf.append("global ");
+    initial.getType().append(buf);
+    printAlignment(buf);
+  }
+
+  /** Append the alignment (if any) and the end of this definition to the specified buffer. */
+  private void printAlignment(StringBuilder buf) {
     if (alignment != 0) {
-      out.print(", align " + alignment);
+      buf.append(", align ");
+      buf.append(alignment);
     }
-    out.println();
-    out.println();
+    buf.append("\n\n");
   }
 }
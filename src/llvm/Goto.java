@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Branch to the start of another basic block, ending the current block. */
 public class Goto extends Code {
 
@@ -31,8 +29,14 @@ public class Goto extends Code {
     this.b = b;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  br label %" + b);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning null because this is a terminator.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  br label %");
+    buf.append(b);
+    buf.append('\n');
+    return null;
   }
 }
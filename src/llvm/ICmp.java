@@ -45,4 +45,10 @@ public class ICmp extends BinOp {
   public String binOpString() {
     return "icmp " + cond;
   }
+
+  /** Append the opcode for this binary operation to the specified buffer. */
+  void appendOp(StringBuilder buf) {
+    buf.append("icmp ");
+    buf.append(cond);
+  }
 }
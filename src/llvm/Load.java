@@ -25,9 +25,17 @@ public class Load extends Rhs {
   /** A location from which a value will be loaded. */
   private Value v;
 
+  /** Metadata attachments for this load, or null if there are none. */
+  private MDAttach mds;
+
   /** Default constructor. */
-  public Load(Value v) {
+  public Load(Value v, MDAttach mds) {
     this.v = v;
+    this.mds = mds;
+  }
+
+  public Load(Value v) {
+    this(v, null);
   }
 
   /** Append a printable string for this instruction to the specified buffer. */
@@ -36,5 +44,6 @@ public class Load extends Rhs {
     v.getType().ptsTo().append(buf);
     buf.append(", ");
     v.append(buf);
+    MDAttach.append(buf, mds);
   }
 }
@@ -0,0 +1,51 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package llvm;
+
+/**
+ * Represents a list of metadata attachments (such as !tbaa or !invariant.load) for an instruction.
+ */
+public class MDAttach {
+
+  /** The kind of metadata that is attached, without the leading "!". */
+  private String kind;
+
+  /** The attached metadata node. */
+  private MDNode node;
+
+  /** The rest of the list. */
+  private MDAttach next;
+
+  /** Default constructor. */
+  public MDAttach(String kind, MDNode node, MDAttach next) {
+    this.kind = kind;
+    this.node = node;
+    this.next = next;
+  }
+
+  /** Append the text for a list of metadata attachments (if any) to the specified buffer. */
+  static void append(StringBuilder buf, MDAttach mds) {
+    for (; mds != null; mds = mds.next) {
+      buf.append(", !");
+      buf.append(mds.kind);
+      buf.append(' ');
+      mds.node.append(buf);
+    }
+  }
+}
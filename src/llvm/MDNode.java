@@ -0,0 +1,127 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package llvm;
+
+/**
+ * Represents a metadata node, which is a tuple of metadata operands. Each node is written out as a
+ * separate numbered definition, and the number is assigned when the definition is added to a
+ * program, so the definition of a node (and of any nodes that it refers to) must be added before
+ * the node is used.
+ */
+public class MDNode extends Metadata {
+
+  /** Set to true if this is a distinct node, which is never merged with other nodes. */
+  private boolean distinct;
+
+  /** The operands of this node. */
+  private Metadata[] ops;
+
+  /** The number of this node, or -1 if it has not yet been added to a program. */
+  private int num = -1;
+
+  /** Default constructor. */
+  public MDNode(Metadata[] ops) {
+    this(false, ops);
+  }
+
+  private MDNode(boolean distinct, Metadata[] ops) {
+    this.distinct = distinct;
+    this.ops = ops;
+  }
+
+  /** Return the operands of this node. */
+  public Metadata[] getOps() {
+    return ops;
+  }
+
+  /**
+   * Create a distinct node whose first operand is a reference to the node itself, followed by the
+   * given operands. Nodes of this form are used to describe alias scopes and domains.
+   */
+  public static MDNode selfRef(Metadata[] rest) {
+    Metadata[] ops = new Metadata[1 + rest.length];
+    MDNode node = new MDNode(true, ops);
+    ops[0] = node;
+    for (int i = 0; i < rest.length; i++) {
+      ops[1 + i] = rest[i];
+    }
+    return node;
+  }
+
+  /** Append the text for this metadata value, when used as an operand, to the specified buffer. */
+  void append(StringBuilder buf) {
+    buf.append('!');
+    buf.append(num);
+  }
+
+  /** Return a definition that can be added to a program to introduce this node. */
+  public Defn toDefn() {
+    return new MDDefn(this);
+  }
+
+  /** Represents the definition of a metadata node. */
+  private static class MDDefn extends Defn {
+
+    private MDNode node;
+
+    /** Default constructor. */
+    private MDDefn(MDNode node) {
+      this.node = node;
+    }
+
+    /** Record that this definition is being added to the given program. */
+    void addedTo(Program prog) {
+      node.num = prog.nextMetadataNum();
+    }
+
+    /** Metadata nodes are written in the trailer after all other definitions. */
+    boolean isTrailer() {
+      return true;
+    }
+
+    /** Append the full text for this definition to the specified buffer. */
+    void print(StringBuilder buf) {
+      node.append(buf);
+      buf.append(node.distinct ? " = distinct !{" : " = !{");
+      for (int i = 0; i < node.ops.length; i++) {
+        if (i > 0) {
+          buf.append(", ");
+        }
+        node.ops[i].append(buf);
+      }
+      buf.append("}\n");
+    }
+
+    /**
+     * Return a boolean to indicate whether there should be any output from this definition in an
+     * LLVM interface description.
+     */
+    boolean includeInInterface() {
+      return false;
+    }
+
+    /**
+     * Append the interface text for this definition to the specified buffer, assuming that
+     * this.includeInInterface() == true.
+     */
+    void printInterface(StringBuilder buf) {
+      /* never called */
+    }
+  }
+}
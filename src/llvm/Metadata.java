@@ -0,0 +1,74 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package llvm;
+
+/**
+ * Represents a metadata value that can be used as an operand of a metadata node: a string, an
+ * integer constant, or a reference to another node.
+ */
+public abstract class Metadata {
+
+  /** Append the text for this metadata value, when used as an operand, to the specified buffer. */
+  abstract void append(StringBuilder buf);
+
+  /** Represents a metadata string. */
+  private static class MDString extends Metadata {
+
+    private String str;
+
+    /** Default constructor. */
+    private MDString(String str) {
+      this.str = str;
+    }
+
+    /** Append the text for this metadata value to the specified buffer. */
+    void append(StringBuilder buf) {
+      buf.append("!\"");
+      buf.append(str);
+      buf.append('"');
+    }
+  }
+
+  /** Return a metadata value for the given string, which should not require any escapes. */
+  public static Metadata str(String str) {
+    return new MDString(str);
+  }
+
+  /** Represents a 64 bit integer constant that is used as a metadata operand. */
+  private static class MDInt extends Metadata {
+
+    private long val;
+
+    /** Default constructor. */
+    private MDInt(long val) {
+      this.val = val;
+    }
+
+    /** Append the text for this metadata value to the specified buffer. */
+    void append(StringBuilder buf) {
+      buf.append("i64 ");
+      buf.append(val);
+    }
+  }
+
+  /** Return a metadata value for the given 64 bit integer constant. */
+  public static Metadata i64(long val) {
+    return new MDInt(val);
+  }
+}
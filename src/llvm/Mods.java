@@ -30,29 +30,63 @@ public class Mods {
 
   public static final int UNNAMED_ADDR = 4;
 
+  /**
+   * Use the fast calling convention. Used in function definitions and in calls, which must use the
+   * same convention as the function that they call.
+   */
+  public static final int FASTCC = 8;
+
+  /** Mark a call as a tail call, which LLVM may choose to optimize. */
+  public static final int TAIL = 16;
+
+  /**
+   * Mark a call as a tail call that must be optimized. LLVM only allows this if the caller and
+   * callee have the same calling convention and prototype, and the call is followed by a ret.
+   */
+  public static final int MUSTTAIL = 32;
+
   public static int entry(boolean isEntrypoint) {
     return isEntrypoint ? NONE : INTERNAL;
   }
 
+  /** Return the modifiers for a call that should be marked as a tail call if isTail is true. */
+  public static int tail(boolean isTail) {
+    return isTail ? TAIL : NONE;
+  }
+
   public static boolean isLocal(int mods) {
     return (mods & (PRIVATE | INTERNAL)) != 0;
   }
 
-  public static String toString(int mods) {
-    if (mods == NONE) {
-      return "";
-    } else {
-      StringBuilder buf = new StringBuilder();
-      if ((mods & PRIVATE) != 0) {
-        buf.append("private ");
-      }
-      if ((mods & INTERNAL) != 0) {
-        buf.append("internal ");
-      }
-      if ((mods & UNNAMED_ADDR) != 0) {
-        buf.append("unnamed_addr ");
-      }
-      return buf.toString();
+  /** Append the text for the given modifiers (if any) to the specified buffer. */
+  public static void append(StringBuilder buf, int mods) {
+    if ((mods & PRIVATE) != 0) {
+      buf.append("private ");
+    }
+    if ((mods & INTERNAL) != 0) {
+      buf.append("internal ");
+    }
+    if ((mods & UNNAMED_ADDR) != 0) {
+      buf.append("unnamed_addr ");
+    }
+    if ((mods & FASTCC) != 0) {
+      buf.append("fastcc ");
+    }
+  }
+
+  /**
+   * Append the text for a call instruction with the given modifiers, including any tail call
+   * marker and calling convention, to the specified buffer.
+   */
+  public static void appendCall(StringBuilder buf, int mods) {
+    if ((mods & MUSTTAIL) != 0) {
+      buf.append("musttail ");
+    } else if ((mods & TAIL) != 0) {
+      buf.append("tail ");
+    }
+    buf.append("call ");
+    if ((mods & FASTCC) != 0) {
+      buf.append("fastcc ");
     }
   }
 }
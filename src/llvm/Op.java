@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * A basic operation: perform the specified right hand operation, capture the result in the
  * specified location, and then continue with the rest of the code in the block.
@@ -46,10 +44,17 @@ public class Op extends Code {
     this(lhs, new Eval(expr), next);
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  " + lhs.getName() + " = " + rhs);
-    next.print(out);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning the rest of the sequence.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  ");
+    lhs.appendName(buf);
+    buf.append(" = ");
+    rhs.append(buf);
+    buf.append('\n');
+    return next;
   }
 
   /**
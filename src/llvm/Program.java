@@ -20,28 +20,141 @@ package llvm;
 
 import java.io.PrintWriter;
 
-/** Represents an LLVM program comprising a sequence of definitions. */
+/**
+ * Represents an LLVM program comprising a sequence of definitions. By default, the definitions are
+ * held in memory until the program is written out using dump. Alternatively, a program can be
+ * created in streaming mode, in which case each definition is written to an output stream as soon
+ * as it is added, and then discarded. This works because LLVM allows global names and named types
+ * to be referenced before they are defined, so the definitions can be written in any order.
+ *
+ * <p>In either case, the text of each definition is appended directly to a single reusable buffer,
+ * which is copied to the output stream each time that it grows beyond a fixed size, so that
+ * writing a large program does not create a separate string for every instruction. Definitions
+ * that belong in the trailer (metadata nodes) are set aside and written after everything else.
+ */
 public class Program {
 
   private Defns defns = null;
 
   private Defns defnsLast = null;
 
+  /** Holds trailer definitions for a program whose definitions are kept in memory. */
+  private Defns trailer = null;
+
+  private Defns trailerLast = null;
+
+  /** Holds the text of trailer definitions for a program in streaming mode. */
+  private StringBuilder trailerBuf = null;
+
+  /** The output stream for a program in streaming mode, or null if definitions are kept. */
+  private PrintWriter out = null;
+
+  /** Collects interface text for a program in streaming mode (or null if not required). */
+  private StringBuilder iface = null;
+
+  /** A buffer that holds the text of definitions that have not yet been written out. */
+  private StringBuilder buf = new StringBuilder();
+
+  /** The size at which the contents of buf are written to the output stream. */
+  private static final int FLUSH_SIZE = 1 << 16;
+
+  /** Used to copy characters from a buffer to an output stream. */
+  private char[] chars = new char[FLUSH_SIZE];
+
+  /** Create a program whose definitions are held in memory until it is dumped. */
+  public Program() {}
+
+  /**
+   * Create a program in streaming mode, writing the program header immediately, and then each
+   * definition to out as soon as it is added. If keepInterface is true, then the interface text
+   * for each definition is also saved for use in a later call to dumpInterface.
+   */
+  public Program(PrintWriter out, boolean keepInterface) {
+    this.out = out;
+    this.trailerBuf = new StringBuilder();
+    if (keepInterface) {
+      iface = new StringBuilder();
+    }
+    header(buf);
+  }
+
   /** Add an element to the end of the list in this class. */
   public void add(Defn elem) {
-    Defns ns = new Defns(elem, null);
-    defnsLast = (defnsLast == null) ? (defns = ns) : (defnsLast.next = ns);
+    elem.addedTo(this);
+    if (elem.isTrailer()) {
+      if (out != null) {
+        elem.print(trailerBuf);
+      } else {
+        Defns ns = new Defns(elem, null);
+        trailerLast = (trailerLast == null) ? (trailer = ns) : (trailerLast.next = ns);
+      }
+    } else if (out != null) {
+      elem.print(buf);
+      if (buf.length() >= FLUSH_SIZE) {
+        writeBuf(out);
+      }
+      if (iface != null && elem.includeInInterface()) {
+        elem.printInterface(iface);
+      }
+    } else {
+      Defns ns = new Defns(elem, null);
+      defnsLast = (defnsLast == null) ? (defns = ns) : (defnsLast.next = ns);
+    }
+  }
+
+  /**
+   * Write any buffered text for a program in streaming mode to its output stream. This must be
+   * called after the last definition has been added, and writes the trailer too.
+   */
+  public void flush() {
+    if (out != null) {
+      writeBuf(out);
+      write(out, trailerBuf);
+      trailerBuf.setLength(0);
+    }
+  }
+
+  /** Write the contents of buf to an output stream, leaving buf empty for reuse. */
+  private void writeBuf(PrintWriter out) {
+    write(out, buf);
+    buf.setLength(0);
+  }
+
+  /** Write the contents of the given buffer to an output stream. */
+  private void write(PrintWriter out, StringBuilder b) {
+    int len = b.length();
+    for (int i = 0; i < len; i += chars.length) {
+      int n = Math.min(chars.length, len - i);
+      b.getChars(i, i + n, chars, 0);
+      out.write(chars, 0, n);
+    }
   }
 
   /** Write a description of this LLVM program to an arbitrary PrintWriter. */
   public void dump(PrintWriter out) {
+    header(buf);
+    dump(out, defns);
+    dump(out, trailer);
+    writeBuf(out);
+  }
+
+  /** Append the text for a list of definitions to buf, writing it out as it fills. */
+  private void dump(PrintWriter out, Defns ds) {
+    for (; ds != null; ds = ds.next) {
+      ds.head.print(buf);
+      if (buf.length() >= FLUSH_SIZE) {
+        writeBuf(out);
+      }
+    }
+  }
+
+  /** Append the header for an LLVM program to the given buffer. */
+  private static void header(StringBuilder buf) {
     // TODO: write general headers here
     if (targetTriple != null) {
-      out.println("target triple = \"" + targetTriple + "\"");
-      out.println();
-    }
-    for (Defns ds = defns; ds != null; ds = ds.next) {
-      ds.head.print(out);
+      buf.append("target triple = \"");
+      buf.append(targetTriple);
+      buf.append("\"\n\n");
     }
   }
 
@@ -51,7 +164,15 @@ public class Program {
    */
   public static String targetTriple = null;
 
-  static void printComment(PrintWriter out, String indent, String comment) {
+  /**
+   * The major version of LLVM for which programs are generated. This determines the spelling of
+   * attributes that have changed between versions; in particular, the memory effects of a function
+   * are described using memory(...) from LLVM 16 onwards, and using readnone and readonly before
+   * that. The default uses the older spelling, which is also accepted by LLVM 16.
+   */
+  public static int llvmVersion = 15;
+
+  static void printComment(StringBuilder buf, String indent, String comment) {
     // Attempt to print a comment over multiple lines if necessary by interpreting embedded newlines
     boolean indented = false;
     int len = comment.length();
@@ -59,30 +180,45 @@ public class Program {
       char c = comment.charAt(i);
       if (c == '\n') {
         if (indented) {
-          out.println();
+          buf.append('\n');
           indented = false;
         }
       } else {
         if (!indented) {
-          out.print(indent);
-          out.print("; ");
+          buf.append(indent);
+          buf.append("; ");
           indented = true;
         }
-        out.print(c);
+        buf.append(c);
       }
     }
     if (indented) {
-      out.println();
+      buf.append('\n');
     }
   }
 
   /** Write a description of the interface for this LLVM program to an arbitrary PrintWriter. */
   public void dumpInterface(PrintWriter out) {
+    if (iface != null) {
+      write(out, iface);
+    }
     for (Defns ds = defns; ds != null; ds = ds.next) {
       if (ds.head.includeInInterface()) {
-        ds.head.printInterface(out);
+        ds.head.printInterface(buf);
+        if (buf.length() >= FLUSH_SIZE) {
+          writeBuf(out);
+        }
       }
     }
+    writeBuf(out);
+  }
+
+  /** Counts the number of metadata nodes that have been added to this program. */
+  private int numMetadata = 0;
+
+  /** Return the number to be used for the next metadata node that is added to this program. */
+  int nextMetadataNum() {
+    return numMetadata++;
   }
 
   private static int count = 0;
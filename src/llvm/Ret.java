@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * Return from the current function with a specified return value, ending the current basic block.
  */
@@ -33,8 +31,14 @@ public class Ret extends Code {
     this.v = v;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  ret " + v);
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning null because this is a terminator.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  ret ");
+    v.append(buf);
+    buf.append('\n');
+    return null;
   }
 }
@@ -18,13 +18,15 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Return from the current function without a return value, ending the current basic block. */
 public class RetVoid extends Code {
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  ret void");
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning null because this is a terminator.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  ret void\n");
+    return null;
   }
 }
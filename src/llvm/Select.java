@@ -0,0 +1,50 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package llvm;
+
+
+/** A select operation, which chooses between two values of the same type using a boolean. */
+public class Select extends Rhs {
+
+  /** The boolean condition. */
+  private Value cond;
+
+  /** The value that is selected if the condition is true. */
+  private Value t;
+
+  /** The value that is selected if the condition is false. */
+  private Value f;
+
+  /** Default constructor. */
+  public Select(Value cond, Value t, Value f) {
+    this.cond = cond;
+    this.t = t;
+    this.f = f;
+  }
+
+  /** Append a printable string for this instruction to the specified buffer. */
+  public void append(StringBuilder buf) {
+    buf.append("select ");
+    cond.append(buf);
+    buf.append(", ");
+    t.append(buf);
+    buf.append(", ");
+    f.append(buf);
+  }
+}
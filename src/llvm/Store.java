@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * Store a value at a specified address and then continue with the rest of the code in this block.
  */
@@ -34,17 +32,33 @@ public class Store extends Code {
   /** The rest of the code in this basic block. */
   private Code next;
 
+  /** Metadata attachments for this store, or null if there are none. */
+  private MDAttach mds;
+
   /** Default constructor. */
-  public Store(Value v, Value addr, Code next) {
+  public Store(Value v, Value addr, MDAttach mds, Code next) {
     this.v = v;
     this.addr = addr;
+    this.mds = mds;
     this.next = next;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.println("  store " + v + ", " + addr);
-    next.print(out);
+  public Store(Value v, Value addr, Code next) {
+    this(v, addr, null, next);
+  }
+
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning the rest of the sequence.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  store ");
+    v.append(buf);
+    buf.append(", ");
+    addr.append(buf);
+    MDAttach.append(buf, mds);
+    buf.append('\n');
+    return next;
   }
 
   /**
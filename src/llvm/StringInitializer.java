@@ -28,7 +28,7 @@ public class StringInitializer extends Value {
   /** Default constructor. */
   public StringInitializer(String str) {
     this.str = str;
-    this.arrayType = new ArrayType(1 + str.length(), Type.i8);
+    this.arrayType = ArrayType.get(1 + str.length(), Type.i8);
   }
 
   private ArrayType arrayType;
@@ -41,7 +41,7 @@ public class Struct extends Value {
       for (int i = 0; i < vals.length; i++) {
         tys[i] = vals[i].getType();
       }
-      ty = new StructType(tys);
+      ty = StructType.get(tys);
     }
     return ty;
   }
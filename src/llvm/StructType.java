@@ -26,17 +26,42 @@ public class StructType extends Type {
   private Type[] tys;
 
   /** Default constructor. */
-  public StructType(Type[] tys) {
+  private StructType(Type[] tys) {
     this.tys = tys;
   }
 
+  /** Return the (interned) structure type with the given components. */
+  public static StructType get(Type[] tys) {
+    return (StructType) intern(new StructType(tys));
+  }
+
+  /** Calculate a hash code for this type, based on its structure. */
+  int structureHash() {
+    return hash(1, tys);
+  }
+
+  /** Test to determine whether this type has the same structure as the given type. */
+  boolean sameStructure(Type that) {
+    return that.sameStructType(tys);
+  }
+
+  /** Test to determine whether this is a structure type with the given components. */
+  boolean sameStructType(Type[] tys) {
+    return sameTypes(this.tys, tys);
+  }
+
   /** Get the type of the ith component in this (assumed) structure type. */
   public Type at(int i) {
     return tys[i];
   }
 
-  /** Append the name of this type to the specified buffer. */
-  public void append(StringBuilder buf) {
+  /** Return the number of components in this structure type. */
+  public int length() {
+    return tys.length;
+  }
+
+  /** Append the text for this type to the specified buffer. */
+  void appendText(StringBuilder buf) {
     buf.append("{");
     append(buf, tys);
     buf.append("}");
@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /**
  * A generalized conditional jump to one of several blocks, the choice being determined by matching
  * a specific value against a list of options, with a default to fall back on if necessary.
@@ -46,12 +44,23 @@ public class Switch extends Code {
     this.def = def;
   }
 
-  /** Print out this code sequence to the specified PrintWriter. */
-  public void print(PrintWriter out) {
-    out.print("  switch " + v + ", label %" + def + " [");
+  /**
+   * Append the text for the first instruction in this code sequence to the specified buffer,
+   * returning null because this is a terminator.
+   */
+  Code printInstr(StringBuilder buf) {
+    buf.append("  switch ");
+    v.append(buf);
+    buf.append(", label %");
+    buf.append(def);
+    buf.append(" [");
     for (int i = 0; i < nums.length; i++) {
-      out.print("\n      " + nums[i] + ", label %" + bs[i]);
+      buf.append("\n      ");
+      nums[i].append(buf);
+      buf.append(", label %");
+      buf.append(bs[i]);
     }
-    out.println(" ]");
+    buf.append(" ]\n");
+    return null;
   }
 }
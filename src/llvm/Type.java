@@ -19,7 +19,11 @@
 package llvm;
 
 
-/** Base class for representing LLVM types. */
+/**
+ * Base class for representing LLVM types. Structure, function, and array types are interned (see
+ * intern()), so there is only one object for each such type and the text for each type only needs
+ * to be calculated once.
+ */
 public abstract class Type {
 
   /** A class for representing primitive LLVM types. */
@@ -42,6 +46,11 @@ public abstract class Type {
       return name;
     }
 
+    /** Append the text for this type to the specified buffer. */
+    void appendText(StringBuilder buf) {
+      buf.append(name);
+    }
+
     /** Calculate a default value of this type, suitable for use as an initial value. */
     public Value defaultValue() {
       return def;
@@ -110,8 +119,13 @@ public abstract class Type {
       return ty;
     }
 
-    /** Append the name of this type to the specified buffer. */
-    public void append(StringBuilder buf) {
+    /** Test to determine whether this is a pointer type. */
+    public boolean isPtr() {
+      return true;
+    }
+
+    /** Append the text for this type to the specified buffer. */
+    void appendText(StringBuilder buf) {
       ty.append(buf);
       buf.append('*');
     }
@@ -128,6 +142,11 @@ public abstract class Type {
     return null;
   }
 
+  /** Test to determine whether this is a pointer type. */
+  public boolean isPtr() {
+    return false;
+  }
+
   /**
    * Identifies the type of pointers to this type, or null if there has not been any previous
    * reference to this pointer type.
@@ -136,9 +155,10 @@ public abstract class Type {
 
   /**
    * Return the type of pointers to values of this type. Initializes the ptrType field if necessary
-   * to cache the pointer type for future uses.
+   * to cache the pointer type for future uses. Synchronized so that a single pointer type is used
+   * even when types are shared between code generation threads.
    */
-  public Type ptr() {
+  public synchronized Type ptr() {
     return (ptrType == null) ? ptrType = new PtrType(this) : ptrType;
   }
 
@@ -148,11 +168,20 @@ public abstract class Type {
     return null;
   }
 
-  /** Get the name of this type as a String. */
+  /** Caches the text for this type, or null if it has not been calculated. */
+  private String text = null;
+
+  /**
+   * Get the name of this type as a String. The text is calculated on first use and then cached,
+   * which is safe because the components of a type do not change once the type is in use.
+   */
   public String toString() {
-    StringBuilder buf = new StringBuilder();
-    this.append(buf);
-    return buf.toString();
+    if (text == null) {
+      StringBuilder buf = new StringBuilder();
+      appendText(buf);
+      text = buf.toString();
+    }
+    return text;
   }
 
   /** Append the name of this type to the specified buffer. */
@@ -160,6 +189,100 @@ public abstract class Type {
     buf.append(toString());
   }
 
+  /** Append the text for this type to the specified buffer, without using the cached text. */
+  abstract void appendText(StringBuilder buf);
+
+  /** A hash code for this type, based on its structure, for use in the intern table. */
+  private int hash;
+
+  /** The next type in the same bucket of the intern table. */
+  private Type nextInterned;
+
+  /** The intern table, which holds every structure, function, and array type, indexed by hash. */
+  private static Type[] interned = new Type[256];
+
+  /** The number of types in the intern table. */
+  private static int numInterned = 0;
+
+  /**
+   * Return a type with the same structure as t from the intern table, adding t to the table if
+   * there is no such type. Because the components of an interned type are either interned, named,
+   * or primitive, two types have the same structure if their components are the same objects.
+   */
+  static synchronized Type intern(Type t) {
+    int hash = t.structureHash();
+    int i = hash & (interned.length - 1);
+    for (Type u = interned[i]; u != null; u = u.nextInterned) {
+      if (u.hash == hash && t.sameStructure(u)) {
+        return u;
+      }
+    }
+    t.hash = hash;
+    t.nextInterned = interned[i];
+    interned[i] = t;
+    if (++numInterned > interned.length - (interned.length >> 2)) {
+      Type[] old = interned;
+      interned = new Type[2 * old.length];
+      for (int j = 0; j < old.length; j++) {
+        Type u = old[j];
+        while (u != null) {
+          Type nxt = u.nextInterned;
+          int k = u.hash & (interned.length - 1);
+          u.nextInterned = interned[k];
+          interned[k] = u;
+          u = nxt;
+        }
+      }
+    }
+    return t;
+  }
+
+  /** Calculate a hash code for this type, based on its structure. */
+  int structureHash() {
+    return System.identityHashCode(this);
+  }
+
+  /** Combine a hash code for a type with the hash codes for each of its components. */
+  static int hash(int h, Type[] tys) {
+    for (int i = 0; i < tys.length; i++) {
+      h = 31 * h + System.identityHashCode(tys[i]);
+    }
+    return h;
+  }
+
+  /** Test to determine whether this type has the same structure as the given type. */
+  boolean sameStructure(Type that) {
+    return this == that;
+  }
+
+  /** Test to determine whether this is a structure type with the given components. */
+  boolean sameStructType(Type[] tys) {
+    return false;
+  }
+
+  /** Test to determine whether this is a function type with the given result and arguments. */
+  boolean sameFunctionType(Type retType, Type[] argTypes) {
+    return false;
+  }
+
+  /** Test to determine whether this is an array type with the given size and element type. */
+  boolean sameArrayType(long size, Type elemType) {
+    return false;
+  }
+
+  /** Test to determine whether two arrays contain the same types. */
+  static boolean sameTypes(Type[] tys, Type[] uys) {
+    if (tys.length != uys.length) {
+      return false;
+    }
+    for (int i = 0; i < tys.length; i++) {
+      if (tys[i] != uys[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /** Append the types in the given array to the specified buffer as a comma separated list. */
   static void append(StringBuilder buf, Type[] tys) {
     for (int i = 0; i < tys.length; i++) {
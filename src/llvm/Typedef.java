@@ -18,8 +18,6 @@
 */
 package llvm;
 
-import java.io.PrintWriter;
-
 /** Represents an LLVM type definition. */
 public class Typedef extends Defn {
 
@@ -31,10 +29,12 @@ public class Typedef extends Defn {
     this.def = def;
   }
 
-  /** Print full text for this definition on the specified PrintWriter. */
-  void print(PrintWriter out) {
-    out.println(def + " = type " + def.definition());
-    out.println();
+  /** Append the full text for this definition to the specified buffer. */
+  void print(StringBuilder buf) {
+    def.append(buf);
+    buf.append(" = type ");
+    def.definition().append(buf);
+    buf.append("\n\n");
   }
 
   /**
@@ -46,10 +46,10 @@ public class Typedef extends Defn {
   }
 
   /**
-   * Print interface text for this definition on the specified PrintWriter, assuming that
+   * Append the interface text for this definition to the specified buffer, assuming that
    * this.includeInInterface() == true.
    */
-  void printInterface(PrintWriter out) {
-    print(out);
+  void printInterface(StringBuilder buf) {
+    print(buf);
   }
 }
@@ -49,6 +49,19 @@ public class AllocType {
     return stored.length;
   }
 
+  /**
+   * Return true if objects with this AllocType have at least one field, not counting stored
+   * components of unit type, which do not have a run-time representation.
+   */
+  boolean hasFields() {
+    for (int i = 0; i < stored.length; i++) {
+      if (stored[i].nonUnit()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** Return a stored type component for this AllocType. */
   Type storedType(int i) {
     return stored[i];
@@ -361,7 +374,7 @@ public class AllocType {
     for (int i = 0; i < nustored.length; i++) {
       tys[i + 1] = lm.toLLVM(nustored[i]);
     }
-    return new llvm.StructType(tys);
+    return llvm.StructType.get(tys);
   }
 
   /**
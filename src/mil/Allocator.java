@@ -20,6 +20,7 @@ package mil;
 
 import compiler.*;
 import core.*;
+import java.util.ArrayList;
 
 public abstract class Allocator extends Call {
 
@@ -28,6 +29,15 @@ public abstract class Allocator extends Call {
     return true;
   }
 
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls. (An Allocator writes to newly allocated memory, so we use the
+   * default purity() for a Tail, but it will always return.)
+   */
+  boolean willReturn() {
+    return true;
+  }
+
   public Allocator isAllocator() {
     return this;
   }
@@ -127,59 +137,282 @@ public abstract class Allocator extends Call {
   }
 
   /**
-   * Generate code to allocate space for an object of type objt, set obj to point to the start of
-   * the (uninitialized) memory, fill in the tag and fields, and then continue with the code in c.
+   * Return an LLVM constant for the value produced by this Allocator if it is represented by an
+   * immediate value instead of a pointer to an object, or null otherwise.
    */
-  llvm.Code alloc(
-      LLVMMap lm,
-      VarMap vm,
-      TempSubst s,
-      llvm.Type objt,
-      llvm.Local obj,
-      llvm.Value tag,
-      llvm.Code c) {
+  llvm.Expr immediateValue(LLVMMap lm) {
+    return null;
+  }
+
+  /** Return the LLVM type that describes the layout of an object built by this Allocator. */
+  abstract llvm.Type layoutType(LLVMMap lm);
+
+  /** Return the value that is stored at the start of an object built by this Allocator. */
+  abstract llvm.Value tagValue(LLVMMap lm);
+
+  /** Return the kind of TBAA metadata for the tag of an object built by this Allocator. */
+  abstract String tagKind();
+
+  /** Return the kind of TBAA metadata for the fields of an object built by this Allocator. */
+  abstract String fieldKind();
+
+  /**
+   * Generate LLVM code for a Bind of the form (vs <- this; c). Any allocators that are bound to
+   * variables at the start of c are combined with this one so that the memory for all of the
+   * objects can be obtained using a single call to the allocator. Objects that do not escape from
+   * the current function are stored on the stack instead, after the objects on the heap have been
+   * initialized. Allocators for immediate values do not need any memory, and are handled first so
+   * that their values can be stored in the other objects. The roots for any values whose last use
+   * is in one of these allocators are only cleared once all of the objects have been initialized
+   * because the allocator might run the garbage collector before their fields are stored.
+   */
+  llvm.Code toLLVMBind(
+      LLVMMap lm, VarMap vm, TempSubst s, Temp[] vs, boolean isTail, Code c, Label[] succs) {
+    Temp[] nuvs = Temp.nonUnits(vs);
+    if (nuvs.length != 1) {
+      return super.toLLVMBind(lm, vm, s, vs, isTail, c, succs);
+    }
+    ArrayList<Allocator> allocs = new ArrayList<Allocator>();
+    ArrayList<Temp> lhss = new ArrayList<Temp>();
+    allocs.add(this);
+    lhss.add(nuvs[0]);
+    Code rest = c.collectAllocs(allocs, lhss);
+    int n = allocs.size();
+    ArrayList<Allocator> heapAllocs = new ArrayList<Allocator>();
+    ArrayList<llvm.Local> heapObjs = new ArrayList<llvm.Local>();
+    llvm.Local[] objs = new llvm.Local[n];
+    for (int i = 0; i < n; i++) {
+      objs[i] = vm.lookup(lm, lhss.get(i));
+      if (allocs.get(i).immediateValue(lm) == null && !vm.isStackAlloc(lhss.get(i))) {
+        heapAllocs.add(allocs.get(i));
+        heapObjs.add(objs[i]);
+      }
+    }
+    llvm.Local[] hobjs = heapObjs.toArray(new llvm.Local[heapObjs.size()]);
+    Temps used = null;
+    for (int i = 0; i < n; i++) {
+      used = allocs.get(i).add(used);
+    }
+    llvm.Code code = vm.clearDeadRoots(lm, s, used, rest, rest.toLLVMCode(lm, vm, s, succs));
+    code = vm.saveRoots(hobjs, code);
+    for (int i = n; --i >= 0; ) {
+      if (allocs.get(i).immediateValue(lm) == null && vm.isStackAlloc(lhss.get(i))) {
+        code = allocs.get(i).stackAlloc(lm, vm, s, objs[i], code);
+      }
+    }
+    if (hobjs.length != 0) {
+      code = allocs(lm, vm, s, heapAllocs.toArray(new Allocator[hobjs.length]), hobjs, code);
+    }
+    for (int i = n; --i >= 0; ) {
+      llvm.Expr imm = allocs.get(i).immediateValue(lm);
+      if (imm != null) {
+        code = new llvm.Op(objs[i], imm, code);
+      }
+    }
+    return code;
+  }
+
+  /**
+   * Generate LLVM code to execute this Tail and return a result from the right hand side of a Bind.
+   * Set isTail to true if the code sequence c will immediately return the value in the specified
+   * lhs.
+   */
+  llvm.Code toLLVMBindCont(
+      LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Local lhs, llvm.Code c) {
+    llvm.Expr imm = immediateValue(lm);
+    if (imm != null) {
+      return new llvm.Op(lhs, imm, c);
+    }
+    return allocs(lm, vm, s, new Allocator[] {this}, new llvm.Local[] {lhs}, c);
+  }
+
+  /**
+   * Generate code to allocate a single block of memory that is large enough to hold an object for
+   * each of the given allocators, set each lhss[i] to point to the object for allocs[i], fill in
+   * the tag and fields of each object, and then continue with the code in c. The size of each
+   * object is rounded up to a multiple of the allocation grain, which is the larger of the Word
+   * size and the alignment of a pointer, so that every field of every object is suitably aligned,
+   * even when Words are smaller than pointers. (lib/alloc.c and lib/gc.c use the same rule.) If we
+   * are generating code for the garbage collector, then each object is also preceded by a header
+   * that points to a descriptor for its layout, and that occupies a full grain.
+   */
+  static llvm.Code allocs(
+      LLVMMap lm, VarMap vm, TempSubst s, Allocator[] allocs, llvm.Local[] lhss, llvm.Code c) {
     // NOTE: The following steps build up the desired code in reverse order of execution
+    int n = allocs.length;
+    llvm.Type wt = llvm.Type.word();
+    llvm.Type[] objts = new llvm.Type[n]; // type of a pointer to each object
+    llvm.Local[] sizes = new llvm.Local[n]; // register to hold the size of each object
+    llvm.Value[] offsets = new llvm.Value[n + 1]; // offset of each object, and the total size
+    for (int i = 0; i < n; i++) {
+      objts[i] = allocs[i].layoutType(lm).ptr();
+      sizes[i] = vm.reg(wt);
+    }
+    offsets[0] = llvm.Word.ZERO;
+    offsets[1] = sizes[0];
+    for (int i = 2; i <= n; i++) {
+      offsets[i] = vm.reg(wt);
+    }
+    llvm.Local raw = vm.reg(LLVMMap.allocRetType); // raw pointer to allocated memory
+    llvm.Local grain = vm.reg(wt); // the allocation grain
+
+    // - Fill in each object, and save a pointer to it in the corresponding lhs:
+    for (int i = n; --i >= 0; ) {
+      llvm.Local obj = vm.reg(objts[i]);
+      c = new llvm.Op(lhss[i], new llvm.Bitcast(obj, lhss[i].getType()), c);
+      c = allocs[i].initialize(lm, vm, s, obj, c);
+      // start of memory for object:
+      llvm.Local start = (i == 0) ? raw : vm.reg(LLVMMap.allocRetType);
+      if (MILProgram.gc) {
+        llvm.Local addr = vm.reg(LLVMMap.allocRetType); // address of the object, after the header
+        c =
+            new llvm.Op(
+                addr,
+                new llvm.Getelementptr(LLVMMap.allocRetType, start, grain),
+                new llvm.Op(obj, new llvm.Bitcast(addr, objts[i]), c));
+        c = allocs[i].storeHeader(lm, vm, start, c);
+      } else {
+        c = new llvm.Op(obj, new llvm.Bitcast(start, objts[i]), c);
+      }
+      if (i != 0) {
+        c = new llvm.Op(start, new llvm.Getelementptr(LLVMMap.allocRetType, raw, offsets[i]), c);
+      }
+    }
+
+    // - Allocate space for the objects:
+    llvm.Rhs call =
+        new llvm.Call(LLVMMap.allocRetType, lm.allocFuncGlobal(), new llvm.Value[] {offsets[n]});
+    c =
+        new llvm.CodeComment(
+            (n == 1) ? "allocate memory for the object" : "allocate memory for " + n + " objects",
+            new llvm.Op(raw, call, c));
+
+    // - Calculate the offset of each object, and the total size:
+    for (int i = n; i >= 2; i--) {
+      llvm.Rhs add = new llvm.IOp(wt, offsets[i - 1], sizes[i - 1], "add");
+      c = new llvm.Op((llvm.Local) offsets[i], add, c);
+    }
+
+    // - Calculate the size of each object:
+    llvm.Local pad = vm.reg(wt); // bytes to add before rounding down to a multiple of grain
+    llvm.Local mask = vm.reg(wt); // mask for rounding down to a multiple of grain
+    for (int i = n; --i >= 0; ) {
+      c = objectSize(vm, objts[i], sizes[i], pad, mask, c);
+    }
+
+    // - Calculate the allocation grain, and the values that are needed for rounding:
+    llvm.Value bytes = new llvm.Word(Word.size() / 8);
+    llvm.Value align = LLVMMap.ptrAlign();
+    llvm.Local big = vm.reg(llvm.Type.i1); // true if pointers need more alignment than Words
+    llvm.Value extra = grain; // one grain, plus space for a header, if needed
+    if (MILProgram.gc) {
+      extra = vm.reg(wt);
+    }
+    c = new llvm.Op(mask, new llvm.IOp(wt, llvm.Word.ZERO, grain, "sub"), c);
+    c = new llvm.Op(pad, new llvm.IOp(wt, extra, new llvm.Word(-1), "add"), c);
+    if (MILProgram.gc) {
+      c = new llvm.Op((llvm.Local) extra, new llvm.IOp(wt, grain, grain, "add"), c);
+    }
+    c = new llvm.Op(grain, new llvm.Select(big, align, bytes), c);
+    c = new llvm.Op(big, new llvm.ICmp(wt, align, bytes, "ugt"), c);
+    return new llvm.CodeComment("calculate the number of bytes that we need to allocate", c);
+  }
+
+  /**
+   * Generate code to store the object built by this Allocator in a stack slot, set lhs to point to
+   * it, and then continue with the code in c. The slot is allocated in the entry block of the
+   * current function, and is reused each time this code is executed. Objects on the stack do not
+   * need a header because the garbage collector never examines them.
+   */
+  llvm.Code stackAlloc(LLVMMap lm, VarMap vm, TempSubst s, llvm.Local lhs, llvm.Code c) {
+    llvm.Local obj = vm.stackSlot(layoutType(lm));
+    c = new llvm.Op(lhs, new llvm.Bitcast(obj, lhs.getType()), c);
+    return new llvm.CodeComment("store the object on the stack", initialize(lm, vm, s, obj, c));
+  }
+
+  /**
+   * Generate code to set size to the number of bytes that are needed for an object of type objt,
+   * and then continue with the code in c. The size is calculated by adding pad to the exact size
+   * of the object, and then using mask to round down to a multiple of the allocation grain (see
+   * allocs()). If we are generating code for the garbage collector, then pad includes the space
+   * for a header.
+   */
+  static llvm.Code objectSize(
+      VarMap vm, llvm.Type objt, llvm.Local size, llvm.Value pad, llvm.Value mask, llvm.Code c) {
+    llvm.Type wt = llvm.Type.word();
+    llvm.Local past = vm.reg(objt); // pointer to first address past an object starting at 0
+    llvm.Local exact = vm.reg(wt); // integer holding the exact size of an object
+    llvm.Local up = vm.reg(wt); // exact size plus padding
+    return new llvm.Op(
+        past,
+        llvm.Getelementptr.offset(objt, new llvm.Null(objt), new llvm.Value[] {new llvm.Word(1)}),
+        new llvm.Op(
+            exact,
+            new llvm.PtrToInt(past, wt),
+            new llvm.Op(
+                up,
+                new llvm.IOp(wt, exact, pad, "add"),
+                new llvm.Op(size, new llvm.IOp(wt, up, mask, "and"), c))));
+  }
+
+  /**
+   * Generate code to store a pointer to the garbage collector's descriptor for the layout of this
+   * Allocator in the header Word at the given address, and then continue with the code in c.
+   */
+  llvm.Code storeHeader(LLVMMap lm, VarMap vm, llvm.Value addr, llvm.Code c) {
+    llvm.Type at = LLVMMap.allocRetType.ptr();
+    llvm.Local hdr = vm.reg(at);
+    return new llvm.CodeComment(
+        "set the header",
+        new llvm.Op(
+            hdr,
+            new llvm.Bitcast(addr, at),
+            new llvm.Store(
+                lm.gcDescriptor(layoutType(lm)), hdr, lm.initStore(LLVMMap.TBAA_HEADER), c)));
+  }
+
+  /**
+   * Generate code to fill in the tag and fields of the object at obj, built by this Allocator, and
+   * then continue with the code in c.
+   */
+  llvm.Code initialize(LLVMMap lm, VarMap vm, TempSubst s, llvm.Local obj, llvm.Code c) {
     Atom[] nuargs = Atom.nonUnits(args);
 
-    // - Save the fields in the object allocated at the address in obj:
+    // - Save the fields in the object at the address in obj:
     int n = nuargs.length;
     if (n > 0) {
       while (--n >= 0) {
-        c = storeField(vm, s, obj, n + 1, nuargs[n].toLLVMAtom(lm, vm, s), c);
+        c =
+            storeField(
+                lm, vm, s, obj, n + 1, nuargs[n].toLLVMAtom(lm, vm, s), fieldKind(), c);
       }
       c = new llvm.CodeComment("initialize other fields", c);
     }
 
     // - Save the object tag:
-    c = new llvm.CodeComment("set the tag", storeField(vm, s, obj, 0, tag, c));
-
-    // - Allocate space for a new object:
-    llvm.Local past = vm.reg(objt); // pointer to first address past a c object starting at 0
-    llvm.Local size = vm.reg(llvm.Type.word()); // integer holding the size of a c object
-    llvm.Local raw = vm.reg(lm.allocRetType); // raw pointer to allocated object
-    llvm.Rhs call = new llvm.Call(lm.allocRetType, lm.allocFuncGlobal(), new llvm.Value[] {size});
-
     return new llvm.CodeComment(
-        "calculate the number of bytes that we need to allocate",
-        new llvm.Op(
-            past,
-            new llvm.Getelementptr(objt, new llvm.Null(objt), new llvm.Word(1)),
-            new llvm.Op(
-                size,
-                new llvm.PtrToInt(past, size.getType()),
-                new llvm.CodeComment(
-                    "allocate memory for the object",
-                    new llvm.Op(raw, call, new llvm.Op(obj, new llvm.Bitcast(raw, objt), c))))));
+        "set the tag", storeField(lm, vm, s, obj, 0, tagValue(lm), tagKind(), c));
   }
 
-  /** Generate code to execute lhs[n] = v; c */
+  /**
+   * Generate code to execute lhs[n] = v; c, using TBAA metadata for the given kind of field. The
+   * same metadata is used for later loads from the field so that LLVM can see that they access the
+   * same memory.
+   */
   static llvm.Code storeField(
-      VarMap vm, TempSubst s, llvm.Value lhs, int n, llvm.Value v, llvm.Code c) {
+      LLVMMap lm,
+      VarMap vm,
+      TempSubst s,
+      llvm.Value lhs,
+      int n,
+      llvm.Value v,
+      String kind,
+      llvm.Code c) {
     llvm.Type at = v.getType().ptr();
     llvm.Local addr = vm.reg(at);
     return new llvm.Op(
         addr,
         new llvm.Getelementptr(at, lhs, llvm.Word.ZERO, new llvm.Index(n)),
-        new llvm.Store(v, addr, c));
+        new llvm.Store(v, addr, lm.initStore(kind), c));
   }
 }
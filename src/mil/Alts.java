@@ -28,6 +28,9 @@ public abstract class Alts {
   /** Test for a free occurrence of a particular variable. */
   abstract boolean contains(Temp w);
 
+  /** Add the variables mentioned in these alternatives to the given list of variables. */
+  abstract Temps add(Temps vs);
+
   /** Find the dependencies of this AST fragment. */
   abstract Defns dependencies(Defns ds);
 
@@ -72,6 +75,24 @@ public abstract class Alts {
   /** Test for code that is guaranteed not to return. */
   abstract boolean doesntReturn();
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this list of
+   * alternatives, using the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  abstract int purity();
+
+  /**
+   * Test for code that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  abstract boolean willReturn();
+
+  /**
+   * Determine whether the object that v refers to might escape from this list of alternatives,
+   * using the results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  abstract boolean escapes(Temp v, boolean local, TempSubst s);
+
   /**
    * If all of the block calls in a Case are the same, including the default, then we can replace
    * the Case with a simple tail call. As a special case, it can also be used to eliminate Case
@@ -157,6 +178,11 @@ public abstract class Alts {
     return null;
   }
 
+  /** Return the Cfun for the first CfunAlt in this list, or null if there is no CfunAlt. */
+  Cfun firstCfun() {
+    return null;
+  }
+
   /**
    * Eliminate the default at the end of a list of alternatives, replacing it with the unreachable
    * FailAlt; this is valid if we know that the list of alternatives includes a test for all of the
@@ -215,9 +241,19 @@ public abstract class Alts {
 
   /**
    * Collect the values and labels for each of the items in this list of alternatives in the
-   * specified arrays (counting down, although the order shouldn't really matter here).
+   * specified arrays, starting at index i. The label for the ith alternative is in succs[i], as
+   * calculated by findSuccs().
    */
   void collectAlts(llvm.Value[] nums, String[] labs, Label[] succs, int i) {
     /* nothing to do */
   }
+
+  /**
+   * Collect the label for each of the constructors that is matched in this list of alternatives in
+   * the specified array, indexed by constructor number, starting with the label in succs[i]. The
+   * last entry in succs is for the default, and is not included.
+   */
+  void collectLabels(String[] labs, Label[] succs, int i) {
+    /* nothing to do */
+  }
 }
@@ -97,9 +97,8 @@ public abstract class Area extends TopDefn {
     /* Nothing to do here */
   }
 
-  /** First pass code generation: produce code for top-level definitions. */
-  void generateMain(Handler handler, MachineBuilder builder) {
-    handler.report(new Failure(pos, "Cannot use area \"" + id + "\" in bytecode"));
+  void extendAddrMap(HashAddrMap addrMap, int addr) {
+    addrMap.addGlobalLabel(addr, id);
   }
 
   /** Apply inlining. */
@@ -121,6 +121,30 @@ public class Assert extends Code {
     return c.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return c.purity();
+  }
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return c.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence, using the
+   * results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return c.escapes(v, local, s);
+  }
+
   /**
    * Return a possibly shortened version of this code sequence by applying some simple
    * transformations. The src Block is passed as an argument for use in reporting any optimizations
@@ -323,4 +347,20 @@ public class Assert extends Code {
   llvm.Code toLLVMCode(LLVMMap lm, VarMap vm, TempSubst s, Label[] succs) {
     return c.toLLVMCode(lm, vm, s, succs);
   }
+
+  /**
+   * Record each allocation in this code sequence whose result does not escape from the enclosing
+   * CFG, and so can be stored on the stack instead of the heap.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    c.findStackAllocs(vm, s);
+  }
+
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows.
+   */
+  Temps liveVars(VarMap vm) {
+    return vm.liveIn(c);
+  }
 }
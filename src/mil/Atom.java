@@ -444,6 +444,31 @@ public abstract class Atom {
    */
   abstract boolean nonUnit();
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of accessing the value of
+   * this atom in generated code.
+   */
+  int purity() {
+    return Prim.PURE;
+  }
+
+  /**
+   * Return the memory area that contains the address held in this atom, or null if the area is not
+   * known. The variable map records the areas for temporaries that hold addresses within an area.
+   */
+  Area addrArea(VarMap vm) {
+    return null;
+  }
+
+  /** Return the maximum purity code for accessing any of the atoms in the given array. */
+  static int purity(Atom[] args) {
+    int purity = Prim.PURE;
+    for (int i = 0; i < args.length; i++) {
+      purity = Math.max(purity, args[i].purity());
+    }
+    return purity;
+  }
+
   /**
    * Filter all unit values from this array producing either a new (shorter) array, or just
    * returning the original array if all of the elements are non-units.
@@ -21,6 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 
 /**
  * Represents a code sequence that binds the variable(s) in vs to the result produced by running t
@@ -94,9 +95,14 @@ public class Bind extends Code {
 
   /**
    * Generate bytecode for this code sequence, assuming that o is the offset of the next unused
-   * location in the current frame.
+   * location in the current frame. A sequence of the form (vs <- t; return vs) is treated as a tail
+   * call so that, for a BlockCall or Enter, the current frame is reused.
    */
   void generateCode(MachineBuilder builder, int o) {
+    if (c.isReturn(vs)) {
+      t.generateTailCode(builder, o);
+      return;
+    }
     t.generateCallCode(builder, o);
     builder.extend(vs, o);
     c.generateCode(builder, o + vs.length);
@@ -141,6 +147,30 @@ public class Bind extends Code {
     return t.doesntReturn() || c.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Math.max(t.purity(), c.purity());
+  }
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return t.willReturn() && c.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence, using the
+   * results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return t.escapes(v) || c.escapes(v, local, s);
+  }
+
   /**
    * Return a possibly shortened version of this code sequence by applying some simple
    * transformations. The src Block is passed as an argument for use in reporting any optimizations
@@ -501,4 +531,49 @@ public class Bind extends Code {
   llvm.Code toLLVMCode(LLVMMap lm, VarMap vm, TempSubst s, Label[] succs) {
     return t.toLLVMBind(lm, vm, s, vs, false, c, succs);
   }
+
+  /**
+   * Add each of the allocators at the start of this code sequence that binds a single (non unit)
+   * variable to allocs, and the corresponding variable to lhss, returning the code that follows.
+   */
+  Code collectAllocs(ArrayList<Allocator> allocs, ArrayList<Temp> lhss) {
+    Allocator a = t.isAllocator();
+    Temp[] nuvs = Temp.nonUnits(vs);
+    if (a == null || nuvs.length != 1) {
+      return this;
+    }
+    allocs.add(a);
+    lhss.add(nuvs[0]);
+    return c.collectAllocs(allocs, lhss);
+  }
+
+  /**
+   * Record each allocation in this code sequence whose result does not escape from the enclosing
+   * CFG, and so can be stored on the stack instead of the heap.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    Temp[] nuvs = Temp.nonUnits(vs);
+    Allocator a = t.isAllocator();
+    if (a != null && nuvs.length == 1 && !c.escapes(nuvs[0], true, s)) {
+      vm.stackAlloc(nuvs[0]);
+      for (int i = 0; i < a.args.length; i++) {
+        vm.stackField(a.args[i], s);
+      }
+    }
+    c.findStackAllocs(vm, s);
+  }
+
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows.
+   */
+  Temps liveVars(VarMap vm) {
+    Temps live = null;
+    for (Temps ts = vm.liveIn(c); ts != null; ts = ts.next) {
+      if (!ts.head.occursIn(vs)) {
+        live = new Temps(ts.head, live);
+      }
+    }
+    return t.add(live);
+  }
 }
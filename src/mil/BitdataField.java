@@ -21,7 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import obdd.BitVector;
 
 /** Represents a single field of a particular bitdata type that can be accessed using its name. */
 public class BitdataField extends Name {
@@ -59,7 +59,7 @@ public class BitdataField extends Name {
     debug.Log.println(id + " :: " + type + " -- offset=" + offset + ", width=" + width);
   }
 
-  int dumpBitdataField(PrintWriter out, BigInteger tagbits, int lastOffset) {
+  int dumpBitdataField(PrintWriter out, BitVector tagbits, int lastOffset) {
     int end = offset + width; // bit position where this field ends
     if (lastOffset > end) { // display any leading tagbits
       out.print(Bits.toString(tagbits.shiftRight(end), lastOffset - end));
@@ -90,7 +90,7 @@ public class BitdataField extends Name {
     }
   }
 
-  public int fieldDiagram(PrintWriter out, BigInteger tagbits, int lastOffset, int bitSize) {
+  public int fieldDiagram(PrintWriter out, BitVector tagbits, int lastOffset, int bitSize) {
     int end = offset + width; // bit position where this field ends
     tagbitsDiagram(out, lastOffset, end, tagbits, bitSize);
     int left = perBit * (bitSize - end);
@@ -118,7 +118,7 @@ public class BitdataField extends Name {
   }
 
   public static void tagbitsDiagram(
-      PrintWriter out, int hi, int lo, BigInteger tagbits, int bitSize) {
+      PrintWriter out, int hi, int lo, BitVector tagbits, int bitSize) {
     if (lo < hi) {
       fieldSeparatorDiagram(out, lo, bitSize);
       for (; lo < hi; lo++) {
@@ -21,7 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import obdd.BitVector;
 
 /** Represents a type constructor for a specific bitdata layout. */
 public class BitdataLayout extends DataName {
@@ -30,7 +30,7 @@ public class BitdataLayout extends DataName {
   private BitdataType bt;
 
   /** The tagbits for this layout. */
-  private BigInteger tagbits;
+  private BitVector tagbits;
 
   /** The list of fields within this bitdata value. */
   private BitdataField[] fields;
@@ -43,7 +43,7 @@ public class BitdataLayout extends DataName {
       Position pos,
       String id,
       BitdataType bt,
-      BigInteger tagbits,
+      BitVector tagbits,
       BitdataField[] fields,
       obdd.Pat pat) {
     super(pos, id);
@@ -286,7 +286,7 @@ public class BitdataLayout extends DataName {
    * Determine whether a selector from this layout will (in general) require a masking operation.
    */
   boolean selectNeedsMask() {
-    return tagbits.signum() != 0 || fields.length != 1;
+    return !tagbits.isZero() || fields.length != 1;
   }
 
   private Block constructorBlock;
@@ -335,7 +335,7 @@ public class BitdataLayout extends DataName {
    * Prepend the given code sequence with an initializer that sets the Temps in ws to the given bits
    * value.
    */
-  static Code initialize(int total, Temp[] ws, BigInteger bits, Code code) {
+  static Code initialize(int total, Temp[] ws, BitVector bits, Code code) {
     return new Bind(ws, new Return(Const.atoms(bits, total)), code);
   }
 
@@ -349,7 +349,7 @@ public class BitdataLayout extends DataName {
         initialize(
             u + v,
             ws,
-            BigInteger.ZERO,
+            BitVector.ZERO,
             genUpdateZeroedBitField(
                 0,
                 v,
@@ -379,8 +379,8 @@ public class BitdataLayout extends DataName {
    */
   void generateMaskTest(Cfun cf) {
     int total = getWidth(); // number of bits in output
-    BigInteger maskNat = maskTest.getMask();
-    BigInteger bitsNat = maskTest.getBits();
+    BitVector maskNat = maskTest.getMask();
+    BitVector bitsNat = maskTest.getBits();
     boolean eq = maskTest.getOp();
     if (total < 2) { // special case for width 0 and width 1 types
       Temp[] vs = Temp.makeTemps(Type.repBits(total));
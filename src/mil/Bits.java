@@ -20,17 +20,17 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.math.BigInteger;
+import obdd.BitVector;
 
 /** Represents a Bit vector constant. */
 public class Bits extends Const {
 
-  private BigInteger val;
+  private BitVector val;
 
   private int width;
 
   /** Default constructor. */
-  public Bits(BigInteger val, int width) {
+  public Bits(BitVector val, int width) {
     this.val = val;
     this.width = width;
   }
@@ -41,13 +41,13 @@ public class Bits extends Const {
   }
 
   /** Generate a printable representation of a bit vector constant. */
-  static String toString(BigInteger nat, int width) {
+  static String toString(BitVector nat, int width) {
     // TODO: does this produce correct results if width=0?
     StringBuilder buf = new StringBuilder();
     if (width > 0 && (width % 4) == 0) { // Use hexadecimal notation if we can
       buf.append('X');
       while (width > 0) {
-        int d = nat.shiftRight(width -= 4).intValue() & 0xf; // TODO: clunky?
+        int d = (int) nat.extract(width -= 4) & 0xf;
         buf.append((char) ((d < 10 ? ('0' + d) : ('a' + (d - 10))))); // TODO: builtin?
         if (width > 0 && ((width % 16) == 0)) {
           buf.append("_");
@@ -423,6 +423,82 @@ public class Block extends Defn {
     return false; // no change
   }
 
+  /**
+   * Purity code (see Prim) describing the memory effects of a call to this block, computed by
+   * effect analysis.
+   */
+  private int purity = Prim.PURE;
+
+  /** Flag to identify blocks that are guaranteed to return, computed by effect analysis. */
+  private boolean willReturn = false;
+
+  /** Return the purity code for this block, as computed by a previous effect analysis. */
+  int purity() {
+    return purity;
+  }
+
+  /**
+   * Return flag, computed by previous effect analysis, to indicate if this block is guaranteed to
+   * return.
+   */
+  boolean willReturn() {
+    return willReturn;
+  }
+
+  /** Reset the results of effect analysis for this definition ahead of an effectAnalysis(). */
+  void resetEffects() {
+    purity = Prim.PURE;
+    willReturn = false;
+  }
+
+  /**
+   * Apply effect analysis to this definition, returning true if this results in a change from the
+   * previously computed values.
+   */
+  boolean effectAnalysis() {
+    int newPurity = code.purity();
+    boolean newWillReturn = code.willReturn();
+    if (newPurity != purity || newWillReturn != willReturn) {
+      purity = newPurity;
+      willReturn = newWillReturn;
+      return true; // signal that a change was detected
+    }
+    return false; // no change
+  }
+
+  /**
+   * Records the parameters of this block that might escape (i.e., that might be returned, stored,
+   * or passed to a function that keeps a reference to them), as computed by escape analysis. A
+   * null value indicates that escape analysis has not been used, in which case we assume that
+   * every parameter might escape.
+   */
+  private boolean[] escapes = null;
+
+  /** Return true if the ith parameter of this block might escape. */
+  boolean paramEscapes(int i) {
+    return escapes == null || escapes[i];
+  }
+
+  /** Reset the results of escape analysis for this definition ahead of an escapeAnalysis(). */
+  void resetEscapes() {
+    escapes = new boolean[params.length];
+  }
+
+  /**
+   * Apply escape analysis to this definition, returning true if this results in a change from the
+   * previously computed values.
+   */
+  boolean escapeAnalysis() {
+    boolean changed = false;
+    for (int i = 0; i < params.length; i++) {
+      if (!escapes[i] && code.escapes(params[i], false, null)) {
+        escapes[i] = true;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
   /** Perform pre-inlining cleanup on each Block in this SCC. */
   void cleanup() {
     code = code.cleanup(this);
@@ -1028,6 +1104,25 @@ public class Block extends Defn {
     return new llvm.Global(declared.toLLVM(lm), functionName());
   }
 
+  /**
+   * Return the calling convention for the LLVM function corresponding to this definition. Internal
+   * functions use fastcc, which allows LLVM to optimize more tail calls, but entrypoints use the
+   * default (C) calling convention so that they can be called from other languages.
+   */
+  int callConv() {
+    return isEntrypoint ? llvm.Mods.NONE : llvm.Mods.FASTCC;
+  }
+
+  /** Return the modifiers for the LLVM function corresponding to this definition. */
+  int funcMods() {
+    return llvm.Mods.entry(isEntrypoint) | callConv();
+  }
+
+  /** Return the attributes for the LLVM function corresponding to this definition. */
+  int funcAttrs() {
+    return Prim.funcAttrs(doesntReturn, purity, willReturn);
+  }
+
   /** Return the name for the LLVM function corresponding to this definition. */
   String functionName() {
     return isEntrypoint ? id : ("func_" + id);
@@ -1121,9 +1216,18 @@ public class Block extends Defn {
       String[] ss,
       llvm.Code[] cs,
       Label[] succs) {
-    cs[0] = dvm.loadGlobals(new llvm.Goto(succs[0].label()));
+    cs[0] = dvm.frame(lm, formals, dvm.loadGlobals(new llvm.Goto(succs[0].label())));
+    llvm.Type rt = retType(lm);
     return new llvm.FuncDefn(
-        llvm.Mods.entry(isEntrypoint), retType(lm), functionName(), formals, ss, cs);
+        funcMods(),
+        funcAttrs() | dvm.gcAttrs(),
+        rt,
+        lm.valueAttrs(rt),
+        functionName(),
+        formals,
+        lm.valueAttrs(formals),
+        ss,
+        cs);
   }
 
   /**
@@ -1138,6 +1242,38 @@ public class Block extends Defn {
     return params;
   }
 
+  /**
+   * Determine whether an object that was allocated in the current function, and that v refers to,
+   * might escape when this block is called with the given arguments in tail position. The object
+   * can only be passed to a block whose parameters are mapped to the arguments by s (i.e., a block
+   * with a single predecessor, whose code is reached by a jump), and must not escape from there.
+   */
+  boolean escapesVia(Temp v, Atom[] args, TempSubst s) {
+    Temp p = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i] == v) {
+        if (p != null || params[i].apply(s) != v.apply(s)) {
+          return true;
+        }
+        p = params[i];
+      }
+    }
+    return p != null && code.escapes(p, true, s);
+  }
+
+  /**
+   * Record the allocations in the code for this block that can use the stack, as well as each of
+   * the non escaping parameters of this block, which might refer to objects on the stack.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    for (int i = 0; i < params.length; i++) {
+      if (!paramEscapes(i)) {
+        vm.addOnStack(params[i].apply(s));
+      }
+    }
+    code.findStackAllocs(vm, s);
+  }
+
   /**
    * Find the main block for this program. If no main symbol has been specified, then we generate a
    * null main block. If the main symbol has been defined but does not correspond to a nullary
@@ -62,6 +62,24 @@ class BlockCFG extends CFG {
     return formals;
   }
 
+  /**
+   * Return the modifiers, including linkage and calling convention, for the associated LLVM
+   * function definition.
+   */
+  int funcMods() {
+    return b.funcMods();
+  }
+
+  /** Return the attributes for the associated LLVM function definition. */
+  int funcAttrs() {
+    return b.funcAttrs();
+  }
+
+  /** Return the LLVM type of the value that is returned by the associated function definition. */
+  llvm.Type retType(LLVMMap lm) {
+    return b.retType(lm);
+  }
+
   /**
    * Helper function for constructing a function definition with the given formal parameters and
    * code by dispatching on the associated MIL Defn to collect additional details.
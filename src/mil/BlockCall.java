@@ -204,6 +204,46 @@ public class BlockCall extends Call {
     return b.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this Tail, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Math.max(b.purity(), Atom.purity(args));
+  }
+
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return b.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed on the
+   * right hand side of a Bind, using the results of a previous escapeAnalysis() for the block that
+   * it calls.
+   */
+  boolean escapes(Temp v) {
+    for (int i = 0; i < args.length; i++) {
+      if (args[i] == v && b.paramEscapes(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed in tail
+   * position. An object that was allocated in the current function can only be passed to a block
+   * with a single predecessor in the enclosing CFG, which is implemented by a jump instead of a
+   * call, and it must not escape from the code for that block.
+   */
+  boolean escapesDone(Temp v, boolean local, TempSubst s) {
+    return local ? b.escapesVia(v, args, s) : escapes(v);
+  }
+
   boolean detectLoops(
       Block src, Blocks visited) { // Keep searching while we're still in the same SCC
     return (src.getScc() == b.getScc()) && b.detectLoops(new Blocks(src, visited));
@@ -452,7 +492,9 @@ public class BlockCall extends Call {
    * isTail to true if the code sequence c is an immediate ret void instruction.
    */
   llvm.Code toLLVMBindVoid(LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Code c) {
-    return new llvm.CallVoid(isTail, lm.globalFor(b), Atom.toLLVMValues(lm, vm, s, args), c);
+    llvm.Global g = lm.globalFor(b);
+    int mods = vm.callMods(isTail, b.callConv(), g.getType());
+    return new llvm.CallVoid(mods, g, Atom.toLLVMValues(lm, vm, s, args), c);
   }
 
   /**
@@ -462,9 +504,9 @@ public class BlockCall extends Call {
    */
   llvm.Code toLLVMBindCont(
       LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Local lhs, llvm.Code c) {
+    llvm.Global g = lm.globalFor(b);
+    int mods = vm.callMods(isTail, b.callConv(), g.getType());
     return new llvm.Op(
-        lhs,
-        new llvm.Call(isTail, lhs.getType(), lm.globalFor(b), Atom.toLLVMValues(lm, vm, s, args)),
-        c);
+        lhs, new llvm.Call(mods, lhs.getType(), g, Atom.toLLVMValues(lm, vm, s, args)), c);
   }
 }
@@ -38,7 +38,8 @@ class BoolValue extends Value {
     return bool ? "true" : "false";
   }
 
-  boolean getBool() throws Failure {
-    return bool;
+  /** Return the word component of the machine representation for this value. */
+  long wordRep() {
+    return bool ? 1 : 0;
   }
 }
@@ -139,6 +139,12 @@ abstract class CFG extends Node {
   llvm.FuncDefn toLLVMFuncDefn(LLVMMap lm, TempSubst s) {
     VarMap vm = getVarMap();
     llvm.Local[] formals = formals(lm, vm);
+    vm.setFunction(funcMods(), funcAttrs(), retType(lm), formals);
+    if (MILProgram.stackAlloc) {
+      for (Labels ls = labels; ls != null; ls = ls.next) {
+        ls.head.findStackAllocs(vm, s);
+      }
+    }
     int n = Labels.length(labels);
     String[] ss = new String[1 + n];
     llvm.Code[] cs = new llvm.Code[1 + n];
@@ -154,6 +160,18 @@ abstract class CFG extends Node {
   /** Calculate an array of formal parameters for the associated LLVM function definition. */
   abstract llvm.Local[] formals(LLVMMap lm, VarMap vm);
 
+  /**
+   * Return the modifiers, including linkage and calling convention, for the associated LLVM
+   * function definition.
+   */
+  abstract int funcMods();
+
+  /** Return the attributes for the associated LLVM function definition. */
+  abstract int funcAttrs();
+
+  /** Return the LLVM type of the value that is returned by the associated function definition. */
+  abstract llvm.Type retType(LLVMMap lm);
+
   /**
    * Helper function for constructing a function definition with the given formal parameters and
    * code by dispatching on the associated MIL Defn to collect additional details.
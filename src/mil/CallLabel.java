@@ -55,12 +55,13 @@ class CallLabel extends Label {
     llvm.Value[] vals =
         Atom.toLLVMValues(lm, vm, s, preds.args); // TODO: repeated nonUnits test on preds.args :-(
     llvm.Type rt = b.retType(lm);
+    llvm.Global g = lm.globalFor(b);
+    int mods = vm.callMods(true, b.callConv(), g.getType());
     if (rt == llvm.Type.vd) { // use CallVoid if block does not produce a value
-      return new llvm.CallVoid(true, lm.globalFor(b), vals, new llvm.RetVoid());
+      return new llvm.CallVoid(mods, g, vals, new llvm.RetVoid());
     } else { // otherwise use Call
       llvm.Local v = vm.reg(rt); // and allocate a register to hold the result
-      return new llvm.Op(
-          v, new llvm.Call(true, v.getType(), lm.globalFor(b), vals), new llvm.Ret(v));
+      return new llvm.Op(v, new llvm.Call(mods, v.getType(), g, vals), new llvm.Ret(v));
     }
   }
 }
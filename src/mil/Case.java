@@ -46,6 +46,14 @@ public class Case extends Code {
     return a == w || alts.contains(w);
   }
 
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows.
+   */
+  Temps liveVars(VarMap vm) {
+    return a.add(alts.add(null));
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return a.dependencies(alts.dependencies(ds));
@@ -133,6 +141,31 @@ public class Case extends Code {
     return alts.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    // A Case reads the tag of the data object that it is examining:
+    return Math.max(Prim.OBSERVER, Math.max(a.purity(), alts.purity()));
+  }
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return alts.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence, using the
+   * results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return alts.escapes(v, local, s);
+  }
+
   /**
    * Return a possibly shortened version of this code sequence by applying some simple
    * transformations. The src Block is passed as an argument for use in reporting any optimizations
@@ -367,10 +400,12 @@ public class Case extends Code {
     String def = succs[--n].label(); // Use the last alternative as a default
     if (n == 0) { // Make a direct jump if there are no other alternatives
       return new llvm.Goto(def);
+    } else if (alts.firstCfun().getDataName().hasImmediates()) {
+      return toLLVMImmediates(lm, vm, s, alts.firstCfun().getCfuns(), succs, n, def);
     } else {
       llvm.Value[] nums = new llvm.Value[n];
       String[] labs = new String[n];
-      alts.collectAlts(nums, labs, succs, n - 1);
+      alts.collectAlts(nums, labs, succs, 0);
       llvm.Type dt = LLVMMap.tagType(); // the type of the tag
       llvm.Local tag = vm.reg(dt); // a register to hold the tag
       llvm.Type at = dt.ptr(); // the type of pointers to the tag
@@ -382,9 +417,54 @@ public class Case extends Code {
               new llvm.Getelementptr(at, a.toLLVMAtom(lm, vm, s), llvm.Word.ZERO, llvm.Index.ZERO),
               new llvm.Op(
                   tag,
-                  new llvm.Load(addr),
+                  new llvm.Load(
+                      addr,
+                      vm.onStack(a, s)
+                          ? lm.stackLoad(LLVMMap.TBAA_TAG, dt)
+                          : lm.immutableLoad(LLVMMap.TBAA_TAG, dt)),
                   new llvm.CodeComment(
                       "branch based on the tag value", new llvm.Switch(tag, nums, labs, def)))));
     }
   }
+
+  /**
+   * Generate LLVM code for a Case on a value of a type whose constructors without fields are
+   * represented by immediate values. There is at most one constructor with fields for such a type,
+   * so we can branch on the value itself without reading a tag from memory: each immediate value
+   * is tested directly, and any other value must point to an object built with the remaining
+   * constructor. The first n entries of succs are the labels for the alternatives, and def is the
+   * label for the default.
+   */
+  private llvm.Code toLLVMImmediates(
+      LLVMMap lm, VarMap vm, TempSubst s, Cfun[] cfuns, Label[] succs, int n, String def) {
+    String[] labs = new String[cfuns.length];
+    alts.collectLabels(labs, succs, 0);
+    String obj = def; // the label for a pointer to an object
+    int m = 0; // the number of immediate values
+    for (int i = 0; i < cfuns.length; i++) {
+      if (labs[i] == null) {
+        labs[i] = def;
+      }
+      if (cfuns[i].isImmediate()) {
+        m++;
+      } else {
+        obj = labs[i];
+      }
+    }
+    llvm.Value[] nums = new llvm.Value[m];
+    String[] imms = new String[m];
+    for (int i = 0, j = 0; i < cfuns.length; i++) {
+      if (cfuns[i].isImmediate()) {
+        nums[j] = cfuns[i].immediateWord();
+        imms[j++] = labs[i];
+      }
+    }
+    llvm.Local val = vm.reg(llvm.Type.word()); // a register to hold the value as a Word
+    return new llvm.CodeComment(
+        "compare the value with immediate constructors",
+        new llvm.Op(
+            val,
+            new llvm.PtrToInt(a.toLLVMAtom(lm, vm, s), llvm.Type.word()),
+            new llvm.Switch(val, nums, imms, obj)));
+  }
 }
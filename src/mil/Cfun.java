@@ -21,7 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import obdd.BitVector;
 import obdd.MaskTestPat;
 import obdd.Pat;
 
@@ -277,7 +277,7 @@ public class Cfun extends Name {
   BitdataLayout makeLayout(
       BitdataMap m,
       BitdataType bt,
-      BigInteger tagbits,
+      BitVector tagbits,
       int offset,
       Pat[] fpats,
       Pat p,
@@ -364,6 +364,28 @@ public class Cfun extends Name {
     return lm.toLLVM(dn.asType());
   }
 
+  /**
+   * Return true if values built with this constructor are represented by an immediate value in LLVM
+   * code instead of a pointer to an object.
+   */
+  boolean isImmediate() {
+    return !allocType.hasFields() && dn.hasImmediates();
+  }
+
+  /**
+   * Return the Word that represents this constructor as an immediate value. Every object is aligned
+   * on a Word boundary, so the least significant bit of a pointer to an object is always zero, and
+   * we use odd numbers for immediate values.
+   */
+  llvm.Word immediateWord() {
+    return new llvm.Word(2L * num + 1);
+  }
+
+  /** Return an LLVM constant for the immediate value that represents this constructor. */
+  llvm.Expr immediateValue(LLVMMap lm) {
+    return new llvm.IntToPtr(immediateWord(), dataPtrType(lm));
+  }
+
   /**
    * Calculate a structure type describing the layout of a data value built with a specific
    * constructor.
@@ -43,6 +43,11 @@ public class CfunAlt extends Alts {
     return bc.contains(w) || next.contains(w);
   }
 
+  /** Add the variables mentioned in these alternatives to the given list of variables. */
+  Temps add(Temps vs) {
+    return bc.add(next.add(vs));
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return bc.dependencies(next.dependencies(ds));
@@ -109,6 +114,30 @@ public class CfunAlt extends Alts {
     return bc.doesntReturn() && next.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this list of
+   * alternatives, using the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Math.max(bc.purity(), next.purity());
+  }
+
+  /**
+   * Test for code that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return bc.willReturn() && next.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this list of alternatives,
+   * using the results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return bc.escapesDone(v, local, s) || next.escapes(v, local, s);
+  }
+
   /**
    * If all of the block calls in a Case are the same, including the default, then we can replace
    * the Case with a simple tail call. As a special case, it can also be used to eliminate Case
@@ -235,6 +264,11 @@ public class CfunAlt extends Alts {
     return bc;
   }
 
+  /** Return the Cfun for the first CfunAlt in this list, or null if there is no CfunAlt. */
+  Cfun firstCfun() {
+    return cf;
+  }
+
   /**
    * Eliminate the default at the end of a list of alternatives, replacing it with the unreachable
    * FailAlt; this is valid if we know that the list of alternatives includes a test for all of the
@@ -315,13 +349,26 @@ public class CfunAlt extends Alts {
 
   /**
    * Collect the values and labels for each of the items in this list of alternatives in the
-   * specified arrays (counting down, although the order shouldn't really matter here).
+   * specified arrays, starting at index i. The label for the ith alternative is in succs[i], as
+   * calculated by findSuccs().
    */
   void collectAlts(llvm.Value[] nums, String[] labs, Label[] succs, int i) {
-    if (i >= 0) {
+    if (i < nums.length) {
       nums[i] = new llvm.Word(cf.getNum());
       labs[i] = succs[i].label();
-      next.collectAlts(nums, labs, succs, i - 1);
+      next.collectAlts(nums, labs, succs, i + 1);
+    }
+  }
+
+  /**
+   * Collect the label for each of the constructors that is matched in this list of alternatives in
+   * the specified array, indexed by constructor number, starting with the label in succs[i]. The
+   * last entry in succs is for the default, and is not included.
+   */
+  void collectLabels(String[] labs, Label[] succs, int i) {
+    if (i < succs.length - 1) {
+      labs[cf.getNum()] = succs[i].label();
+      next.collectLabels(labs, succs, i + 1);
     }
   }
 }
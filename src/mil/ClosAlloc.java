@@ -233,22 +233,23 @@ public class ClosAlloc extends Allocator {
     return c;
   }
 
-  /**
-   * Generate LLVM code to execute this Tail and return a result from the right hand side of a Bind.
-   * Set isTail to true if the code sequence c will immediately return the value in the specified
-   * lhs.
-   */
-  llvm.Code toLLVMBindCont(
-      LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Local lhs, llvm.Code c) {
-    llvm.Type objt = lm.closureLayoutType(k).ptr(); // type of a pointer to a k object
-    llvm.Local obj = vm.reg(objt); // a register to point to the new object
-    return alloc(
-        lm,
-        vm,
-        s,
-        objt,
-        obj,
-        lm.globalFor(k),
-        new llvm.Op(lhs, new llvm.Bitcast(obj, k.closurePtrType(lm)), c));
+  /** Return the LLVM type that describes the layout of an object built by this Allocator. */
+  llvm.Type layoutType(LLVMMap lm) {
+    return lm.closureLayoutType(k);
+  }
+
+  /** Return the value that is stored at the start of an object built by this Allocator. */
+  llvm.Value tagValue(LLVMMap lm) {
+    return lm.globalFor(k);
+  }
+
+  /** Return the kind of TBAA metadata for the tag of an object built by this Allocator. */
+  String tagKind() {
+    return LLVMMap.TBAA_CLOSURE;
+  }
+
+  /** Return the kind of TBAA metadata for the fields of an object built by this Allocator. */
+  String fieldKind() {
+    return LLVMMap.TBAA_CLOSURE;
   }
 }
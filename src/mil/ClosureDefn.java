@@ -295,6 +295,38 @@ public class ClosureDefn extends Defn {
     tail = tail.liftStaticAllocator();
   }
 
+  /**
+   * Purity code (see Prim) describing the memory effects of entering a closure for this
+   * definition, computed by effect analysis.
+   */
+  private int purity = Prim.PURE;
+
+  /** Flag to indicate if this closure is guaranteed to return, computed by effect analysis. */
+  private boolean willReturn = false;
+
+  /** Reset the results of effect analysis for this definition ahead of an effectAnalysis(). */
+  void resetEffects() {
+    purity = Prim.PURE;
+    willReturn = false;
+  }
+
+  /**
+   * Apply effect analysis to this definition, returning true if this results in a change from the
+   * previously computed values.
+   */
+  boolean effectAnalysis() {
+    // The code for a closure begins by loading any stored values from the closure:
+    int stored = (Temp.nonUnits(params).length > 0) ? Prim.OBSERVER : Prim.PURE;
+    int newPurity = Math.max(stored, tail.purity());
+    boolean newWillReturn = tail.willReturn();
+    if (newPurity != purity || newWillReturn != willReturn) {
+      purity = newPurity;
+      willReturn = newWillReturn;
+      return true; // signal that a change was detected
+    }
+    return false; // no change
+  }
+
   /**
    * A bitmap that identifies the used arguments of this definition. The base case, with no used
    * arguments, can be represented by a null array. Otherwise, it will be a non null array, the same
@@ -751,6 +783,24 @@ public class ClosureDefn extends Defn {
     return new llvm.Global(codePtrType(lm), functionName());
   }
 
+  /**
+   * The calling convention for the LLVM functions corresponding to closure definitions. Closures
+   * are entered by indirect calls that cannot tell which definition they will reach, so every
+   * closure definition must use the same convention. A closure can be returned from an entrypoint
+   * and then entered from C code through its code pointer, so we use the C calling convention.
+   */
+  static final int callConv = llvm.Mods.NONE;
+
+  /** Return the modifiers for the LLVM function corresponding to this definition. */
+  int funcMods() {
+    return llvm.Mods.entry(isEntrypoint) | callConv;
+  }
+
+  /** Return the attributes for the LLVM function corresponding to this definition. */
+  int funcAttrs() {
+    return Prim.funcAttrs(tail.doesntReturn(), purity, willReturn);
+  }
+
   /** Return the name for the LLVM function corresponding to this definition. */
   String functionName() {
     return isEntrypoint ? id : ("clos_" + id);
@@ -814,18 +864,36 @@ public class ClosureDefn extends Defn {
       for (int n = nuparams.length; --n >= 0; ) { // extract stored parameters
         llvm.Type pt = nuparams[n].lookupType(lm).ptr();
         llvm.Local pptr = dvm.reg(pt); // holds pointer to stored parameter
+        llvm.Local param = dvm.lookup(lm, nuparams[n]); // holds the value of the parameter
         cs[0] =
             new llvm.Op(
                 pptr,
                 new llvm.Getelementptr(pt, ptr, llvm.Word.ZERO, new llvm.Index(n + 1)),
-                new llvm.Op(dvm.lookup(lm, nuparams[n]), new llvm.Load(pptr), cs[0]));
+                new llvm.Op(
+                    param,
+                    new llvm.Load(
+                        pptr,
+                        MILProgram.stackAlloc // closures can be stored on the stack
+                            ? lm.stackLoad(LLVMMap.TBAA_CLOSURE, pt.ptsTo())
+                            : lm.immutableLoad(LLVMMap.TBAA_CLOSURE, pt.ptsTo())),
+                    dvm.saveRoot(param, cs[0])));
       }
       cs[0] =
           new llvm.CodeComment(
               "load stored values from closure",
               new llvm.Op(ptr, new llvm.Bitcast(formals[0], ptrt), cs[0]));
     }
+    cs[0] = dvm.frame(lm, formals, cs[0]);
+    llvm.Type rt = retType(lm);
     return new llvm.FuncDefn(
-        llvm.Mods.entry(isEntrypoint), retType(lm), functionName(), formals, ss, cs);
+        funcMods(),
+        funcAttrs() | dvm.gcAttrs(),
+        rt,
+        lm.valueAttrs(rt),
+        functionName(),
+        formals,
+        lm.valueAttrs(formals),
+        ss,
+        cs);
   }
 }
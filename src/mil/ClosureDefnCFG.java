@@ -55,6 +55,24 @@ class ClosureDefnCFG extends CFG {
     return k.formals(lm, vm);
   }
 
+  /**
+   * Return the modifiers, including linkage and calling convention, for the associated LLVM
+   * function definition.
+   */
+  int funcMods() {
+    return k.funcMods();
+  }
+
+  /** Return the attributes for the associated LLVM function definition. */
+  int funcAttrs() {
+    return k.funcAttrs();
+  }
+
+  /** Return the LLVM type of the value that is returned by the associated function definition. */
+  llvm.Type retType(LLVMMap lm) {
+    return k.retType(lm);
+  }
+
   /**
    * Helper function for constructing a function definition with the given formal parameters and
    * code by dispatching on the associated MIL Defn to collect additional details.
@@ -21,6 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 
 /** Base class for representing MIL code sequences. */
 public abstract class Code {
@@ -152,6 +153,28 @@ public abstract class Code {
   /** Test for code that is guaranteed not to return. */
   abstract boolean doesntReturn();
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  abstract int purity();
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  abstract boolean willReturn();
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence (i.e., be
+   * returned, stored in another object, or passed to a function that might keep a reference to it),
+   * using the results of a previous escapeAnalysis() for any blocks that it calls. If local is
+   * true, then the object was allocated in the current function, and it must not be passed to a
+   * tail call either. In that case, s is the parameter elimination substitution for the enclosing
+   * CFG, which allows us to follow the object into blocks that have a single predecessor.
+   */
+  abstract boolean escapes(Temp v, boolean local, TempSubst s);
+
   /**
    * Return a possibly shortened version of this code sequence by applying some simple
    * transformations. The src Block is passed as an argument for use in reporting any optimizations
@@ -386,4 +409,28 @@ public abstract class Code {
    * end of the code.
    */
   abstract llvm.Code toLLVMCode(LLVMMap lm, VarMap vm, TempSubst s, Label[] succs);
+
+  /**
+   * Record each allocation in this code sequence whose result does not escape from the enclosing
+   * CFG, and so can be stored on the stack instead of the heap.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    /* nothing to do */
+  }
+
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows. Unlike
+   * usedVars(), this includes every argument in a BlockCall, whether or not the corresponding
+   * parameter is used, because all of the arguments are passed in the generated code.
+   */
+  abstract Temps liveVars(VarMap vm);
+
+  /**
+   * Add each of the allocators at the start of this code sequence that binds a single (non unit)
+   * variable to allocs, and the corresponding variable to lhss, returning the code that follows.
+   */
+  Code collectAllocs(ArrayList<Allocator> allocs, ArrayList<Temp> lhss) {
+    return this;
+  }
 }
@@ -57,6 +57,14 @@ class CodeLabel extends Label {
     return (preds.next == null) ? b.mapParams(preds.args, s) : s;
   }
 
+  /**
+   * Record the allocations in the code for this Label whose objects can be stored on the stack, and
+   * the values that might refer to objects on the stack.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    b.findStackAllocs(vm, s);
+  }
+
   /** Generate code for this Label within an enclosing LLVM function definition. */
   llvm.Code toLLVMLabel(LLVMMap lm, VarMap vm, TempSubst s) {
     llvm.Code code = b.toLLVMBlock(lm, vm, s, succs);
@@ -67,6 +75,8 @@ class CodeLabel extends Label {
         for (PredNodes pns = preds.next.next; pns != null; pns = pns.next) {
           numpreds++;
         }
+        llvm.Local[] vs = new llvm.Local[params.length];
+        llvm.Phi[] phis = new llvm.Phi[params.length];
         for (int i = params.length; --i >= 0; ) {
           String[] blocks = new String[numpreds];
           llvm.Value[] values = new llvm.Value[numpreds];
@@ -75,7 +85,18 @@ class CodeLabel extends Label {
             blocks[--j] = ps.head.label();
             values[j] = ps.args[i].toLLVMAtom(lm, vm, s);
           }
-          code = new llvm.Op(vm.lookup(lm, params[i]), new llvm.Phi(blocks, values), code);
+          vs[i] = vm.lookup(lm, params[i]);
+          phis[i] = new llvm.Phi(blocks, values);
+        }
+        Temps args = null; // the arguments are dead once they have been copied by the phis
+        for (PredNodes ps = preds; ps != null; ps = ps.next) {
+          for (int i = 0; i < ps.args.length; i++) {
+            args = ps.args[i].apply(s).add(args);
+          }
+        }
+        code = vm.saveRoots(vs, vm.clearRoots(lm, args, code)); // only after all of the phis
+        for (int i = params.length; --i >= 0; ) {
+          code = new llvm.Op(vs[i], phis[i], code);
         }
       }
     }
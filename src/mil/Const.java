@@ -20,7 +20,7 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.math.BigInteger;
+import obdd.BitVector;
 
 public abstract class Const extends Atom {
 
@@ -68,21 +68,22 @@ public abstract class Const extends Atom {
   static Atom[] unit = new Atom[] {Top.Unit};
 
   /** Construct an array of Atoms that represents the bit vector with the given value and width. */
-  static Atom[] atoms(BigInteger v, int w) {
+  static Atom[] atoms(BitVector v, int w) {
     return atoms(v, w, false);
   }
 
-  static Atom[] atoms(BigInteger v, int w, boolean wantMask) {
+  static Atom[] atoms(BitVector v, int w, boolean wantMask) {
     if (w == 0) {
       return unit;
     } else if (w == 1) {
-      return new Flag[] {Flag.fromBool(v.compareTo(BigInteger.ZERO) != 0)};
+      return new Flag[] {Flag.fromBool(!v.isZero())};
     } else {
       Word[] as = new Word[Word.numWords(w)];
       int wordsize = Word.size();
       int i = 0; // index into array as (least significant word first)
+      int offset = 0; // offset of the next word within v
       while (w > 0) { // while there are still bits to write
-        long bits = Word.fromBig(v); // get least significant bits
+        long bits = Word.fromLong(v.extract(offset)); // get next least significant bits
         if ((w -= wordsize) < 0) { // truncate if necessary
           long m = (1L << (wordsize + w)) - 1;
           bits &= m;
@@ -91,7 +92,7 @@ public abstract class Const extends Atom {
           }
         }
         as[i++] = new Word(bits); // save word value
-        v = v.shiftRight(wordsize); // discard least significant bits
+        offset += wordsize; // move on to the next word
       }
       return as;
     }
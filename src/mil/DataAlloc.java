@@ -210,6 +210,9 @@ public class DataAlloc extends Allocator {
    * having already established that all of the components (if any) are statically known.
    */
   llvm.Value staticAlloc(LLVMMap lm, llvm.Program prog, llvm.Value[] vals) {
+    if (cf.isImmediate()) {
+      return cf.immediateValue(lm); // no object is needed for an immediate value
+    }
     vals[0] = new llvm.Word(cf.getNum()); // add tag at front of object
     return staticAlloc(prog, vals, lm.cfunLayoutType(cf), cf.dataPtrType(lm));
   }
@@ -226,21 +229,30 @@ public class DataAlloc extends Allocator {
   }
 
   /**
-   * Generate LLVM code to execute this Tail and return a result from the right hand side of a Bind.
-   * Set isTail to true if the code sequence c will immediately return the value in the specified
-   * lhs.
+   * Return an LLVM constant for the value produced by this Allocator if it is represented by an
+   * immediate value instead of a pointer to an object, or null otherwise.
    */
-  llvm.Code toLLVMBindCont(
-      LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Local lhs, llvm.Code c) {
-    llvm.Type objt = lm.cfunLayoutType(cf).ptr(); // type of a pointer to a cf object
-    llvm.Local obj = vm.reg(objt); // a register to point to the new object
-    return alloc(
-        lm,
-        vm,
-        s,
-        objt,
-        obj,
-        new llvm.Word(cf.getNum()),
-        new llvm.Op(lhs, new llvm.Bitcast(obj, cf.retType(lm)), c));
+  llvm.Expr immediateValue(LLVMMap lm) {
+    return cf.isImmediate() ? cf.immediateValue(lm) : null;
+  }
+
+  /** Return the LLVM type that describes the layout of an object built by this Allocator. */
+  llvm.Type layoutType(LLVMMap lm) {
+    return lm.cfunLayoutType(cf);
+  }
+
+  /** Return the value that is stored at the start of an object built by this Allocator. */
+  llvm.Value tagValue(LLVMMap lm) {
+    return new llvm.Word(cf.getNum());
+  }
+
+  /** Return the kind of TBAA metadata for the tag of an object built by this Allocator. */
+  String tagKind() {
+    return LLVMMap.TBAA_TAG;
+  }
+
+  /** Return the kind of TBAA metadata for the fields of an object built by this Allocator. */
+  String fieldKind() {
+    return LLVMMap.TBAA_FIELD;
   }
 }
@@ -94,6 +94,25 @@ public abstract class DataName extends Tycon {
     return false;
   }
 
+  /**
+   * Return true if the constructors of this type that have no fields are represented by immediate
+   * values in LLVM code. We only use immediate values for types with at most one constructor that
+   * has fields, so that a value that is not an immediate must be a pointer to an object built with
+   * that constructor, and a case can be implemented without reading a tag from memory.
+   */
+  boolean hasImmediates() {
+    if (!MILProgram.taggedPtrs || cfuns == null) {
+      return false;
+    }
+    int objs = 0; // count the constructors that build objects
+    for (int i = 0; i < cfuns.length; i++) {
+      if (cfuns[i].getAllocType().hasFields()) {
+        objs++;
+      }
+    }
+    return objs <= 1;
+  }
+
   Tycon specializeDataName(MILSpec spec, Type inst) {
     return canonTycon(spec);
   }
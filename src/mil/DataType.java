@@ -21,7 +21,7 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import obdd.BitVector;
 import obdd.MaskTestPat;
 import obdd.Pat;
 
@@ -344,8 +344,8 @@ public class DataType extends DataName {
           layouts[i] =
               (cf.getArity() == 0)
                   ? cf.makeLayout(
-                      m, br, BigInteger.valueOf(s), 0, null, q, new MaskTestPat(q, false))
-                  : cf.makeLayout(m, br, BigInteger.ZERO, 0, fpats, p, new MaskTestPat(p, true));
+                      m, br, BitVector.valueOf(s), 0, null, q, new MaskTestPat(q, false))
+                  : cf.makeLayout(m, br, BitVector.ZERO, 0, fpats, p, new MaskTestPat(p, true));
         }
         br.setCfuns(BitdataLayout.calcCfuns(layouts));
         br.setLayouts(layouts);
@@ -382,7 +382,7 @@ public class DataType extends DataName {
 
       BitdataLayout[] layouts = new BitdataLayout[cfuns.length];
       for (int i = 0; i < cfuns.length; i++) {
-        BigInteger tagbits = BigInteger.valueOf(i); // tag value
+        BitVector tagbits = BitVector.valueOf(i); // tag value
         Pat q = Pat.concat(pats[i]); // bit pattern for fields
         MaskTestPat mt;
         if (tagWidth > 0) {
@@ -445,16 +445,16 @@ public class DataType extends DataName {
       BitdataLayout[] layouts = new BitdataLayout[cfuns.length];
       for (int i = 0; i < cfuns.length; i++) {
         Cfun cf = cfuns[i];
-        BigInteger tagbits;
+        BitVector tagbits;
         Pat[] fpats;
         Pat q;
         if (cf.getArity() == 0) { // nullary constructor
-          tagbits = BigInteger.valueOf(nullaryTag << tagWidth); // tag value
+          tagbits = BitVector.valueOf(nullaryTag << tagWidth); // tag value
           fpats = null;
           q = Pat.intmod(width, tagbits, 0);
           nullaryTag++;
         } else { // non-nullary constructor
-          tagbits = BigInteger.valueOf(nonNullaryTag);
+          tagbits = BitVector.valueOf(nonNullaryTag);
           fpats = pats[i];
           q = Pat.concat(fpats);
           if (tagWidth > 0) {
@@ -634,6 +634,6 @@ public class DataType extends DataName {
       debug.Internal.error("DataType toLLVM arity mismatch");
       return llvm.Type.vd;
     }
-    return lm.dataPtrTypeCalc(c);
+    return lm.dataPtrTypeCalc(c, hasImmediates());
   }
 }
@@ -21,27 +21,72 @@ package mil;
 import compiler.*;
 import core.*;
 
+/**
+ * Represents a data or closure object in the bytecode interpreter. This base class is used for
+ * objects with no fields; subclasses provide specialized representations for objects with small
+ * numbers of fields, each of which is stored as a word and reference pair.
+ */
 class DataValue extends Value {
 
-  private int tag;
-
-  private Value[] fields;
+  protected int tag;
 
   /** Default constructor. */
-  DataValue(int tag, Value[] fields) {
+  DataValue(int tag) {
     this.tag = tag;
-    this.fields = fields;
   }
 
   public String toString() {
-    return "tag: " + tag + ", " + fields.length + " fields";
+    return "tag: " + tag + ", " + arity() + " fields";
+  }
+
+  /** Return the reference component of the machine representation for this value. */
+  Object refRep() {
+    return this;
   }
 
-  int getTag() throws Failure {
+  /** Return the tag for this object. */
+  int getTag() {
     return tag;
   }
 
-  Value getComponent(int i) throws Failure {
-    return fields[i];
+  /** Return the number of fields in this object. */
+  int arity() {
+    return 0;
+  }
+
+  /** Return the word component of the ith field of this object. */
+  long getWord(int i) {
+    throw new IndexOutOfBoundsException("field " + i);
+  }
+
+  /** Return the reference component of the ith field of this object. */
+  Object getRef(int i) {
+    throw new IndexOutOfBoundsException("field " + i);
+  }
+
+  /**
+   * Construct a new object with the given tag and n fields, taken from consecutive slots, starting
+   * at base, in the given word and reference stacks.
+   */
+  static DataValue make(int tag, int n, int base, long[] words, Object[] refs) {
+    switch (n) {
+      case 0:
+        return new DataValue(tag);
+      case 1:
+        return new DataValue1(tag, words[base], refs[base]);
+      case 2:
+        return new DataValue2(tag, words[base], refs[base], words[base + 1], refs[base + 1]);
+      case 3:
+        return new DataValue3(
+            tag,
+            words[base],
+            refs[base],
+            words[base + 1],
+            refs[base + 1],
+            words[base + 2],
+            refs[base + 2]);
+      default:
+        return new DataValueN(tag, n, base, words, refs);
+    }
   }
 }
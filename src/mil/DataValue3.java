@@ -0,0 +1,64 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+
+/** Represents a data or closure object with exactly three fields in the bytecode interpreter. */
+class DataValue3 extends DataValue {
+
+  private long w0;
+
+  private Object r0;
+
+  private long w1;
+
+  private Object r1;
+
+  private long w2;
+
+  private Object r2;
+
+  /** Default constructor. */
+  DataValue3(int tag, long w0, Object r0, long w1, Object r1, long w2, Object r2) {
+    super(tag);
+    this.w0 = w0;
+    this.r0 = r0;
+    this.w1 = w1;
+    this.r1 = r1;
+    this.w2 = w2;
+    this.r2 = r2;
+  }
+
+  /** Return the number of fields in this object. */
+  int arity() {
+    return 3;
+  }
+
+  /** Return the word component of the ith field of this object. */
+  long getWord(int i) {
+    return (i == 0) ? w0 : (i == 1) ? w1 : w2;
+  }
+
+  /** Return the reference component of the ith field of this object. */
+  Object getRef(int i) {
+    return (i == 0) ? r0 : (i == 1) ? r1 : r2;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+
+/** Represents a data or closure object with an arbitrary number of fields. */
+class DataValueN extends DataValue {
+
+  private long[] words;
+
+  private Object[] refs;
+
+  /**
+   * Construct a new object with the given tag and n fields, copied from consecutive slots, starting
+   * at base, in the given word and reference stacks.
+   */
+  DataValueN(int tag, int n, int base, long[] words, Object[] refs) {
+    super(tag);
+    this.words = new long[n];
+    this.refs = new Object[n];
+    for (int i = 0; i < n; i++) {
+      this.words[i] = words[base + i];
+      this.refs[i] = refs[base + i];
+    }
+  }
+
+  /** Return the number of fields in this object. */
+  int arity() {
+    return words.length;
+  }
+
+  /** Return the word component of the ith field of this object. */
+  long getWord(int i) {
+    return words[i];
+  }
+
+  /** Return the reference component of the ith field of this object. */
+  Object getRef(int i) {
+    return refs[i];
+  }
+}
@@ -37,6 +37,11 @@ public class DefAlt extends Alts {
     return bc.contains(w);
   }
 
+  /** Add the variables mentioned in these alternatives to the given list of variables. */
+  Temps add(Temps vs) {
+    return bc.add(vs);
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return bc.dependencies(ds);
@@ -94,6 +99,30 @@ public class DefAlt extends Alts {
     return bc.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this list of
+   * alternatives, using the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return bc.purity();
+  }
+
+  /**
+   * Test for code that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return bc.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this list of alternatives,
+   * using the results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return bc.escapesDone(v, local, s);
+  }
+
   /**
    * If all of the block calls in a Case are the same, including the default, then we can replace
    * the Case with a simple tail call. As a special case, it can also be used to eliminate Case
@@ -343,6 +343,32 @@ public abstract class Defn {
     return false;
   }
 
+  /** Reset the results of effect analysis for this definition ahead of an effectAnalysis(). */
+  void resetEffects() {
+    /* Nothing to do in this case */
+  }
+
+  /**
+   * Apply effect analysis to this definition, returning true if this results in a change from the
+   * previously computed values.
+   */
+  boolean effectAnalysis() {
+    return false;
+  }
+
+  /** Reset the results of escape analysis for this definition ahead of an escapeAnalysis(). */
+  void resetEscapes() {
+    /* Nothing to do in this case */
+  }
+
+  /**
+   * Apply escape analysis to this definition, returning true if this results in a change from the
+   * previously computed values.
+   */
+  boolean escapeAnalysis() {
+    return false;
+  }
+
   /** Perform pre-inlining cleanup on each Block in this SCC. */
   void cleanup() {
     /* Nothing to do here */
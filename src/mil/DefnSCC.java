@@ -183,6 +183,41 @@ public class DefnSCC {
     } while (changed);
   }
 
+  /**
+   * Compute the memory effects of each of the definitions in this SCC, and determine which of them
+   * are guaranteed to return. We start by assuming that every definition is pure, but that none of
+   * them will return, so recursive definitions, which might loop, are never found to return.
+   */
+  void effectAnalysis() {
+    for (Defns ds = getBindings(); ds != null; ds = ds.next) {
+      ds.head.resetEffects();
+    }
+    boolean changed = true;
+    do {
+      changed = false;
+      for (Defns ds = getBindings(); ds != null; ds = ds.next) {
+        changed |= ds.head.effectAnalysis();
+      }
+    } while (changed);
+  }
+
+  /**
+   * Calculate which parameters of each Block in this SCC might escape, starting from the
+   * assumption that none of them do, and iterating until we reach a fixed point.
+   */
+  void escapeAnalysis() {
+    for (Defns ds = getBindings(); ds != null; ds = ds.next) {
+      ds.head.resetEscapes();
+    }
+    boolean changed = true;
+    do {
+      changed = false;
+      for (Defns ds = getBindings(); ds != null; ds = ds.next) {
+        changed |= ds.head.escapeAnalysis();
+      }
+    } while (changed);
+  }
+
   /** Perform pre-inlining cleanup on each Block in this SCC. */
   void cleanup() {
     for (Defns ds = getBindings(); ds != null; ds = ds.next) {
@@ -38,6 +38,14 @@ public class Done extends Code {
     return t.contains(w);
   }
 
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows.
+   */
+  Temps liveVars(VarMap vm) {
+    return t.add(null);
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return t.dependencies(ds);
@@ -120,6 +128,30 @@ public class Done extends Code {
     return t.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return t.purity();
+  }
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return t.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence, using the
+   * results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return t.escapesDone(v, local, s);
+  }
+
   /**
    * Test whether a given Code/Tail has the form return vs, with the specified Temp[] vs as its
    * argument list.
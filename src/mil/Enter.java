@@ -53,6 +53,24 @@ public class Enter extends Call {
     return f.occursIn(ws) || super.contains(ws);
   }
 
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed on the
+   * right hand side of a Bind. The code for a closure only reads the stored fields of the closure
+   * object, so v can only escape if it is also passed as an argument.
+   */
+  boolean escapes(Temp v) {
+    return v.occursIn(args);
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed in tail
+   * position. A closure that was allocated in the current function cannot be entered with a tail
+   * call because its memory will be reused by the callee.
+   */
+  boolean escapesDone(Temp v, boolean local, TempSubst s) {
+    return local ? contains(v) : escapes(v);
+  }
+
   /** Add the variables mentioned in this tail to the given list of variables. */
   Temps add(Temps vs) {
     return f.add(super.add(vs));
@@ -260,7 +278,9 @@ public class Enter extends Call {
   llvm.Code toLLVMBindVoid(LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Code c) {
     llvm.Value[] acts = closureActuals(lm, vm, s); // actual parameters
     llvm.Local cptr = vm.reg(lm.toLLVM(ftype)); // a register to hold the code pointer
-    return enterCode(vm, acts[0], cptr, new llvm.CallVoid(isTail, cptr, acts, c));
+    int mods = vm.callMods(isTail, ClosureDefn.callConv, lm.codeType(ftype));
+    return enterCode(
+        lm, vm, acts[0], vm.onStack(f, s), cptr, new llvm.CallVoid(mods, cptr, acts, c));
   }
 
   /**
@@ -272,11 +292,14 @@ public class Enter extends Call {
       LLVMMap lm, VarMap vm, TempSubst s, boolean isTail, llvm.Local lhs, llvm.Code c) {
     llvm.Value[] acts = closureActuals(lm, vm, s); // actual parameters
     llvm.Local cptr = vm.reg(lm.codePtrType(ftype)); // a register to hold the code pointer
+    int mods = vm.callMods(isTail, ClosureDefn.callConv, lm.codeType(ftype));
     return enterCode(
+        lm,
         vm,
         acts[0],
+        vm.onStack(f, s),
         cptr,
-        new llvm.Op(lhs, new llvm.Call(isTail, ftype.retType(lm), cptr, acts), c));
+        new llvm.Op(lhs, new llvm.Call(mods, ftype.retType(lm), cptr, acts), c));
   }
 
   llvm.Value[] closureActuals(LLVMMap lm, VarMap vm, TempSubst s) {
@@ -289,7 +312,8 @@ public class Enter extends Call {
     return acts;
   }
 
-  llvm.Code enterCode(VarMap vm, llvm.Value clo, llvm.Local cptr, llvm.Code c) {
+  llvm.Code enterCode(
+      LLVMMap lm, VarMap vm, llvm.Value clo, boolean onStack, llvm.Local cptr, llvm.Code c) {
     // TODO: this method doesn't really belong in Enter because it doesn't use any Enter fields or
     // methods ...
     // We are generating code for a closure entry  f @ as  where f :: dom ->> rng for some tuples of
@@ -298,6 +322,7 @@ public class Enter extends Call {
     // represented by a value of type %t.layout*, where:
     //     type %t.layout = { %t.entry* }     -- layout of a generic dom ->> rng closure in memory
     //     type %t.entry  = rng' (%t.layout*, dom')  -- rng' and dom' corresponding to rng and dom
+    // The onStack flag should be set if the closure might be stored on the stack.
     llvm.Type ct = cptr.getType().ptr();
     llvm.Local cptrptr =
         vm.reg(ct); // a register to hold the address where the code pointer is stored
@@ -307,7 +332,11 @@ public class Enter extends Call {
             ct, clo, llvm.Word.ZERO, llvm.Index.ZERO), // 0th field of 0th closure
         new llvm.Op(
             cptr,
-            new llvm.Load(cptrptr), // load function address
+            new llvm.Load( // load function address
+                cptrptr,
+                onStack
+                    ? lm.stackLoad(LLVMMap.TBAA_CLOSURE, cptr.getType())
+                    : lm.immutableLoad(LLVMMap.TBAA_CLOSURE, cptr.getType())),
             c));
   }
 }
@@ -30,6 +30,11 @@ public class FailAlt extends Alts {
     return false;
   }
 
+  /** Add the variables mentioned in these alternatives to the given list of variables. */
+  Temps add(Temps vs) {
+    return vs;
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return ds;
@@ -84,6 +89,31 @@ public class FailAlt extends Alts {
     return true;
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this list of
+   * alternatives, using the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Prim.PURE;
+  }
+
+  /**
+   * Test for code that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    // No code is generated for a FailAlt, so it cannot prevent a Case from returning:
+    return true;
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this list of alternatives,
+   * using the results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return false;
+  }
+
   /**
    * If all of the block calls in a Case are the same, including the default, then we can replace
    * the Case with a simple tail call. As a special case, it can also be used to eliminate Case
@@ -24,6 +24,7 @@ import java.io.PrintWriter;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.TreeSet;
+import obdd.BitVector;
 import obdd.Pat;
 
 /**
@@ -349,7 +350,8 @@ public class GenImp extends ExtImp {
             BigInteger v = ts[0].validNat(); // Value of literal
             int w = ts[1].validWidth(); // Width of bit vector
             Type.validBelow(v, BigInteger.ONE.shiftLeft(w)); // v < 2 ^ w
-            return new Return(Const.atoms(v, w)).constClosure(pos, Tycon.unitRep);
+            return new Return(Const.atoms(BitVector.valueOf(v), w))
+                .constClosure(pos, Tycon.unitRep);
           }
         });
 
@@ -20,7 +20,10 @@ package mil;
 
 import compiler.*;
 import core.*;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 /**
@@ -51,6 +54,30 @@ public class HashAddrMap extends AddrMap {
     return (s != null) ? s : super.codeLabel(addr);
   }
 
+  /** Return true if there is a code label for the given address. */
+  boolean hasCodeLabel(int addr) {
+    return addr >= 0 && map.containsKey(addr);
+  }
+
+  /** Write the entries in this address map to a program image. */
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(map.size());
+    for (Integer n : map.keySet()) {
+      out.writeInt(n.intValue());
+      MachineImage.writeString(out, map.get(n));
+    }
+  }
+
+  /** Read an address map from a program image, as written by the write method. */
+  static HashAddrMap read(ByteBuffer in) {
+    HashAddrMap addrMap = new HashAddrMap();
+    for (int n = in.getInt(); n > 0; n--) {
+      int addr = in.getInt();
+      addrMap.map.put(addr, MachineImage.readString(in));
+    }
+    return addrMap;
+  }
+
   void dump(PrintWriter out) {
     out.println("Global symbols: ------");
     for (Integer n : map.keySet()) {
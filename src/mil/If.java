@@ -49,6 +49,14 @@ public class If extends Code {
     return a == w || ifTrue.contains(w) || ifFalse.contains(w);
   }
 
+  /**
+   * Return the list of variables that are live at the start of this code sequence, using
+   * vm.liveIn() to find (and cache) the live variables for any code that follows.
+   */
+  Temps liveVars(VarMap vm) {
+    return a.add(ifTrue.add(ifFalse.add(null)));
+  }
+
   /** Find the dependencies of this AST fragment. */
   Defns dependencies(Defns ds) {
     return a.dependencies(ifFalse.dependencies(ifTrue.dependencies(ds)));
@@ -142,6 +150,30 @@ public class If extends Code {
     return ifTrue.doesntReturn() && ifFalse.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this code, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Math.max(a.purity(), Math.max(ifTrue.purity(), ifFalse.purity()));
+  }
+
+  /**
+   * Test for code that is guaranteed to return (i.e., that cannot loop or fail to terminate), using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return ifTrue.willReturn() && ifFalse.willReturn();
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape from this code sequence, using the
+   * results of a previous escapeAnalysis() for any blocks that it calls.
+   */
+  boolean escapes(Temp v, boolean local, TempSubst s) {
+    return ifTrue.escapesDone(v, local, s) || ifFalse.escapesDone(v, local, s);
+  }
+
   /**
    * Return a possibly shortened version of this code sequence by applying some simple
    * transformations. The src Block is passed as an argument for use in reporting any optimizations
@@ -59,13 +59,40 @@ class InitCFG extends CFG {
     return new llvm.Local[0];
   }
 
+  /**
+   * Return the modifiers, including linkage and calling convention, for the associated LLVM
+   * function definition. The initialization function is called from C, so it uses the default
+   * calling convention.
+   */
+  int funcMods() {
+    return llvm.Mods.NONE;
+  }
+
+  /** Return the attributes for the associated LLVM function definition. */
+  int funcAttrs() {
+    return llvm.Attrs.NOUNWIND;
+  }
+
+  /** Return the LLVM type of the value that is returned by the associated function definition. */
+  llvm.Type retType(LLVMMap lm) {
+    return b.retType(lm);
+  }
+
   /**
    * Helper function for constructing a function definition with the given formal parameters and
    * code by dispatching on the associated MIL Defn to collect additional details.
    */
   llvm.FuncDefn toLLVMFuncDefn(LLVMMap lm, llvm.Local[] formals, String[] ss, llvm.Code[] cs) {
-    cs[0] = llvm.Code.reverseOnto(edoc, new llvm.Goto(succs[0].label()));
+    cs[0] = ivm.frame(lm, formals, llvm.Code.reverseOnto(edoc, new llvm.Goto(succs[0].label())));
     return new llvm.FuncDefn(
-        llvm.Mods.NONE, b.retType(lm), llvm.FuncDefn.mainFunctionName, formals, ss, cs);
+        funcMods(),
+        funcAttrs() | ivm.gcAttrs(),
+        retType(lm),
+        llvm.Attrs.NONE,
+        llvm.FuncDefn.mainFunctionName,
+        formals,
+        lm.valueAttrs(formals),
+        ss,
+        cs);
   }
 }
@@ -0,0 +1,959 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+/**
+ * Translates the bytecode in a Machine into JVM bytecode for a hidden class, avoiding the dispatch
+ * overhead of the Machine.exec interpreter loop.
+ *
+ * <p>The program is partitioned into regions, each of which is translated into a single static
+ * method. Every region has a single entry point; the initial entry points are the start address,
+ * the targets of CALL instructions, and the code addresses of closures. A region includes every
+ * instruction that can be reached from its entry by falling through or by a local jump, except that
+ * an instruction that would be shared between regions, or that would make a region too large for
+ * the JVM to compile efficiently, is made the entry of a new region. As a result, each instruction
+ * is translated exactly once.
+ *
+ * <p>Each region method takes the machine, the frame pointer, and the value register as arguments.
+ * Frame slots are accessed as words[fp+i] and refs[fp+i] with fp held in a JVM local, so every
+ * access uses a constant offset. A CALL is translated into a direct invocation of the target's
+ * method. A region method returns RETURNED when it executes a RETURN, STOPPED for a STOP, or else
+ * the address of the next region to run in the same frame (for a tail jump out of the region, or a
+ * CJUMP). In the latter case, the run method acts as a trampoline, using the dispatch method to
+ * find the code for the next region, so that chains of tail calls do not consume JVM stack space.
+ * The value register is passed between regions using the jitWord and jitRef fields of the Machine.
+ *
+ * <p>Common primitives are inlined directly as JVM instructions. Other primitives are called via
+ * static final fields of the generated class, which allows the JVM to inline their exec methods.
+ */
+class Jit {
+
+  /** Result code for a region that executes RETURN. */
+  static final int RETURNED = -1;
+
+  /** Result code for a region that executes STOP. */
+  static final int STOPPED = -2;
+
+  /** Result code for a jump to an address that does not have a translation. */
+  static final int NOCODE = -3;
+
+  /** Upper bound on the estimated size (in bytes of JVM bytecode) of a single region method. */
+  private static final int REGION_LIMIT = 6000;
+
+  /** Maximum number of cases in a single dispatch method. */
+  private static final int DISPATCH_CHUNK = 2000;
+
+  private static final String MACHINE = "mil/Machine";
+
+  private static final String DATAVALUE = "mil/DataValue";
+
+  private static final String PRIM = "mil/Prim";
+
+  /** Descriptor for region methods: (machine, fp, wval, rval) -> result. */
+  private static final String REGION_DESC = "(Lmil/Machine;IJLjava/lang/Object;)I";
+
+  /** Descriptor for the run and dispatch methods: (machine, pc, fp, wval, rval) -> result. */
+  private static final String RUN_DESC = "(Lmil/Machine;IIJLjava/lang/Object;)I";
+
+  // JVM local variable numbers in region methods:
+
+  private static final int L_M = 0;
+
+  private static final int L_FP = 1;
+
+  private static final int L_W = 2; // long, occupies 2 and 3
+
+  private static final int L_R = 4;
+
+  private static final int L_WORDS = 5;
+
+  private static final int L_REFS = 6;
+
+  private static final int L_GWORDS = 7;
+
+  private static final int L_GREFS = 8;
+
+  private static final int L_TMP = 9;
+
+  private static final int L_D = 10;
+
+  private static final int MAX_LOCALS = 11;
+
+  private static final int MAX_STACK = 10;
+
+  private Machine m;
+
+  private int[] prog;
+
+  private int nextAddr;
+
+  /** Flags to identify the addresses of instruction starts in prog. */
+  private boolean[] start;
+
+  /** Flags to identify the entry points for regions. */
+  private boolean[] entry;
+
+  /** For each instruction, the entry point of the region that contains it (or -1 if none). */
+  private int[] owner;
+
+  /** The class file that is being generated. */
+  private JvmClassFile cf;
+
+  /** Records the primitives that are called from generated code via static fields. */
+  private HashMap<Integer, Prim> prims = new HashMap<Integer, Prim>();
+
+  /** Default constructor. */
+  private Jit(Machine m) {
+    this.m = m;
+    this.prog = m.prog;
+    this.nextAddr = m.nextAddr;
+  }
+
+  /**
+   * Translate the program in the given machine into JVM bytecode, returning a handle for a method
+   * (Machine, int pc, int fp, long wval, Object rval) -> int that will run the code from the given
+   * starting address.
+   */
+  static MethodHandle compile(Machine m, int pc) throws Failure {
+    Jit jit = new Jit(m);
+    jit.findEntries(pc);
+    jit.partition();
+    byte[] bytes = jit.generate();
+    try {
+      MethodHandles.Lookup lookup = defineHiddenClass(bytes);
+      return lookup.findStatic(
+          lookup.lookupClass(),
+          "run",
+          MethodType.methodType(
+              int.class, Machine.class, int.class, int.class, long.class, Object.class));
+    } catch (IllegalAccessException e) {
+      throw new Failure("Unable to access generated code: " + e.getMessage());
+    } catch (NoSuchMethodException e) {
+      throw new Failure("Unable to find generated code: " + e.getMessage());
+    } catch (LinkageError e) {
+      throw new Failure("Unable to load generated code: " + e);
+    }
+  }
+
+  /**
+   * Load the given class file as a hidden class in this package, returning a lookup for the new
+   * class. Lookup.defineHiddenClass was added in Java 15, so it is called by reflection to allow
+   * the rest of mil-tools to be compiled and used with earlier versions; with those versions, a
+   * Failure is reported, and callers fall back to the interpreter.
+   */
+  private static MethodHandles.Lookup defineHiddenClass(byte[] bytes) throws Failure {
+    Method define;
+    Object options;
+    try {
+      Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      options = Array.newInstance(option, 0);
+      define =
+          MethodHandles.Lookup.class.getMethod(
+              "defineHiddenClass", byte[].class, boolean.class, options.getClass());
+    } catch (ClassNotFoundException e) {
+      throw new Failure("JIT translation requires Java 15 or later");
+    } catch (NoSuchMethodException e) {
+      throw new Failure("JIT translation requires Java 15 or later");
+    }
+    try {
+      return (MethodHandles.Lookup) define.invoke(MethodHandles.lookup(), bytes, true, options);
+    } catch (IllegalAccessException e) {
+      throw new Failure("Unable to load generated code: " + e.getMessage());
+    } catch (InvocationTargetException e) {
+      throw new Failure("Unable to load generated code: " + e.getCause());
+    }
+  }
+
+  /**
+   * Find the instruction starts in the program and the initial set of region entry points: the
+   * starting address, the targets of calls, and the code addresses of any closures that might be
+   * constructed by ALLOC instructions or that appear in the initial values of globals.
+   */
+  private void findEntries(int pc) throws Failure {
+    start = new boolean[nextAddr + 1];
+    entry = new boolean[nextAddr + 1];
+    for (int a = 0; a < nextAddr; a += m.instrLength(a)) {
+      start[a] = true;
+    }
+    if (pc < 0 || pc >= nextAddr || !start[pc]) {
+      throw new Failure("Invalid starting address " + pc);
+    }
+    entry[pc] = true;
+    for (int a = 0; a < nextAddr; a += m.instrLength(a)) {
+      switch (prog[a]) {
+        case Machine.CALL:
+          addEntry(prog[a + 2]);
+          break;
+
+        case Machine.ALLOC:
+        case Machine.ALLOCST:
+          addEntry(prog[a + 1]);
+          break;
+      }
+    }
+    for (int i = 0; i < m.numGlobals; i++) {
+      Value v = m.globals[i];
+      if (v != null && v.refRep() instanceof DataValue) {
+        addClosureEntries((DataValue) v.refRep(), 8);
+      }
+    }
+  }
+
+  /** Mark the given address as a region entry point, if it is the start of an instruction. */
+  private void addEntry(int addr) {
+    if (addr >= 0 && addr < nextAddr && start[addr]) {
+      entry[addr] = true;
+    }
+  }
+
+  /** Add entry points for any possible closure code addresses in a (bounded depth) data value. */
+  private void addClosureEntries(DataValue d, int depth) {
+    addEntry(d.getTag());
+    if (depth > 0) {
+      for (int i = 0; i < d.arity(); i++) {
+        if (d.getRef(i) instanceof DataValue) {
+          addClosureEntries((DataValue) d.getRef(i), depth - 1);
+        }
+      }
+    }
+  }
+
+  /** Return an estimate of the number of bytes of JVM bytecode needed for an instruction. */
+  private int estimate(int pc) {
+    return 12 * m.instrLength(pc) + 12;
+  }
+
+  /**
+   * Partition the program into regions, adding new entry points as necessary until every
+   * instruction that is reachable from an entry point belongs to exactly one region.
+   */
+  private void partition() {
+    int[] work = new int[nextAddr + 1];
+    boolean changed;
+    do {
+      changed = false;
+      owner = new int[nextAddr + 1];
+      for (int a = 0; a <= nextAddr; a++) {
+        owner[a] = (-1);
+      }
+      for (int e = 0; e < nextAddr; e++) {
+        if (!entry[e]) {
+          continue;
+        }
+        owner[e] = e;
+        int size = estimate(e);
+        int sp = 0;
+        work[sp++] = e;
+        while (sp > 0) {
+          int pc = work[--sp];
+          int[] succs = successors(pc);
+          for (int i = 0; i < succs.length; i++) {
+            int s = succs[i];
+            if (s < 0 || s >= nextAddr || !start[s] || owner[s] == e || entry[s]) {
+              continue; // nothing to do (or an invalid target, which is caught at runtime)
+            } else if (owner[s] < 0 && size + estimate(s) <= REGION_LIMIT) {
+              owner[s] = e;
+              size += estimate(s);
+              work[sp++] = s;
+            } else {
+              entry[s] = true; // shared with another region, or region is too large
+              changed = true;
+            }
+          }
+        }
+      }
+    } while (changed);
+  }
+
+  private static final int[] noSuccs = new int[0];
+
+  /** Return the addresses of the instructions that can be executed next within a region. */
+  private int[] successors(int pc) {
+    switch (prog[pc]) {
+      case Machine.STOP:
+      case Machine.RETURN:
+      case Machine.CJUMP:
+        return noSuccs;
+
+      case Machine.JUMP:
+        return new int[] {prog[pc + 1]};
+
+      case Machine.JFALSE:
+        return new int[] {pc + 2, prog[pc + 1]};
+
+      case Machine.JNTAG:
+        return new int[] {pc + 3, prog[pc + 2]};
+
+      case Machine.PRIMJF:
+        return new int[] {pc + 7, prog[pc + 4]};
+
+      default:
+        return new int[] {pc + m.instrLength(pc)};
+    }
+  }
+
+  private static String regionName(int e) {
+    return "f" + e;
+  }
+
+  /** Generate the complete class file for the translated program. */
+  private byte[] generate() throws Failure {
+    cf = new JvmClassFile("mil/JitCode");
+    int numEntries = 0;
+    for (int e = 0; e < nextAddr; e++) {
+      if (entry[e]) {
+        cf.addMethod(
+            JvmClassFile.ACC_STATIC, regionName(e), REGION_DESC, new Region(e).translate());
+        numEntries++;
+      }
+    }
+    int[] entries = new int[numEntries];
+    for (int e = 0, i = 0; e < nextAddr; e++) {
+      if (entry[e]) {
+        entries[i++] = e;
+      }
+    }
+    generateDispatch(entries);
+    generateRun();
+    generateStaticInit();
+    return cf.toBytes();
+  }
+
+  /**
+   * Generate the dispatch methods, each of which uses a lookupswitch to invoke the region method
+   * for a given address. For large programs, the entries are split across multiple dispatch
+   * methods, each of which calls the next if the address is not one of its own.
+   */
+  private void generateDispatch(int[] entries) throws Failure {
+    int numChunks = (entries.length + DISPATCH_CHUNK - 1) / DISPATCH_CHUNK;
+    for (int c = 0; c < numChunks || c == 0; c++) {
+      int lo = c * DISPATCH_CHUNK;
+      int hi = Math.min(lo + DISPATCH_CHUNK, entries.length);
+      JvmCode code = new JvmCode(cf, MAX_STACK, 6);
+      int[] keys = new int[hi - lo];
+      JvmCode.Label[] targets = new JvmCode.Label[hi - lo];
+      for (int i = lo; i < hi; i++) {
+        keys[i - lo] = entries[i];
+        targets[i - lo] = new JvmCode.Label();
+      }
+      JvmCode.Label dflt = new JvmCode.Label();
+      code.iload(1);
+      code.lookupswitch(keys, targets, dflt);
+      for (int i = 0; i < keys.length; i++) {
+        code.bind(targets[i]);
+        code.aload(0);
+        code.iload(2);
+        code.lload(3);
+        code.aload(5);
+        code.invokestatic(cf.getName(), regionName(keys[i]), REGION_DESC);
+        code.op(JvmCode.IRETURN);
+      }
+      code.bind(dflt);
+      if (c + 1 < numChunks) { // try the next dispatch method
+        code.aload(0);
+        code.iload(1);
+        code.iload(2);
+        code.lload(3);
+        code.aload(5);
+        code.invokestatic(cf.getName(), "dispatch" + (c + 1), RUN_DESC);
+        code.op(JvmCode.IRETURN);
+      } else { // record the address that has no code
+        code.aload(0);
+        code.iload(1);
+        code.putfield(MACHINE, "jitPc", "I");
+        code.iconst(NOCODE);
+        code.op(JvmCode.IRETURN);
+      }
+      cf.addMethod(JvmClassFile.ACC_STATIC, "dispatch" + c, RUN_DESC, code);
+    }
+  }
+
+  /**
+   * Generate the run method, which executes code from a given address, continuing with the next
+   * region each time that a region method exits with a tail jump.
+   */
+  private void generateRun() throws Failure {
+    JvmCode code = new JvmCode(cf, MAX_STACK, 6);
+    JvmCode.Label loop = new JvmCode.Label();
+    JvmCode.Label done = new JvmCode.Label();
+    code.bind(loop);
+    code.aload(0);
+    code.iload(1);
+    code.iload(2);
+    code.lload(3);
+    code.aload(5);
+    code.invokestatic(cf.getName(), "dispatch0", RUN_DESC);
+    code.istore(1);
+    code.iload(1);
+    code.branch(JvmCode.IFLT, done);
+    code.aload(0);
+    code.getfield(MACHINE, "jitWord", "J");
+    code.lstore(3);
+    code.aload(0);
+    code.getfield(MACHINE, "jitRef", "Ljava/lang/Object;");
+    code.astore(5);
+    code.branch(JvmCode.GOTO, loop);
+    code.bind(done);
+    code.iload(1);
+    code.op(JvmCode.IRETURN);
+    cf.addMethod(JvmClassFile.ACC_STATIC | JvmClassFile.ACC_PUBLIC, "run", RUN_DESC, code);
+  }
+
+  private static String primField(int p) {
+    return "p" + p;
+  }
+
+  /**
+   * Generate the static initializer for the class, which sets the static final fields that hold
+   * the primitives used in the generated code.
+   */
+  private void generateStaticInit() throws Failure {
+    JvmCode code = new JvmCode(cf, MAX_STACK, 0);
+    for (Integer p : prims.keySet()) {
+      cf.addField(
+          JvmClassFile.ACC_STATIC | JvmClassFile.ACC_FINAL, primField(p), "Lmil/Prim;");
+      code.iconst(p);
+      code.invokestatic(PRIM, "primAt", "(I)Lmil/Prim;");
+      code.putstatic(cf.getName(), primField(p), "Lmil/Prim;");
+    }
+    code.op(JvmCode.RETURN);
+    cf.addMethod(JvmClassFile.ACC_STATIC, "<clinit>", "()V", code);
+  }
+
+  /** Generates the code for a single region. */
+  private class Region {
+
+    /** The entry point for this region. */
+    private int e;
+
+    private JvmCode code = new JvmCode(cf, MAX_STACK, MAX_LOCALS);
+
+    /** Labels for the instructions in this region, indexed by address. */
+    private HashMap<Integer, JvmCode.Label> labels = new HashMap<Integer, JvmCode.Label>();
+
+    /** Labels for exits to other regions, indexed by target address. */
+    private HashMap<Integer, JvmCode.Label> exits = new HashMap<Integer, JvmCode.Label>();
+
+    /** Label for code that returns the result code in L_TMP. */
+    private JvmCode.Label propagate = null;
+
+    /** Default constructor. */
+    private Region(int e) {
+      this.e = e;
+    }
+
+    /** Return the label for a jump to the given address. */
+    private JvmCode.Label target(int addr) {
+      HashMap<Integer, JvmCode.Label> map =
+          (addr >= 0 && addr < nextAddr && owner[addr] == e) ? labels : exits;
+      JvmCode.Label l = map.get(addr);
+      if (l == null) {
+        l = new JvmCode.Label();
+        map.put(addr, l);
+      }
+      return l;
+    }
+
+    /** Generate the code for this region. */
+    JvmCode translate() throws Failure {
+      // Load machine state into locals:
+      reloadStacks();
+      code.aload(L_M);
+      code.getfield(MACHINE, "gwords", "[J");
+      code.astore(L_GWORDS);
+      code.aload(L_M);
+      code.getfield(MACHINE, "grefs", "[Ljava/lang/Object;");
+      code.astore(L_GREFS);
+
+      // Translate instructions in address order, starting with the entry:
+      int expected = e;
+      for (int pc = e; pc < nextAddr; pc += m.instrLength(pc)) {
+        if (owner[pc] == e) {
+          if (expected >= 0 && pc != expected) {
+            code.branch(JvmCode.GOTO, target(expected));
+          }
+          code.bind(target(pc));
+          expected = instr(pc);
+        }
+      }
+      for (int pc = 0; pc < e; pc += m.instrLength(pc)) {
+        if (owner[pc] == e) {
+          if (expected >= 0 && pc != expected) {
+            code.branch(JvmCode.GOTO, target(expected));
+          }
+          code.bind(target(pc));
+          expected = instr(pc);
+        }
+      }
+      if (expected >= 0) {
+        code.branch(JvmCode.GOTO, target(expected));
+      }
+
+      // Add code for exits from this region:
+      for (Integer addr : exits.keySet()) {
+        code.bind(exits.get(addr));
+        saveRegister();
+        code.iconst(addr);
+        code.op(JvmCode.IRETURN);
+      }
+      if (propagate != null) {
+        code.bind(propagate);
+        code.iload(L_TMP);
+        code.op(JvmCode.IRETURN);
+      }
+      return code;
+    }
+
+    /**
+     * Generate code for the instruction at the given address, returning the address of the
+     * instruction that should be executed next, or -1 if control does not fall through.
+     */
+    private int instr(int pc) {
+      switch (prog[pc]) {
+        case Machine.STOP:
+          code.iconst(STOPPED);
+          code.op(JvmCode.IRETURN);
+          return (-1);
+
+        case Machine.JUMP:
+          code.branch(JvmCode.GOTO, target(prog[pc + 1]));
+          return (-1);
+
+        case Machine.JFALSE:
+          jfalse(prog[pc + 1]);
+          return pc + 2;
+
+        case Machine.JNTAG:
+          loadTag();
+          code.iconst(prog[pc + 1]);
+          code.branch(JvmCode.IF_ICMPNE, target(prog[pc + 2]));
+          return pc + 3;
+
+        case Machine.CALL:
+          ensureFrame(prog[pc + 1]);
+          code.aload(L_M);
+          slot(prog[pc + 1]);
+          code.lload(L_W);
+          code.aload(L_R);
+          code.invokestatic(cf.getName(), regionName(prog[pc + 2]), REGION_DESC);
+          code.istore(L_TMP);
+          {
+            JvmCode.Label ret = new JvmCode.Label();
+            code.iload(L_TMP);
+            code.branch(JvmCode.IFLT, ret);
+            code.aload(L_M);
+            code.iload(L_TMP);
+            slot(prog[pc + 1]);
+            code.aload(L_M);
+            code.getfield(MACHINE, "jitWord", "J");
+            code.aload(L_M);
+            code.getfield(MACHINE, "jitRef", "Ljava/lang/Object;");
+            code.invokestatic(cf.getName(), "run", RUN_DESC);
+            code.istore(L_TMP);
+            code.bind(ret);
+          }
+          checkReturned();
+          reloadStacks();
+          return pc + 3;
+
+        case Machine.RETURN:
+          code.iconst(RETURNED);
+          code.op(JvmCode.IRETURN);
+          return (-1);
+
+        case Machine.CJUMP:
+          saveRegister();
+          loadTag();
+          code.op(JvmCode.IRETURN);
+          return (-1);
+
+        case Machine.CCALL:
+          ensureFrame(prog[pc + 1]);
+          code.aload(L_M);
+          loadTag();
+          slot(prog[pc + 1]);
+          code.lload(L_W);
+          code.aload(L_R);
+          code.invokestatic(cf.getName(), "run", RUN_DESC);
+          code.istore(L_TMP);
+          checkReturned();
+          reloadStacks();
+          return pc + 2;
+
+        case Machine.PRIM:
+          prim(prog[pc + 1], prog[pc + 2]);
+          return pc + 3;
+
+        case Machine.LOAD:
+          load(prog[pc + 1]);
+          return pc + 2;
+
+        case Machine.GLOAD:
+          code.aload(L_GWORDS);
+          code.iconst(prog[pc + 1]);
+          code.op(JvmCode.LALOAD);
+          code.lstore(L_W);
+          code.aload(L_GREFS);
+          code.iconst(prog[pc + 1]);
+          code.op(JvmCode.AALOAD);
+          code.astore(L_R);
+          return pc + 2;
+
+        case Machine.STORE:
+          store(prog[pc + 1]);
+          return pc + 2;
+
+        case Machine.COPY:
+          copy(prog[pc + 1], prog[pc + 2]);
+          return pc + 3;
+
+        case Machine.GCOPY:
+          code.aload(L_WORDS);
+          slot(prog[pc + 2]);
+          code.aload(L_GWORDS);
+          code.iconst(prog[pc + 1]);
+          code.op(JvmCode.LALOAD);
+          code.op(JvmCode.LASTORE);
+          code.aload(L_REFS);
+          slot(prog[pc + 2]);
+          code.aload(L_GREFS);
+          code.iconst(prog[pc + 1]);
+          code.op(JvmCode.AALOAD);
+          code.op(JvmCode.AASTORE);
+          return pc + 3;
+
+        case Machine.GSAVE:
+          code.aload(L_M);
+          slot(prog[pc + 1]);
+          code.iconst(prog[pc + 2]);
+          code.invokevirtual(MACHINE, "saveGlobal", "(II)V");
+          return pc + 3;
+
+        case Machine.ALLOC:
+          alloc(prog[pc + 1], prog[pc + 2], prog[pc + 3]);
+          return pc + 4;
+
+        case Machine.SEL:
+          sel(prog[pc + 1], prog[pc + 2]);
+          return pc + 3;
+
+        case Machine.PRIMJF:
+          prim(prog[pc + 1], prog[pc + 2]);
+          load(prog[pc + 3]);
+          jfalse(prog[pc + 4]);
+          return pc + 7;
+
+        case Machine.WCONST:
+          code.aload(L_WORDS);
+          slot(prog[pc + 2]);
+          code.lconst(prog[pc + 1]);
+          code.op(JvmCode.LASTORE);
+          code.aload(L_REFS);
+          slot(prog[pc + 2]);
+          code.op(JvmCode.ACONST_NULL);
+          code.op(JvmCode.AASTORE);
+          return pc + 3;
+
+        case Machine.LDSEL:
+          load(prog[pc + 1]);
+          sel(prog[pc + 2], prog[pc + 3]);
+          return pc + 5;
+
+        case Machine.SELS:
+          load(prog[pc + 2]);
+          for (int k = prog[pc + 3], j = pc + 4; k > 0; k--, j += 2) {
+            sel(prog[j], prog[j + 1]);
+          }
+          return pc + prog[pc + 1];
+
+        case Machine.COPYN:
+          for (int k = prog[pc + 1], j = pc + 2; k > 0; k--, j += 2) {
+            copy(prog[j], prog[j + 1]);
+          }
+          return pc + 3 * prog[pc + 1];
+
+        case Machine.LDST:
+          load(prog[pc + 1]);
+          store(prog[pc + 2]);
+          return pc + 4;
+
+        case Machine.ALLOCST:
+          alloc(prog[pc + 1], prog[pc + 2], prog[pc + 3]);
+          store(prog[pc + 4]);
+          return pc + 6;
+      }
+      debug.Internal.error("Unrecognized opcode " + prog[pc] + " at address " + pc);
+      return (-1);
+    }
+
+    /** Ensure that there is space on the stacks for a new frame starting at slot o. */
+    private void ensureFrame(int o) {
+      code.aload(L_M);
+      slot(o);
+      code.invokevirtual(MACHINE, "ensureFrame", "(I)V");
+    }
+
+    /**
+     * Load the current word and reference stacks into locals; this is required on entry and after
+     * each call because the stacks may be replaced by larger arrays when a new frame is created.
+     */
+    private void reloadStacks() {
+      code.aload(L_M);
+      code.getfield(MACHINE, "words", "[J");
+      code.astore(L_WORDS);
+      code.aload(L_M);
+      code.getfield(MACHINE, "refs", "[Ljava/lang/Object;");
+      code.astore(L_REFS);
+    }
+
+    /** Push the index of frame slot i (i.e., fp + i) on to the stack. */
+    private void slot(int i) {
+      code.iload(L_FP);
+      if (i != 0) {
+        code.iconst(i);
+        code.op(JvmCode.IADD);
+      }
+    }
+
+    /** Push the tag of the data value in the value register on to the stack. */
+    private void loadTag() {
+      code.aload(L_R);
+      code.checkcast(DATAVALUE);
+      code.getfield(DATAVALUE, "tag", "I");
+    }
+
+    /** Save the value register in the machine so that it can be passed to another region. */
+    private void saveRegister() {
+      code.aload(L_M);
+      code.lload(L_W);
+      code.putfield(MACHINE, "jitWord", "J");
+      code.aload(L_M);
+      code.aload(L_R);
+      code.putfield(MACHINE, "jitRef", "Ljava/lang/Object;");
+    }
+
+    /**
+     * Generate code to return immediately from this region if the result code of a call in L_TMP
+     * is anything other than RETURNED (i.e., if the program has stopped or failed).
+     */
+    private void checkReturned() {
+      if (propagate == null) {
+        propagate = new JvmCode.Label();
+      }
+      code.iload(L_TMP);
+      code.iconst(RETURNED);
+      code.branch(JvmCode.IF_ICMPNE, propagate);
+    }
+
+    private void jfalse(int addr) {
+      code.lload(L_W);
+      code.op(JvmCode.LCONST_0);
+      code.op(JvmCode.LCMP);
+      code.branch(JvmCode.IFEQ, target(addr));
+    }
+
+    private void load(int src) {
+      code.aload(L_WORDS);
+      slot(src);
+      code.op(JvmCode.LALOAD);
+      code.lstore(L_W);
+      code.aload(L_REFS);
+      slot(src);
+      code.op(JvmCode.AALOAD);
+      code.astore(L_R);
+    }
+
+    private void store(int dst) {
+      code.aload(L_WORDS);
+      slot(dst);
+      code.lload(L_W);
+      code.op(JvmCode.LASTORE);
+      code.aload(L_REFS);
+      slot(dst);
+      code.aload(L_R);
+      code.op(JvmCode.AASTORE);
+    }
+
+    private void copy(int src, int dst) {
+      code.aload(L_WORDS);
+      slot(dst);
+      code.aload(L_WORDS);
+      slot(src);
+      code.op(JvmCode.LALOAD);
+      code.op(JvmCode.LASTORE);
+      code.aload(L_REFS);
+      slot(dst);
+      code.aload(L_REFS);
+      slot(src);
+      code.op(JvmCode.AALOAD);
+      code.op(JvmCode.AASTORE);
+    }
+
+    private void alloc(int tag, int n, int o) {
+      code.aload(L_M);
+      code.iconst(tag);
+      code.iconst(n);
+      slot(o);
+      code.invokevirtual(MACHINE, "allocData", "(III)Lmil/DataValue;");
+      code.astore(L_R);
+      code.op(JvmCode.LCONST_0);
+      code.lstore(L_W);
+    }
+
+    private void sel(int i, int dst) {
+      code.aload(L_R);
+      code.checkcast(DATAVALUE);
+      code.astore(L_D);
+      code.aload(L_WORDS);
+      slot(dst);
+      code.aload(L_D);
+      code.iconst(i);
+      code.invokevirtual(DATAVALUE, "getWord", "(I)J");
+      code.op(JvmCode.LASTORE);
+      code.aload(L_REFS);
+      slot(dst);
+      code.aload(L_D);
+      code.iconst(i);
+      code.invokevirtual(DATAVALUE, "getRef", "(I)Ljava/lang/Object;");
+      code.op(JvmCode.AASTORE);
+    }
+
+    /** Generate code for primitive number p with arguments starting at frame slot o. */
+    private void prim(int o, int p) {
+      Prim prim = Prim.primAt(p);
+      int op = (prim == null) ? (-1) : binOp(prim);
+      if (op >= 0) { // binary word operator: words[fp+o] = words[fp+o] op words[fp+o+1]
+        code.aload(L_WORDS);
+        slot(o);
+        code.aload(L_WORDS);
+        slot(o);
+        code.op(JvmCode.LALOAD);
+        code.aload(L_WORDS);
+        slot(o + 1);
+        code.op(JvmCode.LALOAD);
+        if (op == JvmCode.LSHL || op == JvmCode.LSHR || op == JvmCode.LUSHR) {
+          code.op(JvmCode.L2I);
+        }
+        code.op(op);
+        code.op(JvmCode.LASTORE);
+      } else if ((op = (prim == null) ? (-1) : relOp(prim)) >= 0) {
+        // comparison: words[fp+o] = (words[fp+o] cmp words[fp+o+1]) ? 1 : 0
+        JvmCode.Label yes = new JvmCode.Label();
+        JvmCode.Label done = new JvmCode.Label();
+        code.aload(L_WORDS);
+        slot(o);
+        code.aload(L_WORDS);
+        slot(o);
+        code.op(JvmCode.LALOAD);
+        code.aload(L_WORDS);
+        slot(o + 1);
+        code.op(JvmCode.LALOAD);
+        code.op(JvmCode.LCMP);
+        code.branch(op, yes);
+        code.op(JvmCode.LCONST_0);
+        code.branch(JvmCode.GOTO, done);
+        code.bind(yes);
+        code.op(JvmCode.LCONST_1);
+        code.bind(done);
+        code.op(JvmCode.LASTORE);
+      } else if (prim instanceof Prim.not || prim instanceof Prim.neg) {
+        code.aload(L_WORDS);
+        slot(o);
+        code.aload(L_WORDS);
+        slot(o);
+        code.op(JvmCode.LALOAD);
+        if (prim instanceof Prim.not) {
+          code.lconst(-1);
+          code.op(JvmCode.LXOR);
+        } else {
+          code.op(JvmCode.LNEG);
+        }
+        code.op(JvmCode.LASTORE);
+      } else if (prim == null) { // report an undefined primitive at runtime
+        code.aload(L_M);
+        code.iconst(p);
+        slot(o);
+        code.aload(L_WORDS);
+        code.invokestatic(PRIM, "exec", "(Lmil/Machine;II[J)V");
+      } else { // call the primitive's exec method via a static final field
+        prims.put(p, prim);
+        code.getstatic(cf.getName(), primField(p), "Lmil/Prim;");
+        code.aload(L_M);
+        slot(o);
+        code.aload(L_WORDS);
+        code.invokevirtual(PRIM, "exec", "(Lmil/Machine;I[J)V");
+      }
+    }
+  }
+
+  /** Return the JVM opcode for a binary word primitive, or -1 if there is no direct equivalent. */
+  private static int binOp(Prim p) {
+    if (p instanceof Prim.add) {
+      return JvmCode.LADD;
+    } else if (p instanceof Prim.sub) {
+      return JvmCode.LSUB;
+    } else if (p instanceof Prim.mul) {
+      return JvmCode.LMUL;
+    } else if (p instanceof Prim.and) {
+      return JvmCode.LAND;
+    } else if (p instanceof Prim.or) {
+      return JvmCode.LOR;
+    } else if (p instanceof Prim.xor) {
+      return JvmCode.LXOR;
+    } else if (p instanceof Prim.shl) {
+      return JvmCode.LSHL;
+    } else if (p instanceof Prim.lshr) {
+      return JvmCode.LUSHR;
+    } else if (p instanceof Prim.ashr) {
+      return JvmCode.LSHR;
+    }
+    return (-1);
+  }
+
+  /**
+   * Return the JVM conditional branch opcode (following an lcmp) for a signed comparison primitive,
+   * or -1 if there is no direct equivalent.
+   */
+  private static int relOp(Prim p) {
+    if (p instanceof Prim.eq) {
+      return JvmCode.IFEQ;
+    } else if (p instanceof Prim.neq) {
+      return JvmCode.IFNE;
+    } else if (p instanceof Prim.slt) {
+      return JvmCode.IFLT;
+    } else if (p instanceof Prim.sle) {
+      return JvmCode.IFLE;
+    } else if (p instanceof Prim.sgt) {
+      return JvmCode.IFGT;
+    } else if (p instanceof Prim.sge) {
+      return JvmCode.IFGE;
+    }
+    return (-1);
+  }
+}
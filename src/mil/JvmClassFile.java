@@ -0,0 +1,317 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * A minimal writer for JVM class files, providing just enough functionality to describe a class
+ * with static fields and static methods. Classes are written using class file version 49 so that
+ * the generated code can be checked by the type inferencing verifier without the need to compute
+ * StackMapTable attributes.
+ */
+class JvmClassFile {
+
+  private static final int VERSION = 49;
+
+  static final int ACC_PUBLIC = 0x0001;
+
+  static final int ACC_PRIVATE = 0x0002;
+
+  static final int ACC_STATIC = 0x0008;
+
+  static final int ACC_FINAL = 0x0010;
+
+  static final int ACC_SUPER = 0x0020;
+
+  private static final int CONSTANT_Utf8 = 1;
+
+  private static final int CONSTANT_Integer = 3;
+
+  private static final int CONSTANT_Long = 5;
+
+  private static final int CONSTANT_Class = 7;
+
+  private static final int CONSTANT_String = 8;
+
+  private static final int CONSTANT_Fieldref = 9;
+
+  private static final int CONSTANT_Methodref = 10;
+
+  private static final int CONSTANT_NameAndType = 12;
+
+  /** The internal name of this class (for example, "mil/JitCode"). */
+  private String name;
+
+  /** Constant pool entries, already in their binary form. */
+  private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+  private DataOutputStream poolOut = new DataOutputStream(pool);
+
+  /** The index that will be used for the next constant pool entry. */
+  private int poolCount = 1;
+
+  /** Maps a description of each constant pool entry to its index, to avoid duplicate entries. */
+  private HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+
+  private ByteArrayOutputStream fields = new ByteArrayOutputStream();
+
+  private DataOutputStream fieldsOut = new DataOutputStream(fields);
+
+  private int fieldCount = 0;
+
+  private ByteArrayOutputStream methods = new ByteArrayOutputStream();
+
+  private DataOutputStream methodsOut = new DataOutputStream(methods);
+
+  private int methodCount = 0;
+
+  private int thisClass;
+
+  private int superClass;
+
+  /** Default constructor. */
+  JvmClassFile(String name) {
+    this.name = name;
+    this.thisClass = classRef(name);
+    this.superClass = classRef("java/lang/Object");
+  }
+
+  /** Return the internal name of this class. */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Return the index of the constant pool entry with the given key, or -1 if there is no such entry
+   * yet. If a new entry is required, then the caller is expected to write it to poolOut and then
+   * record its index by calling newEntry.
+   */
+  private int findEntry(String key) {
+    Integer i = poolIndex.get(key);
+    return (i == null) ? (-1) : i.intValue();
+  }
+
+  /** Record the index of a new constant pool entry with the given key and number of slots. */
+  private int newEntry(String key, int size) {
+    int i = poolCount;
+    poolCount += size;
+    poolIndex.put(key, i);
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_Utf8 entry for the given string. */
+  int utf8(String s) {
+    String key = "U" + s;
+    int i = findEntry(key);
+    if (i < 0) {
+      try {
+        poolOut.writeByte(CONSTANT_Utf8);
+        poolOut.writeUTF(s);
+      } catch (IOException e) {
+        debug.Internal.error("unable to write class file constant: " + e);
+      }
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_Integer entry for the given value. */
+  int intConst(int n) {
+    String key = "I" + n;
+    int i = findEntry(key);
+    if (i < 0) {
+      try {
+        poolOut.writeByte(CONSTANT_Integer);
+        poolOut.writeInt(n);
+      } catch (IOException e) {
+        debug.Internal.error("unable to write class file constant: " + e);
+      }
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_Long entry (which occupies two slots) for the given value. */
+  int longConst(long n) {
+    String key = "J" + n;
+    int i = findEntry(key);
+    if (i < 0) {
+      try {
+        poolOut.writeByte(CONSTANT_Long);
+        poolOut.writeLong(n);
+      } catch (IOException e) {
+        debug.Internal.error("unable to write class file constant: " + e);
+      }
+      i = newEntry(key, 2);
+    }
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_Class entry for the class with the given internal name. */
+  int classRef(String cls) {
+    String key = "C" + cls;
+    int i = findEntry(key);
+    if (i < 0) {
+      int u = utf8(cls);
+      writeEntry(CONSTANT_Class, u);
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_String entry for the given string. */
+  int stringConst(String s) {
+    String key = "S" + s;
+    int i = findEntry(key);
+    if (i < 0) {
+      int u = utf8(s);
+      writeEntry(CONSTANT_String, u);
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  /** Return the index of a CONSTANT_Fieldref entry for the specified field. */
+  int fieldRef(String cls, String name, String desc) {
+    return memberRef(CONSTANT_Fieldref, "F", cls, name, desc);
+  }
+
+  /** Return the index of a CONSTANT_Methodref entry for the specified method. */
+  int methodRef(String cls, String name, String desc) {
+    return memberRef(CONSTANT_Methodref, "M", cls, name, desc);
+  }
+
+  private int memberRef(int tag, String kind, String cls, String name, String desc) {
+    String key = kind + cls + "." + name + ":" + desc;
+    int i = findEntry(key);
+    if (i < 0) {
+      int c = classRef(cls);
+      int nt = nameAndType(name, desc);
+      writeEntry(tag, c, nt);
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  private int nameAndType(String name, String desc) {
+    String key = "N" + name + ":" + desc;
+    int i = findEntry(key);
+    if (i < 0) {
+      int n = utf8(name);
+      int d = utf8(desc);
+      writeEntry(CONSTANT_NameAndType, n, d);
+      i = newEntry(key, 1);
+    }
+    return i;
+  }
+
+  /** Write a constant pool entry with the given tag and a single 16 bit index. */
+  private void writeEntry(int tag, int a) {
+    try {
+      poolOut.writeByte(tag);
+      poolOut.writeShort(a);
+    } catch (IOException e) {
+      debug.Internal.error("unable to write class file constant: " + e);
+    }
+  }
+
+  /** Write a constant pool entry with the given tag and a pair of 16 bit indices. */
+  private void writeEntry(int tag, int a, int b) {
+    try {
+      poolOut.writeByte(tag);
+      poolOut.writeShort(a);
+      poolOut.writeShort(b);
+    } catch (IOException e) {
+      debug.Internal.error("unable to write class file constant: " + e);
+    }
+  }
+
+  /** Add a field with the given access flags, name, and type descriptor. */
+  void addField(int access, String name, String desc) {
+    try {
+      fieldsOut.writeShort(access);
+      fieldsOut.writeShort(utf8(name));
+      fieldsOut.writeShort(utf8(desc));
+      fieldsOut.writeShort(0); // no attributes
+      fieldCount++;
+    } catch (IOException e) {
+      debug.Internal.error("unable to write class file field: " + e);
+    }
+  }
+
+  /** Add a method with the given access flags, name, descriptor, and code. */
+  void addMethod(int access, String name, String desc, JvmCode code) throws Failure {
+    byte[] bytes = code.getBytes();
+    if (bytes.length >= 0xffff) {
+      throw new Failure("Method " + name + " is too large (" + bytes.length + " bytes)");
+    }
+    try {
+      methodsOut.writeShort(access);
+      methodsOut.writeShort(utf8(name));
+      methodsOut.writeShort(utf8(desc));
+      methodsOut.writeShort(1); // one attribute:
+      methodsOut.writeShort(utf8("Code"));
+      methodsOut.writeInt(12 + bytes.length);
+      methodsOut.writeShort(code.getMaxStack());
+      methodsOut.writeShort(code.getMaxLocals());
+      methodsOut.writeInt(bytes.length);
+      methodsOut.write(bytes);
+      methodsOut.writeShort(0); // no exception table
+      methodsOut.writeShort(0); // no attributes
+      methodCount++;
+    } catch (IOException e) {
+      debug.Internal.error("unable to write class file method: " + e);
+    }
+  }
+
+  /** Return the bytes of the complete class file. */
+  byte[] toBytes() throws Failure {
+    if (poolCount > 0xffff) {
+      throw new Failure("Constant pool overflow in generated class " + name);
+    }
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buf);
+    try {
+      out.writeInt(0xcafebabe);
+      out.writeShort(0); // minor version
+      out.writeShort(VERSION);
+      out.writeShort(poolCount);
+      pool.writeTo(out);
+      out.writeShort(ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0); // no interfaces
+      out.writeShort(fieldCount);
+      fields.writeTo(out);
+      out.writeShort(methodCount);
+      methods.writeTo(out);
+      out.writeShort(0); // no attributes
+      out.flush();
+    } catch (IOException e) {
+      debug.Internal.error("unable to write class file: " + e);
+    }
+    return buf.toByteArray();
+  }
+}
@@ -0,0 +1,359 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+
+/**
+ * An assembler for the body of a single JVM method, with support for symbolic labels. Only the
+ * small subset of the JVM instruction set that is needed by the JIT translator is provided.
+ */
+class JvmCode {
+
+  static final int LCONST_0 = 0x09;
+
+  static final int LCONST_1 = 0x0a;
+
+  static final int ACONST_NULL = 0x01;
+
+  static final int LALOAD = 0x2f;
+
+  static final int AALOAD = 0x32;
+
+  static final int LASTORE = 0x50;
+
+  static final int AASTORE = 0x53;
+
+  static final int POP = 0x57;
+
+  static final int DUP = 0x59;
+
+  static final int IADD = 0x60;
+
+  static final int LADD = 0x61;
+
+  static final int LSUB = 0x65;
+
+  static final int LMUL = 0x69;
+
+  static final int LNEG = 0x75;
+
+  static final int LSHL = 0x79;
+
+  static final int LSHR = 0x7b;
+
+  static final int LUSHR = 0x7d;
+
+  static final int LAND = 0x7f;
+
+  static final int LOR = 0x81;
+
+  static final int LXOR = 0x83;
+
+  static final int L2I = 0x88;
+
+  static final int LCMP = 0x94;
+
+  static final int IFEQ = 0x99;
+
+  static final int IFNE = 0x9a;
+
+  static final int IFLT = 0x9b;
+
+  static final int IFGE = 0x9c;
+
+  static final int IFGT = 0x9d;
+
+  static final int IFLE = 0x9e;
+
+  static final int IF_ICMPEQ = 0x9f;
+
+  static final int IF_ICMPNE = 0xa0;
+
+  static final int GOTO = 0xa7;
+
+  static final int LOOKUPSWITCH = 0xab;
+
+  static final int IRETURN = 0xac;
+
+  static final int RETURN = 0xb1;
+
+  static final int GETSTATIC = 0xb2;
+
+  static final int PUTSTATIC = 0xb3;
+
+  static final int GETFIELD = 0xb4;
+
+  static final int PUTFIELD = 0xb5;
+
+  static final int INVOKEVIRTUAL = 0xb6;
+
+  static final int INVOKESTATIC = 0xb8;
+
+  static final int CHECKCAST = 0xc0;
+
+  /** The class file that holds the constant pool for this code. */
+  private JvmClassFile cf;
+
+  /** Buffer holding the bytes of the code. */
+  private byte[] code = new byte[256];
+
+  /** Number of bytes in the code buffer that are currently in use. */
+  private int pos = 0;
+
+  private int maxStack;
+
+  private int maxLocals;
+
+  /** List of branches whose offsets must be filled in once all labels have been placed. */
+  private Fixup fixups = null;
+
+  /** Default constructor. */
+  JvmCode(JvmClassFile cf, int maxStack, int maxLocals) {
+    this.cf = cf;
+    this.maxStack = maxStack;
+    this.maxLocals = maxLocals;
+  }
+
+  int getMaxStack() {
+    return maxStack;
+  }
+
+  int getMaxLocals() {
+    return maxLocals;
+  }
+
+  /** Return the current size of the code in bytes. */
+  int size() {
+    return pos;
+  }
+
+  /** Represents a (possibly not yet placed) position in the code. */
+  static class Label {
+
+    private int addr = -1;
+  }
+
+  /** Records a branch instruction whose offset must be calculated from the position of a label. */
+  private static class Fixup {
+
+    /** The address of the branch instruction. */
+    private int instr;
+
+    /** The address of the offset within the branch instruction. */
+    private int at;
+
+    /** True if the offset is a 32 bit value, false for a 16 bit value. */
+    private boolean wide;
+
+    private Label target;
+
+    private Fixup next;
+
+    private Fixup(int instr, int at, boolean wide, Label target, Fixup next) {
+      this.instr = instr;
+      this.at = at;
+      this.wide = wide;
+      this.target = target;
+      this.next = next;
+    }
+  }
+
+  /** Place the given label at the current position in the code. */
+  void bind(Label l) {
+    l.addr = pos;
+  }
+
+  private void u1(int b) {
+    if (pos >= code.length) {
+      byte[] newcode = new byte[2 * code.length];
+      for (int i = 0; i < pos; i++) {
+        newcode[i] = code[i];
+      }
+      code = newcode;
+    }
+    code[pos++] = (byte) b;
+  }
+
+  private void u2(int s) {
+    u1(s >> 8);
+    u1(s);
+  }
+
+  private void u4(int w) {
+    u2(w >> 16);
+    u2(w);
+  }
+
+  /** Emit an instruction with no operands. */
+  void op(int opcode) {
+    u1(opcode);
+  }
+
+  /** Emit an instruction whose operand is a 16 bit constant pool index. */
+  private void op2(int opcode, int index) {
+    u1(opcode);
+    u2(index);
+  }
+
+  /** Emit an instruction that loads the given int constant on to the stack. */
+  void iconst(int n) {
+    if (n >= -1 && n <= 5) {
+      u1(0x03 + n); // iconst_<n>
+    } else if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+      u1(0x10); // bipush
+      u1(n);
+    } else if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+      u1(0x11); // sipush
+      u2(n);
+    } else {
+      op2(0x13, cf.intConst(n)); // ldc_w
+    }
+  }
+
+  /** Emit an instruction that loads the given long constant on to the stack. */
+  void lconst(long n) {
+    if (n == 0) {
+      u1(LCONST_0);
+    } else if (n == 1) {
+      u1(LCONST_1);
+    } else if (n == (int) n) {
+      iconst((int) n);
+      u1(0x85); // i2l
+    } else {
+      op2(0x14, cf.longConst(n)); // ldc2_w
+    }
+  }
+
+  private void local(int opcode, int shortBase, int n) {
+    if (n <= 3) {
+      u1(shortBase + n);
+    } else {
+      u1(opcode);
+      u1(n);
+    }
+  }
+
+  void iload(int n) {
+    local(0x15, 0x1a, n);
+  }
+
+  void lload(int n) {
+    local(0x16, 0x1e, n);
+  }
+
+  void aload(int n) {
+    local(0x19, 0x2a, n);
+  }
+
+  void istore(int n) {
+    local(0x36, 0x3b, n);
+  }
+
+  void lstore(int n) {
+    local(0x37, 0x3f, n);
+  }
+
+  void astore(int n) {
+    local(0x3a, 0x4b, n);
+  }
+
+  void getfield(String cls, String name, String desc) {
+    op2(GETFIELD, cf.fieldRef(cls, name, desc));
+  }
+
+  void putfield(String cls, String name, String desc) {
+    op2(PUTFIELD, cf.fieldRef(cls, name, desc));
+  }
+
+  void getstatic(String cls, String name, String desc) {
+    op2(GETSTATIC, cf.fieldRef(cls, name, desc));
+  }
+
+  void putstatic(String cls, String name, String desc) {
+    op2(PUTSTATIC, cf.fieldRef(cls, name, desc));
+  }
+
+  void invokestatic(String cls, String name, String desc) {
+    op2(INVOKESTATIC, cf.methodRef(cls, name, desc));
+  }
+
+  void invokevirtual(String cls, String name, String desc) {
+    op2(INVOKEVIRTUAL, cf.methodRef(cls, name, desc));
+  }
+
+  void checkcast(String cls) {
+    op2(CHECKCAST, cf.classRef(cls));
+  }
+
+  /** Emit a conditional or unconditional branch to the given label. */
+  void branch(int opcode, Label target) {
+    fixups = new Fixup(pos, pos + 1, false, target, fixups);
+    u1(opcode);
+    u2(0);
+  }
+
+  /**
+   * Emit a lookupswitch instruction that selects between the given targets using the int on the top
+   * of the stack. The keys must be in strictly increasing order.
+   */
+  void lookupswitch(int[] keys, Label[] targets, Label dflt) {
+    int instr = pos;
+    u1(LOOKUPSWITCH);
+    while ((pos & 3) != 0) {
+      u1(0);
+    }
+    fixups = new Fixup(instr, pos, true, dflt, fixups);
+    u4(0);
+    u4(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      u4(keys[i]);
+      fixups = new Fixup(instr, pos, true, targets[i], fixups);
+      u4(0);
+    }
+  }
+
+  /** Return the final bytes for this code, with all branch offsets filled in. */
+  byte[] getBytes() throws Failure {
+    for (Fixup f = fixups; f != null; f = f.next) {
+      if (f.target.addr < 0) {
+        debug.Internal.error("branch to unplaced label");
+      }
+      int offset = f.target.addr - f.instr;
+      if (f.wide) {
+        code[f.at] = (byte) (offset >> 24);
+        code[f.at + 1] = (byte) (offset >> 16);
+        code[f.at + 2] = (byte) (offset >> 8);
+        code[f.at + 3] = (byte) offset;
+      } else if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+        throw new Failure("Branch offset out of range in generated code");
+      } else {
+        code[f.at] = (byte) (offset >> 8);
+        code[f.at + 1] = (byte) offset;
+      }
+    }
+    fixups = null;
+    byte[] bytes = new byte[pos];
+    for (int i = 0; i < pos; i++) {
+      bytes[i] = code[i];
+    }
+    return bytes;
+  }
+}
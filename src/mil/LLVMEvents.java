@@ -0,0 +1,131 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+
+/**
+ * Records the sequence of LLVM definitions and type names that are produced while generating code
+ * on a worker thread, so that they can be added to the output program later, in exactly the same
+ * order that a sequential code generator would have used. Each event is either a definition, a
+ * request to name a DefinedType, or a nested LLVMEvents list for an item in one of the caches of an
+ * LLVMMap. Nested lists may be referenced from several places, but they are only replayed at the
+ * first of these.
+ */
+class LLVMEvents {
+
+  /** Represents a single event in an LLVMEvents list. */
+  private abstract static class Event {
+
+    Event next;
+
+    /** Replay this event, adding any output that it describes to the given program. */
+    abstract void replay(llvm.Program prog);
+  }
+
+  /** An event that adds a definition to the program. */
+  private static class DefnEvent extends Event {
+
+    private llvm.Defn defn;
+
+    /** Default constructor. */
+    private DefnEvent(llvm.Defn defn) {
+      this.defn = defn;
+    }
+
+    void replay(llvm.Program prog) {
+      prog.add(defn);
+    }
+  }
+
+  /** An event that assigns a name to a DefinedType. */
+  private static class NameEvent extends Event {
+
+    private llvm.DefinedType dt;
+
+    /** Default constructor. */
+    private NameEvent(llvm.DefinedType dt) {
+      this.dt = dt;
+    }
+
+    void replay(llvm.Program prog) {
+      dt.name();
+    }
+  }
+
+  /** An event that replays a nested list of events (if it has not been replayed already). */
+  private static class NestedEvent extends Event {
+
+    private LLVMEvents events;
+
+    /** Default constructor. */
+    private NestedEvent(LLVMEvents events) {
+      this.events = events;
+    }
+
+    void replay(llvm.Program prog) {
+      events.replay(prog);
+    }
+  }
+
+  /** The first event in this list, or null if the list is empty. */
+  private Event first = null;
+
+  /** The last event in this list, or null if the list is empty. */
+  private Event last = null;
+
+  /** Records whether the events in this list have already been replayed. */
+  private boolean replayed = false;
+
+  private void add(Event e) {
+    if (last == null) {
+      first = e;
+    } else {
+      last.next = e;
+    }
+    last = e;
+  }
+
+  /** Record a definition that should be added to the program. */
+  void add(llvm.Defn defn) {
+    add(new DefnEvent(defn));
+  }
+
+  /** Record the point at which a new DefinedType was constructed. */
+  void name(llvm.DefinedType dt) {
+    add(new NameEvent(dt));
+  }
+
+  /** Record a reference to the events that were generated for a cached item. */
+  void nested(LLVMEvents events) {
+    add(new NestedEvent(events));
+  }
+
+  /** Replay the events in this list, unless they have been replayed already. */
+  void replay(llvm.Program prog) {
+    if (!replayed) {
+      replayed = true;
+      for (Event e = first; e != null; e = e.next) {
+        e.replay(prog);
+      }
+      first = last = null; // Allow the recorded events to be garbage collected
+    }
+  }
+}
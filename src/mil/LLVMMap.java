@@ -20,8 +20,18 @@ package mil;
 
 import compiler.*;
 import core.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
+/**
+ * An LLVMMap records the mapping from MIL types and definitions to the corresponding LLVM types and
+ * globals, emitting type definitions and declarations the first time that each item is used. The
+ * same LLVMMap can be shared between several code generation threads: all of the methods that
+ * access its caches are synchronized, and a thread that is recording events (see record()) will
+ * save the output that it produces in an LLVMEvents list instead of adding it directly to the
+ * program.
+ */
 class LLVMMap extends TypeSet {
 
   private llvm.Program prog;
@@ -31,28 +41,162 @@ class LLVMMap extends TypeSet {
     this.prog = prog;
   }
 
+  /**
+   * Holds the list of events that is being recorded by the current thread, or null if output should
+   * be added directly to the program.
+   */
+  private ThreadLocal<LLVMEvents> events = new ThreadLocal<LLVMEvents>();
+
+  /**
+   * Start recording the output from the current thread in the given list of events, or stop
+   * recording if the argument is null.
+   */
+  void record(LLVMEvents evs) {
+    events.set(evs);
+  }
+
+  /**
+   * Add a definition to the program associated with this LLVMMap, or to the current list of events
+   * if we are recording.
+   */
+  private void add(llvm.Defn defn) {
+    LLVMEvents evs = events.get();
+    if (evs == null) {
+      prog.add(defn);
+    } else {
+      evs.add(defn);
+    }
+  }
+
+  /**
+   * Construct a new DefinedType with the given definition. If we are recording, then the type will
+   * be named when the events are replayed, ensuring that type names do not depend on the order in
+   * which threads reach this point.
+   */
+  llvm.DefinedType definedType(llvm.Type definition) {
+    LLVMEvents evs = events.get();
+    if (evs == null) {
+      return new llvm.DefinedType(definition);
+    }
+    llvm.DefinedType dt = llvm.DefinedType.unnamed(definition);
+    evs.name(dt);
+    return dt;
+  }
+
+  /**
+   * Records the events that were generated when entries in the type and layout caches were
+   * calculated by a recording thread.
+   */
+  private HashMap<Object, LLVMEvents> typeEvents = new HashMap();
+
+  /** Records the events that were generated when entries in the global caches were calculated. */
+  private HashMap<Object, LLVMEvents> globalEvents = new HashMap();
+
+  /**
+   * Called on a cache hit for the given key: if the original entry was calculated by a recording
+   * thread, then add a reference to the events that it produced to the current list.
+   */
+  private void hit(HashMap<Object, LLVMEvents> map, Object key) {
+    LLVMEvents evs = events.get();
+    if (evs != null) {
+      LLVMEvents cached = map.get(key);
+      if (cached != null) {
+        evs.nested(cached);
+      }
+    }
+  }
+
+  /**
+   * Called on a cache miss, before the new entry is calculated: if we are recording, start a new
+   * list of events for the entry and return the enclosing list.
+   */
+  private LLVMEvents enter() {
+    LLVMEvents outer = events.get();
+    if (outer != null) {
+      events.set(new LLVMEvents());
+    }
+    return outer;
+  }
+
+  /**
+   * Called after the entry for a cache miss has been calculated, with the list that was returned by
+   * the corresponding call to enter(): saves the events for the new entry and restores the
+   * enclosing list.
+   */
+  private void exit(LLVMEvents outer, HashMap<Object, LLVMEvents> map, Object key) {
+    if (outer != null) {
+      LLVMEvents evs = events.get();
+      map.put(key, evs);
+      outer.nested(evs);
+      events.set(outer);
+    }
+  }
+
   /** Add a type definition to the program associated with this LLVMMap. */
   void typedef(llvm.DefinedType dt) {
-    prog.add(new llvm.Typedef(dt));
+    add(new llvm.Typedef(dt));
   }
 
   void typedef(String comment, llvm.DefinedType dt) {
-    prog.add(new llvm.DefnComment(comment, new llvm.Typedef(dt)));
+    add(new llvm.DefnComment(comment, new llvm.Typedef(dt)));
   }
 
   /** Add a declaration for a primitive function to the program associated with this LLVMMap. */
-  void declare(String name, llvm.FunctionType ftype) {
-    prog.add(new llvm.FuncDecl(name, ftype));
+  void declare(String name, llvm.FunctionType ftype, int attrs, int retAttrs) {
+    add(new llvm.FuncDecl(name, ftype, attrs, retAttrs));
+  }
+
+  /**
+   * Return the attributes for a parameter or return value of the given type. Every pointer in the
+   * code that we generate refers to a heap allocated or static object that begins with a tag or a
+   * code pointer, so pointers are never null and can always be dereferenced for at least one Word.
+   * The only exception is for types whose values might be immediates, which cannot be dereferenced,
+   * and are not valid pointers at all, so they are given no attributes.
+   */
+  int valueAttrs(llvm.Type t) {
+    if (!t.isPtr() || hasImmediates(t)) {
+      return llvm.Attrs.NONE;
+    }
+    return llvm.Attrs.NONNULL | llvm.Attrs.DEREFERENCEABLE;
+  }
+
+  /** Return an array of attributes for each of the given formal parameters. */
+  int[] valueAttrs(llvm.Local[] formals) {
+    int[] attrs = new int[formals.length];
+    for (int i = 0; i < formals.length; i++) {
+      attrs[i] = valueAttrs(formals[i].getType());
+    }
+    return attrs;
+  }
+
+  /**
+   * Records the LLVM types for data types whose constructors without fields are represented by
+   * immediate values (see DataName.hasImmediates()).
+   */
+  private HashSet<llvm.Type> immediateTypes = new HashSet<llvm.Type>();
+
+  /** Return true if values of the given LLVM type might be represented by immediate values. */
+  synchronized boolean hasImmediates(llvm.Type t) {
+    return immediateTypes.contains(t);
+  }
+
+  /** Return the canonical version of the given type in this LLVMMap. */
+  synchronized Type canonType(Type t) {
+    return t.canonType(this);
   }
 
   private HashMap<Type, llvm.Type> typeMap = new HashMap();
 
-  llvm.Type toLLVM(Type t) {
+  synchronized llvm.Type toLLVM(Type t) {
     Type c = t.canonType(this);
     llvm.Type u = typeMap.get(c);
     if (u == null) {
+      LLVMEvents outer = enter();
       u = c.toLLVMCalc(c, this, 0); // Calculate an appropriate llvm type
       typeMap.put(c, u); // Save the mapping from c to t
+      exit(outer, typeEvents, c);
+    } else {
+      hit(typeEvents, c);
     }
     return u;
   }
@@ -64,22 +208,29 @@ class LLVMMap extends TypeSet {
     return llvm.Type.word();
   }
 
-  llvm.Type dataPtrTypeCalc(Type c) {
-    llvm.DefinedType dt = new llvm.DefinedType(new llvm.StructType(new llvm.Type[] {tagType()}));
+  llvm.Type dataPtrTypeCalc(Type c, boolean hasImmediates) {
+    llvm.DefinedType dt = definedType(llvm.StructType.get(new llvm.Type[] {tagType()}));
     typedef("data layout for values of type " + c, dt);
-    return dt.ptr();
+    llvm.Type t = dt.ptr();
+    if (hasImmediates) {
+      immediateTypes.add(t);
+    }
+    return t;
   }
 
   private HashMap<Cfun, llvm.Type> cfunLayoutTypeCache = new HashMap();
 
-  llvm.Type cfunLayoutType(Cfun key) {
+  synchronized llvm.Type cfunLayoutType(Cfun key) {
     llvm.Type t = cfunLayoutTypeCache.get(key);
     if (t == null) {
-      llvm.DefinedType dt = new llvm.DefinedType(key.cfunLayoutTypeCalc(this));
+      LLVMEvents outer = enter();
+      llvm.DefinedType dt = definedType(key.cfunLayoutTypeCalc(this));
       typedef("layout for " + key, dt);
       cfunLayoutTypeCache.put(key, dt);
+      exit(outer, typeEvents, key);
       return dt;
     }
+    hit(typeEvents, key);
     return t;
   }
 
@@ -88,13 +239,13 @@ class LLVMMap extends TypeSet {
    * assumed to be in canonical form.
    */
   llvm.Type closurePtrTypeCalc(Type c) {
-    llvm.DefinedType fun = new llvm.DefinedType(); // %fun = type %rng (%clo*, %dom...)*
-    llvm.DefinedType clo = new llvm.DefinedType(); // %clo = type { %fun }
+    llvm.DefinedType fun = definedType(null); // %fun = type %rng (%clo*, %dom...)*
+    llvm.DefinedType clo = definedType(null); // %clo = type { %fun }
     llvm.Type ptr = clo.ptr(); // %ptr = type %clo*
     llvm.Type[] dom = stackArg(1).closureArgs(this, ptr, 0, 0);
     llvm.Type rng = toLLVM(stackArg(2));
-    fun.define(new llvm.FunctionType(rng, dom).ptr());
-    clo.define(new llvm.StructType(new llvm.Type[] {fun}));
+    fun.define(llvm.FunctionType.get(rng, dom).ptr());
+    clo.define(llvm.StructType.get(new llvm.Type[] {fun}));
     typedef("closure types for " + c, fun);
     typedef(clo);
     return ptr;
@@ -104,16 +255,24 @@ class LLVMMap extends TypeSet {
     return toLLVM(ftype).codePtrType();
   }
 
+  /** Return the LLVM function type for the code of a closure with MIL function type ftype. */
+  llvm.Type codeType(Type ftype) {
+    return codePtrType(ftype).definition().ptsTo();
+  }
+
   private HashMap<ClosureDefn, llvm.Type> closureLayoutTypeCache = new HashMap();
 
-  llvm.Type closureLayoutType(ClosureDefn key) {
+  synchronized llvm.Type closureLayoutType(ClosureDefn key) {
     llvm.Type t = closureLayoutTypeCache.get(key);
     if (t == null) {
-      llvm.DefinedType dt = new llvm.DefinedType(key.closureLayoutTypeCalc(this));
+      LLVMEvents outer = enter();
+      llvm.DefinedType dt = definedType(key.closureLayoutTypeCalc(this));
       typedef("layout for " + key, dt);
       closureLayoutTypeCache.put(key, dt);
+      exit(outer, typeEvents, key);
       return dt;
     }
+    hit(typeEvents, key);
     return t;
   }
 
@@ -123,10 +282,14 @@ class LLVMMap extends TypeSet {
    * Look for a global reference for the given definition in this LLVMMap, adding a new entry if
    * required.
    */
-  llvm.Global globalFor(Block d) {
+  synchronized llvm.Global globalFor(Block d) {
     llvm.Global g = blockGlobalMap.get(d);
     if (g == null) {
+      LLVMEvents outer = enter();
       blockGlobalMap.put(d, g = d.blockGlobalCalc(this));
+      exit(outer, globalEvents, d);
+    } else {
+      hit(globalEvents, d);
     }
     return g;
   }
@@ -137,10 +300,14 @@ class LLVMMap extends TypeSet {
    * Look for a global reference for the given definition in this LLVMMap, adding a new entry if
    * required.
    */
-  llvm.Global globalFor(ClosureDefn d) {
+  synchronized llvm.Global globalFor(ClosureDefn d) {
     llvm.Global g = closureGlobalMap.get(d);
     if (g == null) {
+      LLVMEvents outer = enter();
       closureGlobalMap.put(d, g = d.closureGlobalCalc(this));
+      exit(outer, globalEvents, d);
+    } else {
+      hit(globalEvents, d);
     }
     return g;
   }
@@ -151,17 +318,21 @@ class LLVMMap extends TypeSet {
    * Look for a global reference for the given definition in this LLVMMap, adding a new entry if
    * required.
    */
-  llvm.Global globalFor(Prim d) {
+  synchronized llvm.Global globalFor(Prim d) {
     llvm.Global g = primGlobalMap.get(d);
     if (g == null) {
+      LLVMEvents outer = enter();
       primGlobalMap.put(d, g = d.primGlobalCalc(this));
+      exit(outer, globalEvents, d);
+    } else {
+      hit(globalEvents, d);
     }
     return g;
   }
 
   /**
    * A global reference to the allocator function, initialized on first use, at which point we emit
-   * an external declaration.
+   * its definition.
    */
   private llvm.Global allocFuncGlobal = null;
 
@@ -169,17 +340,378 @@ class LLVMMap extends TypeSet {
   public static final llvm.Type allocRetType = llvm.Type.i8.ptr();
 
   /**
-   * Return a Global reference to the alloc function, generating an appropriate LLVM declaration for
-   * the first use.
+   * Return a constant expression for the alignment of a pointer on the target, calculated as the
+   * offset of the pointer in a structure of type {i8, i8*}.
    */
-  llvm.Global allocFuncGlobal() {
+  static llvm.Value ptrAlign() {
+    llvm.Type st = llvm.StructType.get(new llvm.Type[] {llvm.Type.i8, allocRetType}).ptr();
+    llvm.Value[] idx = new llvm.Value[] {llvm.Word.ZERO, new llvm.Index(1)};
+    return new llvm.PtrToInt(
+        llvm.Getelementptr.offset(allocRetType.ptr(), new llvm.Null(st), idx), llvm.Type.word());
+  }
+
+  /**
+   * Return a Global reference to the alloc function, generating an appropriate LLVM definition for
+   * the first use. Objects are allocated from a nursery in the run time library (see lib/alloc.c,
+   * or lib/gc.c when MILProgram.gc is set) by advancing the allocPtr global, so long as there is
+   * enough space below allocLimit, and the allocSlow function is only called when the current
+   * nursery chunk is full. The alloc function is marked alwaysinline so that the fast path is
+   * expanded at every allocation site. The size argument must be a multiple of the allocation
+   * grain (see Allocator.allocs), so that every object is suitably aligned.
+   */
+  synchronized llvm.Global allocFuncGlobal() {
+    String id = "alloc";
     if (allocFuncGlobal == null) {
-      String id = "alloc";
-      llvm.FunctionType ft =
-          new llvm.FunctionType(allocRetType, new llvm.Type[] {llvm.Type.word()});
+      LLVMEvents outer = enter();
+      llvm.Type wt = llvm.Type.word();
+      llvm.FunctionType ft = llvm.FunctionType.get(allocRetType, new llvm.Type[] {wt});
       allocFuncGlobal = new llvm.Global(ft, id);
-      declare(id, ft);
+
+      // Declare the nursery pointers and the slow path in the run time library:
+      llvm.Global ptr = new llvm.Global(allocRetType.ptr(), "allocPtr");
+      llvm.Global limit = new llvm.Global(allocRetType.ptr(), "allocLimit");
+      llvm.Global slow = new llvm.Global(ft, "allocSlow");
+      add(new llvm.GlobalVarDecl("allocPtr", allocRetType));
+      add(new llvm.GlobalVarDecl("allocLimit", allocRetType));
+      int attrs = llvm.Attrs.WILLRETURN | llvm.Attrs.ALLOCSIZE;
+      int retAttrs = llvm.Attrs.NOALIAS | llvm.Attrs.NONNULL;
+      declare("allocSlow", ft, attrs | llvm.Attrs.COLD, retAttrs);
+
+      // Define the fast path:
+      llvm.Local size = new llvm.Local(wt, 0); // the number of bytes to allocate
+      llvm.Local next = new llvm.Local(allocRetType, 1); // the current value of allocPtr
+      llvm.Local end = new llvm.Local(allocRetType, 2); // the current value of allocLimit
+      llvm.Local nextw = new llvm.Local(wt, 3); // the value of next as a Word
+      llvm.Local endw = new llvm.Local(wt, 4); // the value of end as a Word
+      llvm.Local avail = new llvm.Local(wt, 5); // the number of bytes still available
+      llvm.Local full = new llvm.Local(llvm.Type.i1, 6); // true if the nursery is full
+      llvm.Local after = new llvm.Local(allocRetType, 7); // the new value of allocPtr
+      llvm.Local obj = new llvm.Local(allocRetType, 8); // the object returned by the slow path
+      llvm.Code entry =
+          new llvm.Op(
+              next,
+              new llvm.Load(ptr),
+              new llvm.Op(
+                  end,
+                  new llvm.Load(limit),
+                  new llvm.Op(
+                      nextw,
+                      new llvm.PtrToInt(next, wt),
+                      new llvm.Op(
+                          endw,
+                          new llvm.PtrToInt(end, wt),
+                          new llvm.Op(
+                              avail,
+                              new llvm.IOp(wt, endw, nextw, "sub"),
+                              new llvm.Op(
+                                  full,
+                                  new llvm.ICmp(wt, avail, size, "ult"),
+                                  new llvm.Cond(full, "slow", "fast")))))));
+      llvm.Code fast =
+          new llvm.Op(
+              after,
+              new llvm.Getelementptr(allocRetType, next, size),
+              new llvm.Store(after, ptr, new llvm.Ret(next)));
+      llvm.Code slowPath =
+          new llvm.Op(
+              obj, new llvm.Call(allocRetType, slow, new llvm.Value[] {size}), new llvm.Ret(obj));
+      add(
+          new llvm.FuncDefn(
+              llvm.Mods.INTERNAL,
+              attrs | llvm.Attrs.ALWAYSINLINE,
+              allocRetType,
+              retAttrs,
+              id,
+              new llvm.Local[] {size},
+              new int[] {llvm.Attrs.NONE},
+              new String[] {"entry", "fast", "slow"},
+              new llvm.Code[] {entry, fast, slowPath}));
+      exit(outer, globalEvents, id);
+    } else {
+      hit(globalEvents, id);
     }
     return allocFuncGlobal;
   }
+
+  /**
+   * A global reference to the llvm.gcroot intrinsic, which registers a stack slot as a garbage
+   * collection root, initialized on first use, at which point we emit its declaration.
+   */
+  private llvm.Global gcrootGlobal = null;
+
+  /** Return a Global reference to the llvm.gcroot intrinsic. */
+  synchronized llvm.Global gcrootGlobal() {
+    String id = "llvm.gcroot";
+    if (gcrootGlobal == null) {
+      LLVMEvents outer = enter();
+      llvm.Type rt = allocRetType.ptr();
+      llvm.FunctionType ft =
+          llvm.FunctionType.get(llvm.Type.vd, new llvm.Type[] {rt, allocRetType});
+      gcrootGlobal = new llvm.Global(ft, id);
+      declare(id, ft, llvm.Attrs.NONE, llvm.Attrs.NONE);
+      exit(outer, globalEvents, id);
+    } else {
+      hit(globalEvents, id);
+    }
+    return gcrootGlobal;
+  }
+
+  /** Caches the garbage collector's descriptor for each object layout, indexed by layout type. */
+  private HashMap<llvm.Type, llvm.Value> gcDescriptors = new HashMap();
+
+  /**
+   * Return a pointer to the garbage collector's descriptor for objects with the given layout,
+   * generating a definition for the descriptor on first use. A descriptor is a sequence of Words
+   * that gives the size of the object in bytes (not including the header), the number of fields in
+   * the object that hold pointers, and the offset in bytes of each of those fields. Offsets and
+   * sizes are calculated by LLVM, using getelementptr on a null pointer, so that they always agree
+   * with the layout of the corresponding structure type (see lib/gc.c).
+   */
+  synchronized llvm.Value gcDescriptor(llvm.Type layout) {
+    llvm.Value desc = gcDescriptors.get(layout);
+    if (desc == null) {
+      LLVMEvents outer = enter();
+      llvm.Type wt = llvm.Type.word();
+      llvm.Type lp = layout.ptr();
+      llvm.Value base = new llvm.Null(lp);
+      llvm.StructType st = (llvm.StructType) layout.definition();
+      ArrayList<llvm.Value> vals = new ArrayList<llvm.Value>();
+      vals.add(
+          new llvm.PtrToInt(
+              llvm.Getelementptr.offset(lp, base, new llvm.Value[] {new llvm.Word(1)}), wt));
+      vals.add(null); // a placeholder for the number of pointer fields
+      for (int i = 1; i < st.length(); i++) { // skip the tag or code pointer in field 0
+        llvm.Type ft = st.at(i);
+        if (ft.isPtr()) {
+          llvm.Value[] idx = new llvm.Value[] {llvm.Word.ZERO, new llvm.Index(i)};
+          vals.add(new llvm.PtrToInt(llvm.Getelementptr.offset(ft.ptr(), base, idx), wt));
+        }
+      }
+      vals.set(1, new llvm.Word(vals.size() - 2));
+      llvm.Constant c =
+          llvm.Constant.fresh(
+              llvm.Mods.PRIVATE | llvm.Mods.UNNAMED_ADDR,
+              "gcdesc",
+              new llvm.Struct(null, vals.toArray(new llvm.Value[vals.size()])));
+      add(c);
+      gcDescriptors.put(layout, desc = new llvm.Bitcast(c.ref(), allocRetType));
+      exit(outer, globalEvents, layout);
+    } else {
+      hit(globalEvents, layout);
+    }
+    return desc;
+  }
+
+  /**
+   * Records references to the global variables that might hold pointers to heap allocated objects,
+   * in the order that they are initialized.
+   */
+  private ArrayList<llvm.Global> gcGlobalRoots = new ArrayList<llvm.Global>();
+
+  /** Record a global variable that should be treated as a root by the garbage collector. */
+  void addGlobalRoot(llvm.Global g) {
+    gcGlobalRoots.add(g);
+  }
+
+  /**
+   * Add definitions for the table of global roots to the program: gcGlobalRoots is a sequence of
+   * pointers to the global variables that were recorded by addGlobalRoot(), and gcNumGlobalRoots
+   * holds the number of entries in the table.
+   */
+  void gcGlobalRoots() {
+    int n = gcGlobalRoots.size();
+    llvm.Type rt = allocRetType.ptr();
+    llvm.Value[] vals = new llvm.Value[n];
+    for (int i = 0; i < n; i++) {
+      vals[i] = new llvm.Bitcast(gcGlobalRoots.get(i), rt);
+    }
+    add(
+        new llvm.DefnComment(
+            "global roots for the garbage collector",
+            new llvm.Constant(llvm.Mods.NONE, "gcGlobalRoots", new llvm.Struct(null, vals))));
+    add(new llvm.Constant(llvm.Mods.NONE, "gcNumGlobalRoots", new llvm.Word(n)));
+  }
+
+  /** Identifies accesses to the tag of a data object in TBAA metadata. */
+  static final String TBAA_TAG = "tag";
+
+  /** Identifies accesses to the fields of a data object in TBAA metadata. */
+  static final String TBAA_FIELD = "field";
+
+  /** Identifies accesses to the code pointer or stored values of a closure in TBAA metadata. */
+  static final String TBAA_CLOSURE = "closure";
+
+  /** Identifies accesses to memory areas in TBAA metadata. */
+  static final String TBAA_AREA = "area";
+
+  /** Identifies accesses to the garbage collector's object headers in TBAA metadata. */
+  static final String TBAA_HEADER = "header";
+
+  /** Caches the metadata nodes that have been generated for this program, indexed by name. */
+  private HashMap<String, llvm.MDNode> metadata = new HashMap();
+
+  /** Records the events that were generated when metadata nodes were added by recording threads. */
+  private HashMap<Object, LLVMEvents> metadataEvents = new HashMap();
+
+  /** Add a new metadata node to the program and record it in the cache with the given key. */
+  private llvm.MDNode addMetadata(String key, llvm.MDNode node) {
+    metadata.put(key, node);
+    add(node.toDefn());
+    return node;
+  }
+
+  /**
+   * Return an empty metadata node, as required for the !invariant.load and !nonnull attachments.
+   */
+  synchronized llvm.MDNode emptyMetadata() {
+    String key = "";
+    llvm.MDNode node = metadata.get(key);
+    if (node == null) {
+      LLVMEvents outer = enter();
+      node = addMetadata(key, new llvm.MDNode(new llvm.Metadata[0]));
+      exit(outer, metadataEvents, key);
+    } else {
+      hit(metadataEvents, key);
+    }
+    return node;
+  }
+
+  /** Return the root of the TBAA type descriptors for this program. */
+  synchronized llvm.MDNode tbaaRoot() {
+    String key = "tbaa";
+    llvm.MDNode root = metadata.get(key);
+    if (root == null) {
+      LLVMEvents outer = enter();
+      root = addMetadata(key, new llvm.MDNode(new llvm.Metadata[] {llvm.Metadata.str("mil")}));
+      exit(outer, metadataEvents, key);
+    } else {
+      hit(metadataEvents, key);
+    }
+    return root;
+  }
+
+  /**
+   * Return the TBAA access tag for the given kind of memory access, which should be one of the
+   * TBAA_ constants above. Each kind has its own scalar type descriptor, with the same root, so
+   * LLVM can assume that accesses of different kinds never refer to the same memory.
+   */
+  synchronized llvm.MDNode tbaaTag(String kind) {
+    String key = "tbaa." + kind;
+    llvm.MDNode tag = metadata.get(key);
+    if (tag == null) {
+      LLVMEvents outer = enter();
+      llvm.MDNode root = tbaaRoot();
+      llvm.MDNode type =
+          addMetadata(
+              key + ".type",
+              new llvm.MDNode(
+                  new llvm.Metadata[] {
+                    llvm.Metadata.str("mil " + kind), root, llvm.Metadata.i64(0)
+                  }));
+      tag =
+          addMetadata(key, new llvm.MDNode(new llvm.Metadata[] {type, type, llvm.Metadata.i64(0)}));
+      exit(outer, metadataEvents, key);
+    } else {
+      hit(metadataEvents, key);
+    }
+    return tag;
+  }
+
+  /** Return the metadata attachments for a store that initializes the given kind of field. */
+  llvm.MDAttach initStore(String kind) {
+    return new llvm.MDAttach("tbaa", tbaaTag(kind), null);
+  }
+
+  /**
+   * Return the metadata attachments for a load of a value of type ty from the given kind of field.
+   * The fields of data objects and closures are never modified after they have been initialized, so
+   * these loads are marked as invariant, and pointers in those fields are never null, except for
+   * values of types that have immediates. (These loads only use objects that have already been
+   * initialized: the MIL optimizer replaces any selection from an object that was allocated in the
+   * same block with the stored value.) The invariant marking is omitted when the program uses the
+   * garbage collector because the memory for an unreachable object may be reused for a new object
+   * with different contents, and LLVM would otherwise be free to move a load across the allocation
+   * that reuses its address.
+   */
+  llvm.MDAttach immutableLoad(String kind, llvm.Type ty) {
+    llvm.MDAttach mds =
+        MILProgram.gc ? null : new llvm.MDAttach("invariant.load", emptyMetadata(), null);
+    if (ty.isPtr() && !hasImmediates(ty)) {
+      mds = new llvm.MDAttach("nonnull", emptyMetadata(), mds);
+    }
+    return new llvm.MDAttach("tbaa", tbaaTag(kind), mds);
+  }
+
+  /**
+   * Return the metadata attachments for a load of a value of type ty from the given kind of field
+   * in an object that might be stored on the stack. The stack slot for an object is reused each
+   * time that the code that allocates it is executed, so these loads cannot be marked as invariant.
+   */
+  llvm.MDAttach stackLoad(String kind, llvm.Type ty) {
+    llvm.MDAttach mds =
+        (ty.isPtr() && !hasImmediates(ty))
+            ? new llvm.MDAttach("nonnull", emptyMetadata(), null)
+            : null;
+    return new llvm.MDAttach("tbaa", tbaaTag(kind), mds);
+  }
+
+  /** Records the memory areas in this program, in the order that they were defined. */
+  private ArrayList<Area> areas = new ArrayList<Area>();
+
+  /** Record a memory area that has been defined in this program. */
+  void addArea(Area area) {
+    areas.add(area);
+  }
+
+  /**
+   * Maps each memory area to the alias scope attachments that are used for accesses to that area.
+   * This map is filled in by areaScopes() before any code is generated, and is only read after
+   * that point, so it does not require synchronization.
+   */
+  private HashMap<Area, llvm.MDAttach> areaScopes = new HashMap();
+
+  /**
+   * Generate alias scope metadata for the memory areas in this program: each area has its own
+   * scope, and every access to an area is in the scope for that area and is marked as not aliasing
+   * any of the other areas. There is no benefit in doing this unless there are at least two areas.
+   */
+  void areaScopes() {
+    int n = areas.size();
+    if (n < 2) {
+      return;
+    }
+    llvm.MDNode domain = llvm.MDNode.selfRef(new llvm.Metadata[] {llvm.Metadata.str("mil areas")});
+    add(domain.toDefn());
+    llvm.MDNode[] scopes = new llvm.MDNode[n];
+    for (int i = 0; i < n; i++) {
+      scopes[i] =
+          llvm.MDNode.selfRef(
+              new llvm.Metadata[] {domain, llvm.Metadata.str(areas.get(i).getId())});
+      add(scopes[i].toDefn());
+    }
+    for (int i = 0; i < n; i++) {
+      llvm.MDNode scope = new llvm.MDNode(new llvm.Metadata[] {scopes[i]});
+      add(scope.toDefn());
+      llvm.Metadata[] others = new llvm.Metadata[n - 1];
+      for (int j = 0, k = 0; j < n; j++) {
+        if (j != i) {
+          others[k++] = scopes[j];
+        }
+      }
+      llvm.MDNode noalias = new llvm.MDNode(others);
+      add(noalias.toDefn());
+      areaScopes.put(
+          areas.get(i),
+          new llvm.MDAttach("alias.scope", scope, new llvm.MDAttach("noalias", noalias, null)));
+    }
+  }
+
+  /**
+   * Return the metadata attachments for a load or store in a memory area. The area parameter
+   * identifies the area that contains the address, or is null if the area is not known.
+   */
+  llvm.MDAttach areaAccess(Area area) {
+    llvm.MDAttach scopes = (area == null) ? null : areaScopes.get(area);
+    return new llvm.MDAttach("tbaa", tbaaTag(TBAA_AREA), scopes);
+  }
 }
@@ -76,6 +76,14 @@ abstract class Label extends Node {
     return s;
   }
 
+  /**
+   * Record the allocations in the code for this Label whose objects can be stored on the stack, and
+   * the values that might refer to objects on the stack.
+   */
+  void findStackAllocs(VarMap vm, TempSubst s) {
+    /* nothing to do */
+  }
+
   /** Generate code for this Label within an enclosing LLVM function definition. */
   abstract llvm.Code toLLVMLabel(LLVMMap lm, VarMap vm, TempSubst s);
 }
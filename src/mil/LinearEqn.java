@@ -46,6 +46,24 @@ public class LinearEqn {
     return pos;
   }
 
+  String getLabel() {
+    return label;
+  }
+
+  Terms getLhs() {
+    return lhs;
+  }
+
+  BigInteger getRhs() {
+    return rhs;
+  }
+
+  /** Replace the terms and the constant in this equation. */
+  void setEqn(Terms lhs, BigInteger rhs) {
+    this.lhs = lhs;
+    this.rhs = rhs;
+  }
+
   /** Return a printable representation of this equation. */
   public String toString() {
     StringBuilder buf = new StringBuilder();
@@ -86,5 +86,29 @@ public class LinearEqnTest {
     } catch (Failure f) {
       new SimpleHandler().report(f);
     }
+
+    // A cycle of equations, xs[i] + xs[i+1] = 10, that cannot be solved one variable at a time:
+    TVar[] xs = new TVar[5];
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = new TVar(Tyvar.nat);
+    }
+    eqns = null;
+    for (int i = 0; i < xs.length; i++) {
+      LinearEqn c = new LinearEqn(BuiltinPosition.pos, "cycle" + i);
+      c.addTerm(xs[i], "x" + i);
+      c.addTerm(xs[(i + 1) % xs.length], "x" + ((i + 1) % xs.length));
+      c.addConst(-10);
+      eqns = new LinearEqns(c, eqns);
+    }
+    try {
+      LinearEqns.solve(eqns);
+      StringBuilder buf = new StringBuilder("Solution is:");
+      for (int i = 0; i < xs.length; i++) {
+        buf.append(" x" + i + " = " + xs[i].skeleton());
+      }
+      System.out.println(buf);
+    } catch (Failure f) {
+      new SimpleHandler().report(f);
+    }
   }
 }
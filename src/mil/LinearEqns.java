@@ -42,7 +42,24 @@ public class LinearEqns {
     }
   }
 
+  /**
+   * Solve the given list of equations, binding each of the unknowns to its value. We use the sparse
+   * solver in LinearSystem, which works with long arithmetic, and only fall back to the (slower)
+   * BigInteger version in solveDense if that overflows.
+   */
   public static void solve(LinearEqns eqns) throws Failure {
+    try {
+      new LinearSystem(eqns).solve();
+    } catch (ArithmeticException e) {
+      solveDense(eqns);
+    }
+  }
+
+  /**
+   * Solve the given list of equations using BigInteger arithmetic, eliminating the first variable
+   * in each unsolved equation from all of the equations that follow it.
+   */
+  static void solveDense(LinearEqns eqns) throws Failure {
     LinearEqns deferred = null; // The list of equations that we were not able to solve immediately
     while (eqns != null) {
       LinearEqn eqn = eqns.head;
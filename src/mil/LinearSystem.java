@@ -0,0 +1,462 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.math.BigInteger;
+import java.util.HashMap;
+
+/**
+ * A sparse representation for a system of linear equations, used to calculate the widths of
+ * bitdata types and the sizes of structures. Each unknown is assigned a variable number, and each
+ * equation is stored as a row that lists only the variables that it mentions (in increasing order)
+ * together with their coefficients. We also record, for each variable, the rows that mention it,
+ * so that substituting a value for a variable, or eliminating a variable, only visits the rows
+ * that are actually affected. Equations that are reduced to a single variable are solved as soon
+ * as possible, and, when no such equations remain, we eliminate a variable that appears in a short
+ * row and as few other rows as possible, which helps to keep fill-in low.
+ *
+ * <p>All arithmetic is performed using long values. If any calculation overflows, then an
+ * ArithmeticException is thrown, and the caller can fall back to the BigInteger-based solver in
+ * LinearEqns. For this to work, no type variables are bound until a complete solution has been
+ * found.
+ */
+class LinearSystem {
+
+  /** The unknowns in this system, indexed by variable number. */
+  private Type[] vars = new Type[16];
+
+  /** A hint for each unknown, for use in error messages. */
+  private String[] hints = new String[16];
+
+  /** The number of unknowns in this system. */
+  private int numVars = 0;
+
+  /** Maps each unknown to its variable number. */
+  private HashMap<Type, Integer> varNums = new HashMap<Type, Integer>();
+
+  /** Records which variables have been solved. */
+  private boolean[] known;
+
+  /** Holds the values of variables that have been solved. */
+  private long[] values;
+
+  /** The original equation for each row, used in error messages. */
+  private LinearEqn[] eqns;
+
+  /** The variable numbers of the terms in each row, in increasing order. */
+  private int[][] rowVars;
+
+  /** The coefficients of the terms in each row (all nonzero). */
+  private long[][] rowCoeffs;
+
+  /** The number of terms in each row. */
+  private int[] rowLen;
+
+  /** The constant on the right hand side of each row. */
+  private long[] rowRhs;
+
+  /** Records which rows have been solved (and so can be ignored). */
+  private boolean[] solved;
+
+  /** Records which rows have been used to eliminate a variable from the other rows. */
+  private boolean[] pivoted;
+
+  /** For each variable, the rows that mention it (possibly including some stale entries). */
+  private int[][] colRows;
+
+  /** The number of entries in each of the colRows arrays. */
+  private int[] colLen;
+
+  /** A stack of rows that should be checked to see if they can now be solved. */
+  private int[] pending;
+
+  /** The number of entries in the pending stack. */
+  private int numPending = 0;
+
+  /** Build a sparse system from the given list of equations. */
+  LinearSystem(LinearEqns es) {
+    int numRows = 0;
+    for (LinearEqns ls = es; ls != null; ls = ls.next) {
+      numRows++;
+    }
+    eqns = new LinearEqn[numRows];
+    rowVars = new int[numRows][];
+    rowCoeffs = new long[numRows][];
+    rowLen = new int[numRows];
+    rowRhs = new long[numRows];
+    solved = new boolean[numRows];
+    pivoted = new boolean[numRows];
+    pending = new int[Math.max(16, numRows)];
+    for (int r = 0; es != null; es = es.next) {
+      eqns[r] = es.head;
+      initRow(r++);
+    }
+    known = new boolean[numVars];
+    values = new long[numVars];
+    colRows = new int[numVars][];
+    colLen = new int[numVars];
+    for (int r = 0; r < numRows; r++) {
+      for (int i = 0; i < rowLen[r]; i++) {
+        addToCol(rowVars[r][i], r);
+      }
+    }
+  }
+
+  /** Return the variable number for the given unknown, allocating a new number if necessary. */
+  private int varNum(Type t, String hint) {
+    Integer v = varNums.get(t);
+    if (v != null) {
+      return v;
+    }
+    if (numVars == vars.length) {
+      Type[] nvars = new Type[2 * numVars];
+      String[] nhints = new String[2 * numVars];
+      for (int i = 0; i < numVars; i++) {
+        nvars[i] = vars[i];
+        nhints[i] = hints[i];
+      }
+      vars = nvars;
+      hints = nhints;
+    }
+    vars[numVars] = t;
+    hints[numVars] = hint;
+    varNums.put(t, numVars);
+    return numVars++;
+  }
+
+  /**
+   * Initialize row r from the corresponding equation, replacing any terms for variables that have
+   * already been bound by constants, and sorting the remaining terms by variable number.
+   */
+  private void initRow(int r) {
+    LinearEqn eqn = eqns[r];
+    long rhs = eqn.getRhs().longValueExact();
+    int len = 0;
+    for (Terms ts = eqn.getLhs(); ts != null; ts = ts.next) {
+      len++;
+    }
+    int[] vs = new int[len];
+    long[] cs = new long[len];
+    len = 0;
+    for (Terms ts = eqn.getLhs(); ts != null; ts = ts.next) {
+      long c = ts.coeff.longValueExact();
+      Type t = ts.t.simplifyNatType(null);
+      BigInteger n = t.getNat();
+      if (n != null) { // This term has a known value, so move it to the rhs
+        rhs = Math.subtractExact(rhs, Math.multiplyExact(c, n.longValueExact()));
+      } else {
+        vs[len] = varNum(t, ts.hint);
+        cs[len++] = c;
+      }
+    }
+
+    // Sort the terms by variable number (rows are usually very short, so insertion sort is fine):
+    for (int i = 1; i < len; i++) {
+      int v = vs[i];
+      long c = cs[i];
+      int j = i;
+      for (; j > 0 && vs[j - 1] > v; j--) {
+        vs[j] = vs[j - 1];
+        cs[j] = cs[j - 1];
+      }
+      vs[j] = v;
+      cs[j] = c;
+    }
+
+    // Combine multiple terms for the same variable, and drop any terms with zero coefficients:
+    int n = 0;
+    for (int i = 0; i < len; i++) {
+      if (n > 0 && vs[n - 1] == vs[i]) {
+        cs[n - 1] = Math.addExact(cs[n - 1], cs[i]);
+        if (cs[n - 1] == 0) {
+          n--;
+        }
+      } else {
+        vs[n] = vs[i];
+        cs[n++] = cs[i];
+      }
+    }
+    rowVars[r] = vs;
+    rowCoeffs[r] = cs;
+    rowLen[r] = n;
+    rowRhs[r] = rhs;
+  }
+
+  /** Record the fact that row r mentions variable v. */
+  private void addToCol(int v, int r) {
+    int[] rows = colRows[v];
+    if (rows == null) {
+      rows = colRows[v] = new int[4];
+    } else if (colLen[v] == rows.length) {
+      int[] nrows = new int[2 * rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        nrows[i] = rows[i];
+      }
+      rows = colRows[v] = nrows;
+    }
+    rows[colLen[v]++] = r;
+  }
+
+  /** Add row r to the stack of rows that should be checked. */
+  private void push(int r) {
+    if (numPending == pending.length) {
+      int[] npending = new int[2 * numPending];
+      for (int i = 0; i < numPending; i++) {
+        npending[i] = pending[i];
+      }
+      pending = npending;
+    }
+    pending[numPending++] = r;
+  }
+
+  /** Return the index of the term for variable v in row r, or -1 if there is no such term. */
+  private int find(int r, int v) {
+    int[] vs = rowVars[r];
+    int lo = 0;
+    int hi = rowLen[r] - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (vs[mid] < v) {
+        lo = mid + 1;
+      } else if (vs[mid] > v) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /** Remove the ith term from row r. */
+  private void remove(int r, int i) {
+    int[] vs = rowVars[r];
+    long[] cs = rowCoeffs[r];
+    int len = --rowLen[r];
+    for (; i < len; i++) {
+      vs[i] = vs[i + 1];
+      cs[i] = cs[i + 1];
+    }
+  }
+
+  /**
+   * Solve this system of equations, binding each of the unknowns to the corresponding value, or
+   * throwing a Failure if there is no unique solution.
+   */
+  void solve() throws Failure {
+    for (int r = eqns.length - 1; r >= 0; r--) {
+      push(r);
+    }
+    for (; ; ) {
+      while (numPending > 0) { // Solve any equations that have been reduced to a single term
+        check(pending[--numPending]);
+      }
+      int r = choosePivot();
+      if (r < 0) {
+        break;
+      }
+      eliminate(r, chooseVar(r));
+    }
+
+    // Any remaining rows have more than one solution:
+    for (int r = eqns.length - 1; r >= 0; r--) {
+      if (!solved[r]) {
+        writeBack(r);
+        throw new MultipleSolutionsFailure(eqns[r]);
+      }
+    }
+
+    // Bind each unknown to its value now that we know the system has a solution:
+    for (int v = 0; v < numVars; v++) {
+      if (known[v]) {
+        vars[v].bindNat(BigInteger.valueOf(values[v]));
+      }
+    }
+  }
+
+  /**
+   * Check to see if row r has been reduced to a form with one or fewer terms, in which case we can
+   * either find a value for the remaining variable, or confirm that the equation is satisfied.
+   */
+  private void check(int r) throws Failure {
+    if (solved[r]) {
+      return;
+    } else if (rowLen[r] == 0) { // If there are no terms, then the rhs should be zero
+      if (rowRhs[r] != 0) {
+        throw new WidthsDifferFailure(
+            eqns[r].getPos(), BigInteger.valueOf(rowRhs[r]), eqns[r].getLabel());
+      }
+      solved[r] = true;
+    } else if (rowLen[r] == 1) { // If there is exactly one term, then find its value
+      long c = rowCoeffs[r][0];
+      long n = rowRhs[r];
+      if (c < 0) {
+        c = Math.negateExact(c);
+        n = Math.negateExact(n);
+      }
+      if (n % c != 0 || n < 0) {
+        writeBack(r);
+        throw new CannotSatisfyFailure(eqns[r]);
+      }
+      solved[r] = true;
+      assign(rowVars[r][0], n / c);
+    }
+  }
+
+  /** Set the value of variable v to n, substituting that value in to every row that mentions v. */
+  private void assign(int v, long n) {
+    known[v] = true;
+    values[v] = n;
+    int[] rows = colRows[v];
+    for (int k = 0; k < colLen[v]; k++) {
+      int r = rows[k];
+      int i;
+      if (!solved[r] && (i = find(r, v)) >= 0) {
+        rowRhs[r] = Math.subtractExact(rowRhs[r], Math.multiplyExact(rowCoeffs[r][i], n));
+        remove(r, i);
+        push(r);
+      }
+    }
+    colLen[v] = 0;
+  }
+
+  /**
+   * Choose a row to use in the next elimination step, or return -1 if there are no suitable rows.
+   * We pick the shortest row that has not already been solved or used in a previous elimination.
+   */
+  private int choosePivot() {
+    int best = -1;
+    for (int r = 0; r < eqns.length; r++) {
+      if (!solved[r] && !pivoted[r] && (best < 0 || rowLen[r] < rowLen[best])) {
+        best = r;
+        if (rowLen[r] == 2) { // We cannot do better than this
+          break;
+        }
+      }
+    }
+    return best;
+  }
+
+  /** Choose the variable in row r that is mentioned in the fewest other rows. */
+  private int chooseVar(int r) {
+    int best = rowVars[r][0];
+    for (int i = 1; i < rowLen[r]; i++) {
+      int v = rowVars[r][i];
+      if (colLen[v] < colLen[best]) {
+        best = v;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Use row r to eliminate variable v from every other row that mentions it, with the exception of
+   * rows that have already been used in an earlier elimination step.
+   */
+  private void eliminate(int r, int v) {
+    pivoted[r] = true;
+    long c = rowCoeffs[r][find(r, v)];
+    int[] rows = colRows[v];
+    int n = 0; // number of rows that will still mention v
+    for (int k = 0; k < colLen[v]; k++) {
+      int s = rows[k];
+      int i;
+      if (solved[s] || (i = find(s, v)) < 0) {
+        continue; // A stale entry
+      } else if (s != r && !pivoted[s]) {
+        long d = rowCoeffs[s][i];
+        long g = gcd(c, d);
+        combine(s, c / g, r, d / g);
+        push(s);
+      } else {
+        rows[n++] = s;
+      }
+    }
+    colLen[v] = n;
+  }
+
+  /** Return the greatest common divisor of two nonzero values. */
+  private static long gcd(long a, long b) {
+    a = Math.abs(a);
+    b = Math.abs(b);
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  /**
+   * Replace row s with (a * s - b * r), updating the column information for any variables that are
+   * introduced to s as a result.
+   */
+  private void combine(int s, long a, int r, long b) {
+    int[] svs = rowVars[s];
+    long[] scs = rowCoeffs[s];
+    int slen = rowLen[s];
+    int[] rvs = rowVars[r];
+    long[] rcs = rowCoeffs[r];
+    int rlen = rowLen[r];
+    int[] vs = new int[slen + rlen];
+    long[] cs = new long[slen + rlen];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < slen || j < rlen) {
+      long coeff;
+      int v;
+      if (j >= rlen || (i < slen && svs[i] < rvs[j])) {
+        v = svs[i];
+        coeff = Math.multiplyExact(a, scs[i++]);
+      } else if (i >= slen || rvs[j] < svs[i]) {
+        v = rvs[j];
+        coeff = Math.negateExact(Math.multiplyExact(b, rcs[j++]));
+        addToCol(v, s); // A new variable for row s
+      } else {
+        v = svs[i];
+        coeff =
+            Math.subtractExact(Math.multiplyExact(a, scs[i++]), Math.multiplyExact(b, rcs[j++]));
+      }
+      if (coeff != 0) {
+        vs[n] = v;
+        cs[n++] = coeff;
+      }
+    }
+    rowVars[s] = vs;
+    rowCoeffs[s] = cs;
+    rowLen[s] = n;
+    rowRhs[s] =
+        Math.subtractExact(Math.multiplyExact(a, rowRhs[s]), Math.multiplyExact(b, rowRhs[r]));
+  }
+
+  /**
+   * Update the equation for row r to reflect the current contents of the row, so that error
+   * messages show the equation that could not be solved rather than its original form.
+   */
+  private void writeBack(int r) {
+    Terms lhs = null;
+    for (int i = rowLen[r] - 1; i >= 0; i--) {
+      int v = rowVars[r][i];
+      lhs = new Terms(BigInteger.valueOf(rowCoeffs[r][i]), vars[v], hints[v], lhs);
+    }
+    eqns[r].setEqn(lhs, BigInteger.valueOf(rowRhs[r]));
+  }
+}
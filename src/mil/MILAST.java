@@ -54,15 +54,17 @@ class MILAST extends CoreProgram {
   void syntaxAnalysis(Handler handler, MILLoader loader) throws Failure {
     debug.Log.println("Loading " + name + " ...");
     try {
-      Reader reader = new FileReader(loader.findFile(handler, name));
+      String filename = loader.findFile(handler, name);
+      Reader reader = new FileReader(filename);
       Source source = new JavaSource(handler, name, reader);
       if (name.endsWith(".lmil")) {
         source = new LiterateSource(handler, true, source);
       }
-      source = new CacheSource(handler, source); // Add a caching layer
+      source = new CacheSource(handler, source, filename); // Add a caching layer
       MILLexer lexer = new MILLexer(handler, true, source);
       MILParser parser = new MILParser(handler, lexer, loader);
       parser.parse(this);
+      lexer.close(); // Source text is no longer needed once parsing is complete
     } catch (FileNotFoundException e) {
       handler.report(new Failure("Cannot open input file \"" + name + "\""));
     }
@@ -182,4 +184,10 @@ class MILAST extends CoreProgram {
       ds.head.addAsEntryTo(mil);
     }
   }
+
+  /** Discard abstract syntax once the definitions in this MILAST are added to a program. */
+  public void release() {
+    super.release();
+    milDefns = milDefnsLast = null;
+  }
 }
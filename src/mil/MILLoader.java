@@ -109,6 +109,7 @@ public class MILLoader extends core.Loader {
         // Run scope analysis:
         milenv = ast.scopeAnalysis(handler, tenv, milenv, program);
         ast.addDefnsTo(full);
+        ast.release(); // Abstract syntax is not needed beyond this point
       }
     }
 
@@ -21,6 +21,10 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /** Provides a representation for MIL programs. */
 public class MILProgram {
@@ -140,6 +144,7 @@ public class MILProgram {
     for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
       dsccs.head.generateFunctions(builder);
     }
+    builder.optimize();
     return builder;
   }
 
@@ -280,6 +285,25 @@ public class MILProgram {
    */
   public static boolean wordspec = false;
 
+  /**
+   * Generate LLVM code that works with the precise garbage collector in lib/gc.c: every object has
+   * a header that points to a descriptor for its layout, and every function that might allocate
+   * records the pointers that it holds on LLVM's shadow stack.
+   */
+  public static boolean gc = false;
+
+  /**
+   * Use escape analysis to identify objects that are only used within the function that allocates
+   * them, and store those objects on the stack instead of the heap.
+   */
+  public static boolean stackAlloc = true;
+
+  /**
+   * Represent constructors with no fields by small odd integers instead of pointers to objects in
+   * LLVM code, for data types that have at most one constructor with fields.
+   */
+  public static boolean taggedPtrs = false;
+
   void invariantAnalysis() {
     for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
       dsccs.head.invariantAnalysis();
@@ -493,6 +517,29 @@ public class MILProgram {
     }
   }
 
+  /**
+   * Run return and effect analysis on every definition in this program, in dependency order, to
+   * calculate the attributes for the corresponding LLVM functions. This must be done after
+   * calcStaticValues(), which determines which top level values will have to be loaded from memory.
+   */
+  void analyzeEffects() {
+    for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
+      dsccs.head.returnAnalysis();
+      dsccs.head.effectAnalysis();
+    }
+  }
+
+  /**
+   * Run escape analysis on every definition in this program, in dependency order, to determine
+   * which Block parameters might escape. This information is used to decide which allocations can
+   * be placed on the stack.
+   */
+  void analyzeEscapes() {
+    for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
+      dsccs.head.escapeAnalysis();
+    }
+  }
+
   /** Records the list of CFGs that have been generated for this program. */
   private CFGs cfgs;
 
@@ -503,27 +550,55 @@ public class MILProgram {
 
   /** Generate an LLVM implementation of this MIL program. */
   public llvm.Program toLLVM() throws Failure {
+    llvm.Program prog = new llvm.Program();
+    toLLVM(prog);
+    return prog;
+  }
+
+  /**
+   * Generate an LLVM implementation of this MIL program, adding each definition to the given
+   * program as soon as it is generated. If prog is in streaming mode, then each function will be
+   * written out, and can be garbage collected, before the code for the next function is produced.
+   */
+  public void toLLVM(llvm.Program prog) throws Failure {
+    toLLVM(prog, 1);
+  }
+
+  /**
+   * Generate an LLVM implementation of this MIL program, as above, but using the specified number
+   * of threads to translate CFGs into LLVM functions. The output does not depend on the number of
+   * threads that are used.
+   */
+  public void toLLVM(llvm.Program prog, int threads) throws Failure {
     llvm.Type.setWord(Word.size());
     analyzeCalls();
 
-    llvm.Program prog = new llvm.Program();
     LLVMMap lm = new LLVMMap(prog);
     llvm.Code edoc = null;
     InitVarMap ivm = new InitVarMap();
     cfgs = null;
     calcStaticValues(lm, prog);
+    lm.areaScopes();
+    analyzeEffects();
+    if (stackAlloc) {
+      analyzeEscapes();
+    }
 
-    for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
-      for (Defns ds = dsccs.head.getBindings(); ds != null; ds = ds.next) {
-        // Generate code to initialize TopLevels that do not have static values.
-        edoc = ds.head.addRevInitCode(lm, ivm, edoc);
-        // Generate CFGs as required for each Block and ClosureDefn
-        CFG cfg = ds.head.makeCFG();
-        if (cfg != null) {
-          TempSubst s = cfg.paramElim();
-          // System.out.println(TempSubst.toString(s));
-          prog.add(cfg.toLLVMFuncDefn(lm, s));
-          cfgs = new CFGs(cfg, cfgs);
+    if (threads > 1) {
+      edoc = parallelToLLVM(lm, ivm, prog, threads);
+    } else {
+      for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
+        for (Defns ds = dsccs.head.getBindings(); ds != null; ds = ds.next) {
+          // Generate code to initialize TopLevels that do not have static values.
+          edoc = ds.head.addRevInitCode(lm, ivm, edoc);
+          // Generate CFGs as required for each Block and ClosureDefn
+          CFG cfg = ds.head.makeCFG();
+          if (cfg != null) {
+            TempSubst s = cfg.paramElim();
+            // System.out.println(TempSubst.toString(s));
+            prog.add(cfg.toLLVMFuncDefn(lm, s));
+            cfgs = new CFGs(cfg, cfgs);
+          }
         }
       }
     }
@@ -538,7 +613,70 @@ public class MILProgram {
       throw new Failure(
           "LLVM program requires initialization function (set using --llvm-main=NAME)");
     }
-    return prog;
+    if (gc) {
+      lm.gcGlobalRoots();
+    }
+  }
+
+  /**
+   * Generate LLVM functions for the definitions in this program using a fork-join pool with the
+   * given number of threads, returning the (reversed) initialization code. Initialization code and
+   * CFGs are still constructed sequentially, in program order, because they use global counters to
+   * generate fresh names; only the translation of each CFG into an LLVM function runs in parallel.
+   * The definitions that each function requires are recorded in a separate list of events, and the
+   * lists are replayed in program order, so the output is the same as for sequential generation.
+   */
+  private llvm.Code parallelToLLVM(
+      final LLVMMap lm, InitVarMap ivm, llvm.Program prog, int threads) {
+    ArrayList<LLVMEvents> events = new ArrayList<LLVMEvents>();
+    ArrayList<ForkJoinTask<llvm.FuncDefn>> tasks = new ArrayList<ForkJoinTask<llvm.FuncDefn>>();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    llvm.Code edoc = null;
+    try {
+      for (DefnSCCs dsccs = sccs; dsccs != null; dsccs = dsccs.next) {
+        for (Defns ds = dsccs.head.getBindings(); ds != null; ds = ds.next) {
+          final LLVMEvents evs = new LLVMEvents();
+          lm.record(evs);
+          edoc = ds.head.addRevInitCode(lm, ivm, edoc);
+          lm.record(null);
+          final CFG cfg = ds.head.makeCFG();
+          ForkJoinTask<llvm.FuncDefn> task = null;
+          if (cfg != null) {
+            final TempSubst s = cfg.paramElim();
+            task =
+                pool.submit(
+                    new Callable<llvm.FuncDefn>() {
+                      public llvm.FuncDefn call() {
+                        lm.record(evs);
+                        try {
+                          return cfg.toLLVMFuncDefn(lm, s);
+                        } finally {
+                          lm.record(null);
+                        }
+                      }
+                    });
+            cfgs = new CFGs(cfg, cfgs);
+          }
+          events.add(evs);
+          tasks.add(task);
+        }
+      }
+
+      // Add the output for each definition to the program, in order:
+      for (int i = 0; i < events.size(); i++) {
+        ForkJoinTask<llvm.FuncDefn> task = tasks.get(i);
+        llvm.FuncDefn fd = (task == null) ? null : task.join();
+        events.get(i).replay(prog);
+        if (fd != null) {
+          prog.add(fd);
+        }
+        events.set(i, null); // Allow the code for this definition to be garbage collected
+        tasks.set(i, null);
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return edoc;
   }
 
   /**
@@ -83,6 +83,16 @@ public class MILSpec extends TypeSet {
    */
   private HashMap<Defn, Defns> specialized = new HashMap();
 
+  /**
+   * Discard the mapping from original definitions to their specialized versions. The mapping is
+   * only needed while specialization is in progress, or to display the specialization type set, so
+   * releasing it once the specialized program has been generated allows the original, polymorphic
+   * program to be garbage collected.
+   */
+  public void releaseSpecializations() {
+    specialized = new HashMap();
+  }
+
   /** A list of requested specializations. */
   private SpecReqs requested = null;
 
@@ -21,13 +21,18 @@ package mil;
 import compiler.*;
 import core.*;
 import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.ThreadFactory;
 
 /** Defines an abstract machine with a bytecode (really "int"code) execution engine. */
 public class Machine {
 
-  private Value[] globals;
+  Value[] globals;
 
-  private int numGlobals = 0;
+  int numGlobals = 0;
+
+  /** Holds the memory areas that are used by this program. */
+  Memory memory = new Memory();
 
   int addGlobal(Value val) {
     if (globals == null) {
@@ -48,43 +53,92 @@ public class Machine {
     return "[" + d + "]";
   }
 
-  private static final int STOP = 0;
+  static final int STOP = 0;
+
+  static final int JUMP = 1;
+
+  static final int JFALSE = 2;
+
+  static final int JNTAG = 3;
+
+  static final int CALL = 4;
+
+  static final int RETURN = 5;
+
+  static final int CJUMP = 6;
+
+  static final int CCALL = 7;
+
+  static final int PRIM = 8;
 
-  private static final int JUMP = 1;
+  static final int LOAD = 9;
 
-  private static final int JFALSE = 2;
+  static final int GLOAD = 10;
 
-  private static final int JNTAG = 3;
+  static final int STORE = 11;
 
-  private static final int CALL = 4;
+  static final int COPY = 12;
 
-  private static final int RETURN = 5;
+  static final int GCOPY = 13;
 
-  private static final int CJUMP = 6;
+  static final int GSAVE = 14;
 
-  private static final int CCALL = 7;
+  static final int ALLOC = 15;
 
-  private static final int PRIM = 8;
+  static final int SEL = 16;
 
-  private static final int LOAD = 9;
+  // Superinstructions, introduced by the peephole optimizer.  Each superinstruction replaces a
+  // sequence of the basic instructions above in place, occupying the same number of words as the
+  // original sequence so that no code addresses need to be changed.  Any words that are not needed
+  // for the operands of the superinstruction are skipped at runtime.  WCONST is not a sequence,
+  // but a specialized form of GCOPY for a global that holds a constant word.
 
-  private static final int GLOAD = 10;
+  static final int PRIMJF = 17;
 
-  private static final int STORE = 11;
+  static final int WCONST = 18;
 
-  private static final int COPY = 12;
+  static final int LDSEL = 19;
 
-  private static final int GCOPY = 13;
+  static final int SELS = 20;
 
-  private static final int GSAVE = 14;
+  static final int COPYN = 21;
 
-  private static final int ALLOC = 15;
+  static final int LDST = 22;
 
-  private static final int SEL = 16;
+  static final int ALLOCST = 23;
 
-  private int[] prog;
+  /** Flag to indicate whether the peephole optimizer should be used. */
+  public static boolean peephole = true;
 
-  private int nextAddr = 0;
+  int[] prog;
+
+  int nextAddr = 0;
+
+  /**
+   * The machine that holds the original program for this machine. This is the machine itself
+   * unless it was created by newContext.
+   */
+  private Machine program = this;
+
+  /**
+   * Create a new execution context for the program in this machine. The code, initial globals,
+   * memory image, and JIT translation of the program are shared with this machine (none of these
+   * are modified once the program has been built), but the new machine has its own stacks, globals,
+   * memory, output stream, and counters. As a result, several contexts for the same program can be
+   * used to run the program at the same time in different threads. No further code should be added
+   * to a machine once contexts have been created.
+   */
+  public Machine newContext() {
+    Machine m = new Machine();
+    m.program = program;
+    m.prog = prog;
+    m.nextAddr = nextAddr;
+    m.globals = globals;
+    m.numGlobals = numGlobals;
+    m.frameExtent = getFrameExtent();
+    m.memory = new Memory(memory);
+    return m;
+  }
 
   int getNextAddr() {
     return nextAddr;
@@ -211,6 +265,263 @@ public class Machine {
     prog[iaddr] = val;
   }
 
+  /** Return the number of words occupied by the instruction at the given address. */
+  int instrLength(int pc) {
+    switch (prog[pc]) {
+      case STOP:
+      case RETURN:
+      case CJUMP:
+        return 1;
+
+      case JUMP:
+      case JFALSE:
+      case CCALL:
+      case LOAD:
+      case GLOAD:
+      case STORE:
+        return 2;
+
+      case JNTAG:
+      case CALL:
+      case PRIM:
+      case COPY:
+      case GCOPY:
+      case GSAVE:
+      case SEL:
+        return 3;
+
+      case WCONST:
+        return 3;
+
+      case ALLOC:
+      case LDST:
+        return 4;
+
+      case LDSEL:
+        return 5;
+
+      case ALLOCST:
+        return 6;
+
+      case PRIMJF:
+        return 7;
+
+      case SELS:
+        return prog[pc + 1];
+
+      case COPYN:
+        return 3 * prog[pc + 1];
+    }
+    debug.Internal.error("Unrecognized opcode " + prog[pc] + " at address " + pc);
+    return 1;
+  }
+
+  /**
+   * Run a peephole optimization pass over the program in this machine. The optimizer retargets
+   * jumps whose destination is another jump, and then replaces common instruction sequences with
+   * superinstructions. Sequences are only fused if none of the instructions after the first is the
+   * target of a jump, call, or closure, so every address that may be used for control transfer
+   * still refers to the start of an instruction. The code layout, and hence every code address, is
+   * unchanged by this process.
+   */
+  void peephole() {
+    // Find the starting address of each instruction and the set of possible control targets.
+    // Allocation tags are treated as potential targets because they may be closure addresses.
+    boolean[] start = new boolean[nextAddr + 1];
+    boolean[] target = new boolean[nextAddr + 1];
+    target[0] = true;
+    for (int pc = 0; pc < nextAddr; pc += instrLength(pc)) {
+      start[pc] = true;
+      switch (prog[pc]) {
+        case JUMP:
+        case JFALSE:
+          markTarget(target, prog[pc + 1]);
+          break;
+
+        case JNTAG:
+        case CALL:
+          markTarget(target, prog[pc + 2]);
+          break;
+
+        case ALLOC:
+          markTarget(target, prog[pc + 1]);
+          break;
+      }
+      if (prog[pc] == CALL || prog[pc] == CCALL) { // return addresses are also targets
+        markTarget(target, pc + instrLength(pc));
+      }
+    }
+
+    // Retarget jumps whose destination is an unconditional jump:
+    for (int pc = 0; pc < nextAddr; pc += instrLength(pc)) {
+      switch (prog[pc]) {
+        case JUMP:
+        case JFALSE:
+          prog[pc + 1] = jumpDest(prog[pc + 1]);
+          break;
+
+        case JNTAG:
+          prog[pc + 2] = jumpDest(prog[pc + 2]);
+          break;
+      }
+    }
+
+    // Replace instruction sequences with superinstructions:
+    for (int pc = 0; pc < nextAddr; pc += instrLength(pc)) {
+      int next = pc + instrLength(pc);
+      switch (prog[pc]) {
+        case PRIM: // PRIM o p; LOAD x; JFALSE addr  ==>  PRIMJF o p x addr
+          if (fusable(next, LOAD, start, target) && fusable(next + 2, JFALSE, start, target)) {
+            int x = prog[next + 1];
+            int addr = prog[next + 3];
+            clear(pc + 3, pc + 7);
+            prog[pc] = PRIMJF;
+            prog[pc + 3] = x;
+            prog[pc + 4] = addr;
+          }
+          break;
+
+        case GCOPY: // GCOPY g d  ==>  WCONST n d, if global g is the word n
+          {
+            int g = prog[pc + 1];
+            Value v = (g < numGlobals) ? globals[g] : null;
+            if (v != null && v.refRep() == null && v.wordRep() == (int) v.wordRep()) {
+              prog[pc] = WCONST;
+              prog[pc + 1] = (int) v.wordRep();
+            }
+          }
+          break;
+
+        case LOAD:
+          if (fusable(next, SEL, start, target)) {
+            fuseSels(pc, start, target);
+          } else if (fusable(next, STORE, start, target)) { // LOAD x; STORE d  ==>  LDST x d
+            prog[pc] = LDST;
+            prog[pc + 2] = prog[next + 1];
+            prog[pc + 3] = 0;
+          }
+          break;
+
+        case COPY: // COPY s1 d1; ...; COPY sk dk  ==>  COPYN k s1 d1 ... sk dk
+          {
+            int k = 1;
+            while (fusable(pc + 3 * k, COPY, start, target)) {
+              k++;
+            }
+            if (k > 1) {
+              int[] pairs = new int[2 * k];
+              for (int i = 0; i < k; i++) {
+                pairs[2 * i] = prog[pc + 3 * i + 1];
+                pairs[2 * i + 1] = prog[pc + 3 * i + 2];
+              }
+              clear(pc + 1, pc + 3 * k);
+              prog[pc] = COPYN;
+              prog[pc + 1] = k;
+              for (int i = 0; i < 2 * k; i++) {
+                prog[pc + 2 + i] = pairs[i];
+              }
+            }
+          }
+          break;
+
+        case ALLOC: // ALLOC tag n o; STORE d  ==>  ALLOCST tag n o d
+          if (fusable(next, STORE, start, target)) {
+            prog[pc] = ALLOCST;
+            prog[pc + 4] = prog[next + 1];
+            prog[pc + 5] = 0;
+          }
+          break;
+      }
+    }
+  }
+
+  /** Record the given address as a possible control target. */
+  private void markTarget(boolean[] target, int addr) {
+    if (addr >= 0 && addr < target.length) {
+      target[addr] = true;
+    }
+  }
+
+  /**
+   * Find the final destination for a jump to the given address, following any chain of
+   * unconditional jumps (but stopping if a cycle is detected).
+   */
+  private int jumpDest(int addr) {
+    for (int n = 0; n < 100 && addr >= 0 && addr < nextAddr && prog[addr] == JUMP; n++) {
+      if (prog[addr + 1] == addr) {
+        break;
+      }
+      addr = prog[addr + 1];
+    }
+    return addr;
+  }
+
+  /**
+   * Determine whether the instruction at the given address can be included as a later part of a
+   * superinstruction: it must have the specified opcode, and must not be the target of a jump.
+   */
+  private boolean fusable(int pc, int op, boolean[] start, boolean[] target) {
+    return pc < nextAddr && start[pc] && !target[pc] && prog[pc] == op;
+  }
+
+  /** Set the words in the specified range of the program to zero. */
+  private void clear(int lo, int hi) {
+    for (int i = lo; i < hi; i++) {
+      prog[i] = 0;
+    }
+  }
+
+  /**
+   * Fuse a sequence of the form LOAD x; SEL i1 d1; ...; SEL ik dk, possibly including repeated
+   * LOAD x instructions, into a single LDSEL or SELS instruction. A repeated LOAD x is only
+   * redundant if slot x has not been overwritten by a previous SEL in the same sequence.
+   */
+  private void fuseSels(int pc, boolean[] start, boolean[] target) {
+    int x = prog[pc + 1];
+    int end = pc + 2;
+    int k = 0;
+    int[] pairs = new int[8];
+    for (; ; ) {
+      if (fusable(end, SEL, start, target)) {
+        if (2 * k >= pairs.length) {
+          int[] newpairs = new int[2 * pairs.length];
+          for (int i = 0; i < pairs.length; i++) {
+            newpairs[i] = pairs[i];
+          }
+          pairs = newpairs;
+        }
+        pairs[2 * k] = prog[end + 1];
+        pairs[2 * k + 1] = prog[end + 2];
+        k++;
+        end += 3;
+        if (prog[end - 1] == x) { // slot x has been overwritten
+          break;
+        }
+      } else if (fusable(end, LOAD, start, target)
+          && prog[end + 1] == x
+          && fusable(end + 2, SEL, start, target)) {
+        end += 2;
+      } else {
+        break;
+      }
+    }
+    if (k == 1 && end == pc + 5) { // LOAD x; SEL i d  ==>  LDSEL x i d
+      prog[pc] = LDSEL;
+      prog[pc + 2] = pairs[0];
+      prog[pc + 3] = pairs[1];
+      prog[pc + 4] = 0;
+    } else { // LOAD x; SEL i1 d1; ...  ==>  SELS len x k i1 d1 ...
+      clear(pc, end);
+      prog[pc] = SELS;
+      prog[pc + 1] = end - pc;
+      prog[pc + 2] = x;
+      prog[pc + 3] = k;
+      for (int i = 0; i < 2 * k; i++) {
+        prog[pc + 4 + i] = pairs[i];
+      }
+    }
+  }
+
   /**
    * Write a bytecode listing of the program in this machine to the specified PrintWriter using the
    * given AddrMap.
@@ -316,51 +627,103 @@ public class Machine {
           out.println("SEL " + prog[pc] + ", " + prog[pc + 1]);
           pc += 2;
           continue;
-      }
-    }
-    addrMap.dump(out); // dump symbol table
-    out.println("Code size = " + nextAddr + " words");
-  }
 
-  private static class Context {
+        case PRIMJF:
+          out.println(
+              "PRIMJF o="
+                  + prog[pc]
+                  + ", "
+                  + Prim.showPrim(prog[pc + 1])
+                  + ", "
+                  + prog[pc + 2]
+                  + ", "
+                  + addrMap.codeLabel(prog[pc + 3]));
+          out.println();
+          pc += 6;
+          continue;
+
+        case WCONST:
+          out.println("WCONST " + prog[pc] + ", " + prog[pc + 1]);
+          pc += 2;
+          continue;
 
-    private int fp;
+        case LDSEL:
+          out.println("LDSEL " + prog[pc] + ", " + prog[pc + 1] + ", " + prog[pc + 2]);
+          pc += 4;
+          continue;
 
-    private int pc;
+        case SELS:
+          {
+            StringBuilder buf = new StringBuilder("SELS ");
+            buf.append(prog[pc + 1]);
+            for (int i = 0; i < prog[pc + 2]; i++) {
+              buf.append(", ");
+              buf.append(prog[pc + 3 + 2 * i]);
+              buf.append("->");
+              buf.append(prog[pc + 4 + 2 * i]);
+            }
+            out.println(buf.toString());
+            pc += prog[pc] - 1;
+          }
+          continue;
 
-    private Context enclosing;
+        case COPYN:
+          {
+            StringBuilder buf = new StringBuilder("COPYN");
+            for (int i = 0; i < prog[pc]; i++) {
+              buf.append((i == 0) ? " " : "; ");
+              buf.append(prog[pc + 1 + 2 * i]);
+              buf.append(", ");
+              buf.append(prog[pc + 2 + 2 * i]);
+            }
+            out.println(buf.toString());
+            pc += 3 * prog[pc] - 1;
+          }
+          continue;
 
-    /** Default constructor. */
-    private Context(int fp, int pc, Context enclosing) {
-      this.fp = fp;
-      this.pc = pc;
-      this.enclosing = enclosing;
-    }
+        case LDST:
+          out.println("LDST " + prog[pc] + ", " + prog[pc + 1]);
+          pc += 3;
+          continue;
 
-    Context reuse(int fp, int pc, Context enclosing) {
-      this.fp = fp;
-      this.pc = pc;
-      Context old = this.enclosing;
-      this.enclosing = enclosing;
-      return old;
+        case ALLOCST:
+          out.println(
+              "ALLOCST "
+                  + addrMap.codeLabel(prog[pc])
+                  + ", n="
+                  + prog[pc + 1]
+                  + ", o="
+                  + prog[pc + 2]
+                  + ", "
+                  + prog[pc + 3]);
+          pc += 5;
+          continue;
+      }
     }
+    addrMap.dump(out); // dump symbol table
+    out.println("Code size = " + nextAddr + " words");
   }
 
-  private Context saved;
+  /** Initial size of the control stack (in words, with two words for each saved context). */
+  private static final int INITIAL_CONTROL = 512;
 
-  private Context cached = null;
+  /**
+   * The control stack, which holds a (frame pointer, return address) pair for each active call.
+   * The pair for the most recent call is stored at control[csp-2] and control[csp-1].
+   */
+  private int[] control = new int[INITIAL_CONTROL];
 
-  private int callDepth;
+  /** The control stack pointer. */
+  private int csp;
 
   private int maxCallDepth;
 
   /**
-   * Set the control stack for this machine to empty (but cached contexts from previous runs may be
-   * kept).
+   * Set the control stack for this machine to empty (but retain the arrays that were allocated in
+   * previous runs).
    */
   private void resetControlStack() {
-    saved = null;
-    callDepth = 0;
+    csp = 0;
     maxCallDepth = 0;
   }
 
@@ -369,26 +732,367 @@ public class Machine {
   }
 
   /**
-   * Push an entry on to the current control stack to save the specified fp and pc values. This will
-   * either use a previously cached Context, or, if required, allocate a new one.
+   * Push an entry on to the current control stack to save the specified fp and pc values, growing
+   * the control stack if necessary.
    */
   private void saveContext(int fp, int pc) {
-    if (++callDepth > maxCallDepth) {
-      maxCallDepth = callDepth;
+    if (csp + 2 > control.length) {
+      int[] newcontrol = new int[2 * control.length];
+      for (int i = 0; i < csp; i++) {
+        newcontrol[i] = control[i];
+      }
+      control = newcontrol;
     }
-    if (cached != null) { // Use a cached context if one is available
-      cached.fp = fp;
-      cached.pc = pc;
-      Context ncached = cached.enclosing;
-      cached.enclosing = saved;
-      saved = cached;
-      cached = ncached;
-    } else { // Or allocate a new context if necessary
-      saved = new Context(fp, pc, saved);
+    control[csp++] = fp;
+    control[csp++] = pc;
+    if (csp > 2 * maxCallDepth) {
+      maxCallDepth = csp / 2;
+    }
+  }
+
+  /** Initial size of the word and reference stacks. */
+  private static final int INITIAL_STACK = 4096;
+
+  /** The word stack, which holds the word component of the value in each frame slot. */
+  long[] words = new long[INITIAL_STACK];
+
+  /** The reference stack, which holds the reference component of the value in each frame slot. */
+  Object[] refs = new Object[INITIAL_STACK];
+
+  /**
+   * An upper bound on the frame slots that are accessed relative to the frame pointer by any
+   * instruction in the program, or -1 if this has not been calculated yet. By checking that this
+   * many slots are available each time that a new frame is started (i.e., on each CALL and CCALL),
+   * we can grow the stacks on demand without adding bounds checks to every frame access.
+   */
+  private int frameExtent = (-1);
+
+  /**
+   * If the frame pointer drops below this value on a RETURN, then the stacks are larger than they
+   * need to be (following an earlier spike in stack use) and can be shrunk. A value of -1 indicates
+   * that the stacks are already at their initial size.
+   */
+  private int shrinkMark = (-1);
+
+  /** Calculate an upper bound for the frame slots that are accessed by instructions in prog. */
+  private int calcFrameExtent() {
+    int max = 0;
+    for (int pc = 0; pc < nextAddr; pc += instrLength(pc)) {
+      int n = 0;
+      switch (prog[pc]) {
+        case CALL:
+        case CCALL:
+        case LOAD:
+        case STORE:
+        case GSAVE:
+          n = prog[pc + 1];
+          break;
+
+        case PRIM:
+          n = prog[pc + 1] + primExtent(prog[pc + 2]);
+          break;
+
+        case PRIMJF:
+          n = Math.max(prog[pc + 1] + primExtent(prog[pc + 2]), prog[pc + 3]);
+          break;
+
+        case COPY:
+        case LDST:
+          n = Math.max(prog[pc + 1], prog[pc + 2]);
+          break;
+
+        case GCOPY:
+        case SEL:
+        case WCONST:
+          n = prog[pc + 2];
+          break;
+
+        case ALLOC:
+          n = prog[pc + 3] + prog[pc + 2];
+          break;
+
+        case ALLOCST:
+          n = Math.max(prog[pc + 3] + prog[pc + 2], prog[pc + 4]);
+          break;
+
+        case LDSEL:
+          n = Math.max(prog[pc + 1], prog[pc + 3]);
+          break;
+
+        case SELS:
+          n = prog[pc + 2];
+          for (int k = prog[pc + 3], j = pc + 5; k > 0; k--, j += 2) {
+            n = Math.max(n, prog[j]);
+          }
+          break;
+
+        case COPYN:
+          for (int k = prog[pc + 1], j = pc + 2; k > 0; k--, j += 2) {
+            n = Math.max(n, Math.max(prog[j], prog[j + 1]));
+          }
+          break;
+      }
+      if (n > max) {
+        max = n;
+      }
     }
+    return max + 1;
   }
 
-  private Value[] stack = new Value[4000];
+  /** Return the number of frame slots that may be used by the primitive with the given number. */
+  private static int primExtent(int p) {
+    Prim prim = Prim.primAt(p);
+    if (prim == null) {
+      return 1;
+    }
+    BlockType bt = prim.getBlockType();
+    return Math.max(1, Math.max(bt.getArity(), bt.getOutity()));
+  }
+
+  /** Ensure that there is space on the stacks for a frame that starts at the given fp. */
+  void ensureFrame(int fp) {
+    if (fp + frameExtent > words.length) {
+      int size = words.length;
+      while (fp + frameExtent > size) {
+        size *= 2;
+      }
+      resizeStacks(size);
+    }
+  }
+
+  /**
+   * Shrink the stacks, following a spike in stack use, now that the frame pointer has dropped to
+   * the given value.
+   */
+  private void shrinkStacks(int fp) {
+    int size = words.length / 2;
+    while (size > INITIAL_STACK && fp + frameExtent < size / 4) {
+      size /= 2;
+    }
+    resizeStacks(size);
+    if (control.length > INITIAL_CONTROL && csp < control.length / 4) {
+      int[] newcontrol = new int[control.length / 2];
+      for (int i = 0; i < csp; i++) {
+        newcontrol[i] = control[i];
+      }
+      control = newcontrol;
+    }
+  }
+
+  /** Replace the word and reference stacks with new arrays of the given size. */
+  private void resizeStacks(int size) {
+    int n = Math.min(size, words.length);
+    long[] newwords = new long[size];
+    Object[] newrefs = new Object[size];
+    for (int i = 0; i < n; i++) {
+      newwords[i] = words[i];
+      newrefs[i] = refs[i];
+    }
+    words = newwords;
+    refs = newrefs;
+    shrinkMark = (size > INITIAL_STACK) ? (size / 4 - frameExtent) : (-1);
+  }
+
+  /** Return the frame extent for this program, calculating it first if necessary. */
+  int getFrameExtent() {
+    if (frameExtent < 0) {
+      frameExtent = calcFrameExtent();
+    }
+    return frameExtent;
+  }
+
+  /** Set the frame extent for this program (used when a program is loaded from an image). */
+  void setFrameExtent(int frameExtent) {
+    this.frameExtent = frameExtent;
+  }
+
+  /** Prepare the stacks for a new run of the program in this machine. */
+  private void initStacks() {
+    getFrameExtent();
+    ensureFrame(0);
+  }
+
+  /** The word components of the global items in this machine, initialized at the start of exec. */
+  long[] gwords;
+
+  /** The reference components of the global items in this machine. */
+  Object[] grefs;
+
+  /** Initialize the runtime representations of each global item. */
+  private void initGlobals() {
+    gwords = new long[numGlobals];
+    grefs = new Object[numGlobals];
+    for (int i = 0; i < numGlobals; i++) {
+      if (globals[i] != null) {
+        gwords[i] = globals[i].wordRep();
+        grefs[i] = globals[i].refRep();
+      }
+    }
+  }
+
+  /**
+   * A cache of objects for nullary constructors, indexed by tag. Nullary objects have no fields, so
+   * a single instance can be shared between all allocations with a given tag.
+   */
+  private DataValue[] nullaries = new DataValue[16];
+
+  /** Return an object with the given tag and no fields, using the cache where possible. */
+  private DataValue nullary(int tag) {
+    if (tag < 0) {
+      return new DataValue(tag);
+    } else if (tag >= nullaries.length) {
+      if (tag >= 1024) { // Closure tags are code addresses, so do not cache beyond a small limit
+        return new DataValue(tag);
+      }
+      DataValue[] newarray = new DataValue[2 * tag];
+      for (int i = 0; i < nullaries.length; i++) {
+        newarray[i] = nullaries[i];
+      }
+      nullaries = newarray;
+    }
+    DataValue d = nullaries[tag];
+    return (d == null) ? (nullaries[tag] = new DataValue(tag)) : d;
+  }
+
+  /**
+   * Allocate a data value with the given tag and n fields taken from the frame starting at base;
+   * used by code generated by the JIT.
+   */
+  DataValue allocData(int tag, int n, int base) {
+    return (n == 0) ? nullary(tag) : DataValue.make(tag, n, base, words, refs);
+  }
+
+  /** Save the value in the given stack slot as global item i; used by code generated by the JIT. */
+  void saveGlobal(int src, int i) {
+    gwords[i] = words[src];
+    grefs[i] = refs[src];
+    debug.Log.println("Saved global: " + i + " [" + showValue(gwords[i], grefs[i]) + "]");
+  }
+
+  /** The output stream for primitives that are called during the current run. */
+  PrintWriter out;
+
+  /** Holds the word component of the value register when passing between JIT regions. */
+  long jitWord;
+
+  /** Holds the reference component of the value register when passing between JIT regions. */
+  Object jitRef;
+
+  /** Records the target address when JIT generated code jumps to an address with no code. */
+  int jitPc;
+
+  /**
+   * A cached handle for the JIT translation of the program in this machine. (Only used in the
+   * machine that holds the original program; see newContext.)
+   */
+  private MethodHandle jitCode;
+
+  /** The starting address for the cached JIT translation. */
+  private int jitStart;
+
+  /**
+   * Return the JIT translation of the program in this machine for the given starting address,
+   * translating it first if necessary.
+   */
+  private synchronized MethodHandle jitCode(int pc) throws Failure {
+    if (jitCode == null || jitStart != pc) {
+      jitCode = Jit.compile(this, pc);
+      jitStart = pc;
+    }
+    return jitCode;
+  }
+
+  /** Size (in bytes) of the JVM stack for a thread that runs JIT generated code. */
+  private static final long JIT_STACK_SIZE = 1L << 30;
+
+  /** A thread with a stack that is large enough to run JIT generated code directly. */
+  private static class JitThread extends Thread {
+
+    /** Default constructor. */
+    JitThread(Runnable r) {
+      super(null, r, "mil-jit", JIT_STACK_SIZE);
+    }
+  }
+
+  /**
+   * Return a factory for threads that can run JIT generated code directly. A pool that uses these
+   * threads can call jitExec for many runs without starting a new thread for each one.
+   */
+  public static ThreadFactory jitThreadFactory() {
+    return new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        return new JitThread(r);
+      }
+    };
+  }
+
+  /**
+   * Execute the program in this machine, starting at the given address, by translating it into JVM
+   * bytecode (see Jit). A Failure is reported if the program cannot be translated, in which case
+   * the caller can use exec instead. Generated code needs a large stack because each CALL uses a
+   * JVM stack frame, so it is run in a separate thread unless the caller is already running in a
+   * thread from jitThreadFactory. Instruction counts and call depths are not recorded. Returns
+   * true if the program ran to completion, or false if execution was aborted.
+   */
+  public boolean jitExec(final PrintWriter out, final int pc) throws Failure {
+    final MethodHandle code = program.jitCode(pc);
+    initStacks();
+    initGlobals();
+    memory.reset();
+    this.out = out;
+    if (Thread.currentThread() instanceof JitThread) {
+      return jitRun(code, out, pc);
+    }
+    final boolean[] done = new boolean[1];
+    Thread t =
+        new JitThread(
+            new Runnable() {
+              public void run() {
+                done[0] = jitRun(code, out, pc);
+              }
+            });
+    t.start();
+    try {
+      t.join();
+    } catch (InterruptedException e) {
+      jitAbort(out, "interrupted");
+      return false;
+    }
+    return done[0];
+  }
+
+  /**
+   * Run the JIT translated code, reporting any errors that occur. Returns true if the program ran
+   * to completion, or false if execution was aborted.
+   */
+  private boolean jitRun(MethodHandle code, PrintWriter out, int pc) {
+    try {
+      int result = (int) code.invokeExact(this, pc, 0, 0L, (Object) null);
+      if (result == Jit.NOCODE) {
+        jitAbort(out, "no code at address " + jitPc);
+        return false;
+      }
+      return true;
+    } catch (Failure f) {
+      jitAbort(out, f.getText());
+    } catch (ClassCastException e) {
+      jitAbort(out, "value is not a data object");
+    } catch (NullPointerException e) {
+      jitAbort(out, "value is not a data object");
+    } catch (IndexOutOfBoundsException e) {
+      jitAbort(out, "invalid field or frame access (" + e.getMessage() + ")");
+    } catch (StackOverflowError e) {
+      jitAbort(out, "call stack overflow");
+    } catch (Throwable e) {
+      jitAbort(out, "unexpected exception in JIT generated code (" + e + ")");
+    }
+    return false;
+  }
+
+  /** Display diagnostic information when execution of JIT generated code is aborted. */
+  private void jitAbort(PrintWriter out, String msg) {
+    out.println("Execution aborted: " + msg);
+  }
 
   private int instrCount = 0;
 
@@ -396,14 +1100,39 @@ public class Machine {
     return instrCount;
   }
 
+  /** Return a printable description of a value, given its word and reference components. */
+  private static String showValue(long w, Object r) {
+    return (r == null) ? Long.toString(w) : r.toString();
+  }
+
+  /** Holds the profile that should be updated during execution, or null if not profiling. */
+  private Profile profile = null;
+
+  /** Set the profile that will be used to record the behavior of subsequent calls to exec. */
+  public void setProfile(Profile profile) {
+    this.profile = profile;
+  }
+
   public void exec(PrintWriter out, int pc) {
     resetControlStack();
+    initStacks();
+    initGlobals();
+    memory.reset();
+    this.out = out;
     int fp = 0; // Current frame pointer
     instrCount = 0; // Count number of instructions executed
-    Value val = null; // Special "value" register
+    long wval = 0; // Special "value" register (word component)
+    Object rval = null; // Special "value" register (reference component)
+    Profile prof = profile;
+    if (prof != null) {
+      prof.start(pc);
+    }
     try {
       for (; ; ) {
         instrCount++;
+        if (prof != null) {
+          prof.step(pc);
+        }
         switch (prog[pc]) {
           case STOP: // STOP:  Terminate execution.
             return;
@@ -414,7 +1143,7 @@ public class Machine {
 
           case JFALSE: // JFALSE addr:  Conditional jump if the content of the value register is
                        // false.
-            if (val.getBool()) {
+            if (wval != 0) {
               pc += 2; // skip address
             } else {
               pc = prog[pc + 1]; // perform jump
@@ -423,7 +1152,7 @@ public class Machine {
 
           case JNTAG: // JNTAG t addr:  Conditional jump if the content of the value register is not
                       // tagged with t.
-            if (val.getTag() == prog[pc + 1]) {
+            if (((DataValue) rval).tag == prog[pc + 1]) {
               pc += 3; // skip address
             } else {
               pc = prog[pc + 2]; // perform jump
@@ -440,10 +1169,13 @@ public class Machine {
             saveContext(fp, pc + 3);
             fp += prog[pc + 1];
             pc = prog[pc + 2];
+            if (fp + frameExtent > words.length) {
+              ensureFrame(fp);
+            }
             continue;
 
           case CJUMP: // CJUMP:  Jump to closure in the value register
-            pc = val.getTag();
+            pc = ((DataValue) rval).tag;
             continue;
 
           case CCALL: // CCALL o:  Call closure in the value register, starting a new frame at the
@@ -451,46 +1183,43 @@ public class Machine {
             // offset in the current frame.
             saveContext(fp, pc + 2);
             fp += prog[pc + 1];
-            pc = val.getTag();
+            pc = ((DataValue) rval).tag;
+            if (fp + frameExtent > words.length) {
+              ensureFrame(fp);
+            }
             continue;
 
-          case RETURN: // RETURN:  Return to calling procedure, restoring fp and pc from saved
-                       // context.  We cache a
-            // small number of Context structures so that they can be reused on subsequent calls
-            // without
-            // additional allocation; this may prove to be an unnecessary/premature "optimization"
-            // ...
-            {
-              Context restore = saved;
-              saved = saved.enclosing;
-              fp = restore.fp;
-              pc = restore.pc;
-              if (cached == null) {
-                restore.fp = 0;
-                restore.enclosing = null;
-                cached = restore;
-              } else if (cached.fp < 10) {
-                restore.fp = cached.fp + 1;
-                restore.enclosing = cached;
-                cached = restore;
-              }
+          case RETURN: // RETURN:  Return to calling procedure, restoring fp and pc from the
+                       // control stack.
+            pc = control[--csp];
+            fp = control[--csp];
+            if (fp < shrinkMark) {
+              shrinkStacks(fp);
             }
-            callDepth--;
             continue;
 
           case LOAD: // LOAD src:  Load from specified frame slot into the value register.
-            val = stack[fp + prog[pc + 1]];
+            {
+              int src = fp + prog[pc + 1];
+              wval = words[src];
+              rval = refs[src];
+            }
             pc += 2;
             continue;
 
           case GLOAD: // GLOAD i:  Load global item i into the value register.
-            val = globals[prog[pc + 1]];
+            wval = gwords[prog[pc + 1]];
+            rval = grefs[prog[pc + 1]];
             pc += 2;
             continue;
 
           case STORE: // STORE dst:  Store the contents of the value register in the specified frame
                       // slot.
-            stack[fp + prog[pc + 1]] = val;
+            {
+              int dst = fp + prog[pc + 1];
+              words[dst] = wval;
+              refs[dst] = rval;
+            }
             pc += 2;
             continue;
 
@@ -502,18 +1231,33 @@ public class Machine {
             // value
             // register.  For example, we can swap the values in a pair of locations using the code
             // sequence:  LOAD v; COPY w v; STORE w
-            stack[fp + prog[pc + 2]] = stack[fp + prog[pc + 1]];
+            {
+              int src = fp + prog[pc + 1];
+              int dst = fp + prog[pc + 2];
+              words[dst] = words[src];
+              refs[dst] = refs[src];
+            }
             pc += 3;
             continue;
 
           case GCOPY: // GCOPY i dst:  Copy global item i into the specified frame slot.
-            stack[fp + prog[pc + 2]] = globals[prog[pc + 1]];
+            {
+              int i = prog[pc + 1];
+              int dst = fp + prog[pc + 2];
+              words[dst] = gwords[i];
+              refs[dst] = grefs[i];
+            }
             pc += 3;
             continue;
 
           case GSAVE: // GSAVE src i:  Save value in the source frame location as global item i.
-            globals[prog[pc + 2]] = stack[fp + prog[pc + 1]];
-            debug.Log.println("Saved global: " + prog[pc + 2] + " [" + globals[prog[pc + 2]] + "]");
+            {
+              int src = fp + prog[pc + 1];
+              int i = prog[pc + 2];
+              gwords[i] = words[src];
+              grefs[i] = refs[src];
+              debug.Log.println("Saved global: " + i + " [" + showValue(gwords[i], grefs[i]) + "]");
+            }
             pc += 3;
             continue;
 
@@ -522,12 +1266,11 @@ public class Machine {
             // offset o in the current frame.  The result is saved in the value register.
             {
               int n = prog[pc + 2];
-              int base = fp + prog[pc + 3];
-              Value[] vals = new Value[n];
-              for (int i = 0; i < n; i++) {
-                vals[i] = stack[base + i];
-              }
-              val = new DataValue(prog[pc + 1], vals);
+              rval =
+                  (n == 0)
+                      ? nullary(prog[pc + 1])
+                      : DataValue.make(prog[pc + 1], n, fp + prog[pc + 3], words, refs);
+              wval = 0;
               pc += 4;
             }
             continue;
@@ -535,24 +1278,134 @@ public class Machine {
           case SEL: // SEL i dst:  Extract the ith component of the data object in the value
                     // register and store
             // the result in frame slot dst.
-            stack[fp + prog[pc + 2]] = val.getComponent(prog[pc + 1]);
+            {
+              DataValue d = (DataValue) rval;
+              int i = prog[pc + 1];
+              int dst = fp + prog[pc + 2];
+              words[dst] = d.getWord(i);
+              refs[dst] = d.getRef(i);
+            }
+            pc += 3;
+            continue;
+
+          case WCONST: // WCONST n d:  Store the constant word n in frame slot d.
+            {
+              int dst = fp + prog[pc + 2];
+              words[dst] = prog[pc + 1];
+              refs[dst] = null;
+            }
             pc += 3;
             continue;
 
           case PRIM: // PRIM o p:  Execute primitive number p using parameters at offset o in the
                      // current frame.
-            Prim.exec(out, prog[pc + 2], fp + prog[pc + 1], stack);
-            pc += 3;
+          case PRIMJF: // PRIMJF o p x addr:  PRIM o p; LOAD x; JFALSE addr
+            // (PRIM and PRIMJF share a single call to Prim.exec, which helps the JVM to inline it.)
+            Prim.exec(this, prog[pc + 2], fp + prog[pc + 1], words);
+            if (prog[pc] == PRIM) {
+              pc += 3;
+              continue;
+            }
+            {
+              int src = fp + prog[pc + 3];
+              wval = words[src];
+              rval = refs[src];
+            }
+            if (wval != 0) {
+              pc += 7; // skip address
+            } else {
+              pc = prog[pc + 4]; // perform jump
+            }
+            continue;
+
+          case LDSEL: // LDSEL x i dst:  LOAD x; SEL i dst
+            {
+              int src = fp + prog[pc + 1];
+              wval = words[src];
+              rval = refs[src];
+              DataValue d = (DataValue) rval;
+              int i = prog[pc + 2];
+              int dst = fp + prog[pc + 3];
+              words[dst] = d.getWord(i);
+              refs[dst] = d.getRef(i);
+            }
+            pc += 5;
+            continue;
+
+          case SELS: // SELS len x k i1 d1 ... ik dk:  LOAD x; SEL i1 d1; ...; SEL ik dk
+            {
+              int src = fp + prog[pc + 2];
+              wval = words[src];
+              rval = refs[src];
+              DataValue d = (DataValue) rval;
+              int k = prog[pc + 3];
+              for (int j = pc + 4; k > 0; k--, j += 2) {
+                int i = prog[j];
+                int dst = fp + prog[j + 1];
+                words[dst] = d.getWord(i);
+                refs[dst] = d.getRef(i);
+              }
+            }
+            pc += prog[pc + 1];
+            continue;
+
+          case COPYN: // COPYN k s1 d1 ... sk dk:  COPY s1 d1; ...; COPY sk dk
+            {
+              int k = prog[pc + 1];
+              for (int j = pc + 2, n = k; n > 0; n--, j += 2) {
+                int src = fp + prog[j];
+                int dst = fp + prog[j + 1];
+                words[dst] = words[src];
+                refs[dst] = refs[src];
+              }
+              pc += 3 * k;
+            }
+            continue;
+
+          case LDST: // LDST src dst:  LOAD src; STORE dst
+            {
+              int src = fp + prog[pc + 1];
+              int dst = fp + prog[pc + 2];
+              words[dst] = wval = words[src];
+              refs[dst] = rval = refs[src];
+            }
+            pc += 4;
+            continue;
+
+          case ALLOCST: // ALLOCST tag n o dst:  ALLOC tag n o; STORE dst
+            {
+              int n = prog[pc + 2];
+              rval =
+                  (n == 0)
+                      ? nullary(prog[pc + 1])
+                      : DataValue.make(prog[pc + 1], n, fp + prog[pc + 3], words, refs);
+              wval = 0;
+              int dst = fp + prog[pc + 4];
+              words[dst] = wval;
+              refs[dst] = rval;
+            }
+            pc += 6;
             continue;
         }
       }
     } catch (Failure f) {
-      out.println("Execution aborted: pc=" + pc + ", " + f.getText());
-      out.println("Value: " + (val == null ? "null" : val.toString()));
-      out.println("Frame:");
-      for (int i = 0; i < 10 && fp + i < stack.length && stack[fp + i] != null; i++) {
-        out.println(" +" + i + ": " + stack[fp + i]);
-      }
+      abort(out, pc, f.getText(), fp, wval, rval);
+    } catch (ClassCastException e) {
+      abort(out, pc, "value is not a data object", fp, wval, rval);
+    } catch (NullPointerException e) {
+      abort(out, pc, "value is not a data object", fp, wval, rval);
+    } catch (IndexOutOfBoundsException e) {
+      abort(out, pc, "invalid field or frame access (" + e.getMessage() + ")", fp, wval, rval);
+    }
+  }
+
+  /** Display diagnostic information when execution is aborted. */
+  private void abort(PrintWriter out, int pc, String msg, int fp, long wval, Object rval) {
+    out.println("Execution aborted: pc=" + pc + ", " + msg);
+    out.println("Value: " + showValue(wval, rval));
+    out.println("Frame:");
+    for (int i = 0; i < 10 && fp + i < words.length; i++) {
+      out.println(" +" + i + ": " + showValue(words[fp + i], refs[fp + i]));
     }
   }
 }
@@ -172,6 +172,13 @@ public class MachineBuilder {
     fixups.put(d, new FixupList(iaddr, off, others));
   }
 
+  /** Run the peephole optimizer on the completed program, if it has been enabled. */
+  void optimize() {
+    if (Machine.peephole) {
+      machine.peephole();
+    }
+  }
+
   void stop() {
     machine.stop();
   }
@@ -292,6 +299,14 @@ public class MachineBuilder {
     }
   }
 
+  /**
+   * Reserve memory for an area with the given size, alignment, and (optional) initial contents,
+   * returning the index of a new global that holds the address of the area.
+   */
+  int area(long size, long alignment, byte[] init) throws Failure {
+    return machine.addGlobal(new WordValue(machine.memory.reserve(size, alignment, init)));
+  }
+
   int saveGlobal(int i) {
     int addr = machine.addGlobal(null);
     machine.gsave(i, addr);
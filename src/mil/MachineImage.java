@@ -0,0 +1,254 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Reads and writes binary images of bytecode programs, allowing a program that has been compiled
+ * once to be executed many times without repeating the work of the front end, type checker, and
+ * optimizer. An image contains the following sections, with all values stored in big endian
+ * format:
+ *
+ * <ul>
+ *   <li>a header with a magic number, format version, word size, and the frame extent of the
+ *       program;
+ *   <li>the code for the program, as an array of ints;
+ *   <li>the initial values of globals (words and booleans; all other globals are set by GSAVE
+ *       instructions when the program runs);
+ *   <li>the names of all primitives referenced by the code, which are used to map primitive
+ *       numbers in the image to primitive numbers in the loading process;
+ *   <li>the byte order, size, and initial contents of memory; and
+ *   <li>the global and code symbols from a HashAddrMap.
+ * </ul>
+ *
+ * Images are loaded by mapping the file into memory, so the code can be copied directly from the
+ * mapped buffer in a single operation.
+ */
+public class MachineImage {
+
+  /** Magic number at the start of every image ("MILB"). */
+  static final int MAGIC = 0x4d494c42;
+
+  /** Version number for the current image format. */
+  static final int VERSION = 1;
+
+  /** Codes that describe the initial value of each global. */
+  private static final int GLOBAL_NONE = 0;
+
+  private static final int GLOBAL_WORD = 1;
+
+  private static final int GLOBAL_BOOL = 2;
+
+  private Machine machine;
+
+  private HashAddrMap addrMap;
+
+  /** Default constructor. */
+  public MachineImage(Machine machine, HashAddrMap addrMap) {
+    this.machine = machine;
+    this.addrMap = addrMap;
+  }
+
+  public Machine getMachine() {
+    return machine;
+  }
+
+  public HashAddrMap getAddrMap() {
+    return addrMap;
+  }
+
+  /** Write a string as a length and a sequence of UTF-8 bytes. */
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Read a string that was written by writeString. */
+  static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Write this image to the named file. */
+  public void write(String filename) throws Failure {
+    try {
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+      write(out);
+      out.close();
+    } catch (IOException e) {
+      throw new Failure("Unable to write bytecode image \"" + filename + "\": " + e.getMessage());
+    }
+  }
+
+  private void write(DataOutputStream out) throws IOException, Failure {
+    Machine m = machine;
+    int[] prog = m.prog;
+    int size = m.nextAddr;
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(Word.size());
+    out.writeInt(m.getFrameExtent());
+
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeInt(prog[i]);
+    }
+
+    out.writeInt(m.numGlobals);
+    for (int i = 0; i < m.numGlobals; i++) {
+      Value v = m.globals[i];
+      if (v == null) {
+        out.writeInt(GLOBAL_NONE);
+        out.writeLong(0);
+      } else if (v instanceof WordValue) {
+        out.writeInt(GLOBAL_WORD);
+        out.writeLong(v.wordRep());
+      } else if (v instanceof BoolValue) {
+        out.writeInt(GLOBAL_BOOL);
+        out.writeLong(v.wordRep());
+      } else {
+        throw new Failure("Cannot save initial value " + v + " for global " + i + " in image");
+      }
+    }
+
+    HashMap<Integer, String> prims = new HashMap<Integer, String>();
+    for (int pc = 0; pc < size; pc += m.instrLength(pc)) {
+      if (prog[pc] == Machine.PRIM || prog[pc] == Machine.PRIMJF) {
+        int p = prog[pc + 2];
+        Prim prim = Prim.primAt(p);
+        if (prim == null || prim.getId() == null) {
+          throw new Failure("Code at address " + pc + " uses an unknown primitive " + p);
+        }
+        prims.put(p, prim.getId());
+      }
+    }
+    out.writeInt(prims.size());
+    for (Integer p : prims.keySet()) {
+      out.writeInt(p.intValue());
+      writeString(out, prims.get(p));
+    }
+
+    m.memory.write(out);
+    addrMap.write(out);
+  }
+
+  /**
+   * Load an image from the named file. This sets the word size to match the image, and updates the
+   * primitive numbers in the code to match the primitive table in the current process.
+   */
+  public static MachineImage read(String filename) throws Failure {
+    try {
+      RandomAccessFile file = new RandomAccessFile(filename, "r");
+      try {
+        FileChannel channel = file.getChannel();
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        return read(in, filename);
+      } finally {
+        file.close();
+      }
+    } catch (IOException e) {
+      throw new Failure("Unable to read bytecode image \"" + filename + "\": " + e.getMessage());
+    } catch (BufferUnderflowException e) {
+      throw new Failure("Bytecode image \"" + filename + "\" is truncated");
+    }
+  }
+
+  private static MachineImage read(ByteBuffer in, String filename) throws Failure {
+    if (in.getInt() != MAGIC) {
+      throw new Failure("\"" + filename + "\" is not a bytecode image");
+    }
+    int version = in.getInt();
+    if (version != VERSION) {
+      throw new Failure(
+          "Bytecode image \"" + filename + "\" has version " + version + ", expected " + VERSION);
+    }
+    Word.setSize(in.getInt());
+    Machine m = new Machine();
+    m.setFrameExtent(in.getInt());
+
+    int size = in.getInt();
+    int[] prog = new int[size];
+    in.asIntBuffer().get(prog);
+    in.position(in.position() + 4 * size);
+    m.prog = prog;
+    m.nextAddr = size;
+
+    int numGlobals = in.getInt();
+    m.globals = new Value[numGlobals];
+    m.numGlobals = numGlobals;
+    for (int i = 0; i < numGlobals; i++) {
+      int kind = in.getInt();
+      long w = in.getLong();
+      switch (kind) {
+        case GLOBAL_NONE:
+          break;
+
+        case GLOBAL_WORD:
+          m.globals[i] = new WordValue(w);
+          break;
+
+        case GLOBAL_BOOL:
+          m.globals[i] = BoolValue.make(w != 0);
+          break;
+
+        default:
+          throw new Failure("Bytecode image \"" + filename + "\" has an invalid global " + i);
+      }
+    }
+
+    HashMap<Integer, Integer> prims = new HashMap<Integer, Integer>();
+    for (int n = in.getInt(); n > 0; n--) {
+      int p = in.getInt();
+      String id = readString(in);
+      Prim prim = Prim.findPrim(id);
+      if (prim == null) { // An external primitive that is not available in this process
+        prim = new Prim(id, Prim.IMPURE, null);
+      }
+      prims.put(p, prim.getIndex());
+    }
+    for (int pc = 0; pc < size; pc += m.instrLength(pc)) {
+      if (prog[pc] == Machine.PRIM || prog[pc] == Machine.PRIMJF) {
+        Integer p = prims.get(prog[pc + 2]);
+        if (p == null) {
+          throw new Failure("Bytecode image \"" + filename + "\" has an invalid primitive table");
+        }
+        prog[pc + 2] = p.intValue();
+      }
+    }
+
+    m.memory = Memory.read(in);
+    return new MachineImage(m, HashAddrMap.read(in));
+  }
+}
@@ -175,13 +175,31 @@ public class MemArea extends Area {
     this.init = init.inScopeOf(handler, milenv, null);
   }
 
+  /** First pass code generation: reserve memory for this area. */
+  void generateMain(Handler handler, MachineBuilder builder) {
+    BigInteger bigsize = size.getNat();
+    if (bigsize == null || bigsize.signum() < 0 || bigsize.bitLength() > 62) {
+      handler.report(new Failure(pos, "Unable to determine size of area \"" + id + "\""));
+    } else if (init != null) {
+      handler.report(
+          new Failure(
+              pos, "Initializer for area \"" + id + "\" requires representation transformation"));
+    } else {
+      try {
+        builder.setAddr(this, builder.area(bigsize.longValue(), alignment, null));
+      } catch (Failure f) {
+        handler.report(f);
+      }
+    }
+  }
+
   /** Calculate a staticValue (which could be null) for each top level definition. */
   void calcStaticValues(LLVMMap lm, llvm.Program prog) {
     BigInteger bigsize = size.getNat();
     if (bigsize == null || bigsize.signum() < 0) { // TODO: add upper bound test
       debug.Internal.error("Unable to determine size of area " + id);
     }
-    llvm.Type at = new llvm.ArrayType(bigsize.longValue(), llvm.Type.i8);
+    llvm.Type at = llvm.ArrayType.get(bigsize.longValue(), llvm.Type.i8);
     String rawName = prog.freshName("raw");
     prog.add(new llvm.GlobalVarDefn(llvm.Mods.INTERNAL, rawName, at.defaultValue(), alignment));
     prog.add(
@@ -190,5 +208,6 @@ public class MemArea extends Area {
             id,
             new llvm.Bitcast(new llvm.Global(at.ptr(), rawName), llvm.Type.i8.ptr())));
     staticValue = calcStaticValue(id);
+    lm.addArea(this);
   }
 }
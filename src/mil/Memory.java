@@ -0,0 +1,210 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Provides the memory that is used by programs running in a Machine. Memory areas (MemArea and
+ * StringArea definitions) are allocated at fixed addresses while the program is being built, and
+ * the initial contents of memory (zeroes for most areas, and the characters of each string area)
+ * are recorded in an image. Each time the program is executed, the image is copied in a single
+ * block into a direct ByteBuffer that is accessed by the load and store primitives.
+ */
+public class Memory {
+
+  /**
+   * The address of the first byte in memory. Addresses below this value (including 0) are not
+   * valid, so uninitialized or null references will be detected.
+   */
+  static final long BASE = 0x1000;
+
+  /** Holds the initial contents of memory. */
+  private byte[] image = new byte[256];
+
+  /** The number of bytes in memory. */
+  private int size = 0;
+
+  /** The byte order that is used for multi-byte loads and stores. */
+  private ByteOrder order = targetOrder();
+
+  /** Holds the contents of memory while a program is running. */
+  private ByteBuffer buf = null;
+
+  /** Mask that is applied to addresses, reflecting the word size of the target. */
+  private long addrMask = (-1);
+
+  /** Default constructor. */
+  Memory() {
+    /* empty */
+  }
+
+  /**
+   * Construct a new memory with the same layout and initial contents as the given memory. The
+   * image is shared (it is not modified once the program has been built), but the new memory has
+   * its own buffer, so that it can be used by a separate execution context.
+   */
+  Memory(Memory memory) {
+    this.image = memory.image;
+    this.size = memory.size;
+    this.order = memory.order;
+  }
+
+  /**
+   * Reserve a block of memory with the given size and alignment, returning the address of its first
+   * byte. If a byte array is specified, then it is used to set the initial contents of the block.
+   */
+  long reserve(long bytes, long alignment, byte[] init) throws Failure {
+    if (alignment < 1) {
+      alignment = 1;
+    }
+    long addr = ((BASE + size + alignment - 1) / alignment) * alignment;
+    long end = addr - BASE + bytes;
+    if (bytes < 0 || end > Integer.MAX_VALUE) {
+      throw new Failure("Unable to allocate " + bytes + " bytes of memory for bytecode program");
+    }
+    if (end > image.length) {
+      long len = image.length;
+      while (len < end) {
+        len *= 2;
+      }
+      byte[] newimage = new byte[(int) Math.min(len, Integer.MAX_VALUE)];
+      for (int i = 0; i < size; i++) {
+        newimage[i] = image[i];
+      }
+      image = newimage;
+    }
+    if (init != null) {
+      int off = (int) (addr - BASE);
+      for (int i = 0; i < init.length && i < bytes; i++) {
+        image[off + i] = init[i];
+      }
+    }
+    size = (int) end;
+    return addr;
+  }
+
+  /**
+   * Return the byte order for the target platform, as determined by the LLVM target triple. We
+   * assume a little endian target if no triple has been specified; this is also the assumption that
+   * is used to implement 64 bit memory accesses using pairs of 32 bit operations.
+   */
+  static ByteOrder targetOrder() {
+    String triple = llvm.Program.targetTriple;
+    if (triple != null) {
+      String arch = triple.split("-")[0];
+      if (arch.endsWith("eb")
+          || arch.endsWith("_be")
+          || arch.equals("mips")
+          || arch.equals("mips64")
+          || arch.equals("powerpc")
+          || arch.equals("powerpc64")
+          || arch.equals("ppc")
+          || arch.equals("ppc64")
+          || arch.startsWith("sparc")
+          || arch.equals("s390x")
+          || arch.equals("m68k")) {
+        return ByteOrder.BIG_ENDIAN;
+      }
+    }
+    return ByteOrder.LITTLE_ENDIAN;
+  }
+
+  /** Reset the contents of memory to the initial image. */
+  void reset() {
+    if (buf == null || buf.capacity() != size) {
+      buf = ByteBuffer.allocateDirect(size);
+    }
+    buf.order(order);
+    buf.clear();
+    buf.put(image, 0, size);
+    addrMask = (Word.size() == 32) ? 0xffffffffL : (-1);
+  }
+
+  /** Write the byte order, size, and initial contents of this memory to a program image. */
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(order == ByteOrder.BIG_ENDIAN ? 1 : 0);
+    out.writeInt(size);
+    out.write(image, 0, size);
+  }
+
+  /** Read the description of a memory from a program image, as written by the write method. */
+  static Memory read(ByteBuffer in) {
+    Memory memory = new Memory();
+    memory.order = (in.getInt() == 1) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    memory.size = in.getInt();
+    memory.image = new byte[memory.size];
+    in.get(memory.image);
+    return memory;
+  }
+
+  /** Return the offset within buf of a block of the given size starting at the given address. */
+  private int index(long addr, int bytes) throws Failure {
+    long i = (addr & addrMask) - BASE;
+    if (i < 0 || i > size - bytes) {
+      throw new Failure("invalid memory access at address 0x" + Long.toHexString(addr));
+    }
+    return (int) i;
+  }
+
+  long load1(long addr) throws Failure {
+    return buf.get(index(addr, 1)) & 1;
+  }
+
+  long load8(long addr) throws Failure {
+    return buf.get(index(addr, 1)) & 0xffL;
+  }
+
+  long load16(long addr) throws Failure {
+    return buf.getShort(index(addr, 2)) & 0xffffL;
+  }
+
+  long load32(long addr) throws Failure {
+    return buf.getInt(index(addr, 4)) & 0xffffffffL;
+  }
+
+  long load64(long addr) throws Failure {
+    return buf.getLong(index(addr, 8));
+  }
+
+  void store1(long addr, long val) throws Failure {
+    buf.put(index(addr, 1), (byte) (val & 1));
+  }
+
+  void store8(long addr, long val) throws Failure {
+    buf.put(index(addr, 1), (byte) val);
+  }
+
+  void store16(long addr, long val) throws Failure {
+    buf.putShort(index(addr, 2), (short) val);
+  }
+
+  void store32(long addr, long val) throws Failure {
+    buf.putInt(index(addr, 4), (int) val);
+  }
+
+  void store64(long addr, long val) throws Failure {
+    buf.putLong(index(addr, 8), val);
+  }
+}
@@ -54,6 +54,11 @@ public class Prim {
     return blockType;
   }
 
+  /** Return the purity code for this primitive. */
+  int getPurity() {
+    return purity;
+  }
+
   static final int PURE = 0;
 
   static final int OBSERVER = 1;
@@ -83,6 +88,26 @@ public class Prim {
   static final String[] purityLabels =
       new String[] {"pure", "observer", "volatile", "impure", "doesntReturn"};
 
+  /**
+   * Calculate LLVM function attributes for a function with the given purity that is known not to
+   * return (doesntReturn), or to always return (willReturn). None of the functions that we generate
+   * can throw an exception, so they are all marked as nounwind.
+   */
+  static int funcAttrs(boolean doesntReturn, int purity, boolean willReturn) {
+    int attrs = llvm.Attrs.NOUNWIND;
+    if (doesntReturn) {
+      attrs |= llvm.Attrs.NORETURN;
+    } else if (willReturn) {
+      attrs |= llvm.Attrs.WILLRETURN;
+    }
+    if (purity == PURE) {
+      attrs |= llvm.Attrs.READNONE;
+    } else if (purity == OBSERVER) {
+      attrs |= llvm.Attrs.READONLY;
+    }
+    return attrs;
+  }
+
   String purityLabel() {
     return (purity < 0 || purity >= purityLabels.length) ? null : purityLabels[purity];
   }
@@ -890,13 +915,13 @@ public class Prim {
       return new div(bt);
     }
 
-    void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-      long n = stack[fp].getInt();
-      long d = stack[fp + 1].getInt();
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      long n = stack[fp];
+      long d = stack[fp + 1];
       if (d == 0) {
         throw new Failure("divide by zero error");
       }
-      stack[fp] = new WordValue(n / d);
+      stack[fp] = n / d;
     }
 
     /**
@@ -954,13 +979,13 @@ public class Prim {
       return new rem(bt);
     }
 
-    void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-      long n = stack[fp].getInt();
-      long d = stack[fp + 1].getInt();
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      long n = stack[fp];
+      long d = stack[fp + 1];
       if (d == 0) {
         throw new Failure("divide by zero error (for mod)");
       }
-      stack[fp] = new WordValue(n % d);
+      stack[fp] = n % d;
     }
 
     /**
@@ -1583,7 +1608,7 @@ public class Prim {
       return true;
     }
 
-    void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
+    void exec(Machine m, int fp, long[] stack) throws Failure {
       throw new Failure("halt primitive executed");
     }
   }
@@ -1625,11 +1650,26 @@ public class Prim {
     return blockType.instantiate();
   }
 
-  static void exec(PrintWriter out, int prim, int fp, Value[] stack) throws Failure {
+  static void exec(Machine m, int prim, int fp, long[] stack) throws Failure {
     if (prim < 0 || prim >= numPrims) {
       throw new Failure("primitive number " + prim + " is not defined");
     }
-    table[prim].exec(out, fp, stack);
+    table[prim].exec(m, fp, stack);
+  }
+
+  /** Return the first primitive in the table with the given name, or null if there is none. */
+  static Prim findPrim(String id) {
+    for (int i = 0; i < numPrims; i++) {
+      if (id.equals(table[i].id)) {
+        return table[i];
+      }
+    }
+    return null;
+  }
+
+  /** Return the primitive with the given index, or null if there is no such primitive. */
+  static Prim primAt(int i) {
+    return (i >= 0 && i < numPrims) ? table[i] : null;
   }
 
   static String showPrim(int i) {
@@ -1654,12 +1694,12 @@ public class Prim {
       return new printWord(bt);
     }
 
-    void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-      out.println("printWord: " + stack[fp].getInt());
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.out.println("printWord: " + stack[fp]);
     }
   }
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
+  void exec(Machine m, int fp, long[] stack) throws Failure {
     throw new Failure("primitive \"" + id + "\" not available");
   }
 
@@ -1819,6 +1859,10 @@ public class Prim {
       return new load1(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      stack[fp] = m.memory.load1(stack[fp]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is expected to return a result (that should be captured in the specified lhs), and
@@ -1852,6 +1896,10 @@ public class Prim {
       return new load8(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      stack[fp] = m.memory.load8(stack[fp]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is expected to return a result (that should be captured in the specified lhs), and
@@ -1885,6 +1933,10 @@ public class Prim {
       return new load16(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      stack[fp] = m.memory.load16(stack[fp]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is expected to return a result (that should be captured in the specified lhs), and
@@ -1918,6 +1970,10 @@ public class Prim {
       return new load32(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      stack[fp] = m.memory.load32(stack[fp]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is expected to return a result (that should be captured in the specified lhs), and
@@ -1951,6 +2007,10 @@ public class Prim {
       return new load64(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      stack[fp] = m.memory.load64(stack[fp]);
+    }
+
     /**
      * Representation transformation for memory accesses: Generates an implementation of a 64 bit
      * memory access by using a pair of 32 bit memory accesses, if Word.size==32. Assumes little
@@ -2023,6 +2083,10 @@ public class Prim {
       return new store1(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.memory.store1(stack[fp], stack[fp + 1]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is not expected to produce any results, but execution is expected to continue with
@@ -2050,6 +2114,10 @@ public class Prim {
       return new store8(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.memory.store8(stack[fp], stack[fp + 1]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is not expected to produce any results, but execution is expected to continue with
@@ -2077,6 +2145,10 @@ public class Prim {
       return new store16(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.memory.store16(stack[fp], stack[fp + 1]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is not expected to produce any results, but execution is expected to continue with
@@ -2104,6 +2176,10 @@ public class Prim {
       return new store32(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.memory.store32(stack[fp], stack[fp + 1]);
+    }
+
     /**
      * Generate code for a MIL PrimCall with the specified arguments in a context where the
      * primitive is not expected to produce any results, but execution is expected to continue with
@@ -2131,6 +2207,10 @@ public class Prim {
       return new store64(bt);
     }
 
+    void exec(Machine m, int fp, long[] stack) throws Failure {
+      m.memory.store64(stack[fp], stack[fp + 1]);
+    }
+
     /**
      * Representation transformation for memory accesses: Generates an implementation of a 64 bit
      * memory access by using a pair of 32 bit memory accesses, if Word.size==32. Assumes little
@@ -2402,7 +2482,9 @@ public class Prim {
    */
   llvm.Global primGlobalCalc(LLVMMap lm) {
     llvm.FunctionType ft = blockType.toLLVM(lm);
-    lm.declare(id, ft);
+    // We cannot tell whether a foreign function might unwind, so the declaration omits nounwind:
+    int attrs = funcAttrs(doesntReturn(), purity, hasNoEffect()) & ~llvm.Attrs.NOUNWIND;
+    lm.declare(id, ft, attrs, llvm.Attrs.NONE);
     return new llvm.Global(ft, id);
   }
 
@@ -2414,7 +2496,8 @@ public class Prim {
   llvm.Code toLLVMPrimVoid(
       LLVMMap lm, VarMap vm, TempSubst s, Atom[] args, boolean isTail, llvm.Code c) {
     // Default approach is to call a function:
-    return new llvm.CallVoid(isTail, lm.globalFor(this), Atom.toLLVMValues(lm, vm, s, args), c);
+    return new llvm.CallVoid(
+        llvm.Mods.tail(isTail), lm.globalFor(this), Atom.toLLVMValues(lm, vm, s, args), c);
   }
 
   /**
@@ -2434,7 +2517,10 @@ public class Prim {
     return new llvm.Op(
         lhs,
         new llvm.Call(
-            isTail, lhs.getType(), lm.globalFor(this), Atom.toLLVMValues(lm, vm, s, args)),
+            llvm.Mods.tail(isTail),
+            lhs.getType(),
+            lm.globalFor(this),
+            Atom.toLLVMValues(lm, vm, s, args)),
         c);
   }
 
@@ -2447,11 +2533,12 @@ public class Prim {
     llvm.Type pt = ty.ptr(); // pointer type
     llvm.Local p = vm.reg(pt); // register to hold pointer
     llvm.Value v = args[1].toLLVMAtom(lm, vm, s); // value to store
+    llvm.MDAttach mds = lm.areaAccess(args[0].apply(s).addrArea(vm));
     if (ty == v.getType()) { // store v directly if types match
-      c = new llvm.Store(v, p, c);
+      c = new llvm.Store(v, p, mds, c);
     } else { // truncate and store if types do not match
       llvm.Local r = vm.reg(ty); // register to hold truncated value
-      c = new llvm.Op(r, new llvm.Trunc(v, ty), new llvm.Store(r, p, c));
+      c = new llvm.Op(r, new llvm.Trunc(v, ty), new llvm.Store(r, p, mds, c));
     }
     return new llvm.Op(p, new llvm.IntToPtr(args[0].toLLVMAtom(lm, vm, s), pt), c);
   }
@@ -2466,11 +2553,14 @@ public class Prim {
       LLVMMap lm, VarMap vm, TempSubst s, Atom[] args, llvm.Type ty, llvm.Local lhs, llvm.Code c) {
     llvm.Type pt = ty.ptr(); // pointer type
     llvm.Local p = vm.reg(pt); // register to hold pointer
+    llvm.MDAttach mds = lm.areaAccess(args[0].apply(s).addrArea(vm));
     if (ty == lhs.getType()) { // load directly into lhs if types match
-      c = new llvm.Op(lhs, new llvm.Load(p), c);
+      c = new llvm.Op(lhs, new llvm.Load(p, mds), c);
     } else { // zero extend loaded value if types do not match (assumes lhs type is wider than ty)
       llvm.Local v = vm.reg(ty); // register to hold value
-      c = new llvm.Op(v, new llvm.Load(p), new llvm.Op(lhs, new llvm.Zext(v, lhs.getType()), c));
+      c =
+          new llvm.Op(
+              v, new llvm.Load(p, mds), new llvm.Op(lhs, new llvm.Zext(v, lhs.getType()), c));
     }
     return new llvm.Op(p, new llvm.IntToPtr(args[0].toLLVMAtom(lm, vm, s), pt), c);
   }
@@ -31,6 +31,10 @@ public abstract class PrimBinFOp extends PrimSing {
 
   abstract boolean op(boolean n, boolean m);
 
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp] != 0, stack[fp + 1] != 0) ? 1 : 0;
+  }
+
   Code fold(boolean n, boolean m) {
     MILProgram.report("constant folding for " + getId());
     return new Done(new Return(Flag.fromBool(op(n, m))));
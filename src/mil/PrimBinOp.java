@@ -20,7 +20,6 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.io.PrintWriter;
 
 /** A base class for primitive binary Word operators. */
 public abstract class PrimBinOp extends PrimSing {
@@ -32,8 +31,8 @@ public abstract class PrimBinOp extends PrimSing {
 
   abstract long op(long n, long m);
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-    stack[fp] = new WordValue(op(stack[fp].getInt(), stack[fp + 1].getInt()));
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp], stack[fp + 1]);
   }
 
   Code fold(long n, long m) {
@@ -104,6 +104,22 @@ public class PrimCall extends Call {
     return p.doesntReturn();
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this Tail, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Math.max(p.getPurity(), Atom.purity(args));
+  }
+
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return p.hasNoEffect();
+  }
+
   /**
    * Skip goto blocks in a Tail (for a ClosureDefn or TopLevel). TODO: can this be simplified now
    * that ClosureDefns hold Tails rather than Calls?
@@ -1853,6 +1869,24 @@ public class PrimCall extends Call {
     return p.repTransformPrim(set, Atom.repArgs(set, env, args));
   }
 
+  /**
+   * Generate LLVM code for a Bind of the form (vs <- this; c). The isTail parameter should only be
+   * true if c is return vs. An address that is calculated by adding an offset to an address in a
+   * memory area is recorded in the variable map before the code for c is generated so that any
+   * loads and stores in c that use the address can be associated with the area.
+   */
+  llvm.Code toLLVMBind(
+      LLVMMap lm, VarMap vm, TempSubst s, Temp[] vs, boolean isTail, Code c, Label[] succs) {
+    if (p == Prim.add && vs.length == 1) {
+      Area a0 = args[0].apply(s).addrArea(vm);
+      Area a1 = args[1].apply(s).addrArea(vm);
+      if ((a0 == null) != (a1 == null)) {
+        vm.setArea(vs[0], (a0 == null) ? a1 : a0);
+      }
+    }
+    return super.toLLVMBind(lm, vm, s, vs, isTail, c, succs);
+  }
+
   /**
    * Generate LLVM code to execute this Tail with NO result from the right hand side of a Bind. Set
    * isTail to true if the code sequence c is an immediate ret void instruction.
@@ -20,7 +20,6 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.io.PrintWriter;
 
 /** A base class for primitives that convert a Flag to a Word. */
 public abstract class PrimFtoW extends PrimSing {
@@ -32,8 +31,8 @@ public abstract class PrimFtoW extends PrimSing {
 
   abstract long op(boolean b);
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-    stack[fp] = new WordValue(op(stack[fp].getBool()));
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp] != 0);
   }
 
   Code fold(boolean n) {
@@ -20,7 +20,6 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.io.PrintWriter;
 
 /** A base class for primitive unary flag operators. */
 public abstract class PrimUnFOp extends PrimSing {
@@ -32,8 +31,8 @@ public abstract class PrimUnFOp extends PrimSing {
 
   abstract boolean op(boolean b);
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-    stack[fp] = BoolValue.make(op(stack[fp].getBool()));
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp] != 0) ? 1 : 0;
   }
 
   Code fold(boolean n) {
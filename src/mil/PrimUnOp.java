@@ -20,7 +20,6 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.io.PrintWriter;
 
 /** A base class for primitive unary Word operators. */
 public abstract class PrimUnOp extends PrimSing {
@@ -32,8 +31,8 @@ public abstract class PrimUnOp extends PrimSing {
 
   abstract long op(long n);
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-    stack[fp] = new WordValue(op(stack[fp].getInt()));
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp]);
   }
 
   Code fold(long n) {
@@ -20,7 +20,6 @@ package mil;
 
 import compiler.*;
 import core.*;
-import java.io.PrintWriter;
 
 /** A base class for primitives that convert a Word to a Flag. */
 public abstract class PrimWtoF extends PrimSing {
@@ -32,8 +31,8 @@ public abstract class PrimWtoF extends PrimSing {
 
   abstract boolean op(long n);
 
-  void exec(PrintWriter out, int fp, Value[] stack) throws Failure {
-    stack[fp] = new BoolValue(op(stack[fp].getInt()));
+  void exec(Machine m, int fp, long[] stack) throws Failure {
+    stack[fp] = op(stack[fp]) ? 1 : 0;
   }
 
   Code fold(long n) {
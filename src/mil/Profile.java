@@ -0,0 +1,399 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package mil;
+
+import compiler.*;
+import core.*;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Collects an execution profile for a program running in a Machine. The machine calls step before
+ * each instruction that it dispatches; from this, the profile records a count for each instruction
+ * and maintains a calling context tree, which records the number of instructions executed in each
+ * distinct call stack. Each instruction is attributed to the function (i.e., the Block,
+ * ClosureDefn, or other definition) whose code label most closely precedes it in the HashAddrMap.
+ */
+public class Profile {
+
+  /** Calling context tree nodes beyond this depth are merged with their parent. */
+  private static final int MAX_DEPTH = 256;
+
+  private Machine machine;
+
+  private int[] prog;
+
+  /** The number of times that each instruction has been dispatched. */
+  private long[] counts;
+
+  /** The index of the function that contains each instruction. */
+  private int[] funcOf;
+
+  /** The name of each function. */
+  private String[] names;
+
+  /** Records the number of calls (and tail calls) from one function to another. */
+  private HashMap<Long, long[]> edges = new HashMap<Long, long[]>();
+
+  /** A node in the calling context tree. */
+  private static class Node {
+
+    private int func;
+
+    private Node parent;
+
+    private int depth;
+
+    /** Number of instructions executed in this context, excluding those in calls. */
+    private long self;
+
+    /** Number of instructions executed in this context, including those in calls. */
+    private long total;
+
+    private HashMap<Integer, Node> children;
+
+    private Node(int func, Node parent) {
+      this.func = func;
+      this.parent = parent;
+      this.depth = (parent == null) ? 0 : (parent.depth + 1);
+    }
+
+    /** Find (or create) the child node for a call to the given function. */
+    Node child(int func) {
+      if (children == null) {
+        children = new HashMap<Integer, Node>();
+      }
+      Node n = children.get(func);
+      if (n == null) {
+        n = new Node(func, this);
+        children.put(func, n);
+      }
+      return n;
+    }
+  }
+
+  /**
+   * The root of the calling context tree. This is a synthetic node, with no associated function,
+   * whose children are the outermost calling contexts, so that a tail call from the initial
+   * function does not discard the tree that has been recorded so far.
+   */
+  private Node root;
+
+  /** The node for the current calling context. */
+  private Node node;
+
+  /** The function containing the most recently executed instruction. */
+  private int current;
+
+  /** The number of active calls that have been merged into node because of MAX_DEPTH. */
+  private int excess;
+
+  /** Set if the previous instruction was a call. */
+  private boolean pendingCall;
+
+  /** Set if the previous instruction was a return. */
+  private boolean pendingReturn;
+
+  /** Default constructor. */
+  public Profile(Machine machine, HashAddrMap addrMap) {
+    this.machine = machine;
+    this.prog = machine.prog;
+    int size = machine.nextAddr;
+    counts = new long[size];
+    funcOf = new int[size];
+    ArrayList<String> ns = new ArrayList<String>();
+    ns.add("(start)");
+    for (int pc = 0; pc < size; pc++) {
+      if (addrMap.hasCodeLabel(pc)) {
+        ns.add(addrMap.codeLabel(pc));
+      }
+      funcOf[pc] = ns.size() - 1;
+    }
+    names = ns.toArray(new String[ns.size()]);
+  }
+
+  /** Reset this profile for a new run of the program starting at the given address. */
+  void start(int pc) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = 0;
+    }
+    edges.clear();
+    current = funcOf[pc];
+    root = new Node(-1, null);
+    node = root.child(current);
+    excess = 0;
+    pendingCall = pendingReturn = false;
+  }
+
+  /** Record the execution of the instruction at the given address. */
+  void step(int pc) {
+    counts[pc]++;
+    int f = funcOf[pc];
+    if (pendingReturn) {
+      pendingReturn = false;
+      if (excess > 0) {
+        excess--;
+      } else if (node.parent != root) {
+        node = node.parent;
+      }
+    } else if (pendingCall) {
+      pendingCall = false;
+      edge(current, f, 0);
+      if (excess == 0 && node.depth < MAX_DEPTH) {
+        node = node.child(f);
+      } else {
+        excess++;
+      }
+    } else if (f != current) { // tail call (or fall through) to another function
+      edge(current, f, 1);
+      if (excess == 0) {
+        node = node.parent.child(f);
+      }
+    }
+    current = f;
+    node.self++;
+    switch (prog[pc]) {
+      case Machine.CALL:
+      case Machine.CCALL:
+        pendingCall = true;
+        break;
+
+      case Machine.RETURN:
+        pendingReturn = true;
+        break;
+    }
+  }
+
+  /** Record a call (kind 0) or a tail call (kind 1) from one function to another. */
+  private void edge(int from, int to, int kind) {
+    Long key = ((long) from << 32) | to;
+    long[] c = edges.get(key);
+    if (c == null) {
+      c = new long[2];
+      edges.put(key, c);
+    }
+    c[kind]++;
+  }
+
+  /** Calculate the total count in each node of the calling context tree. */
+  private long calcTotals(Node n) {
+    n.total = n.self;
+    if (n.children != null) {
+      for (Node c : n.children.values()) {
+        n.total += calcTotals(c);
+      }
+    }
+    return n.total;
+  }
+
+  /**
+   * Add the total counts for each node to the inclusive count for its function, but only for the
+   * outermost node on each path for any given function, so that recursive calls are not counted
+   * more than once.
+   */
+  private void calcInclusive(Node n, long[] inclusive, int[] active) {
+    if (active[n.func]++ == 0) {
+      inclusive[n.func] += n.total;
+    }
+    if (n.children != null) {
+      for (Node c : n.children.values()) {
+        calcInclusive(c, inclusive, active);
+      }
+    }
+    active[n.func]--;
+  }
+
+  /** Record c invocations of the primitive with number p from the function f. */
+  private static void countPrim(
+      int p, long c, int f, long[] primCalls, HashMap<String, long[]> prims) {
+    if (c > 0) {
+      primCalls[f] += c;
+      String name = Prim.showPrim(p);
+      long[] pc = prims.get(name);
+      if (pc == null) {
+        prims.put(name, pc = new long[1]);
+      }
+      pc[0] += c;
+    }
+  }
+
+  private static String percent(long n, long total) {
+    return (total == 0) ? "0.0%" : String.format("%.1f%%", (100.0 * n) / total);
+  }
+
+  /** Write a text report of this profile, with functions sorted by instruction count. */
+  public void report(PrintWriter out) {
+    int nf = names.length;
+    final long[] self = new long[nf];
+    long[] calls = new long[nf];
+    long[] tailCalls = new long[nf];
+    long[] allocs = new long[nf];
+    long[] fields = new long[nf];
+    long[] primCalls = new long[nf];
+    HashMap<String, long[]> prims = new HashMap<String, long[]>();
+    long total = 0;
+    for (int pc = 0; pc < counts.length; pc += machine.instrLength(pc)) {
+      long c = counts[pc];
+      int f = funcOf[pc];
+      self[f] += c;
+      total += c;
+      switch (prog[pc]) {
+        case Machine.ALLOC:
+        case Machine.ALLOCST:
+          allocs[f] += c;
+          fields[f] += c * prog[pc + 2];
+          break;
+
+        case Machine.PRIM:
+        case Machine.PRIMJF:
+          countPrim(prog[pc + 2], c, f, primCalls, prims);
+          break;
+      }
+    }
+    for (Long key : edges.keySet()) {
+      int to = (int) (key.longValue() & 0xffffffffL);
+      calls[to] += edges.get(key)[0];
+      tailCalls[to] += edges.get(key)[1];
+    }
+    long[] inclusive = new long[nf];
+    if (root != null && root.children != null) {
+      calcTotals(root);
+      int[] active = new int[nf];
+      for (Node c : root.children.values()) {
+        calcInclusive(c, inclusive, active);
+      }
+    }
+
+    out.println("Profile: " + total + " instructions executed");
+    out.println();
+    out.println("Functions (sorted by self instructions):");
+    out.println(
+        String.format(
+            "%12s %7s %12s %7s %10s %10s %10s %12s %10s  %s",
+            "self",
+            "self%",
+            "inclusive",
+            "incl%",
+            "calls",
+            "tailcalls",
+            "allocs",
+            "fields",
+            "prims",
+            "function"));
+    Integer[] order = new Integer[nf];
+    for (int i = 0; i < nf; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(
+        order,
+        new Comparator<Integer>() {
+          public int compare(Integer a, Integer b) {
+            return Long.compare(self[b], self[a]);
+          }
+        });
+    for (int i = 0; i < nf; i++) {
+      int f = order[i];
+      if (self[f] > 0 || inclusive[f] > 0) {
+        out.println(
+            String.format(
+                "%12d %7s %12d %7s %10d %10d %10d %12d %10d  %s",
+                self[f],
+                percent(self[f], total),
+                inclusive[f],
+                percent(inclusive[f], total),
+                calls[f],
+                tailCalls[f],
+                allocs[f],
+                fields[f],
+                primCalls[f],
+                names[f]));
+      }
+    }
+
+    out.println();
+    out.println("Primitives (sorted by invocations):");
+    ArrayList<String> primNames = new ArrayList<String>(prims.keySet());
+    final HashMap<String, long[]> primCounts = prims;
+    Collections.sort(
+        primNames,
+        new Comparator<String>() {
+          public int compare(String a, String b) {
+            int c = Long.compare(primCounts.get(b)[0], primCounts.get(a)[0]);
+            return (c != 0) ? c : a.compareTo(b);
+          }
+        });
+    for (String name : primNames) {
+      out.println(String.format("%12d  %s", prims.get(name)[0], name));
+    }
+
+    out.println();
+    out.println("Call graph edges (sorted by count):");
+    ArrayList<Long> keys = new ArrayList<Long>(edges.keySet());
+    final HashMap<Long, long[]> edgeCounts = edges;
+    Collections.sort(
+        keys,
+        new Comparator<Long>() {
+          public int compare(Long a, Long b) {
+            long[] ca = edgeCounts.get(a);
+            long[] cb = edgeCounts.get(b);
+            int c = Long.compare(cb[0] + cb[1], ca[0] + ca[1]);
+            return (c != 0) ? c : a.compareTo(b);
+          }
+        });
+    for (Long key : keys) {
+      long[] c = edges.get(key);
+      long k = key.longValue();
+      String edge = names[(int) (k >>> 32)] + " -> " + names[(int) (k & 0xffffffffL)];
+      if (c[0] > 0) {
+        out.println(String.format("%12d  %s", c[0], edge));
+      }
+      if (c[1] > 0) {
+        out.println(String.format("%12d  %s (tail)", c[1], edge));
+      }
+    }
+  }
+
+  /**
+   * Write the calling context tree in the "folded stacks" format that is used by flame graph
+   * tools, with one line for each distinct stack giving the function names from the outermost call
+   * to the innermost, separated by semicolons, and the number of instructions executed there.
+   */
+  public void folded(PrintWriter out) {
+    if (root != null) {
+      folded(out, root, null);
+    }
+  }
+
+  private void folded(PrintWriter out, Node n, String stack) {
+    if (n.self > 0) {
+      out.println(stack + " " + n.self);
+    }
+    if (n.children != null) {
+      ArrayList<Integer> fs = new ArrayList<Integer>(n.children.keySet());
+      Collections.sort(fs);
+      for (Integer f : fs) {
+        folded(out, n.children.get(f), (stack == null) ? names[f] : (stack + ";" + names[f]));
+      }
+    }
+  }
+}
@@ -41,6 +41,22 @@ public class Return extends Call {
     return true;
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this Tail, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    return Atom.purity(args);
+  }
+
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return true;
+  }
+
   /** Test if two Tail expressions are the same. */
   boolean sameTail(Tail that) {
     return that.sameReturn(this);
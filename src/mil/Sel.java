@@ -42,6 +42,31 @@ public class Sel extends Tail {
     return true;
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this Tail, using
+   * the results of a previous effectAnalysis() for any blocks that it calls.
+   */
+  int purity() {
+    // A Sel reads a field from the data object that it is examining:
+    return Math.max(Prim.OBSERVER, a.purity());
+  }
+
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return true;
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed on the
+   * right hand side of a Bind. A Sel only reads a field from the object.
+   */
+  boolean escapes(Temp v) {
+    return false;
+  }
+
   /** Test if this Tail expression includes a free occurrence of a particular variable. */
   boolean contains(Temp w) {
     return a == w;
@@ -300,6 +325,13 @@ public class Sel extends Tail {
         new llvm.Op(
             addr,
             new llvm.Getelementptr(at, base, llvm.Word.ZERO, new llvm.Index(n + 1)),
-            new llvm.Op(lhs, new llvm.Load(addr), c)));
+            new llvm.Op(
+                lhs,
+                new llvm.Load(
+                    addr,
+                    vm.onStack(a, s)
+                        ? lm.stackLoad(LLVMMap.TBAA_FIELD, lhs.getType())
+                        : lm.immutableLoad(LLVMMap.TBAA_FIELD, lhs.getType())),
+                c)));
   }
 }
@@ -153,6 +153,22 @@ public class StringArea extends Area {
     /* nothing to do */
   }
 
+  /**
+   * First pass code generation: reserve memory for this area, initialized with a null terminated
+   * copy of the string (using the same one byte per character encoding as calcStaticValues).
+   */
+  void generateMain(Handler handler, MachineBuilder builder) {
+    byte[] bytes = new byte[str.length() + 1];
+    for (int i = 0; i < str.length(); i++) {
+      bytes[i] = (byte) str.charAt(i);
+    }
+    try {
+      builder.setAddr(this, builder.area(bytes.length, 1, bytes));
+    } catch (Failure f) {
+      handler.report(f);
+    }
+  }
+
   /** Calculate a staticValue (which could be null) for each top level definition. */
   void calcStaticValues(LLVMMap lm, llvm.Program prog) {
     llvm.StringInitializer si = new llvm.StringInitializer(str);
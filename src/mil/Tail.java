@@ -158,6 +158,40 @@ public abstract class Tail {
     return false;
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of executing this Tail, using
+   * the results of a previous effectAnalysis() for any blocks that it calls. The default is to
+   * assume that the Tail might read or write arbitrary memory.
+   */
+  int purity() {
+    return Prim.IMPURE;
+  }
+
+  /**
+   * Test for a Tail that is guaranteed to return, using the results of a previous effectAnalysis()
+   * for any blocks that it calls.
+   */
+  boolean willReturn() {
+    return false;
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed on the
+   * right hand side of a Bind, using the results of a previous escapeAnalysis() for any blocks that
+   * it calls. The default is to assume that any use of v allows it to escape.
+   */
+  boolean escapes(Temp v) {
+    return contains(v);
+  }
+
+  /**
+   * Determine whether the object that v refers to might escape when this Tail is executed in tail
+   * position (i.e., as part of a Done). The local and s parameters are as for Code.escapes().
+   */
+  boolean escapesDone(Temp v, boolean local, TempSubst s) {
+    return escapes(v);
+  }
+
   /**
    * Test whether a given Code/Tail has the form return vs, with the specified Temp[] vs as its
    * argument list.
@@ -486,11 +520,14 @@ public abstract class Tail {
 
   /**
    * Generate LLVM code for a Bind of the form (vs <- this; c). The isTail parameter should only be
-   * true if c is return vs.
+   * true if c is return vs. The roots for any values whose last use is in this Tail are cleared
+   * before it is executed: if this Tail calls a function that might allocate, then the callee
+   * saves its own arguments as roots.
    */
   llvm.Code toLLVMBind(
       LLVMMap lm, VarMap vm, TempSubst s, Temp[] vs, boolean isTail, Code c, Label[] succs) {
-    return toLLVMBindTail(lm, vm, s, vs, isTail, c.toLLVMCode(lm, vm, s, succs));
+    llvm.Code code = toLLVMBindTail(lm, vm, s, vs, isTail, c.toLLVMCode(lm, vm, s, succs));
+    return isTail ? code : vm.clearDeadRoots(lm, s, add(null), c, code);
   }
 
   /**
@@ -508,11 +545,13 @@ public abstract class Tail {
       llvm.Local lhs;
       if (nuvs.length == 1) { // Just one result?
         lhs = vm.lookup(lm, nuvs[0]); // ... save result directly
+        code = vm.saveRoot(lhs, code);
       } else { // Multiple results?
         lhs = vm.reg(lm.toLLVM(resultType())); // ... a register to hold the structure
         for (int n = nuvs.length;
             --n >= 0; ) { // ... and a sequence of extractvalues to access components
-          code = new llvm.Op(vm.lookup(lm, nuvs[n]), new llvm.ExtractValue(lhs, n), code);
+          llvm.Local v = vm.lookup(lm, nuvs[n]);
+          code = new llvm.Op(v, new llvm.ExtractValue(lhs, n), vm.saveRoot(v, code));
         }
       }
       return toLLVMBindCont(
@@ -521,6 +521,14 @@ public class Temp extends Atom {
     return new Temp(this.type);
   }
 
+  /**
+   * Return the memory area that contains the address held in this atom, or null if the area is not
+   * known.
+   */
+  Area addrArea(VarMap vm) {
+    return vm.areaFor(this);
+  }
+
   /** Calculate an LLVM Value corresponding to a given MIL argument. */
   llvm.Value toLLVMAtom(LLVMMap lm, VarMap vm) {
     return vm.lookup(lm, this);
@@ -103,6 +103,15 @@ public abstract class Top extends Atom {
     return null;
   }
 
+  /**
+   * Return a purity code (see Prim) that describes the memory effects of accessing the value of
+   * this atom in generated code. Top level values without a static value are loaded from global
+   * variables.
+   */
+  int purity() {
+    return (staticValue() == null) ? Prim.OBSERVER : Prim.PURE;
+  }
+
   Type getType() {
     return type;
   }
@@ -43,6 +43,14 @@ public class TopArea extends Top {
     return area.getId();
   }
 
+  /**
+   * Return the memory area that contains the address held in this atom, or null if the area is not
+   * known.
+   */
+  Area addrArea(VarMap vm) {
+    return area;
+  }
+
   /**
    * Test to see if two atoms are the same. For Temp values, we use pointer equality to determine
    * object equality. For all other types of Atom, we use double dispatch to compare component
@@ -569,14 +569,19 @@ public class TopLevel extends TopDefn {
 
   /**
    * Use the values in the given list of atoms to initialize the (non static) left hand sides of
-   * this TopLevel.
+   * this TopLevel. Any of these variables that hold pointers are recorded as global roots if we
+   * are generating code for the garbage collector.
    */
   llvm.Code initLLVMTopLhs(LLVMMap lm, InitVarMap ivm, Atom[] as, llvm.Code edoc) {
     for (int i = 0; i < lhs.length; i++) {
       if (lhs[i].nonUnit() && staticValue(i) == null) {
         llvm.Value val = as[i].toLLVMAtom(lm, ivm);
+        llvm.Global g = new llvm.Global(val.getType().ptr(), getId(i));
         ivm.mapGlobal(new TopDef(this, i), val);
-        edoc = new llvm.Store(val, new llvm.Global(val.getType().ptr(), getId(i)), edoc);
+        if (MILProgram.gc && val.getType().isPtr()) {
+          lm.addGlobalRoot(g);
+        }
+        edoc = new llvm.Store(val, g, edoc);
       }
     }
     return edoc;
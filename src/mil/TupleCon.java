@@ -185,7 +185,7 @@ public class TupleCon extends Tycon {
         }
       }
       // Define a symbolic name for this type:
-      llvm.DefinedType dt = new llvm.DefinedType(new llvm.StructType(tys));
+      llvm.DefinedType dt = lm.definedType(llvm.StructType.get(tys));
       lm.typedef("corresponds to MIL tuple type " + c, dt);
       return dt;
     }
@@ -1124,7 +1124,7 @@ public abstract class Type extends Scheme {
 
   /** Returns the LLVM type for value that is returned by a function. */
   llvm.Type retType(LLVMMap lm) {
-    return lm.toLLVM(this.canonType(lm).getArg());
+    return lm.toLLVM(lm.canonType(this).getArg());
   }
 
   Type getArg() {
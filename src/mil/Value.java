@@ -21,6 +21,11 @@ package mil;
 import compiler.*;
 import core.*;
 
+/**
+ * Represents a value that is used as a constant or global in the bytecode interpreter. At runtime,
+ * the machine stores each value as a pair: a primitive word, used for Word and Flag values, and a
+ * reference, used for data and closure objects. These methods return the components of that pair.
+ */
 abstract class Value {
 
   static final BoolValue True = new BoolValue(true);
@@ -29,19 +34,13 @@ abstract class Value {
 
   public abstract String toString();
 
-  long getInt() throws Failure {
-    throw new Failure("value is not an integer");
+  /** Return the word component of the machine representation for this value. */
+  long wordRep() {
+    return 0;
   }
 
-  boolean getBool() throws Failure {
-    throw new Failure("value is not Boolean");
-  }
-
-  int getTag() throws Failure {
-    throw new Failure("value is not tagged");
-  }
-
-  Value getComponent(int i) throws Failure {
-    throw new Failure("value does not have components");
+  /** Return the reference component of the machine representation for this value. */
+  Object refRep() {
+    return null;
   }
 }
@@ -20,7 +20,9 @@ package mil;
 
 import compiler.*;
 import core.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 abstract class VarMap {
 
@@ -51,6 +53,303 @@ abstract class VarMap {
     return lhs;
   }
 
+  /**
+   * Records the memory area for each temporary that holds an address within an area, so that loads
+   * and stores using that address can be marked with the alias scope for the area.
+   */
+  private HashMap<Temp, Area> areaMap = new HashMap();
+
+  /** Record that the given temporary holds an address within the specified memory area. */
+  void setArea(Temp t, Area area) {
+    areaMap.put(t, area);
+  }
+
+  /** Return the memory area for an address in the given temporary, or null if it is not known. */
+  Area areaFor(Temp t) {
+    return areaMap.get(t);
+  }
+
+  /** Records the temporaries whose objects are stored on the stack in the current function. */
+  private HashSet<Temp> stackAllocs = new HashSet<Temp>();
+
+  /** Records the values in the current function that might refer to objects on the stack. */
+  private HashSet<Atom> onStack = new HashSet<Atom>();
+
+  /** Records the temporaries whose values are stored in the fields of objects on the stack. */
+  private HashSet<Temp> stackFields = new HashSet<Temp>();
+
+  /** Lists the stack slots for objects in the current function, in the order they were created. */
+  private ArrayList<llvm.Local> stackSlots = new ArrayList<llvm.Local>();
+
+  /**
+   * Record that the object allocated for the given temporary does not escape from the current
+   * function, and so can be stored on the stack.
+   */
+  void stackAlloc(Temp v) {
+    stackAllocs.add(v);
+    onStack.add(v);
+  }
+
+  /**
+   * Record that the given atom, after applying the substitution s, is stored in a field of an
+   * object on the stack. The collector does not scan objects on the stack, so any heap object that
+   * is referenced by such a field is only kept alive by the root for the value that was stored
+   * there. Roots for these values are never cleared (see clearRoots), so they remain live for as
+   * long as the stack frame, and hence the object on the stack, exists.
+   */
+  void stackField(Atom a, TempSubst s) {
+    Atom b = a.apply(s);
+    if (b instanceof Temp) {
+      stackFields.add((Temp) b);
+    }
+  }
+
+  /** Return true if the object allocated for the given temporary will be stored on the stack. */
+  boolean isStackAlloc(Temp v) {
+    return stackAllocs.contains(v);
+  }
+
+  /** Record that the given value might refer to an object on the stack. */
+  void addOnStack(Atom a) {
+    onStack.add(a);
+  }
+
+  /**
+   * Return true if the given atom, after applying the substitution s, might refer to an object on
+   * the stack.
+   */
+  boolean onStack(Atom a, TempSubst s) {
+    return onStack.contains(a.apply(s));
+  }
+
+  /**
+   * Return a new stack slot, which will be allocated in the entry block of the current function,
+   * for an object of type ty.
+   */
+  llvm.Local stackSlot(llvm.Type ty) {
+    llvm.Local slot = reg(ty.ptr());
+    stackSlots.add(slot);
+    return slot;
+  }
+
+  /** The calling convention of the function whose code is generated using this VarMap. */
+  private int conv = llvm.Mods.NONE;
+
+  /**
+   * The type of the function whose code is generated using this VarMap, or null if it has not been
+   * set.
+   */
+  private llvm.FunctionType ftype = null;
+
+  /**
+   * Record the calling convention (taken from the given function modifiers) and the type of the
+   * function whose code is generated using this VarMap. If we are generating code for the garbage
+   * collector, and the function might allocate (i.e., its attributes do not mark it as readnone or
+   * readonly), then we also start recording garbage collection roots.
+   */
+  void setFunction(int mods, int attrs, llvm.Type retType, llvm.Local[] formals) {
+    llvm.Type[] tys = new llvm.Type[formals.length];
+    for (int i = 0; i < formals.length; i++) {
+      tys[i] = formals[i].getType();
+    }
+    conv = mods & llvm.Mods.FASTCC;
+    ftype = llvm.FunctionType.get(retType, tys);
+    stackAllocs.clear();
+    onStack.clear();
+    stackFields.clear();
+    stackSlots.clear();
+    liveIn.clear();
+    if (MILProgram.gc && (attrs & (llvm.Attrs.READNONE | llvm.Attrs.READONLY)) == 0) {
+      rootSlots = new HashMap<llvm.Local, llvm.Local>();
+      roots = new ArrayList<llvm.Local>();
+    }
+  }
+
+  /**
+   * Return the modifiers for a call to a function with the given calling convention and type. A
+   * call in tail position (isTail) is marked musttail if the callee has the same calling convention
+   * and prototype as the enclosing function, which guarantees that it will not use any extra stack
+   * space, and is otherwise marked as an ordinary tail call.
+   *
+   * <p>No value in the frame of the caller is used after a call in tail position, and the callee
+   * saves its own arguments as roots if it might allocate, so a function that records garbage
+   * collection roots has no live roots at such a call. It can still use musttail because LLVM's
+   * shadow-stack lowering removes the frame from the chain of roots before a musttail call. An
+   * ordinary tail call is left unmarked in such a function, however, because the frame stays on
+   * the chain while the callee runs, and the tail marker would tell LLVM that the callee does not
+   * read the stack slots of the caller, which the collector does.
+   */
+  int callMods(boolean isTail, int callConv, llvm.Type callee) {
+    if (!isTail) {
+      return callConv;
+    } else if (callConv == conv && callee == ftype) {
+      return callConv | llvm.Mods.MUSTTAIL;
+    }
+    return (rootSlots != null) ? callConv : (callConv | llvm.Mods.TAIL);
+  }
+
+  /**
+   * Maps each pointer valued local to the stack slot where it is saved so that the garbage
+   * collector can find it, or null if we are not recording roots for this function.
+   */
+  private HashMap<llvm.Local, llvm.Local> rootSlots = null;
+
+  /** Lists the locals that have stack slots, in the order that the slots were created. */
+  private ArrayList<llvm.Local> roots = null;
+
+  /** Return the stack slot for the given pointer valued local, creating a new slot if necessary. */
+  private llvm.Local rootSlot(llvm.Local v) {
+    llvm.Local slot = rootSlots.get(v);
+    if (slot == null) {
+      slot = reg(v.getType().ptr());
+      rootSlots.put(v, slot);
+      roots.add(v);
+    }
+    return slot;
+  }
+
+  /**
+   * Generate code to save the value of the given local in its stack slot, if it holds a pointer
+   * and we are recording roots for this function, and then continue with the code in c. Every
+   * pointer valued local is saved in this way immediately after it is defined, and the slot is
+   * cleared again once the value is dead (see clearDeadRoots) so that the collector does not
+   * retain objects that the function no longer uses. The collector in lib/gc.c does not move
+   * objects, so a pointer that is still live after a call can be used directly, without reloading
+   * it from the stack slot.
+   */
+  llvm.Code saveRoot(llvm.Local v, llvm.Code c) {
+    if (rootSlots == null || !v.getType().isPtr()) {
+      return c;
+    }
+    return new llvm.Store(v, rootSlot(v), c);
+  }
+
+  /** Generate code to save the values of each of the given locals, and then continue with c. */
+  llvm.Code saveRoots(llvm.Local[] vs, llvm.Code c) {
+    for (int i = vs.length; --i >= 0; ) {
+      c = saveRoot(vs[i], c);
+    }
+    return c;
+  }
+
+  /** Caches the variables that are live at the start of each code sequence in this function. */
+  private HashMap<Code, Temps> liveIn = new HashMap<Code, Temps>();
+
+  /**
+   * Return the list of variables that are live at the start of the given code sequence. The result
+   * is cached so that the cost of finding the live variables for every Bind in a block is linear
+   * in the length of the block, and must not be modified.
+   */
+  Temps liveIn(Code c) {
+    Temps vs = liveIn.get(c);
+    if (vs == null && !liveIn.containsKey(c)) {
+      vs = c.liveVars(this);
+      liveIn.put(c, vs);
+    }
+    return vs;
+  }
+
+  /**
+   * Generate code to clear the stack slots for the values of any of the variables in used, after
+   * applying the substitution s, that are not live at the start of the code sequence c, and then
+   * continue with the code in code. This is used after the last use of a value so that the object
+   * it refers to is not retained by the collector.
+   */
+  llvm.Code clearDeadRoots(LLVMMap lm, TempSubst s, Temps used, Code c, llvm.Code code) {
+    if (rootSlots == null) {
+      return code;
+    }
+    Temps live = null;
+    for (Temps ts = liveIn(c); ts != null; ts = ts.next) {
+      live = ts.head.apply(s).add(live);
+    }
+    Temps dead = null;
+    for (; used != null; used = used.next) {
+      Atom a = used.head.apply(s);
+      if (!a.isIn(live)) {
+        dead = a.add(dead);
+      }
+    }
+    return clearRoots(lm, dead, code);
+  }
+
+  /**
+   * Generate code to clear the stack slots for the values of each of the given (dead) variables,
+   * which must already have been renamed by any substitution, and then continue with the code in
+   * c. Values that are stored in the fields of objects on the stack are never cleared, and objects
+   * on the stack do not have stack slots.
+   */
+  llvm.Code clearRoots(LLVMMap lm, Temps ts, llvm.Code c) {
+    if (rootSlots == null) {
+      return c;
+    }
+    for (; ts != null; ts = ts.next) {
+      Temp t = ts.head;
+      if (t.nonUnit() && !stackAllocs.contains(t) && !stackFields.contains(t)) {
+        llvm.Local v = lookup(lm, t);
+        if (v.getType().isPtr()) {
+          c = new llvm.Store(new llvm.Null(v.getType()), rootSlot(v), c);
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Generate the code for the entry block of a function with the given formal parameters, whose
+   * body is described by c, adding the code that is needed to allocate the stack slots for objects
+   * that do not escape, and to allocate and register a stack slot for each of the roots in the
+   * function, saving the values of any formal parameters that hold pointers. This must be called
+   * after all of the other code in the function has been generated.
+   */
+  llvm.Code frame(LLVMMap lm, llvm.Local[] formals, llvm.Code c) {
+    c = gcFrame(lm, formals, c);
+    for (int i = stackSlots.size(); --i >= 0; ) {
+      llvm.Local slot = stackSlots.get(i);
+      c = new llvm.Op(slot, new llvm.Alloca(slot.getType().ptsTo()), c);
+    }
+    return stackSlots.isEmpty() ? c : new llvm.CodeComment("allocate stack slots for objects", c);
+  }
+
+  /**
+   * Generate the code for the entry block of a function, as described above, for the garbage
+   * collector.
+   */
+  private llvm.Code gcFrame(LLVMMap lm, llvm.Local[] formals, llvm.Code c) {
+    if (rootSlots == null) {
+      return c;
+    }
+    c = saveRoots(formals, c);
+    int n = roots.size();
+    if (n > 0) {
+      llvm.Type rt = LLVMMap.allocRetType.ptr();
+      llvm.Value meta = new llvm.Null(LLVMMap.allocRetType); // no metadata is needed for our roots
+      for (int i = n; --i >= 0; ) {
+        llvm.Local slot = rootSlots.get(roots.get(i));
+        llvm.Local cast = reg(rt);
+        c =
+            new llvm.Op(
+                cast,
+                new llvm.Bitcast(slot, rt),
+                new llvm.CallVoid(lm.gcrootGlobal(), new llvm.Value[] {cast, meta}, c));
+      }
+      for (int i = n; --i >= 0; ) {
+        llvm.Local slot = rootSlots.get(roots.get(i));
+        c = new llvm.Op(slot, new llvm.Alloca(slot.getType().ptsTo()), c);
+      }
+      c = new llvm.CodeComment("register garbage collection roots", c);
+    }
+    return c;
+  }
+
+  /**
+   * Return the attributes that should be added to the function whose code is generated using this
+   * VarMap to enable the collection of its roots. This must be called after frame().
+   */
+  int gcAttrs() {
+    return (roots == null || roots.isEmpty()) ? llvm.Attrs.NONE : llvm.Attrs.SHADOW_STACK;
+  }
+
   /** Return an LLVM value corresponding to the specified global. */
   abstract llvm.Value lookupGlobal(LLVMMap lm, Top t);
 }
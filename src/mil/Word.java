@@ -92,17 +92,6 @@ public class Word extends Const {
     return (val << offset) >> offset;
   }
 
-  static long fromBig(BigInteger v) {
-    if (size == 32) {
-      return (long) v.intValue();
-    } else if (size == 64) {
-      return v.longValue();
-    } else {
-      debug.Internal.error("Unrecognized Word.size in fromBig");
-      return 0; /* not reached */
-    }
-  }
-
   /** As a special case, to allow easy reuse, export a constant representing the value zero. */
   public static final Word Zero = new Word(0);
 
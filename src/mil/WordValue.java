@@ -34,7 +34,8 @@ class WordValue extends Value {
     return Long.toString(num);
   }
 
-  long getInt() throws Failure {
+  /** Return the word component of the machine representation for this value. */
+  long wordRep() {
     return num;
   }
 }
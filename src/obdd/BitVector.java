@@ -0,0 +1,196 @@
+/*
+    Copyright 2018-25 Mark P Jones, Portland State University
+
+    This file is part of mil-tools.
+
+    mil-tools is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    mil-tools is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with mil-tools.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package obdd;
+
+import java.math.BigInteger;
+
+/**
+ * Represents a non-negative integer, typically the value of a bit vector or the number of values in
+ * a bit pattern. Almost all of the values that we need fit in a single 64 bit machine word, so we
+ * store those directly in a long (interpreted as an unsigned value), and only fall back to a
+ * BigInteger for values that need more than 64 bits. This avoids most of the allocation and
+ * arithmetic overhead of using BigInteger throughout bitdata layout and code generation.
+ */
+public final class BitVector {
+
+  /** The value of this bit vector, treated as an unsigned number, when big is null. */
+  private final long bits;
+
+  /** The value of this bit vector when it does not fit in 64 bits; null otherwise. */
+  private final BigInteger big;
+
+  /** Default constructor. */
+  private BitVector(long bits, BigInteger big) {
+    this.bits = bits;
+    this.big = big;
+  }
+
+  /** Cache of bit vectors for small values. */
+  private static final BitVector[] small = new BitVector[16];
+
+  static {
+    for (int i = 0; i < small.length; i++) {
+      small[i] = new BitVector(i, null);
+    }
+  }
+
+  public static final BitVector ZERO = small[0];
+
+  public static final BitVector ONE = small[1];
+
+  /** Return the bit vector for the given long value, treated as an unsigned 64 bit number. */
+  public static BitVector valueOf(long val) {
+    return (val >= 0 && val < small.length) ? small[(int) val] : new BitVector(val, null);
+  }
+
+  /** Return the bit vector for the given (non-negative) BigInteger value. */
+  public static BitVector valueOf(BigInteger val) {
+    if (val.signum() < 0) {
+      throw new IllegalArgumentException("negative bit vector value " + val);
+    }
+    return (val.bitLength() <= 64) ? valueOf(val.longValue()) : new BitVector(0, val);
+  }
+
+  /** Return a bit vector with just bit n set (i.e., 2^n). */
+  public static BitVector bit(int n) {
+    return (n < 64) ? valueOf(1L << n) : new BitVector(0, BigInteger.ZERO.setBit(n));
+  }
+
+  /** Return a bit vector with the lowest n bits set (i.e., 2^n - 1). */
+  public static BitVector ones(int n) {
+    if (n <= 64) {
+      return valueOf((n == 64) ? -1L : ((1L << n) - 1));
+    }
+    return new BitVector(0, BigInteger.ONE.shiftLeft(n).subtract(BigInteger.ONE));
+  }
+
+  /** Test whether this value can be represented without a BigInteger. */
+  public boolean fitsLong() {
+    return big == null;
+  }
+
+  /** Return the least significant 64 bits of this value. */
+  public long longValue() {
+    return (big == null) ? bits : big.longValue();
+  }
+
+  /** Return the least significant 32 bits of this value. */
+  public int intValue() {
+    return (int) longValue();
+  }
+
+  /** Return the 64 bits of this value that start at the given bit offset. */
+  public long extract(int offset) {
+    if (big == null) {
+      return (offset < 64) ? (bits >>> offset) : 0;
+    }
+    return big.shiftRight(offset).longValue();
+  }
+
+  /** Return the value of this bit vector as a BigInteger. */
+  public BigInteger toBigInteger() {
+    if (big != null) {
+      return big;
+    } else if (bits >= 0) {
+      return BigInteger.valueOf(bits);
+    } else {
+      return BigInteger.valueOf(bits >>> 1).shiftLeft(1).or(BigInteger.valueOf(bits & 1));
+    }
+  }
+
+  /** Return the number of bits that are needed to represent this value. */
+  public int bitLength() {
+    return (big == null) ? 64 - Long.numberOfLeadingZeros(bits) : big.bitLength();
+  }
+
+  public boolean isZero() {
+    return big == null && bits == 0;
+  }
+
+  public boolean testBit(int n) {
+    return (big == null) ? (n < 64 && ((bits >>> n) & 1) != 0) : big.testBit(n);
+  }
+
+  public BitVector setBit(int n) {
+    if (big == null && n < 64) {
+      long v = bits | (1L << n);
+      return (v == bits) ? this : valueOf(v);
+    }
+    return valueOf(toBigInteger().setBit(n));
+  }
+
+  public BitVector or(BitVector that) {
+    if (this.big == null && that.big == null) {
+      return valueOf(this.bits | that.bits);
+    }
+    return valueOf(this.toBigInteger().or(that.toBigInteger()));
+  }
+
+  public BitVector add(BitVector that) {
+    if (this.big == null && that.big == null) {
+      long sum = this.bits + that.bits;
+      if (Long.compareUnsigned(sum, this.bits) >= 0) { // no carry out of the top bit
+        return valueOf(sum);
+      }
+    }
+    return valueOf(this.toBigInteger().add(that.toBigInteger()));
+  }
+
+  public BitVector shiftLeft(int n) {
+    if (n == 0 || isZero()) {
+      return this;
+    } else if (big == null && n < 64 && (bits >>> (64 - n)) == 0) {
+      return valueOf(bits << n);
+    }
+    return valueOf(toBigInteger().shiftLeft(n));
+  }
+
+  public BitVector shiftRight(int n) {
+    if (n == 0) {
+      return this;
+    } else if (big == null) {
+      return (n < 64) ? valueOf(bits >>> n) : ZERO;
+    }
+    return valueOf(big.shiftRight(n));
+  }
+
+  public boolean equals(Object obj) {
+    if (obj instanceof BitVector) {
+      BitVector that = (BitVector) obj;
+      return (this.big == null)
+          ? (that.big == null && this.bits == that.bits)
+          : this.big.equals(that.big);
+    }
+    return false;
+  }
+
+  public int hashCode() {
+    return (big == null) ? Long.hashCode(bits) : big.hashCode();
+  }
+
+  /** Return a decimal representation of this value. */
+  public String toString() {
+    return toString(10);
+  }
+
+  /** Return a representation of this value in the given radix. */
+  public String toString(int radix) {
+    return (big == null) ? Long.toUnsignedString(bits, radix) : big.toString(radix);
+  }
+}
@@ -19,7 +19,7 @@
 package obdd;
 
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import java.util.HashMap;
 
 class ConstOBDD extends OBDD {
 
@@ -27,6 +27,7 @@ class ConstOBDD extends OBDD {
 
   /** Default constructor. */
   ConstOBDD(boolean val) {
+    super(val ? 0x5bd1e995 : 0x27d4eb2f);
     this.val = val;
   }
 
@@ -70,20 +71,15 @@ class ConstOBDD extends OBDD {
     return val;
   }
 
-  /** Test to determine whether two OBDD structures are the same. */
-  public boolean same(OBDD that) {
-    return that.isConst(val);
-  }
-
-  BigInteger size(int w) {
-    return val ? BigInteger.ZERO.setBit(w) : BigInteger.ZERO;
+  BitVector size(int w) {
+    return val ? BitVector.bit(w) : BitVector.ZERO;
   }
 
   /**
    * Copy an OBDD value, incrementing each variable reference by the specified padding value
    * (internal use only).
    */
-  OBDD shiftLeft(int padding) {
+  OBDD shiftLeft(int padding, HashMap<ITE, OBDD> copied) {
     return this;
   }
 
@@ -113,12 +109,12 @@ class ConstOBDD extends OBDD {
     return next;
   }
 
-  BigInteger mask(boolean op) {
-    return BigInteger.ZERO;
+  BitVector mask(boolean op) {
+    return BitVector.ZERO;
   }
 
-  BigInteger bits(boolean op) {
-    return BigInteger.ZERO;
+  BitVector bits(boolean op) {
+    return BitVector.ZERO;
   }
 
   OBDD masktest(boolean op) {
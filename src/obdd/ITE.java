@@ -19,7 +19,9 @@
 package obdd;
 
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
 
 class ITE extends OBDD {
 
@@ -29,13 +31,115 @@ class ITE extends OBDD {
 
   private OBDD ifFalse;
 
+  /** Caches the value of size(var + 1) for this OBDD, or null if it has not been calculated. */
+  private BitVector count;
+
+  /** Caches the value of countLines() for this OBDD, or -1 if it has not been calculated. */
+  private int lines = (-1);
+
   /** Default constructor. */
-  ITE(int var, OBDD ifTrue, OBDD ifFalse) {
+  private ITE(int var, OBDD ifTrue, OBDD ifFalse, int hash) {
+    super(hash);
     this.var = var;
     this.ifTrue = ifTrue;
     this.ifFalse = ifFalse;
   }
 
+  /**
+   * An entry in the unique table. Entries hold weak references to the nodes that they describe so
+   * that nodes can be garbage collected once they are no longer used by the rest of the program.
+   * A node that is still reachable remains in the table, so there is never more than one live node
+   * for any given combination of var, ifTrue, and ifFalse.
+   */
+  private static class Entry extends WeakReference<ITE> {
+
+    /** The hash code for the node that this entry refers to. */
+    private int hash;
+
+    /** The next entry in the same bucket of the unique table. */
+    private Entry next;
+
+    /** Default constructor. */
+    private Entry(ITE node, Entry next) {
+      super(node, cleared);
+      this.hash = node.hash;
+      this.next = next;
+    }
+  }
+
+  /**
+   * The unique table, which records every ITE node that has been constructed, indexed by hash
+   * code. The table is only accessed via get(), and ensures that there is at most one ITE node for
+   * each combination of var, ifTrue, and ifFalse.
+   */
+  private static Entry[] unique = new Entry[1024];
+
+  /** The number of entries in the unique table. */
+  private static int numUnique = 0;
+
+  /** A queue of entries whose nodes have been garbage collected. */
+  private static ReferenceQueue<ITE> cleared = new ReferenceQueue<ITE>();
+
+  /** Remove the entries for nodes that have been garbage collected from the unique table. */
+  private static void expunge() {
+    Object e;
+    while ((e = cleared.poll()) != null) {
+      Entry dead = (Entry) e;
+      int i = dead.hash & (unique.length - 1);
+      if (unique[i] == dead) {
+        unique[i] = dead.next;
+        numUnique--;
+      } else {
+        for (Entry prev = unique[i]; prev != null; prev = prev.next) {
+          if (prev.next == dead) {
+            prev.next = dead.next;
+            numUnique--;
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the ITE node that tests the given variable and has the given true and false branches,
+   * constructing a new node only if there is no such node in the unique table. Note that this
+   * does not eliminate redundant tests (where ifTrue and ifFalse are the same); that is the
+   * responsibility of the caller.
+   */
+  static synchronized ITE get(int var, OBDD ifTrue, OBDD ifFalse) {
+    expunge();
+    int hash = hash(var, ifTrue.hash, ifFalse.hash);
+    int i = hash & (unique.length - 1);
+    for (Entry e = unique[i]; e != null; e = e.next) {
+      ITE n = e.get();
+      if (n != null
+          && e.hash == hash
+          && n.var == var
+          && n.ifTrue == ifTrue
+          && n.ifFalse == ifFalse) {
+        return n;
+      }
+    }
+    ITE n = new ITE(var, ifTrue, ifFalse, hash);
+    unique[i] = new Entry(n, unique[i]);
+    if (++numUnique > unique.length - (unique.length >> 2)) {
+      Entry[] old = unique;
+      unique = new Entry[2 * old.length];
+      for (int j = 0; j < old.length; j++) {
+        Entry m = old[j];
+        while (m != null) {
+          Entry nxt = m.next;
+          int k = m.hash & (unique.length - 1);
+          m.next = unique[k];
+          unique[k] = m;
+          m = nxt;
+        }
+      }
+    }
+    return n;
+  }
+
   /**
    * A smart constructor for building OBDDs: c.ite(t,f) builds an OBDD for the logical expression
    * (if c then t else f) that ensures correct ordering of tests (child nodes can only test lower
@@ -43,26 +147,7 @@ class ITE extends OBDD {
    * are equal.
    */
   public OBDD ite(OBDD ifTrue, OBDD ifFalse) {
-    // The resulting OBDD will make a decision based on newVar, the highest numbered variable from
-    // this, ifTrue,
-    // and ifFalse:
-    int newVar = Math.max(var, Math.max(ifTrue.testVar(), ifFalse.testVar()));
-
-    // The true and false branches of the resulting OBDD are obtained using recursive calls to
-    // ite(), with
-    // appropriate specializations for the value of newVar (which will be true on the ifTrue branch,
-    // and false
-    // on the ifFalse branch):
-    OBDD newIfTrue =
-        this.with(newVar, true).ite(ifTrue.with(newVar, true), ifFalse.with(newVar, true));
-    OBDD newIfFalse =
-        this.with(newVar, false).ite(ifTrue.with(newVar, false), ifFalse.with(newVar, false));
-
-    // If the resulting true and false branches are the same, then there is no need for an ITE and
-    // we can just use
-    // one of the branches as given (i.e., without an additional test).  Otherwise, we construct a
-    // new ITE node.
-    return newIfTrue.same(newIfFalse) ? newIfTrue : new ITE(newVar, newIfTrue, newIfFalse);
+    return cachedIte(this, ifTrue, ifFalse);
   }
 
   /**
@@ -133,32 +218,35 @@ class ITE extends OBDD {
         : ifFalse.smallestOutside();
   }
 
-  /** Test to determine whether two OBDD structures are the same. */
-  public boolean same(OBDD that) {
-    return that.isITE(this);
-  }
-
-  public boolean isITE(ITE that) {
-    return that.var == this.var && that.ifTrue.same(this.ifTrue) && that.ifFalse.same(this.ifFalse);
-  }
-
-  BigInteger size(int w) {
-    return ifTrue.size(var).add(ifFalse.size(var)).shiftLeft(w - 1 - var);
+  BitVector size(int w) {
+    if (count == null) {
+      count = ifTrue.size(var).add(ifFalse.size(var));
+    }
+    return count.shiftLeft(w - 1 - var);
   }
 
   /**
    * Copy an OBDD value, incrementing each variable reference by the specified padding value
    * (internal use only).
    */
-  OBDD shiftLeft(int padding) {
-    return new ITE(var + padding, ifTrue.shiftLeft(padding), ifFalse.shiftLeft(padding));
+  OBDD shiftLeft(int padding, HashMap<ITE, OBDD> copied) {
+    OBDD result = copied.get(this);
+    if (result == null) {
+      result =
+          get(var + padding, ifTrue.shiftLeft(padding, copied), ifFalse.shiftLeft(padding, copied));
+      copied.put(this, result);
+    }
+    return result;
   }
 
   /**
    * Calculate the total number of output lines that would be needed to describe this BDD in full.
    */
   int countLines() {
-    return ifTrue.countLines() + ifFalse.countLines();
+    if (lines < 0) {
+      lines = ifTrue.countLines() + ifFalse.countLines();
+    }
+    return lines;
   }
 
   /**
@@ -186,20 +274,20 @@ class ITE extends OBDD {
     }
   }
 
-  BigInteger mask(boolean op) {
+  BitVector mask(boolean op) {
     OBDD child = ifFalse.isConst(op) ? ifTrue : ifFalse;
     return child.mask(op).setBit(var);
   }
 
-  BigInteger bits(boolean op) {
+  BitVector bits(boolean op) {
     return ifFalse.isConst(op) ? ifTrue.bits(op).setBit(var) : ifFalse.bits(op);
   }
 
   OBDD masktest(boolean op) {
     if (ifTrue.isConst(op)) {
-      return new ITE(var, ifTrue, ifFalse.masktest(op));
+      return get(var, ifTrue, ifFalse.masktest(op));
     } else if (ifFalse.isConst(op)) {
-      return new ITE(var, ifTrue.masktest(op), ifFalse);
+      return get(var, ifTrue.masktest(op), ifFalse);
     } else {
       return ifTrue.or(ifFalse).masktest(op);
     }
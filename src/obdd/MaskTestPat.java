@@ -18,13 +18,11 @@
 */
 package obdd;
 
-import java.math.BigInteger;
-
 public class MaskTestPat extends Pat {
 
-  private BigInteger mask;
+  private BitVector mask;
 
-  private BigInteger bits;
+  private BitVector bits;
 
   private boolean op;
 
@@ -39,11 +37,11 @@ public class MaskTestPat extends Pat {
     this(p.width, p.bdd.masktest(op), op);
   }
 
-  public BigInteger getMask() {
+  public BitVector getMask() {
     return mask;
   }
 
-  public BigInteger getBits() {
+  public BitVector getBits() {
     return bits;
   }
 
@@ -56,7 +54,7 @@ public class MaskTestPat extends Pat {
    * equality test, with no masking.
    */
   boolean fullMask() {
-    return BigInteger.ZERO.setBit(width).subtract(mask).compareTo(BigInteger.ONE) == 0;
+    return mask.equals(BitVector.ones(width));
   }
 
   public String toString(String name) {
@@ -66,8 +64,8 @@ public class MaskTestPat extends Pat {
     buf.append("(x :: Bit ");
     buf.append(width);
     buf.append(") = ");
-    if (mask.signum() == 0) {
-      buf.append(op ^ (bits.signum() == 0) ? "true" : "false");
+    if (mask.isZero()) {
+      buf.append(op ^ bits.isZero() ? "true" : "false");
     } else if (fullMask()) {
       buf.append("x ");
       buf.append(op ? "/=" : "==");
@@ -88,7 +86,7 @@ public class MaskTestPat extends Pat {
    * Display a string representation for the given number, adding underscores between every fourth
    * digit (from the right) for readability.
    */
-  private static void displayBits(StringBuilder buf, BigInteger num) {
+  private static void displayBits(StringBuilder buf, BitVector num) {
     String s = num.toString(16);
     int l = s.length();
     buf.append("0x");
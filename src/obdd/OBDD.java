@@ -20,15 +20,34 @@ package obdd;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigInteger;
-
-/** Provides a representation for (ordered) binary decision diagrams. */
+import java.util.HashMap;
+
+/**
+ * Provides a representation for (ordered) binary decision diagrams. All OBDD nodes are hash consed
+ * (see ITE.get), so two OBDDs have the same structure if, and only if, they are the same object,
+ * and the results of ite operations are recorded in a computed table so that repeated
+ * subproblems are only solved once.
+ */
 public abstract class OBDD {
 
   public static final OBDD TRUE = new ConstOBDD(true);
 
   public static final OBDD FALSE = new ConstOBDD(false);
 
+  /** A hash code for this OBDD, which is determined by its structure. */
+  final int hash;
+
+  /** Default constructor. */
+  OBDD(int hash) {
+    this.hash = hash;
+  }
+
+  /** Combine three values into a single hash code. */
+  static int hash(int a, int b, int c) {
+    int h = (a * 0x9e3779b1 + b) * 0x85ebca6b + c;
+    return h ^ (h >>> 15);
+  }
+
   /**
    * A smart constructor for building OBDDs: c.ite(t,f) builds an OBDD for the logical expression
    * (if c then t else f) that ensures correct ordering of tests (child nodes can only test lower
@@ -37,6 +56,64 @@ public abstract class OBDD {
    */
   public abstract OBDD ite(OBDD ifTrue, OBDD ifFalse);
 
+  /** The number of entries in the computed table for ite operations (a power of two). */
+  private static final int CACHE_SIZE = 1 << 14;
+
+  /**
+   * The computed table for ite operations: cacheResult[i] holds the result of cacheIf[i].ite(
+   * cacheThen[i], cacheElse[i]). Each operation is stored at a position that is determined by the
+   * hash codes of its arguments, overwriting any previous entry in the same position.
+   */
+  private static final OBDD[] cacheIf = new OBDD[CACHE_SIZE];
+
+  private static final OBDD[] cacheThen = new OBDD[CACHE_SIZE];
+
+  private static final OBDD[] cacheElse = new OBDD[CACHE_SIZE];
+
+  private static final OBDD[] cacheResult = new OBDD[CACHE_SIZE];
+
+  /**
+   * Empty the computed table for ite operations. This should be called once a compilation has
+   * finished so that the OBDDs that are referenced from the table can be garbage collected.
+   */
+  public static synchronized void clearCache() {
+    for (int i = 0; i < CACHE_SIZE; i++) {
+      cacheIf[i] = cacheThen[i] = cacheElse[i] = cacheResult[i] = null;
+    }
+  }
+
+  /**
+   * Implements the ite() method for non constant OBDDs, using the computed table to avoid repeating
+   * earlier calculations.
+   */
+  static synchronized OBDD cachedIte(OBDD c, OBDD ifTrue, OBDD ifFalse) {
+    int slot = hash(c.hash, ifTrue.hash, ifFalse.hash) & (CACHE_SIZE - 1);
+    if (cacheIf[slot] == c && cacheThen[slot] == ifTrue && cacheElse[slot] == ifFalse) {
+      return cacheResult[slot];
+    }
+
+    // The resulting OBDD will make a decision based on newVar, the highest numbered variable from
+    // c, ifTrue, and ifFalse:
+    int newVar = Math.max(c.testVar(), Math.max(ifTrue.testVar(), ifFalse.testVar()));
+
+    // The true and false branches of the resulting OBDD are obtained using recursive calls to
+    // ite(), with appropriate specializations for the value of newVar (which will be true on the
+    // ifTrue branch, and false on the ifFalse branch):
+    OBDD newIfTrue =
+        c.with(newVar, true).ite(ifTrue.with(newVar, true), ifFalse.with(newVar, true));
+    OBDD newIfFalse =
+        c.with(newVar, false).ite(ifTrue.with(newVar, false), ifFalse.with(newVar, false));
+
+    // If the resulting true and false branches are the same, then there is no need for an ITE and
+    // we can just use one of the branches as given (i.e., without an additional test).
+    OBDD result = (newIfTrue == newIfFalse) ? newIfTrue : ITE.get(newVar, newIfTrue, newIfFalse);
+    cacheIf[slot] = c;
+    cacheThen[slot] = ifTrue;
+    cacheElse[slot] = ifFalse;
+    cacheResult[slot] = result;
+    return result;
+  }
+
   /**
    * Return the number of the highest variable number that is tested in this OBDD, or zero if this
    * is a constant BDD.
@@ -112,11 +189,12 @@ public abstract class OBDD {
     return 0;
   }
 
-  /** Test to determine whether two OBDD structures are the same. */
-  public abstract boolean same(OBDD that);
-
-  public boolean isITE(ITE that) {
-    return false;
+  /**
+   * Test to determine whether two OBDD structures are the same. Because OBDDs are hash consed, this
+   * only requires a pointer comparison.
+   */
+  public boolean same(OBDD that) {
+    return this == that;
   }
 
   public OBDD not() {
@@ -131,27 +209,35 @@ public abstract class OBDD {
     return this.ite(OBDD.TRUE, that);
   }
 
-  abstract BigInteger size(int w);
+  abstract BitVector size(int w);
 
   /**
    * Copy an OBDD value, incrementing each variable reference by the specified padding value
    * (internal use only).
    */
-  abstract OBDD shiftLeft(int padding);
+  OBDD shiftLeft(int padding) {
+    return shiftLeft(padding, new HashMap<ITE, OBDD>());
+  }
+
+  /**
+   * Worker function for shiftLeft, using the given map to record the results for nodes that have
+   * already been copied, so that shared subgraphs are only visited once.
+   */
+  abstract OBDD shiftLeft(int padding, HashMap<ITE, OBDD> copied);
 
   public static OBDD intmod(int width, long val) {
     OBDD bdd = OBDD.TRUE;
     for (int i = 0; i < width; i++) {
-      bdd = ((val & 1) == 1) ? new ITE(i, bdd, OBDD.FALSE) : new ITE(i, OBDD.FALSE, bdd);
+      bdd = ((val & 1) == 1) ? ITE.get(i, bdd, OBDD.FALSE) : ITE.get(i, OBDD.FALSE, bdd);
       val >>= 1;
     }
     return bdd;
   }
 
-  public static OBDD intmod(int width, BigInteger val, int offset) {
+  public static OBDD intmod(int width, BitVector val, int offset) {
     OBDD bdd = OBDD.TRUE;
     for (int i = 0; i < width; i++) {
-      bdd = val.testBit(i) ? new ITE(offset, bdd, OBDD.FALSE) : new ITE(offset, OBDD.FALSE, bdd);
+      bdd = val.testBit(i) ? ITE.get(offset, bdd, OBDD.FALSE) : ITE.get(offset, OBDD.FALSE, bdd);
       offset++;
     }
     return bdd;
@@ -169,9 +255,9 @@ public abstract class OBDD {
    */
   abstract int showBits(int width, String[] lines, int next);
 
-  abstract BigInteger mask(boolean op);
+  abstract BitVector mask(boolean op);
 
-  abstract BigInteger bits(boolean op);
+  abstract BitVector bits(boolean op);
 
   abstract OBDD masktest(boolean op);
 
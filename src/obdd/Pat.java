@@ -19,7 +19,6 @@
 package obdd;
 
 import java.io.PrintWriter;
-import java.math.BigInteger;
 
 /** A main program for @Pat@, for the purposes of testing and illustration. */
 public class Pat {
@@ -57,10 +56,10 @@ public class Pat {
   }
 
   /** A pattern representing the single bit pattern 0. */
-  public static final Pat ZERO = new Pat(1, new ITE(0, OBDD.FALSE, OBDD.TRUE), false);
+  public static final Pat ZERO = new Pat(1, ITE.get(0, OBDD.FALSE, OBDD.TRUE), false);
 
   /** A pattern representing the single bit pattern 1. */
-  public static final Pat ONE = new Pat(1, new ITE(0, OBDD.TRUE, OBDD.FALSE), false);
+  public static final Pat ONE = new Pat(1, ITE.get(0, OBDD.TRUE, OBDD.FALSE), false);
 
   /**
    * Returns a bit pattern that represents the singleton set corresponding to the specified boolean.
@@ -92,8 +91,8 @@ public class Pat {
   }
 
   /** Find the total number of elements in the corresponding set of bit vectors. */
-  public BigInteger size() {
-    return width == 0 ? BigInteger.ZERO : bdd.size(width);
+  public BitVector size() {
+    return width == 0 ? BitVector.ZERO : bdd.size(width);
   }
 
   /** Calculate the complement/negation of a given pattern. */
@@ -207,7 +206,7 @@ public class Pat {
     return new Pat(width, OBDD.intmod(width, val), false);
   }
 
-  public static Pat intmod(int width, BigInteger val, int offset) {
+  public static Pat intmod(int width, BitVector val, int offset) {
     return new Pat(width + offset, OBDD.intmod(width, val, offset), false);
   }
 
@@ -227,9 +226,9 @@ public class Pat {
     OBDD bdd = OBDD.FALSE;
     for (int i = 0; i < width; i++) {
       if ((val & 1) == 0) {
-        bdd = new ITE(i, OBDD.TRUE, bdd);
+        bdd = ITE.get(i, OBDD.TRUE, bdd);
       } else if (bdd != OBDD.FALSE) {
-        bdd = new ITE(i, bdd, OBDD.FALSE);
+        bdd = ITE.get(i, bdd, OBDD.FALSE);
       }
       val >>= 1;
     }
@@ -264,7 +263,7 @@ public class Pat {
   public static Pat nonzero(int width) {
     OBDD bdd = OBDD.FALSE;
     for (int i = 0; i < width; i++) {
-      bdd = new ITE(i, OBDD.TRUE, bdd);
+      bdd = ITE.get(i, OBDD.TRUE, bdd);
     }
     return new Pat(width, bdd, false);
   }
@@ -273,7 +272,7 @@ public class Pat {
   public static Pat zero(int width) {
     OBDD bdd = OBDD.TRUE;
     for (int i = 0; i < width; i++) {
-      bdd = new ITE(i, OBDD.FALSE, bdd);
+      bdd = ITE.get(i, OBDD.FALSE, bdd);
     }
     return new Pat(width, bdd, false);
   }
@@ -0,0 +1,48 @@
+; data layout for values of type Shape0123
+%dt0 = type {i32}
+
+; layout for Green14710
+%dt1 = type {i32, i32}
+
+; layout for Blue25811
+%dt2 = type {i32, i32, i32}
+
+define i32 @score(%dt0* nonnull dereferenceable(4) %r0) nounwind willreturn readonly {
+  br label %score
+
+score:
+  ; read the tag for a data object
+  %r2 = getelementptr inbounds %dt0, %dt0* %r0, i32 0, i32 0
+  %r1 = load i32, i32* %r2, !tbaa !2
+  ; branch based on the tag value
+  switch i32 %r1, label %b89 [
+      i32 2, label %b88
+      i32 0, label %b82 ]
+
+b89:
+  %r5 = bitcast %dt0* %r0 to %dt1*
+  %r6 = getelementptr inbounds %dt1, %dt1* %r5, i32 0, i32 1
+  %r4 = load i32, i32* %r6, !tbaa !4
+  %r3 = add i32 %r4, 200
+  ret i32 %r3
+
+b82:
+  ret i32 100
+
+b88:
+  %r13 = bitcast %dt0* %r0 to %dt2*
+  %r14 = getelementptr inbounds %dt2, %dt2* %r13, i32 0, i32 1
+  %r9 = load i32, i32* %r14, !tbaa !4
+  %r11 = bitcast %dt0* %r0 to %dt2*
+  %r12 = getelementptr inbounds %dt2, %dt2* %r11, i32 0, i32 2
+  %r10 = load i32, i32* %r12, !tbaa !4
+  %r8 = add i32 %r9, %r10
+  %r7 = add i32 %r8, 300
+  ret i32 %r7
+}
+
+!0 = !{!"mil"}
+!1 = !{!"mil tag", !0, i64 0}
+!2 = !{!1, !1, i64 0}
+!3 = !{!"mil field", !0, i64 0}
+!4 = !{!3, !3, i64 0}